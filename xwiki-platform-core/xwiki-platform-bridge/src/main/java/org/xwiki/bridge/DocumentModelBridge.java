@@ -22,6 +22,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
 
 /**
  * Exposes methods for accessing Documents. This is temporary until we remodel the Model classes and the Document
@@ -127,6 +128,17 @@
      */
     XDOM getXDOM();
 
+    /**
+     * @return the XDOM for the document, shared with the other callers so it must not be modified in any way (use
+     *         {@link #getXDOM()} to get a copy which can be modified)
+     * @since 12.7RC1
+     */
+    @Unstable
+    default XDOM getReadOnlyXDOM()
+    {
+        return getXDOM();
+    }
+
     /**
      * @return the document's content author user reference
      * @since 7.2M1
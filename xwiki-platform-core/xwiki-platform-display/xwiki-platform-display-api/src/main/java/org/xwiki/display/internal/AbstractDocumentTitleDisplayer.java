@@ -123,6 +123,9 @@ public abstract class AbstractDocumentTitleDisplayer implements DocumentDisplaye
     @Inject
     private ModelContext modelContext;
 
+    @Inject
+    private DocumentTitleCache titleCache;
+
     /**
      * Used to emulate an in-line parsing.
      */
@@ -167,6 +170,48 @@ private Deque<DocumentReference> getDocumentReferenceDeque()
     }
 
     private XDOM displayTitle(DocumentModelBridge document, DocumentDisplayerParameters parameters)
+    {
+        boolean cacheable = isCacheable(document);
+
+        if (cacheable) {
+            XDOM title = this.titleCache.get(document);
+            if (title != null) {
+                return title;
+            }
+        }
+
+        XDOM title = computeTitle(document, parameters);
+
+        if (cacheable) {
+            this.titleCache.set(document, title);
+        }
+
+        return title;
+    }
+
+    /**
+     * @param document the document whose title is displayed
+     * @return true if the displayed title only depends on the document itself and can be reused until it's modified
+     */
+    private boolean isCacheable(DocumentModelBridge document)
+    {
+        String rawTitle = document.getTitle();
+
+        if (StringUtils.isEmpty(rawTitle)) {
+            // The title extracted from the content is the result of the content transformations
+            return !isTitleCompatibility();
+        }
+
+        // There is no way to know what a script depends on (current user, request, etc.)
+        return StringUtils.containsNone(rawTitle, '$', '#');
+    }
+
+    private boolean isTitleCompatibility()
+    {
+        return "1".equals(this.xwikicfg.getProperty("xwiki.title.compatibility", "0"));
+    }
+
+    private XDOM computeTitle(DocumentModelBridge document, DocumentDisplayerParameters parameters)
     {
         // 1. Try to use the title provided by the user.
         String rawTitle = document.getTitle();
@@ -185,7 +230,7 @@ private XDOM displayTitle(DocumentModelBridge document, DocumentDisplayerParamet
         }
 
         // 2. Try to extract the title from the document content.
-        if ("1".equals(this.xwikicfg.getProperty("xwiki.title.compatibility", "0"))) {
+        if (isTitleCompatibility()) {
             try {
                 XDOM title = extractTitleFromContent(document, parameters);
                 if (title != null) {
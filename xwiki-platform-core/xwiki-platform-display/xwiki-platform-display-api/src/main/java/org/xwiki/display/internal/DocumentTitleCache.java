@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.display.internal;
+
+import java.util.Objects;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.block.XDOM;
+
+/**
+ * Keep the displayed titles which only depend on the document itself (i.e. which don't contain any script).
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = DocumentTitleCache.class)
+@Singleton
+public class DocumentTitleCache implements Initializable, Disposable
+{
+    private static final int DEFAULT_CAPACITY = 10000;
+
+    private static final class TitleEntry
+    {
+        private final String version;
+
+        private final String rawTitle;
+
+        private final XDOM title;
+
+        TitleEntry(String version, String rawTitle, XDOM title)
+        {
+            this.version = version;
+            this.rawTitle = rawTitle;
+            this.title = title;
+        }
+
+        boolean isValid(DocumentModelBridge document)
+        {
+            // Also compare the raw title since a document can be modified in memory without changing its version
+            return Objects.equals(this.version, document.getVersion())
+                && Objects.equals(this.rawTitle, document.getTitle());
+        }
+    }
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private Cache<TitleEntry> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfig = new LRUCacheConfiguration("display.title", DEFAULT_CAPACITY);
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfig);
+        } catch (Exception e) {
+            throw new InitializationException("Failed to create the document title cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    private String getKey(DocumentModelBridge document)
+    {
+        return this.serializer.serialize(document.getDocumentReference()) + '/' + document.getRealLanguage();
+    }
+
+    /**
+     * @param document the document for which to get the title
+     * @return a copy of the title displayed for the passed document version or {@code null} if it's not cached
+     */
+    public XDOM get(DocumentModelBridge document)
+    {
+        TitleEntry entry = this.cache.get(getKey(document));
+
+        if (entry != null && entry.isValid(document)) {
+            return entry.title.clone();
+        }
+
+        return null;
+    }
+
+    /**
+     * @param document the document for which the title was displayed
+     * @param title the displayed title
+     */
+    public void set(DocumentModelBridge document, XDOM title)
+    {
+        this.cache.set(getKey(document), new TitleEntry(document.getVersion(), document.getTitle(), title.clone()));
+    }
+
+    /**
+     * @param document the document for which to forget the title
+     */
+    public void remove(DocumentModelBridge document)
+    {
+        this.cache.remove(getKey(document));
+    }
+
+    /**
+     * Forget all the titles.
+     */
+    public void removeAll()
+    {
+        this.cache.removeAll();
+    }
+}
@@ -68,12 +68,13 @@ protected XDOM extractTitleFromContent(DocumentModelBridge document, DocumentDis
         // at the moment since it would be too costly to do so. In the future we will even probably remove the feature
         // of generating the title from the content.
         List<HeaderBlock> blocks =
-            document.getXDOM().getBlocks(new ClassBlockMatcher(HeaderBlock.class), Block.Axes.DESCENDANT);
+            document.getReadOnlyXDOM().getBlocks(new ClassBlockMatcher(HeaderBlock.class), Block.Axes.DESCENDANT);
         if (!blocks.isEmpty()) {
             HeaderBlock heading = blocks.get(0);
             // Check the heading depth after which we should return null if no heading was found.
             if (heading.getLevel().getAsInt() <= displayConfiguration.getTitleHeadingDepth()) {
-                XDOM headingXDOM = new XDOM(Collections.<Block> singletonList(heading));
+                // Only copy the heading (and not the whole document content) since it's going to be transformed
+                XDOM headingXDOM = new XDOM(Collections.<Block> singletonList(heading.clone()));
                 try {
                     TransformationContext txContext =
                         new TransformationContext(headingXDOM, document.getSyntax(),
@@ -52,7 +52,9 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -141,4 +143,46 @@ public void whenSettingTheContextDocumentTheContextWikiIsAlsoSet() throws Except
         verify(dab).popDocumentFromContext(any());
         verify(modelContext).setCurrentEntityReference(currentWikiReference);
     }
+
+    @Test
+    public void displayCachedTitle() throws Exception
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        when(document.getDocumentReference()).thenReturn(new DocumentReference("wiki", Arrays.asList("Space"), "Page"));
+        when(document.getTitle()).thenReturn("title");
+
+        XDOM titleXDOM = new XDOM(Arrays.asList(new WordBlock("title")));
+
+        DocumentTitleCache titleCache = this.mocker.getInstance(DocumentTitleCache.class);
+        when(titleCache.get(document)).thenReturn(titleXDOM);
+
+        DocumentDisplayerParameters params = new DocumentDisplayerParameters();
+        params.setTitleDisplayed(true);
+
+        assertSame(titleXDOM, this.mocker.getComponentUnderTest().display(document, params));
+
+        verifyNoInteractions(this.mocker.<Parser>getInstance(Parser.class, "plain/1.0"));
+        verify(titleCache, never()).set(any(), any());
+    }
+
+    @Test
+    public void displayTitleWithScript() throws Exception
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        when(document.getDocumentReference()).thenReturn(new DocumentReference("wiki", Arrays.asList("Space"), "Page"));
+        when(document.getTitle()).thenReturn("$services.localization.render('title')");
+
+        XDOM titleXDOM = new XDOM(Arrays.asList(new WordBlock("title")));
+
+        Parser plainTextParser = this.mocker.getInstance(Parser.class, "plain/1.0");
+        when(plainTextParser.parse(any(StringReader.class))).thenReturn(titleXDOM);
+
+        DocumentDisplayerParameters params = new DocumentDisplayerParameters();
+        params.setTitleDisplayed(true);
+
+        assertSame(titleXDOM, this.mocker.getComponentUnderTest().display(document, params));
+
+        // The result of a script can depend on anything so it's never cached
+        verifyNoInteractions(this.mocker.<DocumentTitleCache>getInstance(DocumentTitleCache.class));
+    }
 }
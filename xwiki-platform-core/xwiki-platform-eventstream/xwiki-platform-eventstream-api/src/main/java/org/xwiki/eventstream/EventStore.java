@@ -120,6 +120,26 @@
      */
     CompletableFuture<Optional<EventStatus>> deleteMailEntityEvent(EntityEvent event);
 
+    /**
+     * Asynchronously delete from the store all the events older than the passed date, including their statuses and
+     * mail entities.
+     * <p>
+     * The default implementation returns a future failed with an {@link UnsupportedOperationException}.
+     * 
+     * @param date the date before which to remove the events
+     * @return the new {@link CompletableFuture} completed when all the events are deleted
+     * @since 12.7RC1
+     */
+    default CompletableFuture<Void> deleteEvents(Date date)
+    {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        future.completeExceptionally(
+            new UnsupportedOperationException("This store does not support deleting the events by date"));
+
+        return future;
+    }
+
     /**
      * Asynchronously update the event to indicate that it's been pre filtered.
      * 
@@ -22,13 +22,19 @@
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
@@ -52,6 +58,7 @@
 import org.xwiki.eventstream.events.MailEntityDeleteEvent;
 import org.xwiki.eventstream.internal.events.EventStatusAddOrUpdatedEvent;
 import org.xwiki.eventstream.internal.events.EventStatusDeletedEvent;
+import org.xwiki.eventstream.script.EventStoreLaneStatistics;
 import org.xwiki.observation.ObservationManager;
 
 /**
@@ -64,6 +71,8 @@ public abstract class AbstractAsynchronousEventStore implements EventStore, Init
 {
     private static final List<String> CONTEXT_ENTRIES = Arrays.asList("user", "author", "wiki");
 
+    private static final int MAX_STATUS_BATCH = 1000;
+
     /**
      * The type of task.
      * 
@@ -102,7 +111,12 @@ public abstract class AbstractAsynchronousEventStore implements EventStore, Init
         /**
          * @since 12.6
          */
-        PREFILTER_EVENT
+        PREFILTER_EVENT,
+
+        /**
+         * @since 12.7RC1
+         */
+        DELETE_EVENTS
     }
 
     /**
@@ -129,6 +143,10 @@ public abstract class AbstractAsynchronousEventStore implements EventStore, Init
 
         private O output;
 
+        private final long creationTime = System.nanoTime();
+
+        private BarrierTask barrier;
+
         protected EventStoreTask(I input, EventStoreTaskType type, Map<String, Serializable> contextStore)
         {
             this.input = input;
@@ -155,6 +173,139 @@ public EventStoreTaskType getType()
         }
     }
 
+    /**
+     * A marker stopping a lane until a task impacting several events has been executed by another lane.
+     * 
+     * @version $Id$
+     */
+    private static final class BarrierTask extends EventStoreTask<Object, Object>
+    {
+        private final CountDownLatch reached;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        BarrierTask(int lanes)
+        {
+            super(null, null, null);
+
+            this.reached = new CountDownLatch(lanes);
+        }
+    }
+
+    /**
+     * A task waiting in the queue of a lane.
+     * 
+     * @version $Id$
+     */
+    private static final class QueuedTask
+    {
+        private final EventStoreTask<?, ?> task;
+
+        private final boolean bounded;
+
+        QueuedTask(EventStoreTask<?, ?> task, boolean bounded)
+        {
+            this.task = task;
+            this.bounded = bounded;
+        }
+    }
+
+    /**
+     * A worker with its own queue and thread. All the tasks targeting the same event are handled by the same lane.
+     * 
+     * @version $Id$
+     * @since 12.7RC1
+     */
+    final class EventStoreLane
+    {
+        private final int index;
+
+        private final BlockingQueue<QueuedTask> queue = new LinkedBlockingQueue<>();
+
+        private final int queueCapacity;
+
+        private final Semaphore capacity;
+
+        private final Thread thread;
+
+        private final AtomicLong taskCount = new AtomicLong();
+
+        private final AtomicLong taskLatency = new AtomicLong();
+
+        private volatile long lastTaskLatency;
+
+        EventStoreLane(int index, int queueSize, String name)
+        {
+            this.index = index;
+            this.queueCapacity = queueSize;
+            this.capacity = new Semaphore(queueSize);
+
+            this.thread = new Thread(() -> run(this));
+            this.thread.setName(name);
+            this.thread.setPriority(Thread.NORM_PRIORITY - 1);
+        }
+
+        /**
+         * @return a snapshot of the current state of the lane
+         */
+        EventStoreLaneStatistics getStatistics()
+        {
+            long count = this.taskCount.get();
+            long averageTaskLatency = count > 0 ? TimeUnit.NANOSECONDS.toMillis(this.taskLatency.get() / count) : 0;
+
+            return new EventStoreLaneStatistics(this.index, this.queue.size(), this.queueCapacity, count,
+                averageTaskLatency, TimeUnit.NANOSECONDS.toMillis(this.lastTaskLatency));
+        }
+
+        /**
+         * Add a task at the end of the queue, waiting for some space in the queue if needed. The threads of the lanes
+         * never wait: the lane they add a task to might be itself waiting for them (for example when it reached the
+         * barrier of a global task), so the tasks they add are not counted in the size limit of the queue.
+         */
+        private void put(EventStoreTask<?, ?> task) throws InterruptedException
+        {
+            boolean bounded = !isLaneThread();
+            if (bounded) {
+                this.capacity.acquire();
+            }
+
+            add(task, bounded);
+        }
+
+        private void add(EventStoreTask<?, ?> task, boolean bounded)
+        {
+            this.queue.add(new QueuedTask(task, bounded));
+        }
+
+        private EventStoreTask<?, ?> take() throws InterruptedException
+        {
+            return release(this.queue.take());
+        }
+
+        private EventStoreTask<?, ?> poll()
+        {
+            QueuedTask queuedTask = this.queue.poll();
+
+            return queuedTask != null ? release(queuedTask) : null;
+        }
+
+        private EventStoreTask<?, ?> release(QueuedTask queuedTask)
+        {
+            if (queuedTask.bounded) {
+                this.capacity.release();
+            }
+
+            return queuedTask.task;
+        }
+
+        private void recordLatency(long latency)
+        {
+            this.taskCount.incrementAndGet();
+            this.taskLatency.addAndGet(latency);
+            this.lastTaskLatency = latency;
+        }
+    }
+
     private static class DeleteStatusesData
     {
         private final String entityId;
@@ -183,9 +334,13 @@ public EventStoreTaskType getType()
     @Inject
     private Execution execution;
 
-    private Thread thread;
+    private List<EventStoreLane> lanes;
 
-    private BlockingQueue<EventStoreTask<?, ?>> queue;
+    private final Object commitLock = new Object();
+
+    private final AtomicLong commitRequests = new AtomicLong();
+
+    private long committedRequest;
 
     private boolean notifyEach;
 
@@ -215,7 +370,11 @@ private <O, I> CompletableFuture<O> addTask(I input, EventStoreTaskType type)
     private <O, I> void addTask(EventStoreTask<O, I> task)
     {
         try {
-            this.queue.put(task);
+            if (this.lanes.size() > 1 && isGlobalTask(task)) {
+                addGlobalTask(task);
+            } else {
+                getLane(task).put(task);
+            }
         } catch (InterruptedException e) {
             task.future.completeExceptionally(e);
 
@@ -223,6 +382,107 @@ private <O, I> void addTask(EventStoreTask<O, I> task)
         }
     }
 
+    private <O, I> void addGlobalTask(EventStoreTask<O, I> task) throws InterruptedException
+    {
+        // Wait for some space in all the queues before taking the lock, a lane thread adding a task while the lock is
+        // held would otherwise wait for a thread which itself waits for that lane
+        boolean bounded = !isLaneThread();
+        if (bounded) {
+            int acquired = 0;
+            try {
+                for (; acquired < this.lanes.size(); ++acquired) {
+                    this.lanes.get(acquired).capacity.acquire();
+                }
+            } catch (InterruptedException e) {
+                for (EventStoreLane lane : this.lanes.subList(0, acquired)) {
+                    lane.capacity.release();
+                }
+
+                throw e;
+            }
+        }
+
+        // Make sure the barriers are queued in the same order in all the lanes
+        synchronized (this.lanes) {
+            // The task is executed by the first lane while the other lanes wait for it
+            BarrierTask barrier = new BarrierTask(this.lanes.size() - 1);
+            task.barrier = barrier;
+
+            for (EventStoreLane lane : this.lanes.subList(1, this.lanes.size())) {
+                lane.add(barrier, bounded);
+            }
+
+            this.lanes.get(0).add(task, bounded);
+        }
+    }
+
+    private boolean isGlobalTask(EventStoreTask<?, ?> task)
+    {
+        return task.type == EventStoreTaskType.DELETE_STATUSES || task.type == EventStoreTaskType.DELETE_EVENTS;
+    }
+
+    private EventStoreLane getLane(EventStoreTask<?, ?> task)
+    {
+        if (this.lanes.size() == 1) {
+            return this.lanes.get(0);
+        }
+
+        return this.lanes.get(Math.floorMod(Objects.hashCode(getEventId(task)), this.lanes.size()));
+    }
+
+    private String getEventId(EventStoreTask<?, ?> task)
+    {
+        switch (task.type) {
+            case DELETE_EVENT_BY_ID:
+                return (String) task.input;
+
+            case SAVE_STATUS:
+            case DELETE_STATUS:
+                return ((EventStatus) task.input).getEvent().getId();
+
+            case SAVE_MAIL_ENTITY:
+            case DELETE_MAIL_ENTITY:
+                return ((EntityEvent) task.input).getEvent().getId();
+
+            default:
+                return ((Event) task.input).getId();
+        }
+    }
+
+    private boolean isLaneThread()
+    {
+        Thread currentThread = Thread.currentThread();
+        for (EventStoreLane lane : this.lanes) {
+            if (lane.thread == currentThread) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the lanes handling the tasks
+     */
+    List<EventStoreLane> getLanes()
+    {
+        return this.lanes;
+    }
+
+    /**
+     * @return a snapshot of the state of each lane handling the tasks
+     * @since 12.7RC1
+     */
+    public List<EventStoreLaneStatistics> getLaneStatistics()
+    {
+        List<EventStoreLaneStatistics> statistics = new ArrayList<>(this.lanes.size());
+        for (EventStoreLane lane : this.lanes) {
+            statistics.add(lane.getStatistics());
+        }
+
+        return statistics;
+    }
+
     @Override
     public CompletableFuture<Event> saveEvent(Event event)
     {
@@ -265,6 +525,12 @@ public CompletableFuture<Void> deleteEventStatuses(String entityId, Date date)
         return addTask(new DeleteStatusesData(entityId, date), EventStoreTaskType.DELETE_STATUSES);
     }
 
+    @Override
+    public CompletableFuture<Void> deleteEvents(Date date)
+    {
+        return addTask(date, EventStoreTaskType.DELETE_EVENTS);
+    }
+
     @Override
     public CompletableFuture<Optional<EventStatus>> deleteMailEntityEvent(EntityEvent event)
     {
@@ -277,12 +543,12 @@ public CompletableFuture<Event> prefilterEvent(Event event)
         return addTask(event, EventStoreTaskType.PREFILTER_EVENT);
     }
 
-    private void run()
+    private void run(EventStoreLane lane)
     {
         while (!this.disposed) {
             EventStoreTask<?, ?> firstTask;
             try {
-                firstTask = this.queue.take();
+                firstTask = lane.take();
             } catch (InterruptedException e) {
                 this.logger.warn("The thread handling asynchronous storage for event store [{}] has been interrupted",
                     this.descriptor.getRoleHint(), e);
@@ -291,34 +557,166 @@ private void run()
                 break;
             }
 
-            processTasks(firstTask);
+            processTasks(lane, firstTask);
         }
     }
 
-    private void processTasks(EventStoreTask<?, ?> firstTask)
+    private void processTasks(EventStoreLane lane, EventStoreTask<?, ?> firstTask)
     {
         this.execution.setContext(new ExecutionContext());
 
         List<EventStoreTask<?, ?>> tasks = new ArrayList<>();
+        List<EventStoreTask<?, ?>> statusTasks = new ArrayList<>();
         try {
-            for (EventStoreTask<?, ?> task = firstTask; task != null; task = this.queue.poll()) {
-                if (task != EventStoreTask.STOP) {
-                    try {
-                        processTask(task);
-                    } catch (Exception e) {
-                        task.future.completeExceptionally(e);
+            for (EventStoreTask<?, ?> task = firstTask; task != null; task = lane.poll()) {
+                if (task instanceof BarrierTask) {
+                    // Make sure everything queued before the barrier is handled before the global task
+                    processStatusTasks(statusTasks);
+
+                    waitForGlobalTask((BarrierTask) task);
+                } else if (task != EventStoreTask.STOP) {
+                    if (isStatusTask(task)) {
+                        // Delay the status so that all the statuses added for the same event (usually one per
+                        // interested user) can be saved at once
+                        statusTasks.add(task);
+
+                        if (statusTasks.size() >= MAX_STATUS_BATCH) {
+                            processStatusTasks(statusTasks);
+                        }
+                    } else {
+                        // Make sure to not change the order of the operations
+                        processStatusTasks(statusTasks);
+
+                        if (task.barrier != null) {
+                            processGlobalTask(task);
+                        } else {
+                            processTaskSafe(task);
+                        }
                     }
 
                     tasks.add(task);
                 }
             }
+
+            processStatusTasks(statusTasks);
         } finally {
-            afterTasks(tasks);
+            if (!tasks.isEmpty()) {
+                commit();
+
+                afterTasks(tasks);
+
+                long now = System.nanoTime();
+                for (EventStoreTask<?, ?> task : tasks) {
+                    lane.recordLatency(now - task.creationTime);
+                }
+            }
 
             this.execution.removeContext();
         }
     }
 
+    private void waitForGlobalTask(BarrierTask barrier)
+    {
+        barrier.reached.countDown();
+
+        try {
+            barrier.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processGlobalTask(EventStoreTask<?, ?> task)
+    {
+        try {
+            // Wait for the other lanes to handle all the tasks queued before this one
+            task.barrier.reached.await();
+
+            processTaskSafe(task);
+        } catch (InterruptedException e) {
+            task.future.completeExceptionally(e);
+
+            Thread.currentThread().interrupt();
+        } finally {
+            task.barrier.done.countDown();
+        }
+    }
+
+    private void commit()
+    {
+        long request = this.commitRequests.incrementAndGet();
+
+        // Coalesce the commits of the various lanes
+        synchronized (this.commitLock) {
+            // Skip the commit if another lane already committed the changes while we were waiting for the lock
+            if (this.committedRequest < request) {
+                long lastRequest = this.commitRequests.get();
+
+                try {
+                    syncCommit();
+                } catch (Exception e) {
+                    this.logger.error("Failed to commit", e);
+                }
+
+                this.committedRequest = lastRequest;
+            }
+        }
+    }
+
+    private boolean isStatusTask(EventStoreTask<?, ?> task)
+    {
+        return task.type == EventStoreTaskType.SAVE_STATUS || task.type == EventStoreTaskType.SAVE_MAIL_ENTITY;
+    }
+
+    private void processTaskSafe(EventStoreTask<?, ?> task)
+    {
+        try {
+            processTask(task);
+        } catch (Exception e) {
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    private void processStatusTasks(List<EventStoreTask<?, ?>> statusTasks)
+    {
+        if (statusTasks.size() == 1) {
+            processTaskSafe(statusTasks.get(0));
+        } else if (!statusTasks.isEmpty()) {
+            List<EventStatus> statuses = new ArrayList<>(statusTasks.size());
+            List<EntityEvent> mailEntities = new ArrayList<>(statusTasks.size());
+            for (EventStoreTask<?, ?> task : statusTasks) {
+                if (task.type == EventStoreTaskType.SAVE_STATUS) {
+                    statuses.add((EventStatus) task.input);
+                } else {
+                    mailEntities.add((EntityEvent) task.input);
+                }
+            }
+
+            try {
+                if (!statuses.isEmpty()) {
+                    syncSaveEventStatuses(statuses);
+                }
+                if (!mailEntities.isEmpty()) {
+                    syncSaveMailEntityEvents(mailEntities);
+                }
+
+                for (EventStoreTask<?, ?> task : statusTasks) {
+                    processTaskOutput((EventStoreTask<Object, Object>) task, task.input);
+                }
+            } catch (Exception e) {
+                this.logger.warn("Failed to save [{}] statuses at once, falling back on saving them one by one",
+                    statusTasks.size(), e);
+
+                // Saving a status is idempotent so it's safe to save again the ones which might already be saved
+                for (EventStoreTask<?, ?> task : statusTasks) {
+                    processTaskSafe(task);
+                }
+            }
+        }
+
+        statusTasks.clear();
+    }
+
     private boolean processTask(EventStoreTask<?, ?> task) throws EventStreamException
     {
         switch (task.type) {
@@ -365,6 +763,10 @@ private boolean processTask(EventStoreTask<?, ?> task) throws EventStreamExcepti
                 processTaskOutput((EventStoreTask<Event, Event>) task, syncPrefilterEvent((Event) task.input));
                 break;
 
+            case DELETE_EVENTS:
+                processTaskOutput((EventStoreTask<Void, Date>) task, syncDeleteEvents((Date) task.input));
+                break;
+
             default:
                 break;
         }
@@ -418,6 +820,10 @@ private <O, I> void complete(EventStoreTask<O, I> task, O output)
                 this.observation.notify(new EventStatusDeletedEvent(), null);
                 break;
 
+            case DELETE_EVENTS:
+                this.observation.notify(new EventStreamDeletedEvent(), null);
+                break;
+
             case SAVE_STATUS:
                 this.observation.notify(new EventStatusAddOrUpdatedEvent(), task.output);
                 break;
@@ -446,6 +852,37 @@ private <O, I> void complete(EventStoreTask<O, I> task, O output)
      */
     protected abstract EntityEvent syncSaveMailEntityEvent(EntityEvent event) throws EventStreamException;
 
+    /**
+     * Save several event statuses at once. The default implementation calls {@link #syncSaveEventStatus(EventStatus)}
+     * for each status but stores are encouraged to merge the statuses targeting the same event.
+     * 
+     * @param statuses the event statuses to save, in the order they were added
+     * @throws EventStreamException when failing to save the statuses
+     * @since 12.7RC1
+     */
+    protected void syncSaveEventStatuses(List<EventStatus> statuses) throws EventStreamException
+    {
+        for (EventStatus status : statuses) {
+            syncSaveEventStatus(status);
+        }
+    }
+
+    /**
+     * Save several event/entity relations at once. The default implementation calls
+     * {@link #syncSaveMailEntityEvent(EntityEvent)} for each relation but stores are encouraged to merge the relations
+     * targeting the same event.
+     * 
+     * @param events the event/entity relations to save, in the order they were added
+     * @throws EventStreamException when failing to save the relations
+     * @since 12.7RC1
+     */
+    protected void syncSaveMailEntityEvents(List<EntityEvent> events) throws EventStreamException
+    {
+        for (EntityEvent event : events) {
+            syncSaveMailEntityEvent(event);
+        }
+    }
+
     /**
      * @param event the event to save
      */
@@ -485,6 +922,44 @@ private <O, I> void complete(EventStoreTask<O, I> task, O output)
      */
     protected abstract Optional<Event> syncDeleteEvent(Event event) throws EventStreamException;
 
+    /**
+     * Delete all the events older than the passed date, including their statuses and mail entities. The default
+     * implementation deletes the events one by one, stores are encouraged to delete them all at once.
+     * 
+     * @param date the date before which to remove the events
+     * @return null
+     * @throws EventStreamException when failing to delete the events
+     * @since 12.7RC1
+     */
+    protected Void syncDeleteEvents(Date date) throws EventStreamException
+    {
+        try {
+            EventsByDateDeleter.deleteEvents(this, date, eventIds -> {
+                for (String eventId : eventIds) {
+                    syncDeleteEvent(eventId);
+                }
+            });
+        } catch (EventStreamException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EventStreamException("Failed to delete the events older than [" + date + "]", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Make sure the changes made by the tasks handled so far are persisted. Called after each batch of tasks but the
+     * calls coming from different lanes are coalesced when they happen at the same time.
+     * 
+     * @throws EventStreamException when failing to commit
+     * @since 12.7RC1
+     */
+    protected void syncCommit() throws EventStreamException
+    {
+        // Nothing to do by default
+    }
+
     protected void afterTasks(List<EventStoreTask<?, ?>> tasks)
     {
         if (this.notifyAll) {
@@ -495,16 +970,36 @@ protected void afterTasks(List<EventStoreTask<?, ?>> tasks)
     }
 
     protected void initialize(int queueSize, boolean notifyEach, boolean notifyAll)
+    {
+        initialize(queueSize, notifyEach, notifyAll, 1);
+    }
+
+    /**
+     * @param queueSize the maximum number of tasks waiting in each lane (the tasks added from the threads of the lanes
+     *            themselves, for example by the listeners of the store events, are not limited)
+     * @param notifyEach true if the task should be completed as soon as it's executed
+     * @param notifyAll true if the tasks should be completed after each batch of tasks
+     * @param laneCount the number of lanes (threads) handling the tasks in parallel, the tasks targeting the same event
+     *            always being handled by the same lane
+     * @since 12.7RC1
+     */
+    protected void initialize(int queueSize, boolean notifyEach, boolean notifyAll, int laneCount)
     {
         this.notifyEach = notifyEach;
         this.notifyAll = !notifyEach && notifyAll;
 
-        this.queue = new LinkedBlockingQueue<>(queueSize);
+        int count = Math.max(1, laneCount);
+        List<EventStoreLane> newLanes = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String name = "Asynchronous handler for event store [" + this.descriptor.getRoleHint() + "]";
+            if (count > 1) {
+                name += " (lane " + i + ")";
+            }
+            newLanes.add(new EventStoreLane(i, queueSize, name));
+        }
+        this.lanes = Collections.unmodifiableList(newLanes);
 
-        this.thread = new Thread(this::run);
-        this.thread.setName("Asynchronous handler for event store [" + descriptor.getRoleHint() + "]");
-        this.thread.setPriority(Thread.NORM_PRIORITY - 1);
-        this.thread.start();
+        this.lanes.forEach(lane -> lane.thread.start());
     }
 
     @Override
@@ -512,17 +1007,24 @@ public void dispose() throws ComponentLifecycleException
     {
         this.disposed = true;
 
-        // Make sure to wake up the thread
-        addTask(EventStoreTask.STOP);
+        // Make sure to wake up the threads
+        for (EventStoreLane lane : this.lanes) {
+            lane.add(EventStoreTask.STOP, false);
+        }
 
         // Wait for the processing to be over but not more than 10s in case it's stuck for some reason
-        try {
-            this.thread.join(10000);
-        } catch (InterruptedException e) {
-            this.logger.warn("The thread handling asynchronous storage for event store [{}] has been interrupted",
-                this.descriptor.getRoleHint(), e);
+        long deadline = System.currentTimeMillis() + 10000;
+        for (EventStoreLane lane : this.lanes) {
+            try {
+                lane.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                this.logger.warn("The thread handling asynchronous storage for event store [{}] has been interrupted",
+                    this.descriptor.getRoleHint(), e);
 
-            this.thread.interrupt();
+                lane.thread.interrupt();
+
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }
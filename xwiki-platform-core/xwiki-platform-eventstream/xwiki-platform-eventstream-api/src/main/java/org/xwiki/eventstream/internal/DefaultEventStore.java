@@ -295,6 +295,28 @@ public CompletableFuture<Void> deleteEventStatuses(String entityId, Date date)
         return future;
     }
 
+    @Override
+    public CompletableFuture<Void> deleteEvents(Date date)
+    {
+        CompletableFuture<Void> future = null;
+
+        if (this.legacyStore != null) {
+            future = this.legacyStore.deleteEvents(date);
+        }
+
+        if (this.store != null) {
+            // Forget about legacy store result if new store is enabled
+            future = this.store.deleteEvents(date);
+        }
+
+        if (future == null) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(new EventStreamException(NO_STORE));
+        }
+
+        return future;
+    }
+
     @Override
     public CompletableFuture<Optional<EventStatus>> deleteMailEntityEvent(EntityEvent event)
     {
@@ -54,4 +54,13 @@ public boolean isEventStoreEnabled()
     {
         return this.configuration.getProperty("eventstream.store.enabled", true);
     }
+
+    /**
+     * @return the number of threads used to write in the {@link EventStore} in parallel
+     * @since 12.7RC1
+     */
+    public int getEventStoreThreads()
+    {
+        return this.configuration.getProperty("eventstream.store.threads", 1);
+    }
 }
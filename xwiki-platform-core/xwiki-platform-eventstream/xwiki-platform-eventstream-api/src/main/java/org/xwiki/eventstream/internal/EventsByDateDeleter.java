@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventSearchResult;
+import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.query.SimpleEventQuery;
+
+/**
+ * Delete all the events older than a date, one page of events at a time. Used by the stores which don't know how to
+ * delete them all at once.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+public final class EventsByDateDeleter
+{
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Delete a page of events.
+     * 
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface PageDeleter
+    {
+        /**
+         * @param eventIds the identifiers of the events to delete
+         * @throws Exception when failing to delete the events
+         */
+        void delete(List<String> eventIds) throws Exception;
+    }
+
+    private EventsByDateDeleter()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param store the store to search the events in
+     * @param date the date before which to remove the events
+     * @param deleter delete each page of events found in the store, the deletion is expected to be complete when it
+     *            returns
+     * @throws Exception when failing to search or delete the events
+     */
+    public static void deleteEvents(EventStore store, Date date, PageDeleter deleter) throws Exception
+    {
+        // The deleted events are normally not found anymore so the next page starts at the beginning again, unless
+        // the store only makes the deletions visible later (in which case they are skipped)
+        Set<String> previousPage = Collections.emptySet();
+        int offset = 0;
+        while (true) {
+            List<String> eventIds = new ArrayList<>(PAGE_SIZE);
+
+            SimpleEventQuery query = new SimpleEventQuery(offset, PAGE_SIZE);
+            query.before(date);
+            try (EventSearchResult result = store.search(query, Collections.singleton(Event.FIELD_ID))) {
+                if (result.getSize() == 0) {
+                    break;
+                }
+
+                result.stream().forEach(event -> eventIds.add(event.getId()));
+            }
+
+            List<String> newEventIds = new ArrayList<>(eventIds.size());
+            for (String eventId : eventIds) {
+                if (previousPage.contains(eventId)) {
+                    ++offset;
+                } else {
+                    newEventIds.add(eventId);
+                }
+            }
+
+            if (newEventIds.isEmpty()) {
+                continue;
+            }
+
+            deleter.delete(newEventIds);
+
+            previousPage = new HashSet<>(newEventIds);
+        }
+    }
+}
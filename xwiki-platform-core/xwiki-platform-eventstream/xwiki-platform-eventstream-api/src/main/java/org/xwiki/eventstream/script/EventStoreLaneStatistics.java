@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.script;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * A read-only snapshot of the state of one of the lanes of an asynchronous event store.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Unstable
+public class EventStoreLaneStatistics
+{
+    private final int index;
+
+    private final int queueSize;
+
+    private final int capacity;
+
+    private final long taskCount;
+
+    private final long averageTaskLatency;
+
+    private final long lastTaskLatency;
+
+    /**
+     * @param index the index of the lane
+     * @param queueSize the number of tasks waiting to be handled by the lane
+     * @param capacity the maximum number of tasks the queue of the lane can hold before the callers have to wait
+     * @param taskCount the number of tasks handled by the lane since it started
+     * @param averageTaskLatency the average time in milliseconds needed to complete a task
+     * @param lastTaskLatency the time in milliseconds needed to complete the last task
+     */
+    public EventStoreLaneStatistics(int index, int queueSize, int capacity, long taskCount, long averageTaskLatency,
+        long lastTaskLatency)
+    {
+        this.index = index;
+        this.queueSize = queueSize;
+        this.capacity = capacity;
+        this.taskCount = taskCount;
+        this.averageTaskLatency = averageTaskLatency;
+        this.lastTaskLatency = lastTaskLatency;
+    }
+
+    /**
+     * @return the index of the lane
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * @return the number of tasks waiting to be handled by the lane
+     */
+    public int getQueueSize()
+    {
+        return this.queueSize;
+    }
+
+    /**
+     * @return the maximum number of tasks the queue of the lane can hold before the callers have to wait
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of tasks handled by the lane since it started
+     */
+    public long getTaskCount()
+    {
+        return this.taskCount;
+    }
+
+    /**
+     * @return the average time in milliseconds between the moment a task is added and the moment it's completed
+     */
+    public long getAverageTaskLatency()
+    {
+        return this.averageTaskLatency;
+    }
+
+    /**
+     * @return the time in milliseconds between the moment the last task was added and the moment it was completed
+     */
+    public long getLastTaskLatency()
+    {
+        return this.lastTaskLatency;
+    }
+}
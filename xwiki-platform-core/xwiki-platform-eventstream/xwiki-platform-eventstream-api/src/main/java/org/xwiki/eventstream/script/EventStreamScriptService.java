@@ -20,6 +20,7 @@
 package org.xwiki.eventstream.script;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -36,6 +37,8 @@
 import org.xwiki.eventstream.EventStreamException;
 import org.xwiki.eventstream.RecordableEventDescriptor;
 import org.xwiki.eventstream.RecordableEventDescriptorManager;
+import org.xwiki.eventstream.internal.AbstractAsynchronousEventStore;
+import org.xwiki.eventstream.internal.EventStreamConfiguration;
 import org.xwiki.eventstream.internal.LegacyEventMigrationJob;
 import org.xwiki.eventstream.internal.LegacyEventMigrationRequest;
 import org.xwiki.eventstream.query.SimpleEventQuery;
@@ -76,6 +79,9 @@ public class EventStreamScriptService implements ScriptService
     @Inject
     private ComponentManager componentManager;
 
+    @Inject
+    private EventStreamConfiguration configuration;
+
     @Inject
     private Logger logger;
 
@@ -172,4 +178,29 @@ public long getEventCount() throws EventStreamException
     {
         return this.eventStore.search(new SimpleEventQuery(0, 0)).getTotalHits();
     }
+
+    /**
+     * @return a snapshot of the lanes (queue size, capacity, latency) of the configured event store, empty if the store
+     *         is not asynchronous
+     * @since 12.7RC1
+     */
+    @Unstable
+    public List<EventStoreLaneStatistics> getStoreLanes()
+    {
+        String hint = this.configuration.getEventStore();
+
+        if (this.configuration.isEventStoreEnabled() && this.componentManager.hasComponent(EventStore.class, hint)) {
+            try {
+                EventStore store = this.componentManager.getInstance(EventStore.class, hint);
+
+                if (store instanceof AbstractAsynchronousEventStore) {
+                    return ((AbstractAsynchronousEventStore) store).getLaneStatistics();
+                }
+            } catch (ComponentLookupException e) {
+                this.logger.error("Failed to lookup the event store with hint [{}]", hint, e);
+            }
+        }
+
+        return Collections.emptyList();
+    }
 }
@@ -19,12 +19,17 @@
  */
 package org.xwiki.eventstream.internal;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.component.phase.InitializationException;
@@ -34,11 +39,13 @@
 import org.xwiki.eventstream.EventSearchResult;
 import org.xwiki.eventstream.EventStatus;
 import org.xwiki.eventstream.EventStreamException;
+import org.xwiki.eventstream.script.EventStoreLaneStatistics;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectComponentManager;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.mockito.MockitoComponentManager;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -192,12 +199,53 @@ protected Optional<Event> syncDeleteEvent(Event event) throws EventStreamExcepti
         }
     }
 
+    public static class TestMultiLaneEventStore extends TestAbstractAsynchronousEventStore
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            initialize(2, true, false, 4);
+        }
+    }
+
+    public static class TestReentrantEventStore extends TestAbstractAsynchronousEventStore
+    {
+        List<CompletableFuture<Event>> futures = new ArrayList<>();
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            initialize(1, true, false, 4);
+        }
+
+        @Override
+        protected Void syncDeleteEventStatuses(String entityId, Date date) throws EventStreamException
+        {
+            // Add more tasks than the other lanes (waiting for this global task) can queue
+            for (int i = 0; i < 20; ++i) {
+                DefaultEvent event = new DefaultEvent();
+                event.setId("reentrant" + i);
+                event.setDate(new Date(i));
+
+                this.futures.add(saveEvent(event));
+            }
+
+            return super.syncDeleteEventStatuses(entityId, date);
+        }
+    }
+
     @InjectComponentManager
     private MockitoComponentManager componentManager;
 
     @InjectMockComponents
     private TestAbstractAsynchronousEventStore store;
 
+    @InjectMockComponents
+    private TestMultiLaneEventStore multiLaneStore;
+
+    @InjectMockComponents
+    private TestReentrantEventStore reentrantStore;
+
     private DefaultEvent event(String id)
     {
         DefaultEvent event = new DefaultEvent();
@@ -312,6 +360,57 @@ void mailentity() throws InterruptedException, ExecutionException, EventStreamEx
         assertSame(status24, this.store.events.get(event2.getId()).mailstatuses.get(status24.getEntityId()));
     }
 
+    @Test
+    void multilane() throws InterruptedException, ExecutionException, EventStreamException
+    {
+        assertEquals(4, this.multiLaneStore.getLanes().size());
+
+        List<DefaultEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            DefaultEvent event = event("id" + i);
+            event.setDate(new Date(i));
+            events.add(event);
+
+            this.multiLaneStore.saveEvent(event);
+            this.multiLaneStore.saveEventStatus(eventStatus(event, "entity1", true));
+            this.multiLaneStore.saveEventStatus(eventStatus(event, "entity2", true));
+        }
+
+        // Impacts the events of all the lanes
+        this.multiLaneStore.deleteEventStatuses("entity1", new Date(9)).get();
+
+        for (DefaultEvent event : events) {
+            // Wait for the lane of the event to be empty
+            this.multiLaneStore.prefilterEvent(event).get();
+
+            assertTrue(this.multiLaneStore.getEvent(event.getId()).get().isPrefiltered());
+            assertEquals(event.getDate().getTime() > 9,
+                this.multiLaneStore.events.get(event.getId()).statuses.containsKey("entity1"));
+            assertTrue(this.multiLaneStore.events.get(event.getId()).statuses.containsKey("entity2"));
+        }
+
+        List<EventStoreLaneStatistics> statistics = this.multiLaneStore.getLaneStatistics();
+        assertEquals(4, statistics.size());
+        for (int i = 0; i < statistics.size(); ++i) {
+            assertEquals(i, statistics.get(i).getIndex());
+            assertEquals(2, statistics.get(i).getCapacity());
+        }
+    }
+
+    @Test
+    void addTaskFromGlobalTask()
+        throws InterruptedException, ExecutionException, TimeoutException, EventStreamException
+    {
+        this.reentrantStore.deleteEventStatuses("entity1", new Date()).get(10, TimeUnit.SECONDS);
+
+        assertEquals(20, this.reentrantStore.futures.size());
+        for (CompletableFuture<Event> future : this.reentrantStore.futures) {
+            Event event = future.get(10, TimeUnit.SECONDS);
+
+            assertSame(event, this.reentrantStore.getEvent(event.getId()).get());
+        }
+    }
+
     @Test
     void prefilter() throws InterruptedException, ExecutionException, EventStreamException
     {
@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.internal;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.query.SimpleEventQuery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link EventsByDateDeleter}.
+ * 
+ * @version $Id$
+ */
+public class EventsByDateDeleterTest
+{
+    private final List<Event> events = new ArrayList<>();
+
+    private final EventStore store = mock(EventStore.class);
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        for (int i = 0; i < 250; ++i) {
+            DefaultEvent event = new DefaultEvent();
+            event.setId("id" + i);
+            event.setDate(new Date(i));
+            this.events.add(event);
+        }
+
+        when(this.store.search(any(), any())).then(invocation -> {
+            SimpleEventQuery query = invocation.getArgument(0);
+
+            int from = (int) Math.min(query.getOffset(), this.events.size());
+            int to = (int) Math.min(query.getOffset() + query.getLimit(), this.events.size());
+            List<Event> page = new ArrayList<>(this.events.subList(from, to));
+
+            return new StreamEventSearchResult(this.events.size(), from, page.size(), page.stream());
+        });
+    }
+
+    @Test
+    void deleteEvents() throws Exception
+    {
+        List<List<String>> pages = new ArrayList<>();
+
+        EventsByDateDeleter.deleteEvents(this.store, new Date(), eventIds -> {
+            pages.add(eventIds);
+            this.events.removeIf(event -> eventIds.contains(event.getId()));
+        });
+
+        assertTrue(this.events.isEmpty());
+        assertEquals(3, pages.size());
+        assertEquals(100, pages.get(0).size());
+        assertEquals(100, pages.get(1).size());
+        assertEquals(50, pages.get(2).size());
+    }
+
+    @Test
+    void deleteEventsWhenDeletionIsNotVisible() throws Exception
+    {
+        List<String> deleted = new ArrayList<>();
+
+        EventsByDateDeleter.deleteEvents(this.store, new Date(), deleted::addAll);
+
+        assertEquals(250, deleted.size());
+        for (int i = 0; i < 250; ++i) {
+            assertEquals("id" + i, deleted.get(i));
+        }
+    }
+}
@@ -52,6 +52,9 @@ public abstract class AbstractLegacyEventStore extends AbstractAsynchronousEvent
     @Inject
     private EventStatusManager eventStatusManager;
 
+    @Inject
+    private LegacyEventDeleter eventDeleter;
+
     @Override
     protected Event syncSaveEvent(Event event) throws EventStreamException
     {
@@ -84,6 +87,18 @@ public Optional<Event> syncDeleteEvent(Event event) throws EventStreamException
         return existingEvent;
     }
 
+    @Override
+    protected Void syncDeleteEvents(Date date) throws EventStreamException
+    {
+        try {
+            this.eventDeleter.deleteEvents(date);
+        } catch (Exception e) {
+            throw new EventStreamException("Failed to delete the events from the old event store", e);
+        }
+
+        return null;
+    }
+
     @Override
     public EventStatus syncSaveEventStatus(EventStatus status) throws EventStreamException
     {
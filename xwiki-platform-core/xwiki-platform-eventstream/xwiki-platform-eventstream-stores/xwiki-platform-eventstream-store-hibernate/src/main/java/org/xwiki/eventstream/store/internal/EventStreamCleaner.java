@@ -19,20 +19,14 @@
  */
 package org.xwiki.eventstream.store.internal;
 
-import java.util.Date;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.eventstream.Event;
-import org.xwiki.eventstream.EventStore;
-import org.xwiki.eventstream.EventStream;
-import org.xwiki.query.Query;
-import org.xwiki.query.QueryException;
-import org.xwiki.query.QueryManager;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.JobException;
+import org.xwiki.job.JobExecutor;
 
 /**
  * Remove old events (according to the configuration) from the event stream.
@@ -48,13 +42,7 @@
     private LegacyEventStreamStoreConfiguration configuration;
 
     @Inject
-    private EventStream eventStream;
-
-    @Inject
-    private EventStore eventStore;
-
-    @Inject
-    private QueryManager queryManager;
+    private JobExecutor jobs;
 
     @Inject
     private Logger logger;
@@ -66,14 +54,18 @@ public void clean()
     {
         int days = configuration.getNumberOfDaysToKeep();
         if (days > 0) {
+            DefaultRequest request = new DefaultRequest();
+            request.setId(EventStreamCleaningJob.JOBID);
+
             try {
-                Query query = queryManager.createQuery("where event.date < :date", Query.HQL);
-                query.bindValue("date", DateUtils.addDays(new Date(), -days));
-                for (Event event : eventStream.searchEvents(query)) {
-                    this.eventStore.deleteEvent(event);
-                }
-            } catch (QueryException e) {
+                // The progress of the cleaning is available in the job status
+                this.jobs.execute(EventStreamCleaningJob.JOBTYPE, request).join();
+            } catch (JobException e) {
                 logger.error("Impossible to clean the old events of the event stream.", e);
+            } catch (InterruptedException e) {
+                logger.warn("The cleaning of the old events of the event stream has been interrupted.");
+
+                Thread.currentThread().interrupt();
             }
         }
     }
@@ -0,0 +1,187 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.store.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventSearchResult;
+import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.internal.EventStreamConfiguration;
+import org.xwiki.eventstream.query.SimpleEventQuery;
+import org.xwiki.eventstream.query.SortableEventQuery.SortClause.Order;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Request;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+
+/**
+ * Remove the events older than the configured number of days, by chunks of the oldest events. Since each chunk is
+ * deleted at once and the oldest events go first, an interrupted cleaning simply resumes where it stopped on next run.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+@Named(EventStreamCleaningJob.JOBTYPE)
+public class EventStreamCleaningJob extends AbstractJob<DefaultRequest, DefaultJobStatus<DefaultRequest>>
+{
+    /**
+     * The type of the job.
+     */
+    public static final String JOBTYPE = "eventstream.cleaner";
+
+    /**
+     * The id of the job.
+     */
+    public static final List<String> JOBID = Arrays.asList("eventstream", "cleaner");
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String DATE = "date";
+
+    @Inject
+    private LegacyEventStreamStoreConfiguration configuration;
+
+    @Inject
+    private EventStreamConfiguration storeConfiguration;
+
+    @Inject
+    private EventStore eventStore;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Override
+    protected DefaultRequest castRequest(Request request)
+    {
+        DefaultRequest defaultRequest;
+        if (request instanceof DefaultRequest) {
+            defaultRequest = (DefaultRequest) request;
+        } else {
+            defaultRequest = new DefaultRequest(request);
+        }
+
+        return defaultRequest;
+    }
+
+    @Override
+    public String getType()
+    {
+        return JOBTYPE;
+    }
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        int days = this.configuration.getNumberOfDaysToKeep();
+        if (days <= 0) {
+            return;
+        }
+
+        Date limit = DateUtils.addDays(new Date(), -days);
+
+        long total = countEvents(limit);
+
+        this.logger.info("Deleting [{}] events older than [{}]", total, limit);
+
+        this.progressManager.pushLevelProgress((int) (total / CHUNK_SIZE) + 1, this);
+
+        try {
+            Date boundary;
+            do {
+                this.progressManager.startStep(this);
+
+                boundary = getChunkBoundary(limit);
+                this.eventStore.deleteEvents(boundary).get();
+
+                this.progressManager.endStep(this);
+            } while (boundary.before(limit));
+        } finally {
+            this.progressManager.popLevelProgress(this);
+        }
+    }
+
+    private long countEvents(Date limit) throws Exception
+    {
+        if (this.storeConfiguration.isEventStoreEnabled()) {
+            SimpleEventQuery query = new SimpleEventQuery(0, 0);
+            query.before(limit);
+
+            try (EventSearchResult result = this.eventStore.search(query)) {
+                return result.getTotalHits();
+            }
+        }
+
+        Query query =
+            this.queryManager.createQuery("select count(*) from LegacyEvent event where event.date < :date", Query.HQL);
+        query.bindValue(DATE, limit);
+
+        List<Long> result = query.execute();
+
+        return result.get(0);
+    }
+
+    /**
+     * @return the date before which the events of the next chunk are
+     */
+    private Date getChunkBoundary(Date limit) throws Exception
+    {
+        Date date;
+        if (this.storeConfiguration.isEventStoreEnabled()) {
+            SimpleEventQuery query = new SimpleEventQuery(CHUNK_SIZE - 1, 1);
+            query.before(limit);
+            query.addSort(Event.FIELD_DATE, Order.ASC);
+
+            try (EventSearchResult result = this.eventStore.search(query, Collections.singleton(Event.FIELD_DATE))) {
+                date = result.stream().findFirst().map(Event::getDate).orElse(null);
+            }
+        } else {
+            Query query = this.queryManager.createQuery(
+                "select event.date from LegacyEvent event where event.date < :date order by event.date", Query.HQL);
+            query.bindValue(DATE, limit);
+            query.setOffset(CHUNK_SIZE - 1);
+            query.setLimit(1);
+
+            List<Date> dates = query.execute();
+            date = dates.isEmpty() ? null : dates.get(0);
+        }
+
+        // Make sure to include all the events having the same date as the last event of the chunk
+        if (date != null && date.getTime() + 1 < limit.getTime()) {
+            return new Date(date.getTime() + 1);
+        }
+
+        return limit;
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.eventstream.store.internal;
 
+import java.util.Date;
+
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -28,10 +30,12 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.namespace.NamespaceContextExecutor;
 import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStreamException;
 import org.xwiki.model.namespace.WikiNamespace;
 import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.store.XWikiHibernateStore;
 
 /**
@@ -44,6 +48,8 @@
 @Singleton
 public class LegacyEventDeleter
 {
+    private static final String DATE = "date";
+
     @Inject
     private LegacyEventConverter eventConverter;
 
@@ -92,6 +98,61 @@ public void deleteEvent(Event event)
         }
     }
 
+    /**
+     * Delete all the events older than the passed date, with their statuses, using bulk queries.
+     * 
+     * @param date the date before which to remove the events
+     * @throws Exception when failing to delete the events
+     * @since 12.7RC1
+     */
+    public void deleteEvents(Date date) throws Exception
+    {
+        String mainWiki = this.wikiDescriptorManager.getMainWikiId();
+
+        if (this.configuration.useMainStore()) {
+            deleteLegacyEvents(date, mainWiki);
+        }
+
+        if (this.configuration.useLocalStore()) {
+            for (String wiki : this.wikiDescriptorManager.getAllIds()) {
+                if (!this.configuration.useMainStore() || !wiki.equals(mainWiki)) {
+                    deleteLegacyEvents(date, wiki);
+                }
+            }
+        }
+    }
+
+    private void deleteLegacyEvents(Date date, String wikiId) throws Exception
+    {
+        this.namespaceContextExecutor.execute(new WikiNamespace(wikiId), () -> {
+            XWikiContext context = this.contextProvider.get();
+            XWikiHibernateStore hibernateStore = context.getWiki().getHibernateStore();
+
+            try {
+                hibernateStore.executeWrite(context, session -> deleteLegacyEvents(session, date));
+            } catch (XWikiException e) {
+                throw new EventStreamException(e);
+            }
+
+            return null;
+        });
+    }
+
+    private Object deleteLegacyEvents(Session session, Date date)
+    {
+        // Bulk deletes don't cascade so the statuses and the targets have to be deleted first
+        session.createQuery("delete from LegacyEventStatus status where status.activityEvent in "
+            + "(select event from LegacyEvent event where event.date < :date)").setParameter(DATE, date)
+            .executeUpdate();
+        session.createNativeQuery("delete from activitystream_events_targets where eventId in "
+            + "(select ase_eventid from activitystream_events where ase_date < :date)").setParameter(DATE, date)
+            .executeUpdate();
+        session.createQuery("delete from LegacyEvent event where event.date < :date").setParameter(DATE, date)
+            .executeUpdate();
+
+        return null;
+    }
+
     private void deleteLegacyEvent(LegacyEvent event, String wikiId) throws Exception
     {
         namespaceContextExecutor.execute(new WikiNamespace(wikiId), () -> {
@@ -21,11 +21,14 @@
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -57,6 +60,7 @@
 import org.xwiki.eventstream.EventStreamException;
 import org.xwiki.eventstream.internal.AbstractAsynchronousEventStore;
 import org.xwiki.eventstream.internal.DefaultEvent;
+import org.xwiki.eventstream.internal.EventStreamConfiguration;
 import org.xwiki.eventstream.internal.StreamEventSearchResult;
 import org.xwiki.eventstream.query.CompareQueryCondition;
 import org.xwiki.eventstream.query.CompareQueryCondition.CompareType;
@@ -114,12 +118,15 @@ public class SolrEventStore extends AbstractAsynchronousEventStore
     @Named("compactwiki")
     private EntityReferenceSerializer<String> compactwiki;
 
+    @Inject
+    private EventStreamConfiguration configuration;
+
     private SolrClient client;
 
     @Override
     public void initialize() throws InitializationException
     {
-        initialize(100, false, true);
+        initialize(100, false, true, this.configuration.getEventStoreThreads());
 
         try {
             this.client = this.solr.getClient(EventsSolrCoreInitializer.NAME);
@@ -129,15 +136,9 @@ public void initialize() throws InitializationException
     }
 
     @Override
-    protected void afterTasks(List<EventStoreTask<?, ?>> tasks)
+    protected void syncCommit() throws EventStreamException
     {
-        try {
-            commit();
-        } catch (EventStreamException e) {
-            this.logger.error("Failed to commit", e);
-        }
-
-        super.afterTasks(tasks);
+        commit();
     }
 
     @Override
@@ -168,6 +169,61 @@ protected EntityEvent syncSaveMailEntityEvent(EntityEvent event) throws EventStr
         return event;
     }
 
+    @Override
+    protected void syncSaveEventStatuses(List<EventStatus> statuses) throws EventStreamException
+    {
+        // Group the statuses by event (the last status wins for a given entity)
+        Map<String, Map<String, Boolean>> eventStatuses = new LinkedHashMap<>();
+        for (EventStatus status : statuses) {
+            eventStatuses.computeIfAbsent(status.getEvent().getId(), k -> new LinkedHashMap<>())
+                .put(status.getEntityId(), status.isRead());
+        }
+
+        List<SolrInputDocument> documents = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Boolean>> entry : eventStatuses.entrySet()) {
+            List<String> readEntities = new ArrayList<>();
+            List<String> unreadEntities = new ArrayList<>();
+            entry.getValue().forEach((entityId, read) -> (read ? readEntities : unreadEntities).add(entityId));
+
+            if (!readEntities.isEmpty()) {
+                documents.add(createEventStatusDocument(entry.getKey(), readEntities, true, false));
+            }
+            if (!unreadEntities.isEmpty()) {
+                documents.add(createEventStatusDocument(entry.getKey(), unreadEntities, false, true));
+            }
+        }
+
+        try {
+            this.client.add(documents);
+        } catch (Exception e) {
+            throw new EventStreamException(
+                String.format("Failed to update the event statuses for events %s", eventStatuses.keySet()), e);
+        }
+    }
+
+    @Override
+    protected void syncSaveMailEntityEvents(List<EntityEvent> events) throws EventStreamException
+    {
+        // Group the entities by event
+        Map<String, Set<String>> eventEntities = new LinkedHashMap<>();
+        for (EntityEvent event : events) {
+            eventEntities.computeIfAbsent(event.getEvent().getId(), k -> new LinkedHashSet<>())
+                .add(event.getEntityId());
+        }
+
+        List<SolrInputDocument> documents = new ArrayList<>(eventEntities.size());
+        for (Map.Entry<String, Set<String>> entry : eventEntities.entrySet()) {
+            documents.add(createMailEntityEventDocument(entry.getKey(), new ArrayList<>(entry.getValue()), true));
+        }
+
+        try {
+            this.client.add(documents);
+        } catch (Exception e) {
+            throw new EventStreamException(
+                String.format("Failed to update the event mail statuses for events %s", eventEntities.keySet()), e);
+        }
+    }
+
     @Override
     protected Optional<EventStatus> syncDeleteEventStatus(EventStatus status) throws EventStreamException
     {
@@ -228,16 +284,7 @@ protected Event syncPrefilterEvent(Event event) throws EventStreamException
     private void saveEventStatus(String eventId, String entityId, boolean read, boolean unread)
         throws EventStreamException
     {
-        SolrInputDocument document = new SolrInputDocument();
-
-        this.utils.set(EventsSolrCoreInitializer.SOLR_FIELD_ID, eventId, document);
-
-        this.utils.setAtomic(
-            read ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
-            EventsSolrCoreInitializer.SOLR_FIELD_READLISTENERS, entityId, document);
-        this.utils.setAtomic(
-            unread ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
-            EventsSolrCoreInitializer.SOLR_FIELD_UNREADLISTENERS, entityId, document);
+        SolrInputDocument document = createEventStatusDocument(eventId, entityId, read, unread);
 
         try {
             this.client.add(document);
@@ -250,13 +297,7 @@ private void saveEventStatus(String eventId, String entityId, boolean read, bool
 
     private void saveMailEntityEvent(String eventId, String entityId, boolean add) throws EventStreamException
     {
-        SolrInputDocument document = new SolrInputDocument();
-
-        this.utils.set(EventsSolrCoreInitializer.SOLR_FIELD_ID, eventId, document);
-
-        this.utils.setAtomic(
-            add ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
-            EventsSolrCoreInitializer.SOLR_FIELD_MAILLISTENERS, entityId, document);
+        SolrInputDocument document = createMailEntityEventDocument(eventId, entityId, add);
 
         try {
             this.client.add(document);
@@ -266,6 +307,41 @@ private void saveMailEntityEvent(String eventId, String entityId, boolean add) t
         }
     }
 
+    /**
+     * @param entities the entity id or the list of entity ids
+     */
+    private SolrInputDocument createEventStatusDocument(String eventId, Object entities, boolean read, boolean unread)
+    {
+        SolrInputDocument document = new SolrInputDocument();
+
+        this.utils.set(EventsSolrCoreInitializer.SOLR_FIELD_ID, eventId, document);
+
+        this.utils.setAtomic(
+            read ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
+            EventsSolrCoreInitializer.SOLR_FIELD_READLISTENERS, entities, document);
+        this.utils.setAtomic(
+            unread ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
+            EventsSolrCoreInitializer.SOLR_FIELD_UNREADLISTENERS, entities, document);
+
+        return document;
+    }
+
+    /**
+     * @param entities the entity id or the list of entity ids
+     */
+    private SolrInputDocument createMailEntityEventDocument(String eventId, Object entities, boolean add)
+    {
+        SolrInputDocument document = new SolrInputDocument();
+
+        this.utils.set(EventsSolrCoreInitializer.SOLR_FIELD_ID, eventId, document);
+
+        this.utils.setAtomic(
+            add ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
+            EventsSolrCoreInitializer.SOLR_FIELD_MAILLISTENERS, entities, document);
+
+        return document;
+    }
+
     private SolrInputDocument toSolrInputDocument(Event event)
     {
         if (event == null) {
@@ -334,6 +410,22 @@ protected Optional<Event> syncDeleteEvent(Event event) throws EventStreamExcepti
         return syncDeleteEvent(event.getId());
     }
 
+    @Override
+    protected Void syncDeleteEvents(Date date) throws EventStreamException
+    {
+        // The statuses and mail entities are stored in the event document so they are deleted with it
+        String query = Event.FIELD_DATE + ':'
+            + toFilterQueryStringRange(null, new CompareQueryCondition(Event.FIELD_DATE, date, CompareType.LESS));
+
+        try {
+            this.client.deleteByQuery(query);
+        } catch (Exception e) {
+            throw new EventStreamException(String.format("Failed to delete the events older than [%s]", date), e);
+        }
+
+        return null;
+    }
+
     private void deleteById(String eventId) throws EventStreamException
     {
         try {
@@ -22,12 +22,14 @@
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
@@ -314,6 +316,66 @@ public void saveDeleteEventStatuses() throws Exception
         assertSearch(Arrays.asList(EVENT3, EVENT4), new SimpleEventQuery().withStatus("entity1"));
     }
 
+    @Test
+    public void deleteEvents() throws Exception
+    {
+        EVENT1.setDate(new Date(10));
+        EVENT2.setDate(new Date(20));
+        EVENT3.setDate(new Date(30));
+        EVENT4.setDate(new Date(40));
+
+        this.eventStore.saveEvent(EVENT1);
+        this.eventStore.saveEvent(EVENT2);
+        this.eventStore.saveEvent(EVENT3);
+        this.eventStore.saveEvent(EVENT4);
+        this.eventStore.saveEventStatus(eventstatus(EVENT1, "entity1", true));
+        this.eventStore.saveEventStatus(eventstatus(EVENT3, "entity1", true));
+        this.eventStore.saveMailEntityEvent(entityevent(EVENT2, "entity1")).get();
+
+        this.eventStore.deleteEvents(new Date(30)).get();
+
+        assertFalse(this.eventStore.getEvent(EVENT1.getId()).isPresent());
+        assertFalse(this.eventStore.getEvent(EVENT2.getId()).isPresent());
+        assertSearch(Arrays.asList(EVENT3, EVENT4), new SimpleEventQuery());
+        assertSearch(Arrays.asList(EVENT3), new SimpleEventQuery().withStatus("entity1"));
+        assertSearch(Arrays.asList(), new SimpleEventQuery().withMail("entity1"));
+    }
+
+    @Test
+    public void saveEventStatusesForManyEntities() throws Exception
+    {
+        this.eventStore.saveEvent(EVENT1);
+
+        // Simulate an event dispatched to many users (the statuses of a same event are saved at once)
+        List<String> readEntities = new ArrayList<>();
+        List<String> unreadEntities = new ArrayList<>();
+        List<String> mailEntities = new ArrayList<>();
+        this.eventStore.saveEventStatus(eventstatus(EVENT1, "entity0", true));
+        for (int i = 0; i < 200; ++i) {
+            String entityId = "entity" + i;
+            boolean read = i % 2 == 1;
+            this.eventStore.saveEventStatus(eventstatus(EVENT1, entityId, read));
+            this.eventStore.saveMailEntityEvent(entityevent(EVENT1, entityId));
+
+            (read ? readEntities : unreadEntities).add(entityId);
+            mailEntities.add(entityId);
+        }
+        // Saving again the same status is harmless
+        this.eventStore.saveEventStatus(eventstatus(EVENT1, "entity199", true)).get();
+
+        SolrDocument document1 = this.eventStore.getEventDocument(EVENT1.getId());
+        assertEquals(new HashSet<>(readEntities),
+            new HashSet<>(document1.getFieldValues(EventsSolrCoreInitializer.SOLR_FIELD_READLISTENERS)));
+        assertEquals(new HashSet<>(unreadEntities),
+            new HashSet<>(document1.getFieldValues(EventsSolrCoreInitializer.SOLR_FIELD_UNREADLISTENERS)));
+        assertEquals(new HashSet<>(mailEntities),
+            new HashSet<>(document1.getFieldValues(EventsSolrCoreInitializer.SOLR_FIELD_MAILLISTENERS)));
+
+        assertSearch(Arrays.asList(EVENT1), new SimpleEventQuery().withStatus("entity0", false));
+        assertSearch(Arrays.asList(EVENT1), new SimpleEventQuery().withStatus("entity199", true));
+        assertSearch(Arrays.asList(EVENT1), new SimpleEventQuery().withMail("entity199"));
+    }
+
     @Test
     public void allSearch()
         throws EventStreamException, InterruptedException, ExecutionException, SolrServerException, IOException
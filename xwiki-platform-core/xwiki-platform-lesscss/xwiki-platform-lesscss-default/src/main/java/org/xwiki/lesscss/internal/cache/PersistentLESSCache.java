@@ -0,0 +1,215 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+import org.xwiki.lesscss.internal.compiler.less4j.Less4jCompiler;
+
+import com.github.sommeri.less4j.LessCompiler;
+
+/**
+ * Store the CSS produced by the LESS compiler in the permanent directory so that it survives restarts.
+ * <p>
+ * An entry is indexed by a hash of the LESS code to compile (i.e. after the Velocity execution), the skin and the
+ * compiler options. It also remembers a hash of each skin template included during the compilation, and the CSS is
+ * only reused when all these templates still have the same content.
+ * <p>
+ * Only the 100 most recently used entries are kept. The store is never explicitly cleared: an entry produced for an
+ * outdated skin or color theme is either not reused (its LESS code or one of its templates changed) or still valid, and
+ * the entries which are not used anymore are eventually evicted.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = PersistentLESSCache.class)
+@Singleton
+public class PersistentLESSCache implements Initializable
+{
+    private static final String ROOT_DIRECTORY = "cache/lesscss";
+
+    private static final String CSS_EXTENSION = ".css";
+
+    private static final String SOURCES_EXTENSION = ".sources";
+
+    private static final char SEPARATOR = '\0';
+
+    /**
+     * The maximum number of compilation results to keep.
+     */
+    private static final int MAX_ENTRIES = 100;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Less4jCompiler less4jCompiler;
+
+    @Inject
+    private Logger logger;
+
+    private File rootDirectory;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.rootDirectory = new File(this.environment.getPermanentDirectory(), ROOT_DIRECTORY);
+    }
+
+    private String getKey(String lessCode, String skin, boolean inlineSourceMap)
+    {
+        // The version of the compiler is part of the key since a different version can produce a different CSS
+        String compilerVersion = LessCompiler.class.getPackage().getImplementationVersion();
+
+        return DigestUtils.sha256Hex(compilerVersion + SEPARATOR + skin + SEPARATOR + inlineSourceMap + SEPARATOR
+            + lessCode);
+    }
+
+    /**
+     * @param lessCode the LESS code to compile
+     * @param skin the skin holding the included templates
+     * @param inlineSourceMap whether the CSS contains inline sourcemaps
+     * @return the stored CSS or {@code null} if there is none or if one of the included templates changed since
+     */
+    public String get(String lessCode, String skin, boolean inlineSourceMap)
+    {
+        String key = getKey(lessCode, skin, inlineSourceMap);
+
+        File cssFile = new File(this.rootDirectory, key + CSS_EXTENSION);
+        File sourcesFile = new File(this.rootDirectory, key + SOURCES_EXTENSION);
+        if (!cssFile.exists() || !sourcesFile.exists()) {
+            return null;
+        }
+
+        try {
+            Properties sources = new Properties();
+            try (Reader reader = Files.newBufferedReader(sourcesFile.toPath(), StandardCharsets.UTF_8)) {
+                sources.load(reader);
+            }
+
+            for (String templateName : sources.stringPropertyNames()) {
+                String content = this.less4jCompiler.getSourceContent(templateName, skin);
+                if (content == null || !DigestUtils.sha256Hex(content).equals(sources.getProperty(templateName))) {
+                    return null;
+                }
+            }
+
+            String css = FileUtils.readFileToString(cssFile, StandardCharsets.UTF_8);
+
+            // Remember the entry is used to not evict it
+            cssFile.setLastModified(System.currentTimeMillis());
+
+            return css;
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the stored CSS [{}]", cssFile, e);
+
+            return null;
+        }
+    }
+
+    /**
+     * @param lessCode the compiled LESS code
+     * @param skin the skin holding the included templates
+     * @param inlineSourceMap whether the CSS contains inline sourcemaps
+     * @param readSources the content of the templates included during the compilation, indexed by template name
+     * @param css the result of the compilation
+     */
+    public void set(String lessCode, String skin, boolean inlineSourceMap, Map<String, String> readSources,
+        String css)
+    {
+        String key = getKey(lessCode, skin, inlineSourceMap);
+
+        Properties sources = new Properties();
+        readSources.forEach((templateName, content) -> sources.setProperty(templateName,
+            DigestUtils.sha256Hex(content)));
+
+        try {
+            Files.createDirectories(this.rootDirectory.toPath());
+
+            // Write the CSS first: the sources are what validate an entry so, while an entry is being replaced, an
+            // up to date CSS with outdated sources is just ignored while the opposite would be wrongly reused
+            Path cssFile = this.rootDirectory.toPath().resolve(key + CSS_EXTENSION);
+            Path tmpFile = Files.createTempFile(this.rootDirectory.toPath(), key, CSS_EXTENSION);
+            Files.write(tmpFile, css.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmpFile, cssFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Path sourcesFile = this.rootDirectory.toPath().resolve(key + SOURCES_EXTENSION);
+            tmpFile = Files.createTempFile(this.rootDirectory.toPath(), key, SOURCES_EXTENSION);
+            try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                sources.store(writer, null);
+            }
+            Files.move(tmpFile, sourcesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            evict(key);
+        } catch (IOException e) {
+            this.logger.warn("Failed to store the CSS compiled for skin [{}]", skin, e);
+        }
+    }
+
+    /**
+     * Remove the least recently used entries when there are too many of them.
+     * 
+     * @param currentKey the key of the entry which was just stored
+     */
+    private synchronized void evict(String currentKey) throws IOException
+    {
+        File[] cssFiles = this.rootDirectory.listFiles((directory, name) -> name.endsWith(CSS_EXTENSION));
+        if (cssFiles == null || cssFiles.length <= MAX_ENTRIES) {
+            return;
+        }
+
+        Arrays.sort(cssFiles, Comparator.comparingLong(File::lastModified));
+        int toRemove = cssFiles.length - MAX_ENTRIES;
+        for (int i = 0; i < cssFiles.length && toRemove > 0; ++i) {
+            String key = StringUtils.removeEnd(cssFiles[i].getName(), CSS_EXTENSION);
+
+            // The modification dates are not precise enough to be sure the entry which was just stored comes last
+            if (!key.equals(currentKey)) {
+                // Remove the sources first to invalidate the entry
+                Files.deleteIfExists(new File(this.rootDirectory, key + SOURCES_EXTENSION).toPath());
+                Files.deleteIfExists(cssFiles[i].toPath());
+
+                --toRemove;
+            }
+        }
+    }
+}
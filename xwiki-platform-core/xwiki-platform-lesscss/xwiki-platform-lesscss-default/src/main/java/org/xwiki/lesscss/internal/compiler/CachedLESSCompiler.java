@@ -20,6 +20,8 @@
 package org.xwiki.lesscss.internal.compiler;
 
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Semaphore;
 
 import javax.inject.Inject;
@@ -31,6 +33,8 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.lesscss.compiler.LESSCompilerException;
 import org.xwiki.lesscss.internal.LESSConfiguration;
+import org.xwiki.lesscss.internal.LESSContext;
+import org.xwiki.lesscss.internal.cache.PersistentLESSCache;
 import org.xwiki.lesscss.internal.cache.CachedCompilerInterface;
 import org.xwiki.lesscss.internal.compiler.less4j.Less4jCompiler;
 import org.xwiki.lesscss.internal.resources.LESSSkinFileResourceReference;
@@ -67,6 +71,12 @@ public class CachedLESSCompiler implements CachedCompilerInterface<String>, Init
     @Inject
     private LESSConfiguration lessConfiguration;
 
+    @Inject
+    private LESSContext lessContext;
+
+    @Inject
+    private PersistentLESSCache persistentCache;
+
     private Semaphore semaphore;
 
     @Override
@@ -105,7 +115,7 @@ public String compute(LESSResourceReference lessResourceReference, boolean inclu
 
             // Compile the LESS code
             if (useLESS) {
-                return less4JCompiler.compile(lessCode, skin, lessConfiguration.isGenerateInlineSourceMaps());
+                return compileLESS(lessCode, skin);
             }
 
             // Otherwise return the raw LESS code
@@ -118,6 +128,25 @@ public String compute(LESSResourceReference lessResourceReference, boolean inclu
         }
     }
 
+    private String compileLESS(String lessCode, String skin) throws Less4jException
+    {
+        boolean inlineSourceMaps = lessConfiguration.isGenerateInlineSourceMaps();
+
+        if (!lessConfiguration.isPersistentCacheEnabled() || lessContext.isCacheDisabled()) {
+            return less4JCompiler.compile(lessCode, skin, inlineSourceMaps);
+        }
+
+        // Reuse the CSS produced before a restart when none of the compiler inputs changed since
+        String css = persistentCache.get(lessCode, skin, inlineSourceMaps);
+        if (css == null) {
+            Map<String, String> readSources = new HashMap<>();
+            css = less4JCompiler.compile(lessCode, skin, inlineSourceMaps, readSources);
+            persistentCache.set(lessCode, skin, inlineSourceMaps, readSources, css);
+        }
+
+        return css;
+    }
+
     private String executeVelocity(String source, String skin)
     {
         // Get the XWiki object
@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.Map;
+
 import org.xwiki.skin.Resource;
 import org.xwiki.skin.Skin;
 import org.xwiki.template.TemplateManager;
@@ -37,6 +39,11 @@ public abstract class AbstractLESSSource extends LessSource
 
     protected Skin skin;
     
+    /**
+     * The content of the templates read so far, indexed by template name (can be {@code null}).
+     */
+    protected Map<String, String> readSources;
+
     private String folder;
 
     /**
@@ -51,6 +58,21 @@ public AbstractLESSSource(TemplateManager templateManager, Skin skin, String fol
         this.skin = skin;
         this.folder = folder;
     }
+
+    /**
+     * @param templateManager the template manager component
+     * @param skin the skin holding the templates
+     * @param folder the folder in which the template is located
+     * @param readSources where to remember the content of the templates read during the compilation
+     * @since 12.7RC1
+     */
+    public AbstractLESSSource(TemplateManager templateManager, Skin skin, String folder,
+        Map<String, String> readSources)
+    {
+        this(templateManager, skin, folder);
+
+        this.readSources = readSources;
+    }
     
     @Override
     public LessSource relativeSource(String filename) throws FileNotFound
@@ -58,7 +80,7 @@ public LessSource relativeSource(String filename) throws FileNotFound
         String template = folder + "/" + filename;
         Resource resource = skin.getResource(template);
         if (resource != null) {
-            return new TemplateLESSSource(templateManager, skin, template);
+            return new TemplateLESSSource(templateManager, skin, template, readSources);
         }
 
         // The file has not been found
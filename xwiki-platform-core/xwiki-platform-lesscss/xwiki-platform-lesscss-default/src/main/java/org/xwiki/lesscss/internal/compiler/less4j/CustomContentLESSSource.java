@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.Map;
+
 import org.xwiki.skin.Skin;
 import org.xwiki.template.TemplateManager;
 
@@ -44,6 +46,20 @@ public CustomContentLESSSource(String lessCode, TemplateManager templateManager,
         this.lessCode = lessCode;
     }
 
+    /**
+     * @param lessCode the LESS code to compile
+     * @param templateManager the template manager component
+     * @param skin the skin holding the template
+     * @param readSources where to remember the content of the templates read during the compilation
+     * @since 12.7RC1
+     */
+    public CustomContentLESSSource(String lessCode, TemplateManager templateManager, Skin skin,
+        Map<String, String> readSources)
+    {
+        super(templateManager, skin, "less", readSources);
+        this.lessCode = lessCode;
+    }
+
     @Override
     public String getContent() throws FileNotFound, CannotReadFile
     {
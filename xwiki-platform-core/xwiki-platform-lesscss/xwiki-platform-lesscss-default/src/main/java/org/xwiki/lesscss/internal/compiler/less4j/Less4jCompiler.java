@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.Map;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -29,6 +31,8 @@
 import com.github.sommeri.less4j.Less4jException;
 import com.github.sommeri.less4j.LessCompiler;
 import com.github.sommeri.less4j.LessSource;
+import com.github.sommeri.less4j.LessSource.CannotReadFile;
+import com.github.sommeri.less4j.LessSource.FileNotFound;
 import com.github.sommeri.less4j.core.DefaultLessCompiler;
 
 /**
@@ -56,6 +60,23 @@
      * @throws Less4jException if problems occur
      */
     public String compile(String lessCode, String skin, boolean inlineSourceMap) throws Less4jException
+    {
+        return compile(lessCode, skin, inlineSourceMap, null);
+    }
+
+    /**
+     * Compile the LESS code and get the included files from the skin templates.
+     * @param lessCode code to compile
+     * @param skin skin holding the templates
+     * @param inlineSourceMap whether to create inline sourcemaps in the generated css
+     * @param readSources where to remember the content of the templates included during the compilation (can be
+     *            {@code null})
+     * @return the results of the LESS compilation
+     * @throws Less4jException if problems occur
+     * @since 12.7RC1
+     */
+    public String compile(String lessCode, String skin, boolean inlineSourceMap, Map<String, String> readSources)
+        throws Less4jException
     {
         LessCompiler lessCompiler = new DefaultLessCompiler();
         LessCompiler.Configuration options = new LessCompiler.Configuration();
@@ -63,8 +84,23 @@ public String compile(String lessCode, String skin, boolean inlineSourceMap) thr
         options.getSourceMapConfiguration().setInline(inlineSourceMap);
         options.getSourceMapConfiguration().setIncludeSourcesContent(true);
         LessSource lessSource = 
-            new CustomContentLESSSource(lessCode, templateManager, skinManager.getSkin(skin));
+            new CustomContentLESSSource(lessCode, templateManager, skinManager.getSkin(skin), readSources);
         LessCompiler.CompilationResult lessResult = lessCompiler.compile(lessSource, options);
         return lessResult.getCss();
     }
+
+    /**
+     * @param templateName the name of a template included during a compilation
+     * @param skin skin holding the templates
+     * @return the content the compiler would get for the passed template, or {@code null} if it cannot be read
+     * @since 12.7RC1
+     */
+    public String getSourceContent(String templateName, String skin)
+    {
+        try {
+            return new TemplateLESSSource(templateManager, skinManager.getSkin(skin), templateName).getContent();
+        } catch (FileNotFound | CannotReadFile e) {
+            return null;
+        }
+    }
 }
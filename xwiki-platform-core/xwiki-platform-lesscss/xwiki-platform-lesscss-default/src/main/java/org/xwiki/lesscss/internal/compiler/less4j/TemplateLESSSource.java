@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.Map;
+
 import org.apache.commons.lang3.StringUtils;
 import org.xwiki.lesscss.internal.compiler.CachedLESSCompiler;
 import org.xwiki.skin.Skin;
@@ -50,6 +52,20 @@ public TemplateLESSSource(TemplateManager templateManager, Skin skin, String tem
         this.templateName = templateName;
     }
 
+    /**
+     * @param templateManager the template manager component
+     * @param skin the skin holding the template
+     * @param templateName the name of the template
+     * @param readSources where to remember the content of the templates read during the compilation
+     * @since 12.7RC1
+     */
+    public TemplateLESSSource(TemplateManager templateManager, Skin skin, String templateName,
+        Map<String, String> readSources)
+    {
+        super(templateManager, skin, getParentFolder(templateName), readSources);
+        this.templateName = templateName;
+    }
+
     /**
      * Get the parent folder of a path using "/" as file separator.
      * @param templateName name of the template
@@ -74,16 +90,22 @@ public String getContent() throws FileNotFound, CannotReadFile
             // skin might have. Actually we have no way to know which .less.vm are included, without running LESS.
             //
             // That is why we do not execute Velocity on any ".less.vm" file but only on the main skin template.
+            String content;
             String mainSkinTemplate = "less/" + CachedLESSCompiler.MAIN_SKIN_STYLE_FILENAME;
             if (mainSkinTemplate.equals(templateName)) {
-                return templateManager.renderFromSkin(templateName, skin);
-            } 
-            
-            // Otherwise, return the raw content
-            Template template = templateManager.getTemplate(templateName, skin);
-            TemplateContent templateContent = template.getContent();
-            return templateContent.getContent();
-            
+                content = templateManager.renderFromSkin(templateName, skin);
+            } else {
+                // Otherwise, return the raw content
+                Template template = templateManager.getTemplate(templateName, skin);
+                TemplateContent templateContent = template.getContent();
+                content = templateContent.getContent();
+            }
+
+            if (readSources != null) {
+                readSources.put(templateName, content);
+            }
+
+            return content;
         } catch (Exception e) {
             throw new CannotReadFile();
         }
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.listeners;
+
+import java.util.Collection;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.lesscss.compiler.LESSCompiler;
+import org.xwiki.lesscss.compiler.LESSCompilerException;
+import org.xwiki.lesscss.internal.compiler.CachedLESSCompiler;
+import org.xwiki.lesscss.resources.LESSResourceReference;
+import org.xwiki.lesscss.resources.LESSResourceReferenceFactory;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
+
+/**
+ * Compile the main style of the default skin with the default color theme of each wiki once the application is ready
+ * so that the first visitors don't have to wait for it (it's usually found in the persistent LESS cache).
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component
+@Named(LESSPrecompileListener.NAME)
+@Singleton
+public class LESSPrecompileListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "lessPrecompile";
+
+    @Inject
+    private LESSCompiler lessCompiler;
+
+    @Inject
+    private LESSResourceReferenceFactory lessResourceReferenceFactory;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Default constructor.
+     */
+    public LESSPrecompileListener()
+    {
+        super(NAME, new ApplicationReadyEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // Don't delay the startup: the compilation of a skin style can take several seconds
+        Thread thread = new Thread(new AbstractXWikiRunnable()
+        {
+            @Override
+            protected void runInternal()
+            {
+                precompile();
+            }
+        });
+        thread.setName("LESS precompilation");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Compile the main style of the default skin with the default color theme of each wiki.
+     */
+    void precompile()
+    {
+        Collection<String> wikiIds;
+        try {
+            wikiIds = this.wikiDescriptorManager.getAllIds();
+        } catch (WikiManagerException e) {
+            this.logger.warn("Failed to get the wikis to precompile the skin style for: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+
+            return;
+        }
+
+        XWikiContext xcontext = this.xcontextProvider.get();
+        String currentWikiId = xcontext.getWikiId();
+        LESSResourceReference style =
+            this.lessResourceReferenceFactory.createReferenceForSkinFile(CachedLESSCompiler.MAIN_SKIN_STYLE_FILENAME);
+
+        try {
+            for (String wikiId : wikiIds) {
+                // There is no user nor request parameter here so the skin and the color theme are the wiki defaults
+                xcontext.setWikiId(wikiId);
+                String skin = xcontext.getWiki().getSkin(xcontext);
+
+                try {
+                    this.lessCompiler.compile(style, false, true, skin, false);
+                } catch (LESSCompilerException e) {
+                    this.logger.warn("Failed to precompile the style of skin [{}] for wiki [{}]: {}", skin, wikiId,
+                        ExceptionUtils.getRootCauseMessage(e));
+                }
+            }
+        } finally {
+            xcontext.setWikiId(currentWikiId);
+        }
+    }
+}
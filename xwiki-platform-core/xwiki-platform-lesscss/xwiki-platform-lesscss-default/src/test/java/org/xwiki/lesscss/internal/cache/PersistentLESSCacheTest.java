@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.cache;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.environment.Environment;
+import org.xwiki.lesscss.internal.compiler.less4j.Less4jCompiler;
+import org.xwiki.test.junit5.XWikiTempDir;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link PersistentLESSCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+public class PersistentLESSCacheTest
+{
+    @XWikiTempDir
+    private File permanentDirectory;
+
+    @MockComponent
+    private Environment environment;
+
+    @MockComponent
+    private Less4jCompiler less4jCompiler;
+
+    @InjectMockComponents
+    private PersistentLESSCache cache;
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        when(this.environment.getPermanentDirectory()).thenReturn(this.permanentDirectory);
+
+        this.cache.initialize();
+    }
+
+    @Test
+    public void setAndGet()
+    {
+        assertNull(this.cache.get("lessCode", "skin", false));
+
+        Map<String, String> readSources = new HashMap<>();
+        readSources.put("less/style.less.vm", "@color: red;");
+        readSources.put("less/import.less", ".import {}");
+        this.cache.set("lessCode", "skin", false, readSources, "css");
+
+        when(this.less4jCompiler.getSourceContent("less/style.less.vm", "skin")).thenReturn("@color: red;");
+        when(this.less4jCompiler.getSourceContent("less/import.less", "skin")).thenReturn(".import {}");
+
+        assertEquals("css", this.cache.get("lessCode", "skin", false));
+
+        // Any other compiler input
+        assertNull(this.cache.get("otherLessCode", "skin", false));
+        assertNull(this.cache.get("lessCode", "otherSkin", false));
+        assertNull(this.cache.get("lessCode", "skin", true));
+
+        // Modified included template
+        when(this.less4jCompiler.getSourceContent("less/style.less.vm", "skin")).thenReturn("@color: blue;");
+
+        assertNull(this.cache.get("lessCode", "skin", false));
+
+        // Included template which cannot be found anymore
+        when(this.less4jCompiler.getSourceContent("less/style.less.vm", "skin")).thenReturn(null);
+
+        assertNull(this.cache.get("lessCode", "skin", false));
+    }
+
+    @Test
+    public void evict()
+    {
+        for (int i = 0; i <= 100; ++i) {
+            this.cache.set("lessCode" + i, "skin", false, new HashMap<>(), "css" + i);
+        }
+
+        File rootDirectory = new File(this.permanentDirectory, "cache/lesscss");
+        assertEquals(100, rootDirectory.list((directory, name) -> name.endsWith(".css")).length);
+        assertEquals(100, rootDirectory.list((directory, name) -> name.endsWith(".sources")).length);
+
+        assertEquals("css100", this.cache.get("lessCode100", "skin", false));
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler;
 
+import java.util.Map;
+
 import javax.inject.Provider;
 
 import org.junit.Before;
@@ -26,6 +28,7 @@
 import org.junit.Test;
 import org.xwiki.lesscss.compiler.LESSCompilerException;
 import org.xwiki.lesscss.internal.LESSConfiguration;
+import org.xwiki.lesscss.internal.cache.PersistentLESSCache;
 import org.xwiki.lesscss.internal.compiler.less4j.Less4jCompiler;
 import org.xwiki.lesscss.internal.resources.LESSSkinFileResourceReference;
 import org.xwiki.lesscss.resources.LESSResourceReference;
@@ -40,6 +43,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -194,4 +198,28 @@ public void computeSkinFileWhenException() throws Exception
             caughtException.getMessage());
 
     }
+
+    @Test
+    public void computeSkinFileWithPersistentCache() throws Exception
+    {
+        // Mocks
+        when(lessConfiguration.isPersistentCacheEnabled()).thenReturn(true);
+        PersistentLESSCache persistentCache = mocker.getInstance(PersistentLESSCache.class);
+        LESSResourceReference resource = mock(LESSSkinFileResourceReference.class);
+        when(resource.getContent(eq("skin"))).thenReturn("Some LESS content");
+        when(less4jCompiler.compile(eq("Some LESS content"), eq("skin"), eq(false), anyMap())).thenReturn("output");
+
+        // Tests
+        assertEquals("output", mocker.getComponentUnderTest().compute(resource, false, false, true, "skin"));
+
+        // Verify
+        verify(persistentCache).set(eq("Some LESS content"), eq("skin"), eq(false), any(Map.class), eq("output"));
+
+        // The stored CSS is used when there is one
+        when(persistentCache.get("Some LESS content", "skin", false)).thenReturn("stored output");
+
+        assertEquals("stored output", mocker.getComponentUnderTest().compute(resource, false, false, true, "skin"));
+
+        verify(less4jCompiler, times(1)).compile(any(), any(), eq(false), anyMap());
+    }
 }
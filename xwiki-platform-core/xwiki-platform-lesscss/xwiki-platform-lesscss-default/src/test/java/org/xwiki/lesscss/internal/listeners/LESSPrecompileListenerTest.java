@@ -0,0 +1,135 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.listeners;
+
+import java.util.Arrays;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.InOrder;
+import org.xwiki.lesscss.compiler.LESSCompiler;
+import org.xwiki.lesscss.compiler.LESSCompilerException;
+import org.xwiki.lesscss.resources.LESSResourceReference;
+import org.xwiki.lesscss.resources.LESSResourceReferenceFactory;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link LESSPrecompileListener}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+public class LESSPrecompileListenerTest
+{
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    @InjectMockComponents
+    private LESSPrecompileListener listener;
+
+    @MockComponent
+    private LESSCompiler lessCompiler;
+
+    @MockComponent
+    private LESSResourceReferenceFactory lessResourceReferenceFactory;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    private XWikiContext xcontext;
+
+    private XWiki xwiki;
+
+    private LESSResourceReference style;
+
+    @BeforeEach
+    public void setUp()
+    {
+        this.xcontext = mock(XWikiContext.class);
+        when(this.xcontextProvider.get()).thenReturn(this.xcontext);
+        when(this.xcontext.getWikiId()).thenReturn("mainwiki");
+
+        this.xwiki = mock(XWiki.class);
+        when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+
+        this.style = mock(LESSResourceReference.class);
+        when(this.lessResourceReferenceFactory.createReferenceForSkinFile("style.less.vm")).thenReturn(this.style);
+    }
+
+    @Test
+    public void precompile() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("wiki1", "wiki2"));
+        when(this.xwiki.getSkin(this.xcontext)).thenReturn("skin1", "skin2");
+        when(this.lessCompiler.compile(this.style, false, true, "skin2", false))
+            .thenThrow(new LESSCompilerException("error"));
+
+        this.listener.precompile();
+
+        InOrder order = inOrder(this.xcontext, this.lessCompiler);
+        order.verify(this.xcontext).setWikiId("wiki1");
+        order.verify(this.lessCompiler).compile(this.style, false, true, "skin1", false);
+        order.verify(this.xcontext).setWikiId("wiki2");
+        order.verify(this.lessCompiler).compile(this.style, false, true, "skin2", false);
+        order.verify(this.xcontext).setWikiId("mainwiki");
+
+        assertEquals("Failed to precompile the style of skin [skin2] for wiki [wiki2]: LESSCompilerException: error",
+            this.logCapture.getMessage(0));
+    }
+
+    @Test
+    public void precompileWhenWikisCannotBeListed() throws Exception
+    {
+        when(this.wikiDescriptorManager.getAllIds()).thenThrow(new WikiManagerException("error"));
+
+        this.listener.precompile();
+
+        verifyZeroInteractions(this.lessCompiler);
+        assertEquals("Failed to get the wikis to precompile the skin style for: WikiManagerException: error",
+            this.logCapture.getMessage(0));
+    }
+
+    @Test
+    public void getName()
+    {
+        assertEquals("lessPrecompile", this.listener.getName());
+    }
+}
@@ -23,6 +23,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Represents all XWiki configuration options for the Mail Sending feature.
@@ -97,7 +98,8 @@
 
     /**
      * @return the delay to wait between each mail being sent, in milliseconds. This is done to support mail throttling
-     *         and not considered a spammer by mail servers.
+     *         and not considered a spammer by mail servers. Since 12.7RC1 it's the average delay between two mails,
+     *         whatever the number of SMTP connections used in parallel.
      * @since 6.4RC1
      */
     long getSendWaitTime();
@@ -121,4 +123,26 @@ default int getSendQueueCapacity()
     {
         return 1000;
     }
+
+    /**
+     * @return the number of SMTP connections (and threads) used in parallel to send the mails of a same session
+     *         configuration. Note that the delay returned by {@link #getSendWaitTime()} is shared by all of them.
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getSendConnectionPoolSize()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the number of mails which can be sent right away, without waiting for {@link #getSendWaitTime()}, after
+     *         the mail sender has been idle for a while
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getSendBurstSize()
+    {
+        return 1;
+    }
 }
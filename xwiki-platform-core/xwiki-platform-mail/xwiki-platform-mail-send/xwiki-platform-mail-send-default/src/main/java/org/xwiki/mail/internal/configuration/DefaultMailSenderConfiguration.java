@@ -104,6 +104,10 @@ public class DefaultMailSenderConfiguration implements MailSenderConfiguration
     private static final String PREPARE_QUEUE_CAPACITY_PROPERTY = "prepareQueueCapacity";
     private static final String SEND_QUEUE_CAPACITY_PROPERTY = "sendQueueCapacity";
 
+    private static final String SEND_CONNECTION_POOL_SIZE_PROPERTY = "sendConnectionPoolSize";
+
+    private static final String SEND_BURST_SIZE_PROPERTY = "sendBurstSize";
+
     /**
      * The default size of the prepare queue.
      */
@@ -114,6 +118,16 @@ public class DefaultMailSenderConfiguration implements MailSenderConfiguration
      */
     private static final int SEND_QUEUE_CAPACITY_DEFAULT = 1000;
 
+    /**
+     * The default number of SMTP connections used in parallel.
+     */
+    private static final int SEND_CONNECTION_POOL_SIZE_DEFAULT = 1;
+
+    /**
+     * The default number of mails which can be sent without waiting.
+     */
+    private static final int SEND_BURST_SIZE_DEFAULT = 1;
+
     @Inject
     private Logger logger;
 
@@ -337,6 +351,19 @@ public int getSendQueueCapacity()
             SEND_QUEUE_CAPACITY_DEFAULT);
     }
 
+    @Override
+    public int getSendConnectionPoolSize()
+    {
+        return this.xwikiPropertiesSource.getProperty(PREFIX + SEND_CONNECTION_POOL_SIZE_PROPERTY,
+            SEND_CONNECTION_POOL_SIZE_DEFAULT);
+    }
+
+    @Override
+    public int getSendBurstSize()
+    {
+        return this.xwikiPropertiesSource.getProperty(PREFIX + SEND_BURST_SIZE_PROPERTY, SEND_BURST_SIZE_DEFAULT);
+    }
+
     private boolean isMainWiki()
     {
         return this.wikiDescriptorManager.isMainWiki(this.wikiDescriptorManager.getCurrentWikiId());
@@ -50,7 +50,13 @@ private BlockingQueue<T> getMailQueue()
     @Override
     public void addToQueue(T mailQueueItem)
     {
-        getMailQueue().add(mailQueueItem);
+        try {
+            // Wait for a free slot instead of failing when the queue is full.
+            getMailQueue().put(mailQueueItem);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to add a mail to the queue", e);
+        }
     }
 
     @Override
@@ -71,6 +77,12 @@ public T peekMessage()
         return getMailQueue().peek();
     }
 
+    @Override
+    public T pollMessage(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return getMailQueue().poll(timeout, unit);
+    }
+
     @Override
     public boolean removeMessageFromQueue(T mailQueueItem)
     {
@@ -65,6 +65,24 @@ default void addMessage(T mailQueueItem, long timeout, TimeUnit unit) throws Int
      */
     T peekMessage();
 
+    /**
+     * Retrieves and removes the next mail on the queue, waiting up to the specified time if the queue is empty.
+     *
+     * @param timeout how long to wait before giving up, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the {@code timeout} parameter
+     * @return the next mail on the queue or {@code null} if the specified time elapsed before a mail was available
+     * @throws InterruptedException if interrupted while waiting
+     * @since 12.7RC1
+     */
+    default T pollMessage(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        T mailQueueItem = peekMessage();
+        if (mailQueueItem != null) {
+            removeMessageFromQueue(mailQueueItem);
+        }
+        return mailQueueItem;
+    }
+
     /**
      * Removes the next mail on the queue.
      *
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by the mail sender threads to throttle the sending of mails. A token is added every
+ * {@code interval} milliseconds, up to {@code burst} tokens, and each mail consumes one. Threads reserve their token
+ * before waiting for it so that the average rate is respected whatever the number of threads.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+public class MailRateLimiter
+{
+    private final LongSupplier nanoClock;
+
+    /**
+     * The number of available tokens. Can be negative when some threads are waiting for a token they already reserved.
+     * Starts full, the actual burst size being only known on first use.
+     */
+    private double tokens = Double.POSITIVE_INFINITY;
+
+    private long lastRefill;
+
+    /**
+     * Creates a rate limiter based on {@link System#nanoTime()}.
+     */
+    public MailRateLimiter()
+    {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock the clock to use to compute the time elapsed between two acquisitions, in nanoseconds
+     */
+    public MailRateLimiter(LongSupplier nanoClock)
+    {
+        this.nanoClock = nanoClock;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Waits until the current thread is allowed to send a mail.
+     *
+     * @param interval the average delay between two mails, in milliseconds ({@code 0} or less means no limit)
+     * @param burst the maximum number of mails which can be sent without waiting
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(long interval, int burst) throws InterruptedException
+    {
+        long waitTime = reserve(interval, burst);
+        if (waitTime > 0) {
+            // Wait outside of the lock so that other threads can reserve their own token in the meantime.
+            TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+    }
+
+    /**
+     * Reserves a token.
+     *
+     * @param interval the average delay between two mails, in milliseconds ({@code 0} or less means no limit)
+     * @param burst the maximum number of mails which can be sent without waiting
+     * @return the time to wait before the reserved token is available, in nanoseconds
+     */
+    synchronized long reserve(long interval, int burst)
+    {
+        long now = this.nanoClock.getAsLong();
+        long elapsed = now - this.lastRefill;
+        this.lastRefill = now;
+
+        if (interval <= 0) {
+            // No throttling but make sure we don't flood the server as soon as a limit is configured again.
+            this.tokens = 1;
+
+            return 0;
+        }
+
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.tokens = Math.min(Math.max(burst, 1), this.tokens + (double) elapsed / intervalNanos);
+        this.tokens--;
+
+        return this.tokens >= 0 ? 0 : (long) Math.ceil(-this.tokens * intervalNanos);
+    }
+}
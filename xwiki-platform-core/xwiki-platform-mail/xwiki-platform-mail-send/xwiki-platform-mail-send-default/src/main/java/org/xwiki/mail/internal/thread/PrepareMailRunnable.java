@@ -21,6 +21,7 @@
 
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -43,7 +44,7 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mail items on a Prepare Queue, and for each mail item there, generate the message
+ * Runnable that check for mail items on a Prepare Queue, and for each mail item there, generate the message
  * to send and persist it and put that reference on the Send Queue for sending.
  *
  * @version $Id$
@@ -54,6 +55,11 @@
 @Singleton
 public class PrepareMailRunnable extends AbstractMailRunnable
 {
+    /**
+     * How long to wait for a mail before checking again if the thread should stop, in milliseconds.
+     */
+    private static final long POLL_TIMEOUT = 1000L;
+
     @Inject
     private MailQueueManager<PrepareMailQueueItem> prepareMailQueueManager;
 
@@ -69,19 +75,14 @@ public void run()
     {
         do {
             try {
-                // Handle next message in the queue
-                if (this.prepareMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item after the message has been created and put on the sender
-                    // queue.
-                    PrepareMailQueueItem mailItem = this.prepareMailQueueManager.peekMessage();
-                    try {
-                        prepareMail(mailItem);
-                    } finally {
-                        this.prepareMailQueueManager.removeMessageFromQueue(mailItem);
-                    }
+                // Handle next message in the queue, waiting for it if there's none.
+                // Note: MailSender.waitTillSent() relies on the mail statuses and not on the queue so it's fine to
+                // remove the mail item from the queue before the message has been put on the sender queue.
+                PrepareMailQueueItem mailItem =
+                    this.prepareMailQueueManager.pollMessage(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (mailItem != null) {
+                    prepareMail(mailItem);
                 }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(100L);
             } catch (InterruptedException e) {
                 // Thread has been stopped, exit
                 this.logger.debug("Mail Prepare Thread was forcefully stopped", e);
@@ -19,7 +19,10 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -41,7 +44,9 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mails on a Queue, and for each mail tries to send it.
+ * Runnable that check for mails on a Queue, and for each mail tries to send it. The mails are sent in parallel by
+ * several threads (see {@link org.xwiki.mail.MailSenderConfiguration#getSendConnectionPoolSize()}), each one using
+ * its own SMTP connection, and throttled by a shared {@link MailRateLimiter}.
  *
  * @version $Id$
  * @since 6.4
@@ -51,6 +56,11 @@
 @Singleton
 public class SendMailRunnable extends AbstractMailRunnable
 {
+    /**
+     * How long to wait for a mail before checking again if the thread should stop, in milliseconds.
+     */
+    private static final long POLL_TIMEOUT = 1000L;
+
     @Inject
     private MailQueueManager<SendMailQueueItem> sendMailQueueManager;
 
@@ -64,25 +74,45 @@ public class SendMailRunnable extends AbstractMailRunnable
     @Inject
     private Provider<XWikiContext> contextProvider;
 
-    private Transport currentTransport;
-
-    private Session currentSession;
-
-    private int count;
+    private final MailRateLimiter rateLimiter = new MailRateLimiter();
 
     @Override
     public void run()
     {
-        try {
-            // Make sure we initialize an execution context.
-            prepareContext();
+        // Note: the current thread is one of the workers so that stopping it (see MailSenderInitializerListener) is
+        // enough to stop all of them.
+        List<Thread> workers = new ArrayList<>();
+        int poolSize = Math.max(this.configuration.getSendConnectionPoolSize(), 1);
+        for (int i = 2; i <= poolSize; i++) {
+            Thread worker = new Thread(new SendMailWorker());
+            worker.setName(String.format("%s #%d", Thread.currentThread().getName(), i));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
 
-            runInternal();
-        } catch (ExecutionContextException e) {
-            // Not much to do but log.
-            logger.error("Failed to initialize the send mail thread's execution context", e);
+        try {
+            new SendMailWorker().run();
         } finally {
-            closeTransport();
+            stopWorkers(workers);
+        }
+    }
+
+    private void stopWorkers(List<Thread> workers)
+    {
+        this.shouldStop = true;
+        for (Thread worker : workers) {
+            // Make sure the Thread goes out of the queue wait so that it stops immediately.
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                this.logger.debug("Interrupted while waiting for the Mail Sender Threads to stop", e);
+                Thread.currentThread().interrupt();
+                break;
+            }
         }
     }
 
@@ -101,107 +131,127 @@ private void prepareContextForQueueItem(SendMailQueueItem mailItem)
         xcontext.setWikiId(mailItem.getWikiId());
     }
 
-    private void runInternal()
+    private void waitSendWaitTime() throws InterruptedException
     {
-        do {
-            try {
-                // Handle next message in the queue
-                if (this.sendMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item from the queue after the mail has been sent as
-                    // otherwise, MailSender.waitTillSent() may return before the mail is actually sent!
-                    SendMailQueueItem mailItem = this.sendMailQueueManager.peekMessage();
-                    try {
-                        sendMail(mailItem);
-                    } finally {
-                        this.sendMailQueueManager.removeMessageFromQueue(mailItem);
-                    }
-                    // Email throttling: Wait before processing the next mail queue item
-                    // Note: it's important that we wait after the previous item has been removed from the queue in
-                    // order to let users know as soon as possible that their mail has been sent (otherwise when sending
-                    // a synchronous mail, the user would have to wait the send wait time!).
-                    waitSendWaitTime();
-                }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(50L);
-            } catch (InterruptedException e) {
-                // Thread has been stopped, exit
-                this.logger.debug("Mail Sender Thread was forcefully stopped", e);
-                break;
-            } catch (Exception e) {
-                // There was an unexpected problem, we just log the problem but keep the thread alive!
-                this.logger.error("Unexpected error in the Mail Sender Thread", e);
-            }
-        } while (!this.shouldStop);
+        // Email throttling: the rate limiter is shared by all the threads so that the configured wait time is
+        // respected on average whatever the number of SMTP connections.
+        this.rateLimiter.acquire(this.configuration.getSendWaitTime(), this.configuration.getSendBurstSize());
     }
 
     /**
-     * Send the mail.
-     *
-     * @param item the queue item containing all the data for sending the mail
+     * Sends the mails found on the queue over its own SMTP connection.
      */
-    protected void sendMail(SendMailQueueItem item)
+    private final class SendMailWorker implements Runnable
     {
-        prepareContextForQueueItem(item);
+        private Transport currentTransport;
 
-        MailListener listener = item.getListener();
+        private Session currentSession;
 
-        ExtendedMimeMessage message;
-        try {
-            // Step 1: Load the message from the filesystem store
-            message = this.mailContentStore.load(item.getSession(), item.getBatchId(), item.getUniqueMessageId());
-        } catch (Exception e) {
-            if (listener != null) {
-                listener.onSendMessageFatalError(item.getUniqueMessageId(), e, Collections.<String, Object>emptyMap());
-            }
-            return;
-        }
+        private int count;
 
-        try {
-            // Step 2: If the current Session in use is different from the one passed then close
-            // the current Transport, get a new one and reconnect.
-            // Also do that every 100 mails sent.
-            // TODO: explain why!
-            if (item.getSession() != this.currentSession || (this.count % 100) == 0) {
+        @Override
+        public void run()
+        {
+            try {
+                // Make sure we initialize an execution context.
+                prepareContext();
+
+                runInternal();
+            } catch (ExecutionContextException e) {
+                // Not much to do but log.
+                logger.error("Failed to initialize the send mail thread's execution context", e);
+            } finally {
                 closeTransport();
-                this.currentSession = item.getSession();
-                this.currentTransport = this.currentSession.getTransport("smtp");
-                this.currentTransport.connect();
-            } else if (!this.currentTransport.isConnected()) {
-                this.currentTransport.connect();
             }
+        }
+
+        private void runInternal()
+        {
+            do {
+                try {
+                    // Handle next message in the queue, waiting for it if there's none.
+                    // Note: MailSender.waitTillSent() relies on the mail statuses and not on the queue so it's fine
+                    // to remove the mail item from the queue before it's sent.
+                    SendMailQueueItem mailItem =
+                        sendMailQueueManager.pollMessage(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (mailItem != null) {
+                        prepareContextForQueueItem(mailItem);
+                        waitSendWaitTime();
+                        sendMail(mailItem);
+                    }
+                } catch (InterruptedException e) {
+                    // Thread has been stopped, exit
+                    logger.debug("Mail Sender Thread was forcefully stopped", e);
+                    break;
+                } catch (Exception e) {
+                    // There was an unexpected problem, we just log the problem but keep the thread alive!
+                    logger.error("Unexpected error in the Mail Sender Thread", e);
+                }
+            } while (!shouldStop);
+        }
 
-            // Step 3: Send the mail
-            // Unlike the static send method, the sendMessage method does not call the saveChanges method on the
-            // message; this prevent the MessageID header to be changed.
-            this.currentTransport.sendMessage(message, message.getAllRecipients());
-            this.count++;
+        /**
+         * Send the mail.
+         *
+         * @param item the queue item containing all the data for sending the mail
+         */
+        private void sendMail(SendMailQueueItem item)
+        {
+            MailListener listener = item.getListener();
 
-            // Step 4: Notify the user of the success if a listener has been provided
-            if (listener != null) {
-                listener.onSendMessageSuccess(message, Collections.<String, Object>emptyMap());
+            ExtendedMimeMessage message;
+            try {
+                // Step 1: Load the message from the filesystem store
+                message = mailContentStore.load(item.getSession(), item.getBatchId(), item.getUniqueMessageId());
+            } catch (Exception e) {
+                if (listener != null) {
+                    listener.onSendMessageFatalError(item.getUniqueMessageId(), e,
+                        Collections.<String, Object>emptyMap());
+                }
+                return;
             }
-        } catch (Exception e) {
-            // An error occurred, notify the user if a listener has been provided.
-            if (listener != null) {
-                listener.onSendMessageError(message, e, Collections.<String, Object>emptyMap());
+
+            try {
+                // Step 2: If the current Session in use is different from the one passed then close
+                // the current Transport, get a new one and reconnect.
+                // Also do that every 100 mails sent.
+                // TODO: explain why!
+                if (item.getSession() != this.currentSession || (this.count % 100) == 0) {
+                    closeTransport();
+                    this.currentSession = item.getSession();
+                    this.currentTransport = this.currentSession.getTransport("smtp");
+                    this.currentTransport.connect();
+                } else if (!this.currentTransport.isConnected()) {
+                    this.currentTransport.connect();
+                }
+
+                // Step 3: Send the mail
+                // Unlike the static send method, the sendMessage method does not call the saveChanges method on the
+                // message; this prevent the MessageID header to be changed.
+                this.currentTransport.sendMessage(message, message.getAllRecipients());
+                this.count++;
+
+                // Step 4: Notify the user of the success if a listener has been provided
+                if (listener != null) {
+                    listener.onSendMessageSuccess(message, Collections.<String, Object>emptyMap());
+                }
+            } catch (Exception e) {
+                // An error occurred, notify the user if a listener has been provided.
+                if (listener != null) {
+                    listener.onSendMessageError(message, e, Collections.<String, Object>emptyMap());
+                }
             }
         }
-    }
 
-    private void waitSendWaitTime() throws InterruptedException
-    {
-        long sendWaitTime = this.configuration.getSendWaitTime();
-        Thread.sleep(sendWaitTime);
-    }
-
-    private void closeTransport()
-    {
-        if (this.currentTransport != null) {
-            try {
-                this.currentTransport.close();
-            } catch (MessagingException e) {
-                this.logger.warn("Failed to close JavaMail Transport connection. Reason [{}]",
-                    ExceptionUtils.getRootCauseMessage(e));
+        private void closeTransport()
+        {
+            if (this.currentTransport != null) {
+                try {
+                    this.currentTransport.close();
+                } catch (MessagingException e) {
+                    logger.warn("Failed to close JavaMail Transport connection. Reason [{}]",
+                        ExceptionUtils.getRootCauseMessage(e));
+                }
             }
         }
     }
@@ -116,6 +116,18 @@ public int getSendQueueCapacity()
         return 10;
     }
 
+    @Override
+    public int getSendConnectionPoolSize()
+    {
+        return 1;
+    }
+
+    @Override
+    public int getSendBurstSize()
+    {
+        return 1;
+    }
+
     public void setBCCAddresses(List<String> addresses)
     {
         this.bccAddresses = addresses;
@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for {@link MailRateLimiter}.
+ *
+ * @version $Id$
+ */
+public class MailRateLimiterTest
+{
+    private final AtomicLong clock = new AtomicLong();
+
+    private final MailRateLimiter rateLimiter = new MailRateLimiter(this.clock::get);
+
+    @Test
+    public void reserveWithoutLimit()
+    {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, this.rateLimiter.reserve(0, 1));
+        }
+    }
+
+    @Test
+    public void reserveSpacesMails()
+    {
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        // The first mail is sent right away, the next ones are spaced, even when reserved at the same time.
+        assertEquals(0, this.rateLimiter.reserve(100, 1));
+        assertEquals(interval, this.rateLimiter.reserve(100, 1));
+        assertEquals(2 * interval, this.rateLimiter.reserve(100, 1));
+
+        // Once the reserved tokens are consumed the next mail waits for a single interval.
+        this.clock.addAndGet(2 * interval);
+        assertEquals(interval, this.rateLimiter.reserve(100, 1));
+    }
+
+    @Test
+    public void reserveWithBurst()
+    {
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, this.rateLimiter.reserve(100, 3));
+        }
+        assertEquals(interval, this.rateLimiter.reserve(100, 3));
+
+        // Being idle for a long time doesn't allow more than the burst size.
+        this.clock.addAndGet(100 * interval);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, this.rateLimiter.reserve(100, 3));
+        }
+        assertEquals(interval, this.rateLimiter.reserve(100, 3));
+    }
+}
@@ -20,12 +20,16 @@
 package org.xwiki.mail.internal.thread;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 
 import javax.inject.Provider;
+import javax.mail.Message.RecipientType;
 import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -48,10 +52,16 @@
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.mockito.MockitoComponentManager;
 
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
 import com.xpn.xwiki.XWikiContext;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.when;
 
 /**
@@ -220,4 +230,71 @@ public void sendMailWhenMailRetrievalFails() throws Exception
         }
         assertEquals(2, errorCount);
     }
+
+    @Test
+    public void sendMailsInParallel() throws Exception
+    {
+        int mailCount = 200;
+
+        GreenMail greenMail = new GreenMail(ServerSetupTest.SMTP.createCopy());
+        greenMail.start();
+        try {
+            MailSenderConfiguration configuration = this.componentManager.getInstance(MailSenderConfiguration.class);
+            when(configuration.getSendConnectionPoolSize()).thenReturn(4);
+
+            Properties properties = new Properties();
+            properties.setProperty("mail.smtp.host", "localhost");
+            properties.setProperty("mail.smtp.port", String.valueOf(greenMail.getSmtp().getPort()));
+            Session session = Session.getInstance(properties);
+
+            MemoryMailListener listener = this.componentManager.getInstance(MailListener.class, "memory");
+            String batchId = UUID.randomUUID().toString();
+            listener.onPrepareBegin(batchId, Collections.emptyMap());
+            ((UpdateableMailStatusResult) listener.getMailStatusResult()).setTotalSize(mailCount);
+
+            Map<String, ExtendedMimeMessage> messages = new HashMap<>();
+            for (int i = 0; i < mailCount; i++) {
+                MimeMessage mimeMessage = new MimeMessage(session);
+                mimeMessage.setFrom(new InternetAddress("sender@doe.com"));
+                mimeMessage.setRecipient(RecipientType.TO, new InternetAddress("john" + i + "@doe.com"));
+                mimeMessage.setSubject("subject" + i);
+                mimeMessage.setText("Content" + i);
+                ExtendedMimeMessage message = new ExtendedMimeMessage(mimeMessage);
+                messages.put(message.getUniqueMessageId(), message);
+            }
+
+            // Simulate loading the message from the content store
+            MailContentStore contentStore = this.componentManager.getInstance(MailContentStore.class, "filesystem");
+            when(contentStore.load(same(session), eq(batchId), any(String.class)))
+                .thenAnswer(invocation -> messages.get(invocation.getArgument(2)));
+
+            MailQueueManager<SendMailQueueItem> mailQueueManager = this.componentManager.getInstance(
+                new DefaultParameterizedType(null, MailQueueManager.class, SendMailQueueItem.class));
+
+            Thread thread = new Thread(this.sendMailRunnable);
+            thread.start();
+
+            try {
+                // Note: the queue can only hold 10 items so adding the mails blocks till the sender threads catch up.
+                for (ExtendedMimeMessage message : messages.values()) {
+                    listener.onPrepareMessageSuccess(message, Collections.emptyMap());
+                    mailQueueManager.addToQueue(
+                        new SendMailQueueItem(message.getUniqueMessageId(), session, listener, batchId, "xwiki"));
+                }
+
+                // Wait for the mails to have been processed.
+                listener.getMailStatusResult().waitTillProcessed(30000L);
+            } finally {
+                this.sendMailRunnable.stopProcessing();
+                thread.interrupt();
+                thread.join();
+            }
+
+            assertTrue(listener.getMailStatusResult().isProcessed());
+            assertFalse(listener.getMailStatusResult().getAllErrors().hasNext());
+            assertEquals(mailCount, greenMail.getReceivedMessages().length);
+        } finally {
+            greenMail.stop();
+        }
+    }
 }
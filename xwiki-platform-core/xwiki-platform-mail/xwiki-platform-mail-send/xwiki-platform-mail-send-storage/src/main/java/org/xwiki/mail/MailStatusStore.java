@@ -19,10 +19,12 @@
  */
 package org.xwiki.mail;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Save, load and search mail results.
@@ -86,4 +88,27 @@ List<MailStatus> load(Map<String, Object> filterMap, int offset, int count, Stri
      * @throws MailStoreException when an error occurs deleting the message
      */
     void delete(String uniqueMessageId, Map<String, Object> parameters) throws MailStoreException;
+
+    /**
+     * Saves and deletes several mail statuses at once. Implementations are encouraged to do it in a single operation
+     * (e.g. a single database transaction) since it's used to persist the status changes of large mail batches.
+     *
+     * @param statuses the mail statuses to be saved (replacing any previous status of the same messages)
+     * @param deletedMessageIds the ids of the messages for which to delete the status
+     * @param parameters some parameters specifying addition context data (for example the current wiki is stored under
+     *        the {@code wiki} key)
+     * @throws MailStoreException when an error occurs saving or deleting the data
+     * @since 12.7RC1
+     */
+    @Unstable
+    default void update(Collection<MailStatus> statuses, Collection<String> deletedMessageIds,
+        Map<String, Object> parameters) throws MailStoreException
+    {
+        for (String deletedMessageId : deletedMessageIds) {
+            delete(deletedMessageId, parameters);
+        }
+        for (MailStatus status : statuses) {
+            save(status, parameters);
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package org.xwiki.mail;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Configuration for the storage part of the Mail Sender.
@@ -35,4 +36,26 @@
      *         they should be kept (for tracability purpose for example)
      */
     boolean discardSuccessStatuses();
+
+    /**
+     * @return the maximum number of mail status changes to write to the database in a single transaction. The changes
+     *         are written as soon as this number is reached (or {@link #getStatusWriteDelay()} expires). {@code 1} or
+     *         less means that each change is written right away.
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getStatusWriteBatchSize()
+    {
+        return 100;
+    }
+
+    /**
+     * @return the maximum time a mail status change can wait before being written to the database, in milliseconds
+     * @since 12.7RC1
+     */
+    @Unstable
+    default long getStatusWriteDelay()
+    {
+        return 500L;
+    }
 }
@@ -20,6 +20,7 @@
 package org.xwiki.mail.internal;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -43,7 +44,8 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Saves mail statuses in the database.
+ * Saves mail statuses in the database. The statuses are written in batches by the {@link DatabaseMailStatusWriter}
+ * and all the pending statuses are written as soon as all the mails have been processed.
  *
  * @version $Id$
  * @since 6.4M3
@@ -64,15 +66,23 @@ public class DatabaseMailListener extends AbstractMailListener implements Initia
     @Named("database")
     private MailStatusStore mailStatusStore;
 
+    @Inject
+    private DatabaseMailStatusWriter mailStatusWriter;
+
     @Inject
     private MailStorageConfiguration configuration;
 
     private DatabaseMailStatusResult mailStatusResult;
 
+    /**
+     * The statuses of the prepared messages waiting to be sent, to avoid loading them back from the store.
+     */
+    private final Map<String, MailStatus> preparedStatuses = new ConcurrentHashMap<>();
+
     @Override
     public void initialize() throws InitializationException
     {
-        mailStatusResult = new DatabaseMailStatusResult(this.mailStatusStore);
+        mailStatusResult = new DatabaseMailStatusResult(this.mailStatusStore, this.mailStatusWriter);
     }
 
     @Override
@@ -90,7 +100,8 @@ public void onPrepareMessageSuccess(ExtendedMimeMessage message, Map<String, Obj
         MailStatus status = new MailStatus(getBatchId(), message, MailState.PREPARE_SUCCESS);
         status.setWiki(
             ((XWikiContext) execution.getContext().getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).getWikiId());
-        saveStatus(status, parameters);
+        saveStatus(status);
+        this.preparedStatuses.put(status.getMessageId(), status);
     }
 
     @Override
@@ -102,10 +113,10 @@ public void onPrepareMessageError(ExtendedMimeMessage message, Exception excepti
         status.setWiki(
             ((XWikiContext) execution.getContext().getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).getWikiId());
         status.setError(exception);
-        saveStatus(status, parameters);
+        saveStatus(status);
 
         // This mail will not reach the send queue, so its processing is done now.
-        mailStatusResult.incrementCurrentSize();
+        incrementCurrentSize();
     }
 
     @Override
@@ -117,6 +128,15 @@ public void onPrepareFatalError(Exception exception, Map<String, Object> paramet
         logger.error("Failure during preparation phase of thread [" + getBatchId() + "]", exception);
     }
 
+    @Override
+    public void onPrepareEnd(Map<String, Object> parameters)
+    {
+        super.onPrepareEnd(parameters);
+
+        // All the mails might have been sent before the total number of mails was known.
+        flushIfProcessed();
+    }
+
     @Override
     public void onSendMessageSuccess(ExtendedMimeMessage message, Map<String, Object> parameters)
     {
@@ -138,12 +158,12 @@ public void onSendMessageSuccess(ExtendedMimeMessage message, Map<String, Object
 
         // If the user doesn't want to keep success status, we remove the mail status, otherwise we just update it
         if (configuration.discardSuccessStatuses()) {
-            deleteStatus(status, parameters);
+            deleteStatus(status);
         } else {
-            saveStatus(status, parameters);
+            saveStatus(status);
         }
 
-        mailStatusResult.incrementCurrentSize();
+        incrementCurrentSize();
     }
 
     @Override
@@ -156,13 +176,13 @@ public void onSendMessageFatalError(String uniqueMessageId, Exception exception,
         if (status != null) {
             status.setState(MailState.SEND_FATAL_ERROR);
             status.setError(exception);
-            saveStatus(status, parameters);
+            saveStatus(status);
         } else {
             this.logger.error("Unable to report the fatal error encountered during mail sending for message [{}] "
                     + "of batch [{}].", uniqueMessageId, getBatchId(), exception);
         }
 
-        this.mailStatusResult.incrementCurrentSize();
+        incrementCurrentSize();
     }
 
     @Override
@@ -181,14 +201,22 @@ public void onSendMessageError(ExtendedMimeMessage message, Exception exception,
             status = new MailStatus(getBatchId(), message, MailState.SEND_ERROR);
         }
         status.setError(exception);
-        saveStatus(status, parameters);
+        saveStatus(status);
 
-        this.mailStatusResult.incrementCurrentSize();
+        incrementCurrentSize();
     }
 
     private MailStatus retrieveExistingMailStatus(String uniqueMessageId, MailState state)
     {
-        MailStatus status;
+        // Look first for the status saved when preparing the message and for a status not yet written to the store.
+        MailStatus status = this.preparedStatuses.remove(uniqueMessageId);
+        if (status == null) {
+            status = this.mailStatusWriter.getPendingStatus(uniqueMessageId);
+        }
+        if (status != null) {
+            return status;
+        }
+
         try {
             status = mailStatusStore.load(uniqueMessageId);
             if (status == null) {
@@ -213,23 +241,29 @@ public MailStatusResult getMailStatusResult()
         return mailStatusResult;
     }
 
-    private void saveStatus(MailStatus status, Map<String, Object> parameters)
+    private void saveStatus(MailStatus status)
     {
-        try {
-            mailStatusStore.save(status, parameters);
-        } catch (MailStoreException e) {
-            // Failed to save the status in the DB, we continue but log an error
-            logger.error("Failed to save mail status [{}] to the database", status, e);
-        }
+        // Note: the status is written to the database later, along with other statuses.
+        this.mailStatusWriter.save(status);
     }
 
-    private void deleteStatus(MailStatus status, Map<String, Object> parameters)
+    private void deleteStatus(MailStatus status)
     {
-        try {
-            mailStatusStore.delete(status.getMessageId(), parameters);
-        } catch (MailStoreException e) {
-            // Failed to delete the status in the DB, we continue but log an error
-            logger.error("Failed to delete mail status [{}] from the database", status, e);
+        this.mailStatusWriter.delete(status.getMessageId());
+    }
+
+    private void incrementCurrentSize()
+    {
+        this.mailStatusResult.incrementCurrentSize();
+
+        flushIfProcessed();
+    }
+
+    private void flushIfProcessed()
+    {
+        // Make sure the statuses are in the database as soon as the batch is processed.
+        if (this.mailStatusResult.isProcessed()) {
+            this.mailStatusWriter.flush();
         }
     }
 
@@ -48,6 +48,8 @@ public class DatabaseMailStatusResult extends AbstractMailStatusResult
 
     private MailStatusStore mailStatusStore;
 
+    private DatabaseMailStatusWriter mailStatusWriter;
+
     private String batchId;
 
     /**
@@ -59,6 +61,21 @@ public DatabaseMailStatusResult(MailStatusStore mailStatusStore)
         this.mailStatusStore = mailStatusStore;
     }
 
+    /**
+     * Constructor initializing the DatabaseMailStatusResult with MailStatusStore and the writer used to save the
+     * statuses (so that the pending statuses are written before being loaded).
+     *
+     * @param mailStatusStore the MailStatusStore
+     * @param mailStatusWriter the writer used to save the statuses
+     * @since 12.7RC1
+     */
+    public DatabaseMailStatusResult(MailStatusStore mailStatusStore, DatabaseMailStatusWriter mailStatusWriter)
+    {
+        this(mailStatusStore);
+
+        this.mailStatusWriter = mailStatusWriter;
+    }
+
     /**
      * Set the batch id of the message statuses to save or load.
      *
@@ -76,6 +93,8 @@ public Iterator<MailStatus> getAll()
             return Collections.emptyIterator();
         }
 
+        flushPendingStatuses();
+
         try {
             return this.mailStatusStore.load(Collections.<String, Object>singletonMap(BATCHID_KEY, this.batchId),
                 0, 0, DATE_FIELD, true).iterator();
@@ -103,6 +122,8 @@ private Iterator<MailStatus> getFilteredState(String state)
             return Collections.emptyIterator();
         }
 
+        flushPendingStatuses();
+
         try {
             Map<String, Object> filterMap = new HashMap<>();
             filterMap.put(BATCHID_KEY, this.batchId);
@@ -113,4 +134,11 @@ private Iterator<MailStatus> getFilteredState(String state)
             return Collections.emptyIterator();
         }
     }
+
+    private void flushPendingStatuses()
+    {
+        if (this.mailStatusWriter != null) {
+            this.mailStatusWriter.flush();
+        }
+    }
 }
@@ -19,10 +19,14 @@
  */
 package org.xwiki.mail.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -56,6 +60,12 @@ public class DatabaseMailStatusStore implements MailStatusStore
 {
     private static final String ID_PARAMETER_NAME = "id";
 
+    /**
+     * The maximum number of message ids passed to a single delete query (some databases limit the size of the "in"
+     * clause).
+     */
+    private static final int DELETE_CHUNK_SIZE = 500;
+
     @Inject
     private Logger logger;
 
@@ -99,6 +109,66 @@ public Object doInHibernate(Session session) throws HibernateException, XWikiExc
         }
     }
 
+    @Override
+    public void update(final Collection<MailStatus> statuses, Collection<String> deletedMessageIds,
+        Map<String, Object> parameters) throws MailStoreException
+    {
+        if (statuses.isEmpty() && deletedMessageIds.isEmpty()) {
+            return;
+        }
+
+        XWikiHibernateBaseStore store = (XWikiHibernateBaseStore) this.hibernateStore;
+
+        XWikiContext xwikiContext = this.contextProvider.get();
+        // Save in the main wiki
+        String currentWiki = xwikiContext.getWikiId();
+        xwikiContext.setWikiId(xwikiContext.getMainXWiki());
+
+        // Delete any previous state of the saved messages along with the deleted ones
+        final List<String> messageIds = new ArrayList<>(getMessageIds(statuses, deletedMessageIds));
+
+        try {
+            store.executeWrite(xwikiContext, new XWikiHibernateBaseStore.HibernateCallback<Object>()
+            {
+                @Override
+                public Object doInHibernate(Session session) throws HibernateException, XWikiException
+                {
+                    String queryString =
+                        String.format("delete from %s where mail_id in (:ids)", MailStatus.class.getName());
+                    for (int i = 0; i < messageIds.size(); i += DELETE_CHUNK_SIZE) {
+                        session.createQuery(queryString)
+                            .setParameterList("ids", messageIds.subList(i,
+                                Math.min(i + DELETE_CHUNK_SIZE, messageIds.size())))
+                            .executeUpdate();
+                    }
+
+                    // Note: the inserts are sent in JDBC batches when hibernate.jdbc.batch_size allows it.
+                    for (MailStatus status : statuses) {
+                        session.save(status);
+                    }
+
+                    return null;
+                }
+            });
+
+            this.logger.debug("Saved [{}] and deleted [{}] mail statuses", statuses.size(), deletedMessageIds.size());
+        } catch (Exception e) {
+            throw new MailStoreException(String.format("Failed to save [%s] and delete [%s] mail statuses.",
+                statuses.size(), deletedMessageIds.size()), e);
+        } finally {
+            xwikiContext.setWikiId(currentWiki);
+        }
+    }
+
+    private Set<String> getMessageIds(Collection<MailStatus> statuses, Collection<String> deletedMessageIds)
+    {
+        Set<String> messageIds = new LinkedHashSet<>(deletedMessageIds);
+        for (MailStatus status : statuses) {
+            messageIds.add(status.getMessageId());
+        }
+        return messageIds;
+    }
+
     @Override
     public MailStatus load(String uniqueMessageId) throws MailStoreException
     {
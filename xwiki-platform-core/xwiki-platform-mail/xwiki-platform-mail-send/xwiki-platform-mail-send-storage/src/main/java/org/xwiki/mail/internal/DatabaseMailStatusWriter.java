@@ -0,0 +1,246 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.mail.MailStatus;
+import org.xwiki.mail.MailStatusStore;
+import org.xwiki.mail.MailStorageConfiguration;
+import org.xwiki.mail.MailStoreException;
+
+/**
+ * Write-behind buffer for the mail status changes made by the {@link DatabaseMailListener}s. The changes are
+ * coalesced per message and written to the {@link MailStatusStore} in a single transaction when
+ * {@link MailStorageConfiguration#getStatusWriteBatchSize()} changes are pending, when the oldest pending change is
+ * older than {@link MailStorageConfiguration#getStatusWriteDelay()} or when {@link #flush()} is called.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = DatabaseMailStatusWriter.class)
+@Singleton
+public class DatabaseMailStatusWriter implements Initializable, Disposable
+{
+    @Inject
+    private Logger logger;
+
+    @Inject
+    @Named("database")
+    private MailStatusStore mailStatusStore;
+
+    @Inject
+    private MailStorageConfiguration configuration;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    private int batchSize;
+
+    /**
+     * The statuses waiting to be saved, indexed by message id. Protected by {@code this}.
+     */
+    private Map<String, MailStatus> pendingStatuses = new LinkedHashMap<>();
+
+    /**
+     * The ids of the messages for which the status is waiting to be deleted. Protected by {@code this}.
+     */
+    private Set<String> pendingDeletions = new LinkedHashSet<>();
+
+    /**
+     * The statuses currently being saved, so that they can still be found by {@link #getPendingStatus(String)}.
+     */
+    private volatile Map<String, MailStatus> flushingStatuses = Collections.emptyMap();
+
+    /**
+     * Makes sure the status changes are written in the order they were made.
+     */
+    private final Object flushLock = new Object();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService executor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.batchSize = this.configuration.getStatusWriteBatchSize();
+
+        if (this.batchSize > 1) {
+            BasicThreadFactory factory = new BasicThreadFactory.Builder().namingPattern("Mail status writer thread")
+                .daemon(true).priority(Thread.NORM_PRIORITY - 1).build();
+            this.executor = Executors.newSingleThreadScheduledExecutor(factory);
+
+            long delay = Math.max(this.configuration.getStatusWriteDelay(), 1L);
+            this.executor.scheduleWithFixedDelay(this::flushInBackground, delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+
+        // Don't lose the pending changes.
+        try {
+            flush();
+        } catch (Exception e) {
+            this.logger.warn("Failed to write the pending mail statuses. Reason [{}]",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    /**
+     * Saves the passed status, replacing any pending change for the same message.
+     *
+     * @param status the mail status to save
+     */
+    public void save(MailStatus status)
+    {
+        int pendingCount;
+        synchronized (this) {
+            this.pendingDeletions.remove(status.getMessageId());
+            this.pendingStatuses.put(status.getMessageId(), status);
+            pendingCount = this.pendingStatuses.size() + this.pendingDeletions.size();
+        }
+
+        onChange(pendingCount);
+    }
+
+    /**
+     * Deletes the status of the passed message, replacing any pending change for the same message.
+     *
+     * @param uniqueMessageId the id of the message for which to delete the status
+     */
+    public void delete(String uniqueMessageId)
+    {
+        int pendingCount;
+        synchronized (this) {
+            this.pendingStatuses.remove(uniqueMessageId);
+            this.pendingDeletions.add(uniqueMessageId);
+            pendingCount = this.pendingStatuses.size() + this.pendingDeletions.size();
+        }
+
+        onChange(pendingCount);
+    }
+
+    /**
+     * @param uniqueMessageId the id of a message
+     * @return the status of the message which has not yet been written to the store or {@code null} if there's none
+     */
+    public MailStatus getPendingStatus(String uniqueMessageId)
+    {
+        synchronized (this) {
+            MailStatus status = this.pendingStatuses.get(uniqueMessageId);
+            if (status != null || this.pendingDeletions.contains(uniqueMessageId)) {
+                return status;
+            }
+        }
+
+        return this.flushingStatuses.get(uniqueMessageId);
+    }
+
+    /**
+     * Writes all the pending changes to the store and wait for them to be written.
+     */
+    public void flush()
+    {
+        synchronized (this.flushLock) {
+            Map<String, MailStatus> statuses;
+            Set<String> deletions;
+            synchronized (this) {
+                if (this.pendingStatuses.isEmpty() && this.pendingDeletions.isEmpty()) {
+                    return;
+                }
+
+                statuses = this.pendingStatuses;
+                deletions = this.pendingDeletions;
+                this.pendingStatuses = new LinkedHashMap<>();
+                this.pendingDeletions = new LinkedHashSet<>();
+                this.flushingStatuses = statuses;
+            }
+
+            try {
+                this.mailStatusStore.update(statuses.values(), deletions, Collections.emptyMap());
+            } catch (MailStoreException e) {
+                // Failed to save the statuses in the DB, we continue but log an error
+                this.logger.error("Failed to save [{}] and delete [{}] mail statuses", statuses.size(),
+                    deletions.size(), e);
+            } finally {
+                this.flushingStatuses = Collections.emptyMap();
+            }
+        }
+    }
+
+    private void onChange(int pendingCount)
+    {
+        if (this.executor == null) {
+            // Write-behind is disabled
+            flush();
+        } else if (pendingCount >= this.batchSize && this.flushScheduled.compareAndSet(false, true)) {
+            this.executor.execute(this::flushInBackground);
+        }
+    }
+
+    private void flushInBackground()
+    {
+        this.flushScheduled.set(false);
+
+        try {
+            // The store needs an execution context
+            if (this.execution.getContext() == null) {
+                this.executionContextManager.initialize(new ExecutionContext());
+            }
+
+            flush();
+        } catch (Exception e) {
+            // Make sure the scheduled task is not cancelled
+            this.logger.error("Unexpected error while writing the mail statuses", e);
+        }
+    }
+}
@@ -44,6 +44,14 @@ public class DefaultMailStorageConfiguration implements MailStorageConfiguration
 
     private static final String DISCARD_SUCCESS_STATUSES = "discardSuccessStatuses";
 
+    private static final String STATUS_WRITE_BATCH_SIZE = "statusWriteBatchSize";
+
+    private static final String STATUS_WRITE_DELAY = "statusWriteDelay";
+
+    private static final int STATUS_WRITE_BATCH_SIZE_DEFAULT = 100;
+
+    private static final long STATUS_WRITE_DELAY_DEFAULT = 500L;
+
     @Inject
     @Named("mailsend")
     private ConfigurationSource mailConfigSource;
@@ -64,4 +72,17 @@ public boolean discardSuccessStatuses()
 
         return (discardSuccessStatuses == 1);
     }
+
+    @Override
+    public int getStatusWriteBatchSize()
+    {
+        return this.xwikiPropertiesSource.getProperty(PREFIX + STATUS_WRITE_BATCH_SIZE,
+            STATUS_WRITE_BATCH_SIZE_DEFAULT);
+    }
+
+    @Override
+    public long getStatusWriteDelay()
+    {
+        return this.xwikiPropertiesSource.getProperty(PREFIX + STATUS_WRITE_DELAY, STATUS_WRITE_DELAY_DEFAULT);
+    }
 }
@@ -26,7 +26,6 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
@@ -38,6 +37,7 @@
 import org.xwiki.mail.MailState;
 import org.xwiki.mail.MailStatus;
 import org.xwiki.mail.MailStatusStore;
+import org.xwiki.mail.MailStorageConfiguration;
 import org.xwiki.mail.MailStoreException;
 import org.xwiki.test.AllLogRule;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
@@ -45,10 +45,11 @@
 import com.xpn.xwiki.XWikiContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -95,49 +96,72 @@ public void setUp() throws Exception
     @Test
     public void onPrepareSuccess() throws Exception
     {
-        MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onPrepareMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.PREPARE_SUCCESS, "mywiki")), anyMap());
+        verify(mailStatusWriter).save(argThat(new isSameMailStatus(MailState.PREPARE_SUCCESS, "mywiki")));
     }
 
     @Test
     public void onPrepareError() throws Exception
     {
-        MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onPrepareMessageError(this.message, new Exception("Error"), Collections.<String, Object>emptyMap());
 
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.PREPARE_ERROR, "mywiki")), anyMap());
+        verify(mailStatusWriter).save(argThat(new isSameMailStatus(MailState.PREPARE_ERROR, "mywiki")));
     }
 
     @Test
-    public void onPrepareWhenSaveFails() throws Exception
+    public void onPrepareErrorWhenBatchProcessed() throws Exception
+    {
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
+
+        MailListener listener = this.mocker.getComponentUnderTest();
+        listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
+        listener.onPrepareMessageError(this.message, new Exception("Error"), Collections.<String, Object>emptyMap());
+        ((UpdateableMailStatusResult) listener.getMailStatusResult()).setTotalSize(1);
+
+        // The pending statuses are written only once the batch is processed.
+        verify(mailStatusWriter, never()).flush();
+
+        listener.onPrepareEnd(Collections.<String, Object>emptyMap());
+
+        verify(mailStatusWriter).flush();
+    }
+
+    @Test
+    public void onSendMessageSuccessAfterPrepareSuccess() throws Exception
     {
         MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
-        doThrow(new MailStoreException("error")).when(mailStatusStore).save(any(MailStatus.class), anyMap());
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
+        MailStorageConfiguration configuration = this.mocker.getInstance(MailStorageConfiguration.class);
+        when(configuration.discardSuccessStatuses()).thenReturn(true);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onPrepareMessageSuccess(this.message, Collections.<String, Object>emptyMap());
+        ((UpdateableMailStatusResult) listener.getMailStatusResult()).setTotalSize(1);
+        listener.onPrepareEnd(Collections.<String, Object>emptyMap());
+        listener.onSendMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
-        ArgumentCaptor<MailStatus> statusCapture = ArgumentCaptor.forClass(MailStatus.class);
-        verify(mailStatusStore).save(statusCapture.capture(), anyMap());
-
-        assertEquals("Failed to save mail status [messageId = [" + this.messageId + "], batchId = ["
-            + this.batchId + "], state = [prepare_success], date = [" + statusCapture.getValue().getDate() + "], "
-            + "recipients = [<null>], type = [type], wiki = [mywiki]] to the database", this.logRule.getMessage(0));
+        // The status saved when preparing the message is reused.
+        verify(mailStatusStore, never()).load(any(String.class));
+        verify(mailStatusWriter).delete(this.messageId);
+        verify(mailStatusWriter).flush();
+        assertTrue(listener.getMailStatusResult().isProcessed());
     }
 
     @Test
     public void onSendMessageSuccess() throws Exception
     {
         MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
         MailStatus status = new MailStatus(this.batchId, this.message, MailState.PREPARE_SUCCESS);
         status.setWiki("otherwiki");
         when(mailStatusStore.load(this.messageId)).thenReturn(status);
@@ -147,7 +171,7 @@ public void onSendMessageSuccess() throws Exception
         listener.onSendMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
         verify(mailStatusStore).load(this.messageId);
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.SEND_SUCCESS, "otherwiki")), anyMap());
+        verify(mailStatusWriter).save(argThat(new isSameMailStatus(MailState.SEND_SUCCESS, "otherwiki")));
 
         MailContentStore mailContentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
         verify(mailContentStore).delete(this.batchId, this.messageId);
@@ -169,7 +193,8 @@ public void onSuccessWhenStatusLoadFails() throws Exception
             + "] to send_success state.", this.logRule.getMessage(1));
 
         // Verify that save and delete happened
-        verify(mailStatusStore).save(any(MailStatus.class), anyMap());
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
+        verify(mailStatusWriter).save(any(MailStatus.class));
         MailContentStore mailContentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
         verify(mailContentStore).delete(any(), any());
     }
@@ -198,6 +223,7 @@ public void onSuccessWhenMailContentDeletionFails() throws Exception
     public void onSendMessageError() throws Exception
     {
         MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
         MailStatus status = new MailStatus(this.batchId, this.message, MailState.PREPARE_SUCCESS);
         status.setWiki("otherwiki");
         when(mailStatusStore.load(this.messageId)).thenReturn(status);
@@ -207,13 +233,14 @@ public void onSendMessageError() throws Exception
         listener.onSendMessageError(this.message, new Exception("Error"), Collections.<String, Object>emptyMap());
 
         verify(mailStatusStore).load(this.messageId);
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.SEND_ERROR, "otherwiki")), anyMap());
+        verify(mailStatusWriter).save(argThat(new isSameMailStatus(MailState.SEND_ERROR, "otherwiki")));
     }
 
     @Test
     public void onSendMessageFatalError() throws Exception
     {
         MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        DatabaseMailStatusWriter mailStatusWriter = this.mocker.getInstance(DatabaseMailStatusWriter.class);
         MailStatus status = new MailStatus(this.batchId, this.message, MailState.PREPARE_SUCCESS);
         status.setWiki("otherwiki");
         when(mailStatusStore.load(this.messageId)).thenReturn(status);
@@ -223,7 +250,7 @@ public void onSendMessageFatalError() throws Exception
         listener.onSendMessageFatalError(this.messageId, new Exception("Error"), Collections.<String, Object>emptyMap());
 
         verify(mailStatusStore).load(this.messageId);
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.SEND_FATAL_ERROR, "otherwiki")), anyMap());
+        verify(mailStatusWriter).save(argThat(new isSameMailStatus(MailState.SEND_FATAL_ERROR, "otherwiki")));
     }
 
     /**
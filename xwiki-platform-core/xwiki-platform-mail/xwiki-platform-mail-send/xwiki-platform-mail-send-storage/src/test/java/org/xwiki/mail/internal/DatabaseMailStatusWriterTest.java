@@ -0,0 +1,174 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentMatcher;
+import org.xwiki.mail.MailState;
+import org.xwiki.mail.MailStatus;
+import org.xwiki.mail.MailStatusStore;
+import org.xwiki.mail.MailStorageConfiguration;
+import org.xwiki.mail.MailStoreException;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DatabaseMailStatusWriter}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+public class DatabaseMailStatusWriterTest
+{
+    @InjectMockComponents
+    private DatabaseMailStatusWriter writer;
+
+    @MockComponent
+    private MailStorageConfiguration configuration;
+
+    @MockComponent
+    @Named("database")
+    private MailStatusStore store;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension();
+
+    @BeforeComponent
+    public void beforeComponent()
+    {
+        when(this.configuration.getStatusWriteBatchSize()).thenReturn(3);
+        // Make sure the periodic write doesn't happen during the tests
+        when(this.configuration.getStatusWriteDelay()).thenReturn(3600000L);
+    }
+
+    private MailStatus createStatus(String messageId, MailState state)
+    {
+        MailStatus status = new MailStatus();
+        status.setMessageId(messageId);
+        status.setState(state);
+        return status;
+    }
+
+    @Test
+    public void flushWritesLastChangeOfEachMessage() throws Exception
+    {
+        MailStatus prepared1 = createStatus("id1", MailState.PREPARE_SUCCESS);
+        MailStatus sent1 = createStatus("id1", MailState.SEND_SUCCESS);
+        MailStatus prepared2 = createStatus("id2", MailState.PREPARE_SUCCESS);
+
+        this.writer.save(prepared1);
+        this.writer.save(sent1);
+        this.writer.save(prepared2);
+
+        // Nothing is written before the batch is full
+        verify(this.store, never()).update(anyCollection(), anyCollection(), anyMap());
+        assertSame(sent1, this.writer.getPendingStatus("id1"));
+
+        this.writer.flush();
+
+        verify(this.store).update(argThat(new IsCollection<>(sent1, prepared2)), argThat(new IsCollection<>()),
+            anyMap());
+        assertNull(this.writer.getPendingStatus("id1"));
+
+        // Flushing again doesn't write anything
+        this.writer.flush();
+        verify(this.store).update(anyCollection(), anyCollection(), anyMap());
+    }
+
+    @Test
+    public void deleteReplacesSave() throws Exception
+    {
+        this.writer.save(createStatus("id1", MailState.PREPARE_SUCCESS));
+        this.writer.delete("id1");
+
+        assertNull(this.writer.getPendingStatus("id1"));
+
+        this.writer.flush();
+
+        verify(this.store).update(argThat(new IsCollection<>()), argThat(new IsCollection<>("id1")), anyMap());
+    }
+
+    @Test
+    public void writeWhenBatchIsFull() throws Exception
+    {
+        MailStatus status1 = createStatus("id1", MailState.PREPARE_SUCCESS);
+        MailStatus status2 = createStatus("id2", MailState.PREPARE_SUCCESS);
+
+        this.writer.save(status1);
+        this.writer.save(status2);
+        this.writer.delete("id3");
+
+        verify(this.store, timeout(10000L)).update(argThat(new IsCollection<>(status1, status2)),
+            argThat(new IsCollection<>("id3")), anyMap());
+    }
+
+    @Test
+    public void flushWhenUpdateFails() throws Exception
+    {
+        doThrow(new MailStoreException("error")).when(this.store).update(any(), any(), any());
+
+        this.writer.save(createStatus("id1", MailState.PREPARE_SUCCESS));
+        this.writer.flush();
+
+        assertEquals("Failed to save [1] and delete [0] mail statuses", this.logCapture.getMessage(0));
+    }
+
+    /**
+     * Matches a collection having exactly the passed elements, in the same order.
+     */
+    private static class IsCollection<T> implements ArgumentMatcher<Collection<T>>
+    {
+        private final Collection<T> expected;
+
+        @SafeVarargs
+        IsCollection(T... expected)
+        {
+            this.expected = Arrays.asList(expected);
+        }
+
+        @Override
+        public boolean matches(Collection<T> argument)
+        {
+            return argument != null && Arrays.asList(argument.toArray()).equals(this.expected);
+        }
+    }
+}
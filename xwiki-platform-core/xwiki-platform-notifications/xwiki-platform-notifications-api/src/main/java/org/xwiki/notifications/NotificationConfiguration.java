@@ -61,6 +61,27 @@ default boolean isEventPrefilteringEnabled()
         return false;
     }
 
+    /**
+     * @return the maximum number of events waiting in memory to be pre filtered, the events which don't fit are
+     *         pre filtered later from the event store
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getEventPrefilteringQueueSize()
+    {
+        return 1000;
+    }
+
+    /**
+     * @return the number of threads to use to pre filter an event for many users
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getEventPrefilteringPoolSize()
+    {
+        return 2;
+    }
+
     /**
      * @return true if the REST/async cache is enabled.
      * @since 12.2
@@ -67,6 +67,18 @@ public boolean isEventPrefilteringEnabled()
         return configurationSource.getProperty(CONFIGURATION_PREFIX + "eventPrefilteringEnabled", true);
     }
 
+    @Override
+    public int getEventPrefilteringQueueSize()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "eventPrefiltering.queueSize", 1000);
+    }
+
+    @Override
+    public int getEventPrefilteringPoolSize()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "eventPrefiltering.poolSize", 2);
+    }
+
     @Override
     public boolean isRestCacheEnabled()
     {
@@ -25,6 +25,8 @@
 
 /**
  * Base class for event generated when notification filter preferences are manipulated.
+ * <p>
+ * The event source is the reference of the user owning the filter preferences (or {@code null} when unknown).
  * 
  * @version $Id$
  * @since 10.11.4
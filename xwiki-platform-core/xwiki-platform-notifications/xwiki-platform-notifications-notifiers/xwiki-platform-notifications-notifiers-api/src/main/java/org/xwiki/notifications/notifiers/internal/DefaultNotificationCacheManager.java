@@ -19,7 +19,13 @@
  */
 package org.xwiki.notifications.notifiers.internal;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -36,6 +42,7 @@
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.notifications.CompositeEvent;
 import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.notifications.filters.internal.status.ForUserEventFilter;
 import org.xwiki.notifications.sources.NotificationParameters;
 
 /**
@@ -55,6 +62,27 @@ public class DefaultNotificationCacheManager implements Initializable, Disposabl
 {
     private static final String CACHE_KEY_SEPARATOR = "/";
 
+    /**
+     * The entity associated with the cache keys of requests without user.
+     */
+    private static final String GUEST_ENTITY = "";
+
+    /**
+     * The entity associated with the cache keys which were not created by
+     * {@link #createCacheKey(NotificationParameters)}.
+     */
+    private static final String UNKNOWN_ENTITY = CACHE_KEY_SEPARATOR;
+
+    /**
+     * The pseudo entity associated with the cache keys of requests which are not based on the event statuses of a
+     * user but on all the events (and are thus impacted by any new event).
+     */
+    private static final String EVENTS_ENTITY = CACHE_KEY_SEPARATOR + CACHE_KEY_SEPARATOR;
+
+    private static final int KEY_ENTITIES_CAPACITY = 10000;
+
+    private static final int MAX_ENTITY_KEYS = 1000;
+
     @Inject
     private NotificationConfiguration configuration;
 
@@ -76,6 +104,26 @@ public class DefaultNotificationCacheManager implements Initializable, Disposabl
      */
     private Cache<Integer> longCountCache;
 
+    /**
+     * The entities (user and/or {@link #EVENTS_ENTITY}) associated with the recently created cache keys.
+     */
+    private final Map<String, List<String>> keyEntities =
+        Collections.synchronizedMap(new LinkedHashMap<String, List<String>>(16, 0.75F, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest)
+            {
+                return size() > KEY_ENTITIES_CAPACITY;
+            }
+        });
+
+    /**
+     * The keys stored in the caches for each entity (user).
+     */
+    private final Map<String, Set<String>> entityKeys = new ConcurrentHashMap<>();
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -118,7 +166,8 @@ public String createCacheKey(NotificationParameters notificationParameters)
         addCacheKeyElement(cacheKeyBuilder, notificationParameters.format.name());
         cacheKeyBuilder.append(CACHE_KEY_SEPARATOR);
 
-        addCacheKeyElement(cacheKeyBuilder, this.entityReferenceSerializer.serialize(notificationParameters.user));
+        String entity = this.entityReferenceSerializer.serialize(notificationParameters.user);
+        addCacheKeyElement(cacheKeyBuilder, entity);
         cacheKeyBuilder.append(CACHE_KEY_SEPARATOR);
 
         if (notificationParameters.endDate != null) {
@@ -133,7 +182,15 @@ public String createCacheKey(NotificationParameters notificationParameters)
             .append(CACHE_KEY_SEPARATOR)
             .append(notificationParameters.hashCode());
 
-        return cacheKeyBuilder.toString();
+        String cacheKey = cacheKeyBuilder.toString();
+
+        // Remember the user associated with the key to be able to invalidate only the keys of a specific user, and
+        // if the result depends on all the events instead of only the event statuses of the user
+        String keyEntity = entity != null ? entity : GUEST_ENTITY;
+        this.keyEntities.put(cacheKey, isStatusBased(notificationParameters) ? Collections.singletonList(keyEntity)
+            : Arrays.asList(keyEntity, EVENTS_ENTITY));
+
+        return cacheKey;
     }
 
     /**
@@ -169,6 +226,69 @@ public void setInCache(String cacheKey, List<CompositeEvent> events, boolean cou
             } else {
                 this.longEventCache.set(cacheKey, events);
             }
+
+            for (String entity : this.keyEntities.getOrDefault(cacheKey, Collections.singletonList(UNKNOWN_ENTITY))) {
+                Set<String> keys = this.entityKeys.computeIfAbsent(entity, k -> ConcurrentHashMap.newKeySet());
+                keys.add(cacheKey);
+
+                // Don't keep track of too many keys (most of them are probably not in the cache anymore)
+                if (keys.size() > MAX_ENTITY_KEYS) {
+                    flushEntityKeys(entity);
+                }
+            }
+        }
+    }
+
+    private boolean isStatusBased(NotificationParameters notificationParameters)
+    {
+        // With pre filtering the events of a user are searched through the event statuses of that user
+        return notificationParameters.user != null
+            && notificationParameters.filters.stream().anyMatch(ForUserEventFilter.class::isInstance);
+    }
+
+    /**
+     * Remove from the long cache the results associated with the passed entity.
+     * 
+     * @param entity the serialized reference of the entity (generally a user) for which the notifications changed,
+     *            {@code null} for the notifications displayed to guest users
+     * @since 12.7RC1
+     */
+    public void flushEntityCache(String entity)
+    {
+        flushEntityKeys(entity != null ? entity : GUEST_ENTITY);
+
+        // We don't know who is concerned by the keys which were not created by #createCacheKey
+        flushEntityKeys(UNKNOWN_ENTITY);
+    }
+
+    /**
+     * Remove from the long cache the results which are not based on the event statuses of a user but on all the
+     * events (for example the notifications of guest users or the ones displayed without using the user preferences),
+     * and which are thus impacted by any new event.
+     * 
+     * @since 12.7RC1
+     */
+    public void flushEventsCache()
+    {
+        flushEntityKeys(EVENTS_ENTITY);
+
+        // We don't know what is behind the keys which were not created by #createCacheKey
+        flushEntityKeys(UNKNOWN_ENTITY);
+    }
+
+    private void flushEntityKeys(String entity)
+    {
+        Set<String> keys = this.entityKeys.remove(entity);
+
+        if (keys != null) {
+            for (String key : keys) {
+                if (this.longEventCache != null) {
+                    this.longEventCache.remove(key);
+                }
+                if (this.longCountCache != null) {
+                    this.longCountCache.remove(key);
+                }
+            }
         }
     }
 
@@ -184,6 +304,8 @@ public void flushLongCache()
         if (this.longCountCache != null) {
             this.longCountCache.removeAll();
         }
+
+        this.entityKeys.clear();
     }
 
     @Override
@@ -34,6 +34,7 @@
 import org.xwiki.notifications.NotificationConfiguration;
 import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.internal.status.ForUserEventFilter;
 import org.xwiki.notifications.sources.NotificationParameters;
 import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
@@ -188,4 +189,90 @@ public void createCacheKey()
         assertEquals("5EMAIL/19xwiki:XWiki.another/0/null/" + hashCode,
             this.defaultNotificationCacheManager.createCacheKey(notificationParameters));
     }
+
+    @Test
+    public void flushEntityCache()
+    {
+        DocumentReference userReference = new DocumentReference("xwiki", "XWiki", "Foobar");
+        when(this.entityReferenceSerializer.serialize(userReference)).thenReturn("xwiki:XWiki.Foobar");
+
+        DocumentReference userReference2 = new DocumentReference("xwiki", "XWiki", "Another");
+        when(this.entityReferenceSerializer.serialize(userReference2)).thenReturn("xwiki:XWiki.Another");
+
+        NotificationParameters notificationParameters = new NotificationParameters();
+        notificationParameters.format = NotificationFormat.ALERT;
+        notificationParameters.user = userReference;
+        String key1 = this.defaultNotificationCacheManager.createCacheKey(notificationParameters);
+
+        NotificationParameters notificationParameters2 = new NotificationParameters();
+        notificationParameters2.format = NotificationFormat.ALERT;
+        notificationParameters2.user = userReference2;
+        String key2 = this.defaultNotificationCacheManager.createCacheKey(notificationParameters2);
+
+        NotificationParameters guestParameters = new NotificationParameters();
+        guestParameters.format = NotificationFormat.ALERT;
+        String guestKey = this.defaultNotificationCacheManager.createCacheKey(guestParameters);
+
+        List<CompositeEvent> events = Arrays.asList(mock(CompositeEvent.class));
+        this.defaultNotificationCacheManager.setInCache(key1, events, true);
+        this.defaultNotificationCacheManager.setInCache(key1, events, false);
+        this.defaultNotificationCacheManager.setInCache(key2, events, true);
+        this.defaultNotificationCacheManager.setInCache(guestKey, events, true);
+
+        this.defaultNotificationCacheManager.flushEntityCache("xwiki:XWiki.Foobar");
+
+        verify(this.longCountCache).remove(key1);
+        verify(this.longEventCache).remove(key1);
+        verify(this.longCountCache, never()).remove(key2);
+        verify(this.longCountCache, never()).remove(guestKey);
+        verify(this.longCountCache, never()).removeAll();
+
+        this.defaultNotificationCacheManager.flushEntityCache(null);
+
+        verify(this.longCountCache).remove(guestKey);
+        verify(this.longCountCache, never()).remove(key2);
+    }
+
+    @Test
+    public void flushEventsCache()
+    {
+        DocumentReference userReference = new DocumentReference("xwiki", "XWiki", "Foobar");
+        when(this.entityReferenceSerializer.serialize(userReference)).thenReturn("xwiki:XWiki.Foobar");
+
+        // Pre filtered notifications of the user
+        NotificationParameters statusParameters = new NotificationParameters();
+        statusParameters.format = NotificationFormat.ALERT;
+        statusParameters.user = userReference;
+        statusParameters.filters = Collections.singletonList(new ForUserEventFilter(NotificationFormat.ALERT, null));
+        String statusKey = this.defaultNotificationCacheManager.createCacheKey(statusParameters);
+
+        // Notifications of the user not using the user preferences
+        NotificationParameters eventsParameters = new NotificationParameters();
+        eventsParameters.format = NotificationFormat.ALERT;
+        eventsParameters.user = userReference;
+        String eventsKey = this.defaultNotificationCacheManager.createCacheKey(eventsParameters);
+
+        NotificationParameters guestParameters = new NotificationParameters();
+        guestParameters.format = NotificationFormat.ALERT;
+        String guestKey = this.defaultNotificationCacheManager.createCacheKey(guestParameters);
+
+        List<CompositeEvent> events = Arrays.asList(mock(CompositeEvent.class));
+        this.defaultNotificationCacheManager.setInCache(statusKey, events, true);
+        this.defaultNotificationCacheManager.setInCache(eventsKey, events, true);
+        this.defaultNotificationCacheManager.setInCache(guestKey, events, true);
+
+        this.defaultNotificationCacheManager.flushEventsCache();
+
+        verify(this.longCountCache, never()).remove(statusKey);
+        verify(this.longCountCache).remove(eventsKey);
+        verify(this.longCountCache).remove(guestKey);
+        verify(this.longCountCache, never()).removeAll();
+
+        // The results not based on the event statuses are still invalidated with the user ones
+        this.defaultNotificationCacheManager.setInCache(eventsKey, events, true);
+        this.defaultNotificationCacheManager.flushEntityCache("xwiki:XWiki.Foobar");
+
+        verify(this.longCountCache).remove(statusKey);
+        verify(this.longCountCache, times(2)).remove(eventsKey);
+    }
 }
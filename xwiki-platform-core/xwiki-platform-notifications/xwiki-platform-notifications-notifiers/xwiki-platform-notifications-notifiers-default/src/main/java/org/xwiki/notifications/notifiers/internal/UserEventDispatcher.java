@@ -19,14 +19,26 @@
  */
 package org.xwiki.notifications.notifiers.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -38,10 +50,16 @@
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventSearchResult;
 import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.EventStreamException;
+import org.xwiki.eventstream.RecordableEventDescriptor;
+import org.xwiki.eventstream.RecordableEventDescriptorManager;
 import org.xwiki.eventstream.internal.DefaultEntityEvent;
 import org.xwiki.eventstream.internal.DefaultEvent;
 import org.xwiki.eventstream.internal.DefaultEventStatus;
+import org.xwiki.eventstream.query.SimpleEventQuery;
+import org.xwiki.eventstream.query.SortableEventQuery.SortClause.Order;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
@@ -55,6 +73,10 @@
 
 /**
  * Dispatch generated event to each user.
+ * <p>
+ * The events are queued in a bounded queue: when it's full the extra events are left in the store (not yet pre
+ * filtered) and are loaded from there once the queue is empty. The users of an event are checked in parallel shards
+ * when there are many of them.
  * 
  * @version $Id$
  * @since 12.1RC1
@@ -65,6 +87,16 @@ public class UserEventDispatcher implements Runnable, Disposable, Initializable
 {
     private static final Event STOP_EVENT = new DefaultEvent();
 
+    /**
+     * Wake up the dispatcher thread to load the events which are not pre filtered yet.
+     */
+    private static final Event CATCHUP_EVENT = new DefaultEvent();
+
+    /**
+     * The minimum number of users to check in each worker.
+     */
+    private static final int MIN_SHARD_SIZE = 100;
+
     @Inject
     private UsersCache userCache;
 
@@ -74,9 +106,15 @@ public class UserEventDispatcher implements Runnable, Disposable, Initializable
     @Inject
     private UserEventManager userEventManager;
 
+    @Inject
+    private UserEventListenerIndex listenerIndex;
+
     @Inject
     private NotificationConfiguration notificationConfiguration;
 
+    @Inject
+    private RecordableEventDescriptorManager recordableEventDescriptorManager;
+
     @Inject
     private ExecutionContextManager ecm;
 
@@ -95,12 +133,36 @@ public class UserEventDispatcher implements Runnable, Disposable, Initializable
     @Inject
     private Logger logger;
 
-    private BlockingQueue<Event> queue;
+    private volatile BlockingQueue<Event> queue;
+
+    private int queueCapacity;
+
+    private int poolSize;
+
+    private ExecutorService workers;
+
+    /**
+     * The identifiers of the events which are queued or not yet marked as pre filtered in the store.
+     */
+    private final Set<String> pendingEvents = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean overflow;
+
+    private volatile Event currentEvent;
 
     @Override
     public void initialize() throws InitializationException
     {
-        this.queue = new LinkedBlockingQueue<>();
+        this.queueCapacity = Math.max(1, this.notificationConfiguration.getEventPrefilteringQueueSize());
+        this.queue = new LinkedBlockingQueue<>(this.queueCapacity);
+
+        this.poolSize = Math.max(1, this.notificationConfiguration.getEventPrefilteringPoolSize());
+        if (this.poolSize > 1) {
+            BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                .namingPattern("User event dispatcher worker thread %d").daemon(true)
+                .priority(Thread.NORM_PRIORITY - 1).build();
+            this.workers = Executors.newFixedThreadPool(this.poolSize, factory);
+        }
 
         // Start a background thread to filter and dispatch users events
         // Not making it a daemon thread because we don't want to loose events
@@ -114,23 +176,174 @@ public void initialize() throws InitializationException
     public void dispose() throws ComponentLifecycleException
     {
         try {
-            addEvent(STOP_EVENT);
+            BlockingQueue<Event> currentQueue = this.queue;
+            if (currentQueue != null) {
+                currentQueue.put(STOP_EVENT);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
 
             throw new ComponentLifecycleException("Failed to dispose the user event dispatcher", e);
+        } finally {
+            if (this.workers != null) {
+                this.workers.shutdown();
+            }
         }
     }
 
     /**
+     * Add the event to the dispatch queue if it's associated with a recordable event descriptor.
+     * <p>
+     * This method never block: if the queue is full the event will be dispatched later, from the store.
+     * 
      * @param event the event to dispatch
-     * @throws InterruptedException if interrupted while waiting
+     * @since 12.7RC1
+     */
+    public void addEvent(Event event)
+    {
+        try {
+            if (getRecordableEventTypes().contains(event.getType())) {
+                queueEvent(event);
+            }
+        } catch (EventStreamException e) {
+            this.logger.warn("Unable to retrieve a full list of RecordableEventDescriptor.", e);
+        }
+    }
+
+    /**
+     * Dispatch the events stored without being pre filtered (for example because the instance was stopped before
+     * they were dispatched).
+     * 
+     * @since 12.7RC1
      */
-    public void addEvent(Event event) throws InterruptedException
+    public void prefilterMissingEvents()
+    {
+        BlockingQueue<Event> currentQueue = this.queue;
+        if (currentQueue != null) {
+            this.overflow = true;
+
+            // Wake up the dispatcher thread (if the queue is full it will look at the store when it's empty anyway)
+            currentQueue.offer(CATCHUP_EVENT);
+        }
+    }
+
+    /**
+     * @return the number of events waiting in the queue to be dispatched
+     * @since 12.7RC1
+     */
+    public int getQueueSize()
+    {
+        BlockingQueue<Event> currentQueue = this.queue;
+
+        return currentQueue != null ? currentQueue.size() : 0;
+    }
+
+    /**
+     * @return the maximum number of events which can wait in the queue to be dispatched
+     * @since 12.7RC1
+     */
+    public int getQueueCapacity()
+    {
+        return this.queueCapacity;
+    }
+
+    /**
+     * @return true if some events could not be queued and are waiting in the store to be dispatched
+     * @since 12.7RC1
+     */
+    public boolean isOverflowing()
+    {
+        return this.overflow;
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest event being dispatched or waiting in the queue (or in the store
+     *         when the queue overflowed), 0 if there is none
+     * @since 12.7RC1
+     */
+    public long getOldestEventAge()
+    {
+        Date oldest = null;
+
+        Event event = this.currentEvent;
+        if (event != null) {
+            oldest = event.getDate();
+        }
+
+        BlockingQueue<Event> currentQueue = this.queue;
+        if (currentQueue != null) {
+            event = currentQueue.peek();
+            if (event != null && event.getDate() != null && (oldest == null || event.getDate().before(oldest))) {
+                oldest = event.getDate();
+            }
+        }
+
+        if (this.overflow) {
+            // The oldest events are waiting in the store
+            Date storedOldest = getOldestStoredEventDate();
+            if (storedOldest != null && (oldest == null || storedOldest.before(oldest))) {
+                oldest = storedOldest;
+            }
+        }
+
+        return oldest != null ? Math.max(0, System.currentTimeMillis() - oldest.getTime()) : 0;
+    }
+
+    private Date getOldestStoredEventDate()
+    {
+        try {
+            Set<String> eventTypes = getRecordableEventTypes();
+            if (eventTypes.isEmpty()) {
+                return null;
+            }
+
+            try (EventSearchResult result = this.events.search(createMissingEventsQuery(eventTypes, 1))) {
+                return result.stream().findFirst().map(Event::getDate).orElse(null);
+            }
+        } catch (Exception e) {
+            this.logger.warn("Failed to get the oldest event waiting in the store to be pre filtered: {}",
+                ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+    }
+
+    private SimpleEventQuery createMissingEventsQuery(Set<String> eventTypes, int limit)
+    {
+        SimpleEventQuery query = new SimpleEventQuery(0, limit);
+        query.eq(Event.FIELD_PREFILTERED, false);
+        query.in(Event.FIELD_TYPE, new ArrayList<>(eventTypes));
+        query.addSort(Event.FIELD_DATE, Order.ASC);
+
+        return query;
+    }
+
+    private Set<String> getRecordableEventTypes() throws EventStreamException
+    {
+        // We can’t directly store a list of RecordableEventDescriptors as some of them can be
+        // dynamically defined at runtime.
+        List<RecordableEventDescriptor> descriptorList =
+            this.recordableEventDescriptorManager.getRecordableEventDescriptors(true);
+
+        return descriptorList.stream().map(RecordableEventDescriptor::getEventType).collect(Collectors.toSet());
+    }
+
+    private boolean queueEvent(Event event)
     {
-        if (this.queue != null) {
-            this.queue.put(event);
+        BlockingQueue<Event> currentQueue = this.queue;
+
+        if (currentQueue != null && this.pendingEvents.add(event.getId())) {
+            if (!currentQueue.offer(event)) {
+                this.pendingEvents.remove(event.getId());
+
+                // Remember to get the event from the store when the queue is empty
+                this.overflow = true;
+
+                return false;
+            }
         }
+
+        return true;
     }
 
     @Override
@@ -138,29 +351,27 @@ public void run()
     {
         try {
             while (true) {
-                for (Event event = this.queue.take(); event != null; event = this.queue.poll()) {
-                    // Keeping the same ExecutionContext forever can lead to memory leak and cache problems since most
-                    // of the code expect it to be short lived
-                    try {
-                        this.ecm.pushContext(new ExecutionContext(), false);
-                    } catch (ExecutionContextException e) {
-                        this.logger.error("Failed to push a new execution context for event [{}]", event.getId(), e);
+                Event event = this.queue.take();
 
-                        continue;
-                    }
+                if (event == STOP_EVENT) {
+                    this.queue = null;
 
-                    try {
-                        if (event == STOP_EVENT) {
-                            this.queue = null;
-
-                            return;
-                        }
+                    return;
+                }
 
-                        dispatch(event);
-                    } finally {
-                        // Get rid of current context
-                        this.ecm.popContext();
+                if (event != CATCHUP_EVENT) {
+                    this.currentEvent = event;
+                    if (!runInContext(() -> dispatch(event))) {
+                        // Will be retried from the store
+                        this.pendingEvents.remove(event.getId());
                     }
+                    this.currentEvent = null;
+                }
+
+                if (this.overflow && this.queue.isEmpty()) {
+                    this.overflow = false;
+
+                    runInContext(this::catchUp);
                 }
             }
         } catch (InterruptedException e) {
@@ -171,68 +382,158 @@ public void run()
         }
     }
 
+    private boolean runInContext(Runnable runnable)
+    {
+        // Keeping the same ExecutionContext forever can lead to memory leak and cache problems since most
+        // of the code expect it to be short lived
+        try {
+            this.ecm.pushContext(new ExecutionContext(), false);
+        } catch (ExecutionContextException e) {
+            this.logger.error("Failed to push a new execution context", e);
+
+            return false;
+        }
+
+        try {
+            runnable.run();
+
+            return true;
+        } finally {
+            // Get rid of current context
+            this.ecm.popContext();
+        }
+    }
+
+    private void catchUp()
+    {
+        try {
+            Set<String> eventTypes = getRecordableEventTypes();
+            if (eventTypes.isEmpty()) {
+                return;
+            }
+
+            // Don't load more than what the queue can contain, the next events will be loaded the next time the queue
+            // is empty
+            try (EventSearchResult result =
+                this.events.search(createMissingEventsQuery(eventTypes, this.queueCapacity))) {
+                long count = 0;
+                for (Iterator<Event> it = result.stream().iterator(); it.hasNext(); ++count) {
+                    if (!queueEvent(it.next())) {
+                        break;
+                    }
+                }
+
+                if (count >= this.queueCapacity) {
+                    // There might be more
+                    this.overflow = true;
+                }
+            }
+        } catch (Exception e) {
+            this.logger.error("Failed to search events for which pre filtering was missed", e);
+        }
+    }
+
     private void dispatch(Event event)
     {
         WikiReference eventWiki = event.getWiki();
 
-        if (CollectionUtils.isNotEmpty(event.getTarget())) {
-            // The event explicitly indicate with which entities to associated it
-
-            event.getTarget().forEach(entity -> {
-                DocumentReference entityReference = this.resolver.resolve(entity, event.getWiki());
-
-                // Associated the entity
-                saveEventStatus(event, entity);
-                saveMailEntityEvent(event, entity);
-
-                // Also recursively associate the members of the entity if it's a group
-                try {
-                    this.groupManager.getMembers(entityReference, true).forEach(userReference -> {
-                        String userId = this.entityReferenceSerializer.serialize(userReference);
-                        saveEventStatus(event, userId);
-                        saveMailEntityEvent(event, userId);
-                    });
-                } catch (GroupException e) {
-                    this.logger.warn("Failed to get the member of the entity [{}]: {}", entity,
-                        ExceptionUtils.getRootCauseMessage(e));
-                }
-            });
-        } else {
-            // Try to find users listening to this event
+        try {
+            if (CollectionUtils.isNotEmpty(event.getTarget())) {
+                // The event explicitly indicate with which entities to associated it
+
+                event.getTarget().forEach(entity -> {
+                    DocumentReference entityReference = this.resolver.resolve(entity, event.getWiki());
+
+                    // Associated the entity
+                    saveEventStatus(event, entity);
+                    saveMailEntityEvent(event, entity);
 
-            // Associated event with event's wiki users
-            dispatch(event, this.userCache.getUsers(eventWiki, true));
+                    // Also recursively associate the members of the entity if it's a group
+                    try {
+                        this.groupManager.getMembers(entityReference, true).forEach(userReference -> {
+                            String userId = this.entityReferenceSerializer.serialize(userReference);
+                            saveEventStatus(event, userId);
+                            saveMailEntityEvent(event, userId);
+                        });
+                    } catch (GroupException e) {
+                        this.logger.warn("Failed to get the member of the entity [{}]: {}", entity,
+                            ExceptionUtils.getRootCauseMessage(e));
+                    }
+                });
+            } else {
+                // Try to find users listening to this event
 
-            // Also take into account global users (main wiki users) if the event is on a subwiki
-            if (!this.wikiManager.isMainWiki(eventWiki.getName())) {
-                dispatch(event, this.userCache.getUsers(new WikiReference(this.wikiManager.getMainWikiId()), true));
+                // Associated event with event's wiki users
+                dispatch(event, eventWiki);
+
+                // Also take into account global users (main wiki users) if the event is on a subwiki
+                if (!this.wikiManager.isMainWiki(eventWiki.getName())) {
+                    dispatch(event, new WikiReference(this.wikiManager.getMainWikiId()));
+                }
             }
+        } catch (Exception e) {
+            this.logger.error("Failed to dispatch event [{}]", event.getId(), e);
+
+            this.pendingEvents.remove(event.getId());
+
+            return;
         }
+
+        // Remember we are done pre filtering this event
+        this.events.prefilterEvent(event).whenComplete((result, e) -> this.pendingEvents.remove(event.getId()));
     }
 
-    private void dispatch(Event event, List<DocumentReference> users)
+    private void dispatch(Event event, WikiReference wiki)
     {
-        boolean mailEnabled = this.notificationConfiguration.areEmailsEnabled();
+        List<DocumentReference> users = this.userCache.getUsers(wiki, true);
 
-        for (DocumentReference user : users) {
-            // Make sure the user asked to be alerted about this event
-            if (this.userEventManager.isListening(event, user, NotificationFormat.ALERT)) {
-                // Associate the event with the user
-                String userId = this.entityReferenceSerializer.serialize(user);
-                saveEventStatus(event, userId);
-            }
+        // Only check the users which enabled the event type or follow the user who triggered the event
+        dispatch(event, this.listenerIndex.getCandidates(event, wiki, users, NotificationFormat.ALERT),
+            NotificationFormat.ALERT);
+
+        // Make sure the notification module is allowed to send mails
+        if (this.notificationConfiguration.areEmailsEnabled()) {
+            dispatch(event, this.listenerIndex.getCandidates(event, wiki, users, NotificationFormat.EMAIL),
+                NotificationFormat.EMAIL);
+        }
+    }
+
+    private void dispatch(Event event, Collection<DocumentReference> users, NotificationFormat format)
+    {
+        if (this.workers == null || users.size() < MIN_SHARD_SIZE * 2) {
+            dispatchShard(event, users, format);
+
+            return;
+        }
+
+        // Split the users in shards checked in parallel
+        int shardSize = Math.max(MIN_SHARD_SIZE, (users.size() + this.poolSize - 1) / this.poolSize);
+        List<List<DocumentReference>> shards = ListUtils.partition(new ArrayList<>(users), shardSize);
 
-            // Make sure the notification module is allowed to send mails
-            // Make sure the user asked to receive mails about this event
-            if (mailEnabled && this.userEventManager.isListening(event, user, NotificationFormat.EMAIL)) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+        for (List<DocumentReference> shard : shards) {
+            futures.add(CompletableFuture
+                .runAsync(() -> runInContext(() -> dispatchShard(event, shard, format)), this.workers));
+        }
+
+        // Wait for all the shards to be done
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void dispatchShard(Event event, Collection<DocumentReference> users, NotificationFormat format)
+    {
+        for (DocumentReference user : users) {
+            // Make sure the user asked to receive this event with this format
+            if (this.userEventManager.isListening(event, user, format)) {
                 // Associate the event with the user
                 String userId = this.entityReferenceSerializer.serialize(user);
-                saveMailEntityEvent(event, userId);
+                if (format == NotificationFormat.ALERT) {
+                    saveEventStatus(event, userId);
+                } else {
+                    saveMailEntityEvent(event, userId);
+                }
             }
         }
-
-        // Remember we are done pre filtering this event
-        this.events.prefilterEvent(event);
     }
 
     private void saveEventStatus(Event event, String entityId)
@@ -19,22 +19,12 @@
  */
 package org.xwiki.notifications.notifiers.internal;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.slf4j.Logger;
 import org.xwiki.bridge.event.ApplicationReadyEvent;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.eventstream.EventSearchResult;
-import org.xwiki.eventstream.EventStore;
-import org.xwiki.eventstream.EventStreamException;
-import org.xwiki.eventstream.RecordableEventDescriptor;
-import org.xwiki.eventstream.RecordableEventDescriptorManager;
 import org.xwiki.eventstream.events.EventStreamAddedEvent;
-import org.xwiki.eventstream.query.SimpleEventQuery;
 import org.xwiki.notifications.NotificationConfiguration;
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
@@ -61,18 +51,9 @@ public class UserEventDispatcherListener extends AbstractEventListener
     @Inject
     private NotificationConfiguration notificationConfiguration;
 
-    @Inject
-    private RecordableEventDescriptorManager recordableEventDescriptorManager;
-
     @Inject
     private RemoteObservationManagerContext remoteState;
 
-    @Inject
-    private EventStore store;
-
-    @Inject
-    private Logger logger;
-
     /**
      * Configure the listener.
      */
@@ -89,54 +70,13 @@ public void onEvent(Event event, Object source, Object data)
             if (event instanceof EventStreamAddedEvent) {
                 // Find out the users to associate with the event
                 if (!this.remoteState.isRemoteState()) {
-                    prefilterEvent((org.xwiki.eventstream.Event) source);
+                    // Never block: the events which don't fit in the dispatcher queue are taken from the store later
+                    this.dispatcher.addEvent((org.xwiki.eventstream.Event) source);
                 }
             } else if (event instanceof ApplicationReadyEvent) {
                 // Load all the events for which pre filtering was not finished and restart the process for them
-                // Don't block the event thread
-                CompletableFuture.runAsync(this::prefilterMissingEvents);
-            }
-        }
-    }
-
-    private void prefilterMissingEvents()
-    {
-        SimpleEventQuery query = new SimpleEventQuery();
-        query.eq(org.xwiki.eventstream.Event.FIELD_PREFILTERED, false);
-
-        try {
-            EventSearchResult result = this.store.search(query);
-
-            result.stream().forEach(this::prefilterEvent);
-        } catch (EventStreamException e) {
-            this.logger.error("Failed to search events for which pre filtering was missed", e);
-        }
-    }
-
-    private void prefilterEvent(org.xwiki.eventstream.Event eventStreamEvent)
-    {
-        try {
-            // We can’t directly store a list of RecordableEventDescriptors as some of them can be
-            // dynamically defined at runtime.
-            List<RecordableEventDescriptor> descriptorList =
-                this.recordableEventDescriptorManager.getRecordableEventDescriptors(true);
-
-            // Try to match one of the given descriptors with the current event.
-            for (RecordableEventDescriptor descriptor : descriptorList) {
-                // Find a descriptor that corresponds to the given event
-                if (descriptor.getEventType().equals(eventStreamEvent.getType())) {
-                    // Add the event to the queue
-                    this.dispatcher.addEvent(eventStreamEvent);
-
-                    break;
-                }
+                this.dispatcher.prefilterMissingEvents();
             }
-        } catch (EventStreamException e) {
-            this.logger.warn("Unable to retrieve a full list of RecordableEventDescriptor.", e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-
-            this.logger.warn("Failed to add the event [{}] in the user event dispatcher", eventStreamEvent.getId(), e);
         }
     }
 }
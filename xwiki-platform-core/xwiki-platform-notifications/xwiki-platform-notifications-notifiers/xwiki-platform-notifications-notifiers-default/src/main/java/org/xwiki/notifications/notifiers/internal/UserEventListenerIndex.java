@@ -0,0 +1,383 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilterPreference;
+import org.xwiki.notifications.filters.NotificationFilterPreferenceManager;
+import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.internal.user.EventUserFilter;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceManager;
+import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+
+/**
+ * Inverted index of the users which might be interested by an event, based on the event types they enabled and the
+ * users they follow.
+ * <p>
+ * The index is only used to quickly exclude the users who cannot be listening to an event: the candidates it returns
+ * still need to be validated with {@link UserEventManager#isListening(Event, DocumentReference, NotificationFormat)}
+ * (rights and exclusive filters). The users for which the preferences cannot be loaded are candidates for all the events
+ * until a later attempt, delayed a bit more after each failure, succeeds.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = UserEventListenerIndex.class)
+@Singleton
+public class UserEventListenerIndex
+{
+    /**
+     * The delay before trying again to load the preferences of a user after a first failure.
+     */
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * The maximum delay between two attempts to load the preferences of a user.
+     */
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+
+    private static final class FailedUser
+    {
+        private final long delay;
+
+        private final long retryTime;
+
+        FailedUser(long delay)
+        {
+            this.delay = delay;
+            this.retryTime = System.currentTimeMillis() + delay;
+        }
+    }
+
+    @Inject
+    private NotificationPreferenceManager notificationPreferenceManager;
+
+    @Inject
+    private NotificationFilterPreferenceManager notificationFilterPreferenceManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private Logger logger;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The keys (format and event type or followed user) associated with each indexed user.
+     */
+    private final Map<DocumentReference, Set<Pair<NotificationFormat, Object>>> userKeys = new HashMap<>();
+
+    /**
+     * The users associated with each key (format and event type or followed user).
+     */
+    private final Map<Pair<NotificationFormat, Object>, Set<DocumentReference>> keyUsers = new HashMap<>();
+
+    /**
+     * The list of users which was last indexed for each wiki.
+     */
+    private final Map<WikiReference, List<DocumentReference>> wikiUsers = new HashMap<>();
+
+    /**
+     * The users for which the preferences could not be loaded, listening to all the events until they are indexed.
+     */
+    private final Map<DocumentReference, FailedUser> failedUsers = new HashMap<>();
+
+    /**
+     * The next time the preferences of one of the failed users should be loaded again.
+     */
+    private volatile long nextRetryTime = Long.MAX_VALUE;
+
+    private final Set<DocumentReference> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean resetRequested;
+
+    /**
+     * @param event the event to dispatch
+     * @param wiki the wiki of the passed users
+     * @param users the users of the wiki
+     * @param format the format of the notification
+     * @return the users from the passed list which might be listening to the passed event
+     */
+    public Collection<DocumentReference> getCandidates(Event event, WikiReference wiki, List<DocumentReference> users,
+        NotificationFormat format)
+    {
+        if (needsRefresh(wiki, users)) {
+            this.lock.writeLock().lock();
+            try {
+                refresh(wiki, users);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+
+        this.lock.readLock().lock();
+        try {
+            Set<DocumentReference> candidates = new LinkedHashSet<>();
+
+            addCandidates(candidates, Pair.of(format, event.getType()), wiki);
+            if (event.getUser() != null) {
+                addCandidates(candidates, Pair.of(format, event.getUser()), wiki);
+            }
+            addCandidates(candidates, this.failedUsers.keySet(), wiki);
+
+            return candidates;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Make sure the preferences of the passed user are indexed again the next time they are needed.
+     * 
+     * @param user the user for which the preferences changed
+     */
+    public void invalidateUser(DocumentReference user)
+    {
+        this.dirtyUsers.add(user);
+    }
+
+    /**
+     * Make sure the preferences of all users are indexed again the next time they are needed.
+     */
+    public void invalidateAll()
+    {
+        this.resetRequested = true;
+    }
+
+    private boolean needsRefresh(WikiReference wiki, List<DocumentReference> users)
+    {
+        if (this.resetRequested || !this.dirtyUsers.isEmpty() || System.currentTimeMillis() >= this.nextRetryTime) {
+            return true;
+        }
+
+        this.lock.readLock().lock();
+        try {
+            // UsersCache return the same list instance as long as the users of the wiki did not change
+            return this.wikiUsers.get(wiki) != users;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void refresh(WikiReference wiki, List<DocumentReference> users)
+    {
+        if (this.resetRequested) {
+            this.resetRequested = false;
+
+            this.userKeys.clear();
+            this.keyUsers.clear();
+            this.wikiUsers.clear();
+            this.dirtyUsers.clear();
+            this.failedUsers.clear();
+            this.nextRetryTime = Long.MAX_VALUE;
+        }
+
+        // Re-index the users for which the preferences changed
+        if (!this.dirtyUsers.isEmpty()) {
+            List<DocumentReference> changedUsers = new ArrayList<>(this.dirtyUsers);
+            this.dirtyUsers.removeAll(changedUsers);
+            for (DocumentReference user : changedUsers) {
+                if (removeUser(user)) {
+                    indexUser(user);
+                }
+            }
+        }
+
+        // Try again to index the users for which the preferences could not be loaded
+        long now = System.currentTimeMillis();
+        if (now >= this.nextRetryTime) {
+            List<DocumentReference> retriedUsers = new ArrayList<>();
+            this.failedUsers.forEach((user, failedUser) -> {
+                if (now >= failedUser.retryTime) {
+                    retriedUsers.add(user);
+                }
+            });
+            for (DocumentReference user : retriedUsers) {
+                removeUser(user);
+                indexUser(user);
+            }
+            updateNextRetryTime();
+        }
+
+        // Synchronize the index with the current users of the wiki
+        List<DocumentReference> previousUsers = this.wikiUsers.get(wiki);
+        if (previousUsers != users) {
+            if (previousUsers != null) {
+                Set<DocumentReference> currentUsers = new HashSet<>(users);
+                for (DocumentReference previousUser : previousUsers) {
+                    if (!currentUsers.contains(previousUser)) {
+                        removeUser(previousUser);
+                        if (this.failedUsers.remove(previousUser) != null) {
+                            updateNextRetryTime();
+                        }
+                    }
+                }
+            }
+
+            for (DocumentReference user : users) {
+                if (!this.userKeys.containsKey(user)) {
+                    indexUser(user);
+                }
+            }
+
+            this.wikiUsers.put(wiki, users);
+        }
+    }
+
+    private void addCandidates(Set<DocumentReference> candidates, Pair<NotificationFormat, Object> key,
+        WikiReference wiki)
+    {
+        Set<DocumentReference> users = this.keyUsers.get(key);
+
+        if (users != null) {
+            addCandidates(candidates, users, wiki);
+        }
+    }
+
+    private void addCandidates(Set<DocumentReference> candidates, Set<DocumentReference> users, WikiReference wiki)
+    {
+        for (DocumentReference user : users) {
+            if (user.getWikiReference().equals(wiki)) {
+                candidates.add(user);
+            }
+        }
+    }
+
+    private boolean removeUser(DocumentReference user)
+    {
+        Set<Pair<NotificationFormat, Object>> keys = this.userKeys.remove(user);
+
+        if (keys == null) {
+            return false;
+        }
+
+        for (Pair<NotificationFormat, Object> key : keys) {
+            Set<DocumentReference> users = this.keyUsers.get(key);
+            if (users != null) {
+                users.remove(user);
+                if (users.isEmpty()) {
+                    this.keyUsers.remove(key);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void indexUser(DocumentReference user)
+    {
+        Set<Pair<NotificationFormat, Object>> keys = new HashSet<>();
+
+        try {
+            addEventTypeKeys(user, keys);
+            addFollowedUserKeys(user, keys);
+
+            if (this.failedUsers.remove(user) != null) {
+                updateNextRetryTime();
+            }
+        } catch (NotificationException e) {
+            this.logger.warn("Failed to index the notifications preferences of [{}]: {}", user,
+                ExceptionUtils.getRootCauseMessage(e));
+
+            // Consider the user is listening to all the events until a later attempt succeeds (the candidates are
+            // validated anyway) and wait a bit more after each failure to not reload the preferences for each event
+            keys.clear();
+            FailedUser previousFailure = this.failedUsers.get(user);
+            long delay = previousFailure != null ? Math.min(previousFailure.delay * 2, MAX_RETRY_DELAY) : RETRY_DELAY;
+            this.failedUsers.put(user, new FailedUser(delay));
+            updateNextRetryTime();
+        }
+
+        this.userKeys.put(user, keys);
+        for (Pair<NotificationFormat, Object> key : keys) {
+            this.keyUsers.computeIfAbsent(key, k -> new HashSet<>()).add(user);
+        }
+    }
+
+    private void updateNextRetryTime()
+    {
+        long retryTime = Long.MAX_VALUE;
+        for (FailedUser failedUser : this.failedUsers.values()) {
+            retryTime = Math.min(retryTime, failedUser.retryTime);
+        }
+
+        this.nextRetryTime = retryTime;
+    }
+
+    private void addEventTypeKeys(DocumentReference user, Set<Pair<NotificationFormat, Object>> keys)
+        throws NotificationException
+    {
+        // Only the first preference associated with a given event type and format is taken into account
+        Set<Pair<NotificationFormat, Object>> found = new HashSet<>();
+
+        for (NotificationPreference preference : this.notificationPreferenceManager.getAllPreferences(user)) {
+            Object eventType = preference.getProperties().get(NotificationPreferenceProperty.EVENT_TYPE);
+            if (eventType != null) {
+                Pair<NotificationFormat, Object> key = Pair.of(preference.getFormat(), eventType);
+                if (found.add(key) && preference.isNotificationEnabled()) {
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    private void addFollowedUserKeys(DocumentReference user, Set<Pair<NotificationFormat, Object>> keys)
+        throws NotificationException
+    {
+        for (NotificationFilterPreference preference : this.notificationFilterPreferenceManager
+            .getFilterPreferences(user)) {
+            if (preference.isEnabled() && EventUserFilter.FILTER_NAME.equals(preference.getFilterName())
+                && preference.getFilterType() == NotificationFilterType.INCLUSIVE
+                && preference.getEventTypes().isEmpty() && preference.getUser() != null) {
+                DocumentReference followedUser = this.referenceResolver.resolve(preference.getUser());
+                for (NotificationFormat format : preference.getNotificationFormats()) {
+                    keys.add(Pair.of(format, followedUser));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceAddOrUpdatedEvent;
+import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceDeletedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Listener to event to invalidate the {@link UserEventListenerIndex}.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component
+@Named(UserEventListenerIndexInvalidator.NAME)
+@Singleton
+public class UserEventListenerIndexInvalidator extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "UserEventListenerIndexInvalidator";
+
+    private static final EntityReference PREFERENCE_OBJECT =
+        BaseObjectReference.any("XWiki.Notifications.Code.NotificationPreferenceClass");
+
+    private static final LocalDocumentReference GLOBAL_PREFERENCES = new LocalDocumentReference(
+        Arrays.asList("XWiki", "Notifications", "Code"), "NotificationAdministration");
+
+    @Inject
+    private UserEventListenerIndex index;
+
+    /**
+     * The default constructor.
+     */
+    public UserEventListenerIndexInvalidator()
+    {
+        super(NAME, new XObjectAddedEvent(PREFERENCE_OBJECT), new XObjectUpdatedEvent(PREFERENCE_OBJECT),
+            new XObjectDeletedEvent(PREFERENCE_OBJECT), new NotificationFilterPreferenceAddOrUpdatedEvent(),
+            new NotificationFilterPreferenceDeletedEvent(), new WikiDeletedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (source instanceof XWikiDocument) {
+            DocumentReference documentReference = ((XWikiDocument) source).getDocumentReference();
+
+            if (documentReference.getLocalDocumentReference().equals(GLOBAL_PREFERENCES)) {
+                // The default preferences of the wiki changed
+                this.index.invalidateAll();
+            } else {
+                this.index.invalidateUser(documentReference);
+            }
+        } else if (source instanceof DocumentReference) {
+            this.index.invalidateUser((DocumentReference) source);
+        } else {
+            this.index.invalidateAll();
+        }
+    }
+}
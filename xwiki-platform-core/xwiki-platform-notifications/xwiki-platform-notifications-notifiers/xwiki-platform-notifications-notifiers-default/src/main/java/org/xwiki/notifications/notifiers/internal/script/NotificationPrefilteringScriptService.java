@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal.script;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.notifications.notifiers.internal.UserEventDispatcher;
+import org.xwiki.script.service.ScriptService;
+
+/**
+ * Script service exposing the state of the events pre filtering (the association of events with the users who should
+ * be notified about them).
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component
+@Named(NotificationPrefilteringScriptService.ROLE_HINT)
+@Singleton
+public class NotificationPrefilteringScriptService implements ScriptService
+{
+    /**
+     * Hint of the component.
+     */
+    public static final String ROLE_HINT = "notification.prefiltering";
+
+    @Inject
+    private UserEventDispatcher dispatcher;
+
+    /**
+     * @return the number of events waiting in memory to be pre filtered
+     */
+    public int getQueueSize()
+    {
+        return this.dispatcher.getQueueSize();
+    }
+
+    /**
+     * @return the maximum number of events which can wait in memory to be pre filtered
+     */
+    public int getQueueCapacity()
+    {
+        return this.dispatcher.getQueueCapacity();
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest event being pre filtered or waiting in memory to be pre filtered,
+     *         0 if there is none
+     */
+    public long getOldestEventAge()
+    {
+        return this.dispatcher.getOldestEventAge();
+    }
+
+    /**
+     * @return true if some events did not fit in memory and are waiting in the event store to be pre filtered
+     */
+    public boolean isOverflowing()
+    {
+        return this.dispatcher.isOverflowing();
+    }
+}
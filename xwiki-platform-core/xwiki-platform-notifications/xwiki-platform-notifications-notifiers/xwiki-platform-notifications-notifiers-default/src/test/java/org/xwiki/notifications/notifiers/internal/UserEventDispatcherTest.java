@@ -0,0 +1,323 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStore;
+import org.xwiki.eventstream.RecordableEventDescriptor;
+import org.xwiki.eventstream.RecordableEventDescriptorManager;
+import org.xwiki.eventstream.internal.DefaultEvent;
+import org.xwiki.eventstream.internal.StreamEventSearchResult;
+import org.xwiki.eventstream.query.SimpleEventQuery;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.internal.group.UsersCache;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link UserEventDispatcher}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class UserEventDispatcherTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private static final DocumentReference USER = new DocumentReference("wiki", "XWiki", "user");
+
+    private static final long TIMEOUT = 10000;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    @InjectMockComponents
+    private UserEventDispatcher dispatcher;
+
+    @MockComponent
+    private NotificationConfiguration configuration;
+
+    @MockComponent
+    private RecordableEventDescriptorManager recordableEventDescriptorManager;
+
+    @MockComponent
+    private WikiDescriptorManager wikiManager;
+
+    @MockComponent
+    private UsersCache userCache;
+
+    @MockComponent
+    private UserEventListenerIndex listenerIndex;
+
+    @MockComponent
+    private UserEventManager userEventManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> serializer;
+
+    @MockComponent
+    private EventStore events;
+
+    /**
+     * The events saved in the store and not yet pre filtered, ordered by date.
+     */
+    private final List<Event> storedEvents = new CopyOnWriteArrayList<>();
+
+    /**
+     * The events for which the next dispatch fails.
+     */
+    private final Set<Event> failingEvents = ConcurrentHashMap.newKeySet();
+
+    private Event blockedEvent;
+
+    private CountDownLatch blockedEventStarted;
+
+    private CountDownLatch blockedEventReleased;
+
+    @BeforeComponent
+    void beforeComponent()
+    {
+        when(this.configuration.getEventPrefilteringQueueSize()).thenReturn(2);
+        when(this.configuration.getEventPrefilteringPoolSize()).thenReturn(2);
+    }
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        RecordableEventDescriptor descriptor = mock(RecordableEventDescriptor.class);
+        when(descriptor.getEventType()).thenReturn("type");
+        when(this.recordableEventDescriptorManager.getRecordableEventDescriptors(true))
+            .thenReturn(Arrays.asList(descriptor));
+
+        when(this.wikiManager.isMainWiki("wiki")).thenReturn(true);
+        when(this.userCache.getUsers(WIKI, true)).thenReturn(Arrays.asList(USER));
+        when(this.userEventManager.isListening(any(), any(), any())).thenReturn(true);
+        when(this.serializer.serialize(any())).then(invocation -> invocation.getArgument(0).toString());
+
+        when(this.listenerIndex.getCandidates(any(), any(), any(), any())).then(invocation -> {
+            Event event = invocation.getArgument(0);
+
+            if (event == this.blockedEvent) {
+                this.blockedEventStarted.countDown();
+                this.blockedEventReleased.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+
+            if (this.failingEvents.remove(event)) {
+                throw new RuntimeException("dispatch failure");
+            }
+
+            return invocation.getArgument(2);
+        });
+
+        when(this.events.prefilterEvent(any())).then(invocation -> {
+            Event event = invocation.getArgument(0);
+
+            this.storedEvents.remove(event);
+
+            return CompletableFuture.completedFuture(event);
+        });
+        when(this.events.search(any())).then(invocation -> {
+            SimpleEventQuery query = invocation.getArgument(0);
+
+            List<Event> page =
+                this.storedEvents.stream().limit(query.getLimit()).collect(Collectors.toList());
+
+            return new StreamEventSearchResult(this.storedEvents.size(), 0, page.size(), page.stream());
+        });
+    }
+
+    private Event event(String id, long age)
+    {
+        DefaultEvent event = new DefaultEvent();
+        event.setId(id);
+        event.setType("type");
+        event.setWiki(WIKI);
+        event.setDate(new Date(System.currentTimeMillis() - age));
+
+        return event;
+    }
+
+    private void block(Event event) throws InterruptedException
+    {
+        this.blockedEvent = event;
+        this.blockedEventStarted = new CountDownLatch(1);
+        this.blockedEventReleased = new CountDownLatch(1);
+
+        this.dispatcher.addEvent(event);
+
+        // Wait for the dispatcher thread to be stuck on the event
+        assertTrue(this.blockedEventStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    private void release()
+    {
+        this.blockedEventReleased.countDown();
+    }
+
+    // Tests
+
+    @Test
+    void overflow() throws Exception
+    {
+        // Missed by a previous dispatcher
+        Event event0 = event("id0", 100000);
+        Event event1 = event("id1", 4000);
+        Event event2 = event("id2", 3000);
+        Event event3 = event("id3", 2000);
+        Event event4 = event("id4", 1000);
+        this.storedEvents.addAll(Arrays.asList(event0, event1, event2, event3, event4));
+
+        block(event1);
+
+        this.dispatcher.addEvent(event2);
+        this.dispatcher.addEvent(event3);
+        // The queue is full
+        this.dispatcher.addEvent(event4);
+
+        assertEquals(2, this.dispatcher.getQueueSize());
+        assertEquals(2, this.dispatcher.getQueueCapacity());
+        assertTrue(this.dispatcher.isOverflowing());
+        // The oldest event waiting in the store is taken into account
+        assertTrue(this.dispatcher.getOldestEventAge() >= 100000);
+
+        release();
+
+        // The events which did not fit in the queue are loaded from the store, a queue worth at a time
+        verify(this.events, timeout(TIMEOUT)).prefilterEvent(event4);
+        verify(this.events, timeout(TIMEOUT)).prefilterEvent(event0);
+        // One search for the oldest event age, two to fill the queue again (the second one finding nothing left)
+        verify(this.events, timeout(TIMEOUT).times(3)).search(any());
+
+        assertTrue(this.storedEvents.isEmpty());
+        assertFalse(this.dispatcher.isOverflowing());
+        for (Event event : Arrays.asList(event0, event1, event2, event3, event4)) {
+            verify(this.events).prefilterEvent(event);
+        }
+    }
+
+    @Test
+    void pendingEventsAreNotQueuedTwice() throws Exception
+    {
+        Event event1 = event("id1", 2000);
+        Event event2 = event("id2", 1000);
+
+        // The store did not yet mark the first event as pre filtered
+        doReturn(new CompletableFuture<Event>()).when(this.events).prefilterEvent(event1);
+        this.storedEvents.addAll(Arrays.asList(event1, event2));
+
+        this.dispatcher.addEvent(event1);
+        this.dispatcher.addEvent(event1);
+        // Find the events which are still not pre filtered in the store
+        this.dispatcher.prefilterMissingEvents();
+
+        verify(this.events, timeout(TIMEOUT)).prefilterEvent(event2);
+        verify(this.events, timeout(TIMEOUT).times(2)).search(any());
+
+        verify(this.listenerIndex).getCandidates(same(event1), any(), any(), any());
+        verify(this.listenerIndex).getCandidates(same(event2), any(), any(), any());
+        verify(this.events, times(2)).saveEventStatus(any());
+    }
+
+    @Test
+    void dispatchFailureIsRetried() throws Exception
+    {
+        Event event1 = event("id1", 1000);
+        this.storedEvents.add(event1);
+        this.failingEvents.add(event1);
+
+        this.dispatcher.addEvent(event1);
+
+        verify(this.listenerIndex, timeout(TIMEOUT)).getCandidates(same(event1), any(), any(), any());
+
+        // The event was not marked as pre filtered so it's found again in the store
+        this.dispatcher.prefilterMissingEvents();
+
+        verify(this.events, timeout(TIMEOUT)).prefilterEvent(event1);
+        verify(this.listenerIndex, times(2)).getCandidates(same(event1), any(), any(), any());
+        verify(this.events).saveEventStatus(any());
+
+        assertEquals("Failed to dispatch event [id1]", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void dispatchInShards() throws Exception
+    {
+        List<DocumentReference> users = new ArrayList<>();
+        for (int i = 0; i < 250; ++i) {
+            users.add(new DocumentReference("wiki", "XWiki", "user" + i));
+        }
+        when(this.userCache.getUsers(WIKI, true)).thenReturn(users);
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(this.userEventManager.isListening(any(), any(), any())).then(invocation -> {
+            threads.add(Thread.currentThread().getName());
+
+            return true;
+        });
+
+        Event event = event("id", 1000);
+        this.dispatcher.addEvent(event);
+
+        verify(this.events, timeout(TIMEOUT)).prefilterEvent(event);
+
+        verify(this.events, times(250)).saveEventStatus(any());
+        // The users are split between the two workers
+        assertEquals(2, threads.size());
+        for (String thread : threads) {
+            assertTrue(thread.startsWith("User event dispatcher worker thread"), thread);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.internal.DefaultEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilterPreference;
+import org.xwiki.notifications.filters.NotificationFilterPreferenceManager;
+import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.internal.user.EventUserFilter;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceManager;
+import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link UserEventListenerIndex}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class UserEventListenerIndexTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private static final DocumentReference USER1 = new DocumentReference("wiki", "XWiki", "user1");
+
+    private static final DocumentReference USER2 = new DocumentReference("wiki", "XWiki", "user2");
+
+    private static final DocumentReference USER3 = new DocumentReference("wiki", "XWiki", "user3");
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    @InjectMockComponents
+    private UserEventListenerIndex index;
+
+    @MockComponent
+    private NotificationPreferenceManager notificationPreferenceManager;
+
+    @MockComponent
+    private NotificationFilterPreferenceManager notificationFilterPreferenceManager;
+
+    @MockComponent
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    private NotificationPreference preference(String eventType, NotificationFormat format, boolean enabled)
+    {
+        NotificationPreference preference = mock(NotificationPreference.class);
+        when(preference.getFormat()).thenReturn(format);
+        Map<NotificationPreferenceProperty, Object> properties =
+            Collections.singletonMap(NotificationPreferenceProperty.EVENT_TYPE, eventType);
+        when(preference.getProperties()).thenReturn(properties);
+        when(preference.isNotificationEnabled()).thenReturn(enabled);
+
+        return preference;
+    }
+
+    private NotificationFilterPreference followPreference(String followedUser, NotificationFormat format)
+    {
+        NotificationFilterPreference preference = mock(NotificationFilterPreference.class);
+        when(preference.isEnabled()).thenReturn(true);
+        when(preference.getFilterName()).thenReturn(EventUserFilter.FILTER_NAME);
+        when(preference.getFilterType()).thenReturn(NotificationFilterType.INCLUSIVE);
+        when(preference.getEventTypes()).thenReturn(Collections.emptySet());
+        when(preference.getUser()).thenReturn(followedUser);
+        when(preference.getNotificationFormats()).thenReturn(Collections.singleton(format));
+
+        return preference;
+    }
+
+    private Event event(String type, DocumentReference user)
+    {
+        DefaultEvent event = new DefaultEvent();
+        event.setType(type);
+        event.setUser(user);
+
+        return event;
+    }
+
+    @Test
+    void getCandidates() throws Exception
+    {
+        when(this.notificationPreferenceManager.getAllPreferences(USER1))
+            .thenReturn(Arrays.asList(preference("update", NotificationFormat.ALERT, true),
+                preference("create", NotificationFormat.ALERT, false),
+                preference("create", NotificationFormat.ALERT, true)));
+        when(this.notificationPreferenceManager.getAllPreferences(USER2))
+            .thenReturn(Arrays.asList(preference("update", NotificationFormat.EMAIL, true)));
+        when(this.notificationFilterPreferenceManager.getFilterPreferences(USER3))
+            .thenReturn(Arrays.asList(followPreference("wiki:XWiki.user1", NotificationFormat.ALERT)));
+        when(this.referenceResolver.resolve("wiki:XWiki.user1")).thenReturn(USER1);
+
+        List<DocumentReference> users = Arrays.asList(USER1, USER2, USER3);
+
+        assertEquals(Collections.singleton(USER1),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+        assertEquals(Collections.singleton(USER2),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.EMAIL));
+        // Only the first preference matching an event type is taken into account
+        assertEquals(Collections.emptySet(),
+            this.index.getCandidates(event("create", USER2), WIKI, users, NotificationFormat.ALERT));
+        assertEquals(Collections.singleton(USER3),
+            this.index.getCandidates(event("create", USER1), WIKI, users, NotificationFormat.ALERT));
+        assertEquals(Collections.emptySet(), this.index.getCandidates(event("update", USER2),
+            new WikiReference("otherwiki"), Collections.emptyList(), NotificationFormat.ALERT));
+
+        // Preferences are only loaded once
+        verify(this.notificationPreferenceManager, times(1)).getAllPreferences(USER1);
+
+        // Users removed from the wiki are removed from the index
+        assertEquals(Collections.emptySet(), this.index.getCandidates(event("update", USER2), WIKI,
+            Arrays.asList(USER2, USER3), NotificationFormat.ALERT));
+    }
+
+    @Test
+    void invalidateUser() throws Exception
+    {
+        when(this.notificationPreferenceManager.getAllPreferences(USER1))
+            .thenReturn(Arrays.asList(preference("update", NotificationFormat.ALERT, true)));
+
+        List<DocumentReference> users = Arrays.asList(USER1, USER2);
+
+        assertEquals(Collections.singleton(USER1),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+
+        when(this.notificationPreferenceManager.getAllPreferences(USER1))
+            .thenReturn(Arrays.asList(preference("update", NotificationFormat.ALERT, false)));
+
+        // Not reloaded until invalidated
+        assertEquals(Collections.singleton(USER1),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+
+        this.index.invalidateUser(USER1);
+
+        assertEquals(Collections.emptySet(),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+
+        when(this.notificationPreferenceManager.getAllPreferences(USER2))
+            .thenReturn(Arrays.asList(preference("update", NotificationFormat.ALERT, true)));
+
+        this.index.invalidateAll();
+
+        assertEquals(Collections.singleton(USER2),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+    }
+
+    @Test
+    void getCandidatesWhenPreferencesFailToLoad() throws Exception
+    {
+        when(this.notificationPreferenceManager.getAllPreferences(USER1))
+            .thenThrow(new NotificationException("error"));
+        when(this.notificationPreferenceManager.getAllPreferences(USER2))
+            .thenReturn(Arrays.asList(preference("update", NotificationFormat.ALERT, true)));
+
+        List<DocumentReference> users = Arrays.asList(USER1, USER2);
+
+        // The user is considered listening to all the events until its preferences can be loaded
+        assertEquals(new HashSet<>(users),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+        assertEquals(Collections.singleton(USER1),
+            this.index.getCandidates(event("create", USER2), WIKI, users, NotificationFormat.ALERT));
+
+        // The preferences are not loaded again for each event
+        verify(this.notificationPreferenceManager, times(1)).getAllPreferences(USER1);
+        assertEquals("Failed to index the notifications preferences of [wiki:XWiki.user1]: "
+            + "NotificationException: error", this.logCapture.getMessage(0));
+
+        // But they are as soon as they change
+        doReturn(Arrays.asList(preference("create", NotificationFormat.ALERT, true)))
+            .when(this.notificationPreferenceManager).getAllPreferences(USER1);
+        this.index.invalidateUser(USER1);
+
+        assertEquals(Collections.singleton(USER2),
+            this.index.getCandidates(event("update", USER2), WIKI, users, NotificationFormat.ALERT));
+        assertEquals(Collections.singleton(USER1),
+            this.index.getCandidates(event("create", USER2), WIKI, users, NotificationFormat.ALERT));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal.script;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.notifications.notifiers.internal.UserEventDispatcher;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link NotificationPrefilteringScriptService}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class NotificationPrefilteringScriptServiceTest
+{
+    @InjectMockComponents
+    private NotificationPrefilteringScriptService scriptService;
+
+    @MockComponent
+    private UserEventDispatcher dispatcher;
+
+    @Test
+    void getState()
+    {
+        when(this.dispatcher.getQueueSize()).thenReturn(3);
+        when(this.dispatcher.getQueueCapacity()).thenReturn(10);
+        when(this.dispatcher.getOldestEventAge()).thenReturn(42L);
+        when(this.dispatcher.isOverflowing()).thenReturn(true);
+
+        assertEquals(3, this.scriptService.getQueueSize());
+        assertEquals(10, this.scriptService.getQueueCapacity());
+        assertEquals(42L, this.scriptService.getOldestEventAge());
+        assertTrue(this.scriptService.isOverflowing());
+    }
+}
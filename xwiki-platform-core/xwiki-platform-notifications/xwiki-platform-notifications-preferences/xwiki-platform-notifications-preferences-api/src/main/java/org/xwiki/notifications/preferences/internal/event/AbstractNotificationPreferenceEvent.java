@@ -25,6 +25,9 @@
 
 /**
  * Base class for event generated when notification preferences are manipulated.
+ * <p>
+ * The event source is the reference of the document holding the preferences: the user profile or the wiki
+ * administration for the default preferences of the wiki.
  * 
  * @version $Id$
  * @since 10.11.4
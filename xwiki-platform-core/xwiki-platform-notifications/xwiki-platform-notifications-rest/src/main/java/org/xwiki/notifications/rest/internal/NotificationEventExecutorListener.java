@@ -19,6 +19,8 @@
  */
 package org.xwiki.notifications.rest.internal;
 
+import java.util.Arrays;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -26,13 +28,20 @@
 import org.xwiki.bridge.event.WikiCreatedEvent;
 import org.xwiki.bridge.event.WikiDeletedEvent;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.EventStatus;
 import org.xwiki.eventstream.events.EventStreamAddedEvent;
 import org.xwiki.eventstream.events.EventStreamDeletedEvent;
 import org.xwiki.eventstream.internal.events.EventStatusAddOrUpdatedEvent;
 import org.xwiki.eventstream.internal.events.EventStatusDeletedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.notifications.filters.internal.event.AbstractNotificationFilterPreferenceEvent;
 import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceAddOrUpdatedEvent;
 import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceDeletedEvent;
 import org.xwiki.notifications.notifiers.internal.DefaultNotificationCacheManager;
+import org.xwiki.notifications.preferences.internal.event.AbstractNotificationPreferenceEvent;
 import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceAddedEvent;
 import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceDeletedEvent;
 import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceUpdatedEvent;
@@ -41,6 +50,8 @@
 
 /**
  * A listener used to invalidate the notification event cache when a new event is stored.
+ * <p>
+ * When possible only the cache of the concerned user is invalidated.
  * 
  * @version $Id$
  * @since 10.11.4
@@ -56,9 +67,18 @@ public class NotificationEventExecutorListener extends AbstractEventListener
      */
     public static final String NAME = "NotificationEventExecutorListener";
 
+    private static final LocalDocumentReference GLOBAL_PREFERENCES = new LocalDocumentReference(
+        Arrays.asList("XWiki", "Notifications", "Code"), "NotificationAdministration");
+
     @Inject
     private DefaultNotificationCacheManager cache;
 
+    @Inject
+    private NotificationConfiguration configuration;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
     /**
      * The default constructor.
      */
@@ -74,6 +94,34 @@ public NotificationEventExecutorListener()
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
-        this.cache.flushLongCache();
+        if (event instanceof EventStatusAddOrUpdatedEvent || event instanceof EventStatusDeletedEvent) {
+            if (source instanceof EventStatus) {
+                // Only the notifications of the entity associated with the status changed
+                this.cache.flushEntityCache(((EventStatus) source).getEntityId());
+            } else {
+                this.cache.flushLongCache();
+            }
+        } else if (event instanceof EventStreamAddedEvent && this.configuration.isEventPrefilteringEnabled()) {
+            // With pre filtering the notifications based on the user event statuses get the new event through a status
+            // (which triggers its own event) so only the results based on all the events are impacted (guest users,
+            // requests not using the user preferences, etc.)
+            this.cache.flushEventsCache();
+        } else if (event instanceof AbstractNotificationPreferenceEvent
+            || event instanceof AbstractNotificationFilterPreferenceEvent) {
+            onPreferenceEvent(source);
+        } else {
+            this.cache.flushLongCache();
+        }
+    }
+
+    private void onPreferenceEvent(Object source)
+    {
+        if (source instanceof DocumentReference
+            && !((DocumentReference) source).getLocalDocumentReference().equals(GLOBAL_PREFERENCES)) {
+            // Only the notifications of the user owning the preferences changed
+            this.cache.flushEntityCache(this.serializer.serialize(source));
+        } else {
+            this.cache.flushLongCache();
+        }
     }
 }
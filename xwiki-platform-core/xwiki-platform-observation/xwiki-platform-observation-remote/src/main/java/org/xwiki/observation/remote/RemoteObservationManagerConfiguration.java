@@ -22,6 +22,7 @@
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Provide configuration for remote observation manager.
@@ -46,4 +47,38 @@
      * @return the identifier of the network adapter implementation to use to actually send and receive network messages
      */
     String getNetworkAdapter();
+
+    /**
+     * @return the maximum number of events waiting to be sent to the other members, 0 to send the events synchronously
+     *         from the thread which fired them
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getSendQueueSize()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of received events waiting to be injected in the local observation manager, 0 to
+     *         inject them directly from the network thread
+     * @since 12.7RC1
+     */
+    @Unstable
+    default int getReceiveQueueSize()
+    {
+        return 0;
+    }
+
+    /**
+     * @return true if the events waiting to be sent should be grouped in a single message using a compact encoding,
+     *         false to send each event in its own Java serialized message, the only format understood by members
+     *         running an older version
+     * @since 12.7RC1
+     */
+    @Unstable
+    default boolean isBatchEnabled()
+    {
+        return false;
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.converter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Encode a remote event in a compact binary form to avoid Java serialization of the most common events. The hint of
+ * the component is written along with the encoded event so that the receiving member can find the codec to use to
+ * decode it, it should be short and never change.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Role
+@Unstable
+public interface RemoteEventDataCodec
+{
+    /**
+     * @param remoteEvent the remote event to encode
+     * @return true if the codec knows how to encode this event without losing any information
+     */
+    boolean canEncode(RemoteEventData remoteEvent);
+
+    /**
+     * @param remoteEvent the remote event to encode
+     * @param output the output where to write the encoded event
+     * @throws IOException when failing to write the event
+     */
+    void encode(RemoteEventData remoteEvent, DataOutput output) throws IOException;
+
+    /**
+     * @param input the input from which to read the encoded event
+     * @return the decoded remote event
+     * @throws IOException when failing to read the event
+     */
+    RemoteEventData decode(DataInput input) throws IOException;
+}
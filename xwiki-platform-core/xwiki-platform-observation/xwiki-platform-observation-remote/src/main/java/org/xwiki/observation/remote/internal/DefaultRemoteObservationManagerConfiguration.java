@@ -40,6 +40,8 @@
 @Singleton
 public class DefaultRemoteObservationManagerConfiguration implements RemoteObservationManagerConfiguration
 {
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+
     /**
      * USed to access configuration storage.
      */
@@ -69,4 +71,22 @@ public String getNetworkAdapter()
     {
         return this.configurationSource.getProperty("observation.remote.networkadapter", "jgroups");
     }
+
+    @Override
+    public int getSendQueueSize()
+    {
+        return this.configurationSource.getProperty("observation.remote.sendQueueSize", DEFAULT_QUEUE_SIZE);
+    }
+
+    @Override
+    public int getReceiveQueueSize()
+    {
+        return this.configurationSource.getProperty("observation.remote.receiveQueueSize", DEFAULT_QUEUE_SIZE);
+    }
+
+    @Override
+    public boolean isBatchEnabled()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch", false);
+    }
 }
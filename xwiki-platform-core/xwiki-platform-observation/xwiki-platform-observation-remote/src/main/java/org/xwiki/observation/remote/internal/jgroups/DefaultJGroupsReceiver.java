@@ -19,6 +19,12 @@
  */
 package org.xwiki.observation.remote.internal.jgroups;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -28,20 +34,26 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
 import org.xwiki.observation.remote.RemoteEventData;
 import org.xwiki.observation.remote.RemoteObservationManager;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
 import org.xwiki.observation.remote.jgroups.JGroupsReceiver;
 
 /**
  * Default implementation of JGroupsReceiver. Receive remote events and send them as is to
  * {@link RemoteObservationManager} to be converted and injected as local events.
+ * <p>
+ * When a receive queue is configured the events are injected by a dedicated thread so that the JGroups thread is not
+ * blocked by the local listeners.
  *
  * @version $Id$
  * @since 2.0M3
  */
 @Component
 @Singleton
-public class DefaultJGroupsReceiver extends ReceiverAdapter implements JGroupsReceiver
+public class DefaultJGroupsReceiver extends ReceiverAdapter implements JGroupsReceiver, Initializable, Disposable
 {
     /**
      * Used to send events for conversion.
@@ -60,6 +72,41 @@ public class DefaultJGroupsReceiver extends ReceiverAdapter implements JGroupsRe
     @Inject
     private Logger logger;
 
+    @Inject
+    private RemoteObservationManagerConfiguration configuration;
+
+    @Inject
+    private RemoteEventDataBatchCodec batchCodec;
+
+    /**
+     * The received events waiting to be injected, {@code null} when the events are injected by the JGroups thread.
+     */
+    private BlockingQueue<RemoteEventData> receiveQueue;
+
+    private Thread receiverThread;
+
+    @Override
+    public void initialize()
+    {
+        int queueSize = this.configuration.getReceiveQueueSize();
+
+        if (queueSize > 0) {
+            this.receiveQueue = new ArrayBlockingQueue<>(queueSize);
+
+            this.receiverThread = new Thread(this::notifyQueuedEvents, "XWiki remote events receiver");
+            this.receiverThread.setDaemon(true);
+            this.receiverThread.start();
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.receiverThread != null) {
+            this.receiverThread.interrupt();
+        }
+    }
+
     /**
      * @return the RemoteObservationManager
      */
@@ -79,10 +126,59 @@ public RemoteObservationManager getRemoteObservationManager()
     @Override
     public void receive(Message msg)
     {
-        RemoteEventData remoteEvent = (RemoteEventData) msg.getObject();
+        for (RemoteEventData remoteEvent : decode(msg)) {
+            this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
 
-        this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+            if (this.receiveQueue != null) {
+                try {
+                    // Block the JGroups thread when the queue is full so that the members slow down
+                    this.receiveQueue.put(remoteEvent);
+                } catch (InterruptedException e) {
+                    this.logger.warn("Interrupted while waiting to handle remote event [{}]", remoteEvent);
 
-        getRemoteObservationManager().notify(remoteEvent);
+                    Thread.currentThread().interrupt();
+
+                    return;
+                }
+            } else {
+                getRemoteObservationManager().notify(remoteEvent);
+            }
+        }
+    }
+
+    private List<RemoteEventData> decode(Message msg)
+    {
+        if (RemoteEventDataBatchCodec.isBatch(msg.getRawBuffer(), msg.getOffset(), msg.getLength())) {
+            try {
+                return this.batchCodec.decode(msg.getRawBuffer(), msg.getOffset(), msg.getLength());
+            } catch (IOException e) {
+                this.logger.error("Failed to decode remote events message [{}]", msg, e);
+
+                return Collections.emptyList();
+            }
+        }
+
+        // Message containing a single serialized event
+        return Collections.singletonList((RemoteEventData) msg.getObject());
+    }
+
+    private void notifyQueuedEvents()
+    {
+        while (!Thread.currentThread().isInterrupted()) {
+            RemoteEventData remoteEvent;
+            try {
+                remoteEvent = this.receiveQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+
+            try {
+                getRemoteObservationManager().notify(remoteEvent);
+            } catch (Exception e) {
+                this.logger.error("Failed to handle remote event [{}]", remoteEvent, e);
+            }
+        }
     }
 }
@@ -23,8 +23,13 @@
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -42,14 +47,21 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.environment.Environment;
 import org.xwiki.observation.remote.NetworkAdapter;
 import org.xwiki.observation.remote.RemoteEventData;
 import org.xwiki.observation.remote.RemoteEventException;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
 import org.xwiki.observation.remote.jgroups.JGroupsReceiver;
 
 /**
  * JGroups based implementation of {@link NetworkAdapter}.
+ * <p>
+ * When a send queue is configured the events are sent by a dedicated thread. If batching is enabled this thread groups
+ * all the events waiting in the queue in a single message encoded by {@link RemoteEventDataBatchCodec}. Otherwise, and
+ * always when the events are sent synchronously, each event is sent in its own Java serialized message, which is the
+ * only format understood by members running an older version.
  *
  * @version $Id$
  * @since 2.0RC1
@@ -57,13 +69,28 @@
 @Component
 @Named("jgroups")
 @Singleton
-public class JGroupsNetworkAdapter implements NetworkAdapter
+public class JGroupsNetworkAdapter implements NetworkAdapter, Disposable
 {
     /**
      * Relative path where to find jgroups channels configurations.
      */
     public static final String CONFIGURATION_PATH = "observation/remote/jgroups/";
 
+    /**
+     * The maximum number of events to send in a single message.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * The maximum time to wait for the queued events to be sent when stopping the channels.
+     */
+    private static final long STOP_TIMEOUT = 10000;
+
+    /**
+     * Queued to stop the sender thread.
+     */
+    private static final RemoteEventData STOP = new RemoteEventData();
+
     /**
      * Used to lookup the receiver corresponding to the channel identifier.
      */
@@ -76,30 +103,144 @@ public class JGroupsNetworkAdapter implements NetworkAdapter
     @Inject
     private Logger logger;
 
+    @Inject
+    private RemoteObservationManagerConfiguration configuration;
+
+    @Inject
+    private RemoteEventDataBatchCodec batchCodec;
+
     /**
      * The network channels.
      */
     private Map<String, JChannel> channels = new ConcurrentHashMap<String, JChannel>();
 
+    /**
+     * The events waiting to be sent, {@code null} when the events are sent synchronously.
+     */
+    private volatile BlockingQueue<RemoteEventData> sendQueue;
+
+    private Thread senderThread;
+
     @Override
     public void send(RemoteEventData remoteEvent)
     {
         this.logger.debug("Send JGroups remote event [" + remoteEvent + "]");
 
-        // Send the message to the whole group
-        Message message = new Message(null, remoteEvent);
+        BlockingQueue<RemoteEventData> queue = this.sendQueue;
+        if (queue != null) {
+            try {
+                queue.put(remoteEvent);
+            } catch (InterruptedException e) {
+                this.logger.warn("Interrupted while waiting to send remote event [{}]", remoteEvent);
+
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            sendMessage(new Message(null, remoteEvent), remoteEvent);
+        }
+    }
+
+    private void sendBatch(List<RemoteEventData> remoteEvents)
+    {
+        byte[] buffer;
+        try {
+            buffer = this.batchCodec.encode(remoteEvents);
+        } catch (IOException e) {
+            this.logger.error("Failed to encode remote events [{}]", remoteEvents, e);
 
+            return;
+        }
+
+        sendMessage(new Message(null, buffer), remoteEvents);
+    }
+
+    private void sendMessage(Message message, Object remoteEvents)
+    {
         // Send message to JGroups channels
         for (Map.Entry<String, JChannel> entry : this.channels.entrySet()) {
             try {
                 entry.getValue().send(message);
             } catch (Exception e) {
                 this.logger
-                    .error("Failed to send message [" + remoteEvent + "] to the channel [" + entry.getKey() + "]", e);
+                    .error("Failed to send message [" + remoteEvents + "] to the channel [" + entry.getKey() + "]", e);
             }
         }
     }
 
+    private void sendQueuedEvents(BlockingQueue<RemoteEventData> queue, boolean batch)
+    {
+        List<RemoteEventData> remoteEvents = new ArrayList<>(MAX_BATCH_SIZE);
+
+        boolean stop = false;
+        while (!stop) {
+            try {
+                remoteEvents.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+
+            // Send in the same message all the events fired while the previous message was being sent
+            queue.drainTo(remoteEvents, MAX_BATCH_SIZE - 1);
+
+            stop = remoteEvents.remove(STOP);
+
+            if (batch) {
+                if (!remoteEvents.isEmpty()) {
+                    sendBatch(remoteEvents);
+                }
+            } else {
+                for (RemoteEventData remoteEvent : remoteEvents) {
+                    sendMessage(new Message(null, remoteEvent), remoteEvent);
+                }
+            }
+
+            remoteEvents.clear();
+        }
+    }
+
+    private synchronized void startSender()
+    {
+        int queueSize = this.configuration.getSendQueueSize();
+
+        if (this.senderThread == null && queueSize > 0) {
+            BlockingQueue<RemoteEventData> queue = new ArrayBlockingQueue<>(queueSize);
+            boolean batch = this.configuration.isBatchEnabled();
+
+            this.senderThread = new Thread(() -> sendQueuedEvents(queue, batch), "XWiki remote events sender");
+            this.senderThread.setDaemon(true);
+            this.senderThread.start();
+
+            this.sendQueue = queue;
+        }
+    }
+
+    private synchronized void stopSender()
+    {
+        BlockingQueue<RemoteEventData> queue = this.sendQueue;
+
+        if (queue != null) {
+            // Make the next events synchronous
+            this.sendQueue = null;
+
+            try {
+                // Wait for the events already in the queue to be sent
+                if (queue.offer(STOP, STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    this.senderThread.join(STOP_TIMEOUT);
+                } else {
+                    this.senderThread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                this.logger.warn("Interrupted while waiting for the remote events to be sent");
+
+                Thread.currentThread().interrupt();
+            }
+
+            this.senderThread = null;
+        }
+    }
+
     @Override
     public void startChannel(String channelId) throws RemoteEventException
     {
@@ -113,6 +254,8 @@ public void startChannel(String channelId) throws RemoteEventException
             channel.connect("event");
 
             this.channels.put(channelId, channel);
+
+            startSender();
         } catch (Exception e) {
             throw new RemoteEventException("Failed to create channel [" + channelId + "]", e);
         }
@@ -218,6 +361,8 @@ private ProtocolStackConfigurator loadChannelConfiguration(String channelId) thr
     @Override
     public void stopAllChannels() throws RemoteEventException
     {
+        stopSender();
+
         for (Map.Entry<String, JChannel> channelEntry : this.channels.entrySet()) {
             channelEntry.getValue().close();
         }
@@ -226,4 +371,10 @@ public void stopAllChannels() throws RemoteEventException
 
         this.logger.info("All channels stopped");
     }
+
+    @Override
+    public void dispose()
+    {
+        stopSender();
+    }
 }
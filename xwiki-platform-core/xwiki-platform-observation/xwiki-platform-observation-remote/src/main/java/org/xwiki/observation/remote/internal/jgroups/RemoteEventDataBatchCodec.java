@@ -0,0 +1,221 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jgroups.util.Util;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.converter.RemoteEventDataCodec;
+
+/**
+ * Encode several remote events in a single network message. Each event is encoded with the first
+ * {@link RemoteEventDataCodec} supporting it and fallback on Java serialization.
+ * <p>
+ * The format is: the {@link #MAGIC} bytes, the format version, the number of events and, for each event, the hint of
+ * the codec (empty for Java serialization), the size of the encoded event and the encoded event.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = RemoteEventDataBatchCodec.class)
+@Singleton
+public class RemoteEventDataBatchCodec
+{
+    /**
+     * The bytes starting a batch message. They cannot be mistaken with the first byte of a message produced by
+     * {@link Util#objectToByteBuffer(Object)}, which is the type of the serialized object.
+     */
+    static final byte[] MAGIC = {'X', 'E'};
+
+    private static final byte VERSION = 1;
+
+    private static final String JAVA_SERIALIZATION = "";
+
+    @Inject
+    private ComponentManager componentManager;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * @param buffer the message buffer
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message
+     * @return true if the message was produced by {@link #encode(List)}
+     */
+    public static boolean isBatch(byte[] buffer, int offset, int length)
+    {
+        if (buffer == null || length <= MAGIC.length) {
+            return false;
+        }
+
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (buffer[offset + i] != MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param remoteEvents the events to encode
+     * @return the message content
+     * @throws IOException when failing to write the message
+     */
+    public byte[] encode(List<RemoteEventData> remoteEvents) throws IOException
+    {
+        Map<String, RemoteEventDataCodec> codecs = getCodecs();
+
+        List<String> hints = new ArrayList<>(remoteEvents.size());
+        List<byte[]> payloads = new ArrayList<>(remoteEvents.size());
+        for (RemoteEventData remoteEvent : remoteEvents) {
+            encode(remoteEvent, codecs, hints, payloads);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        output.write(MAGIC);
+        output.writeByte(VERSION);
+        output.writeInt(payloads.size());
+        for (int i = 0; i < payloads.size(); ++i) {
+            byte[] payload = payloads.get(i);
+
+            output.writeUTF(hints.get(i));
+            output.writeInt(payload.length);
+            output.write(payload);
+        }
+
+        output.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private void encode(RemoteEventData remoteEvent, Map<String, RemoteEventDataCodec> codecs, List<String> hints,
+        List<byte[]> payloads)
+    {
+        for (Map.Entry<String, RemoteEventDataCodec> entry : codecs.entrySet()) {
+            RemoteEventDataCodec codec = entry.getValue();
+
+            if (codec.canEncode(remoteEvent)) {
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream output = new DataOutputStream(bytes);
+                    codec.encode(remoteEvent, output);
+                    output.flush();
+
+                    hints.add(entry.getKey());
+                    payloads.add(bytes.toByteArray());
+
+                    return;
+                } catch (IOException e) {
+                    this.logger.warn("Failed to encode remote event [{}] with codec [{}], using Java serialization",
+                        remoteEvent, entry.getKey(), e);
+                }
+            }
+        }
+
+        try {
+            payloads.add(Util.objectToByteBuffer(remoteEvent));
+            hints.add(JAVA_SERIALIZATION);
+        } catch (Exception e) {
+            this.logger.error("Failed to serialize remote event [{}]", remoteEvent, e);
+        }
+    }
+
+    /**
+     * @param buffer the message buffer
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message
+     * @return the decoded events
+     * @throws IOException when failing to read the message
+     */
+    public List<RemoteEventData> decode(byte[] buffer, int offset, int length) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(buffer, offset, length));
+
+        input.skipBytes(MAGIC.length);
+        byte version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported remote events message version [%s]", version));
+        }
+
+        int count = input.readInt();
+        List<RemoteEventData> remoteEvents = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String hint = input.readUTF();
+            byte[] payload = new byte[input.readInt()];
+            input.readFully(payload);
+
+            RemoteEventData remoteEvent = decode(hint, payload);
+            if (remoteEvent != null) {
+                remoteEvents.add(remoteEvent);
+            }
+        }
+
+        return remoteEvents;
+    }
+
+    private RemoteEventData decode(String hint, byte[] payload)
+    {
+        try {
+            if (hint.equals(JAVA_SERIALIZATION)) {
+                return Util.objectFromByteBuffer(payload);
+            }
+
+            RemoteEventDataCodec codec = this.componentManager.getInstance(RemoteEventDataCodec.class, hint);
+
+            return codec.decode(new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (Exception e) {
+            this.logger.error("Failed to decode a remote event encoded with codec [{}]", hint, e);
+
+            return null;
+        }
+    }
+
+    private Map<String, RemoteEventDataCodec> getCodecs()
+    {
+        try {
+            return new LinkedHashMap<>(this.componentManager.getInstanceMap(RemoteEventDataCodec.class));
+        } catch (ComponentLookupException e) {
+            this.logger.error("Failed to lookup the remote event codecs", e);
+
+            return Collections.emptyMap();
+        }
+    }
+}
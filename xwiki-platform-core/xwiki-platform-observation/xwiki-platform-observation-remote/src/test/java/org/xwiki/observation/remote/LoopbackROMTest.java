@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.remote.test.AbstractROMTestCase;
+import org.xwiki.observation.remote.test.TestEvent;
+import org.xwiki.test.annotation.AllComponents;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measure the number of events which can be transported in batches from one cluster member to another using an in JVM
+ * channel.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class LoopbackROMTest extends AbstractROMTestCase
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackROMTest.class);
+
+    private static final int EVENTS = 20000;
+
+    @Override
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        super.beforeEach();
+
+        getConfigurationSource1().setProperty("observation.remote.channels", Arrays.asList("loopback"));
+        getConfigurationSource1().setProperty("observation.remote.batch", true);
+        RemoteObservationManager rom = getComponentManager2().getInstance(RemoteObservationManager.class);
+        rom.startChannel("loopback");
+    }
+
+    @Test
+    public void throughput() throws InterruptedException
+    {
+        EventListener remoteListener = mock(EventListener.class, "remote");
+
+        TestEvent event = new TestEvent();
+
+        CountDownLatch received = new CountDownLatch(EVENTS);
+
+        when(remoteListener.getName()).thenReturn("mylistener");
+        when(remoteListener.getEvents()).thenReturn(Arrays.asList(event));
+        doAnswer(invocation -> {
+            received.countDown();
+
+            return null;
+        }).when(remoteListener).onEvent(any(), any(), any());
+
+        getObservationManager2().addListener(remoteListener);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < EVENTS; ++i) {
+            getObservationManager1().notify(event, "source " + i, "data " + i);
+        }
+
+        assertTrue(received.await(60, TimeUnit.SECONDS),
+            String.format("Only [%s] events received", EVENTS - received.getCount()));
+
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LOGGER.info("Transported [{}] events in [{}] ms ([{}] events/s)", EVENTS, duration,
+            EVENTS * 1000L / Math.max(duration, 1));
+    }
+}
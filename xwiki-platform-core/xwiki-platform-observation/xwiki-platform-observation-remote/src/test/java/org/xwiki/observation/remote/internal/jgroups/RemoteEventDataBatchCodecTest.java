@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jgroups.util.Util;
+import org.junit.jupiter.api.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.converter.RemoteEventDataCodec;
+import org.xwiki.observation.remote.test.TestEvent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link RemoteEventDataBatchCodec}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class RemoteEventDataBatchCodecTest
+{
+    /**
+     * Encode the events which have a {@link String} source.
+     */
+    private static class StringSourceCodec implements RemoteEventDataCodec
+    {
+        @Override
+        public boolean canEncode(RemoteEventData remoteEvent)
+        {
+            return remoteEvent.getSource() instanceof String;
+        }
+
+        @Override
+        public void encode(RemoteEventData remoteEvent, DataOutput output) throws IOException
+        {
+            output.writeUTF((String) remoteEvent.getSource());
+        }
+
+        @Override
+        public RemoteEventData decode(DataInput input) throws IOException
+        {
+            return new RemoteEventData(new TestEvent(), input.readUTF(), null);
+        }
+    }
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @InjectMockComponents
+    private RemoteEventDataBatchCodec codec;
+
+    @Test
+    void encodeDecode() throws Exception
+    {
+        this.componentManager.registerComponent(RemoteEventDataCodec.class, "string", new StringSourceCodec());
+
+        List<RemoteEventData> events = Arrays.asList(new RemoteEventData(new TestEvent(), "source", null),
+            new RemoteEventData(new TestEvent(), 42, "data"));
+
+        byte[] message = this.codec.encode(events);
+
+        assertTrue(RemoteEventDataBatchCodec.isBatch(message, 0, message.length));
+
+        List<RemoteEventData> result = this.codec.decode(message, 0, message.length);
+
+        assertEquals(2, result.size());
+        assertEquals("source", result.get(0).getSource());
+        assertEquals(42, result.get(1).getSource());
+        assertEquals("data", result.get(1).getData());
+    }
+
+    @Test
+    void isBatch() throws Exception
+    {
+        byte[] serialized = Util.objectToByteBuffer(new RemoteEventData(new TestEvent(), "source", null));
+
+        assertFalse(RemoteEventDataBatchCodec.isBatch(serialized, 0, serialized.length));
+        assertFalse(RemoteEventDataBatchCodec.isBatch(null, 0, 0));
+    }
+}
@@ -328,6 +328,12 @@ public XDOM getXDOM()
         return getDocument().getXDOM();
     }
 
+    @Override
+    public XDOM getReadOnlyXDOM()
+    {
+        return getDocument().getReadOnlyXDOM();
+    }
+
     @Override
     public String getTags(XWikiContext context)
     {
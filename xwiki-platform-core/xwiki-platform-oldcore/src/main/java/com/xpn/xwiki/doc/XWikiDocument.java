@@ -530,6 +530,13 @@ private static ObjectReferenceResolver<EntityReference> getCurrentReferenceObjec
      */
     private XWikiDocument originalDocument;
 
+    /**
+     * Indicate that this document is its own original document, which is only valid until it's modified.
+     *
+     * @see #resetOriginalDocument()
+     */
+    private boolean sharedOriginalDocument;
+
     /**
      * Used to display the title and the content of this document. Do not inject the component here to avoid any simple
      * new XWikiDocument to cause many useless initialization, in particular, during initialization of the stub context
@@ -986,7 +993,7 @@ public String getVersion()
     public void setVersion(String version)
     {
         if (!StringUtils.isEmpty(version)) {
-            this.version = new Version(version);
+            setRCSVersion(new Version(version));
         }
     }
 
@@ -1000,6 +1007,10 @@ public Version getRCSVersion()
 
     public void setRCSVersion(Version version)
     {
+        if (!Objects.equals(version, this.version)) {
+            snapshotOriginalDocument();
+        }
+
         this.version = version;
     }
 
@@ -1009,8 +1020,11 @@ public void setRCSVersion(Version version)
      *         this document (useful for example to send the correct notifications to document change listeners).
      */
     @Override
-    public XWikiDocument getOriginalDocument()
+    public synchronized XWikiDocument getOriginalDocument()
     {
+        // Make sure the original document is not affected by future modifications of this document
+        snapshotOriginalDocument();
+
         return this.originalDocument;
     }
 
@@ -1019,9 +1033,49 @@ public XWikiDocument getOriginalDocument()
      *            it, prior to the last time it was saved
      * @see #getOriginalDocument()
      */
-    public void setOriginalDocument(XWikiDocument originalDocument)
+    public synchronized void setOriginalDocument(XWikiDocument originalDocument)
     {
         this.originalDocument = originalDocument;
+        this.sharedOriginalDocument = false;
+    }
+
+    /**
+     * Indicate that the current state of this document is its original state (for example because it was just loaded
+     * from the store). The copy returned by {@link #getOriginalDocument()} is only created when actually needed, that
+     * is before this document is first marked dirty or when it's cloned or its original document asked. Documents
+     * which are only read never pay for it.
+     *
+     * @since 12.7RC1
+     */
+    @Unstable
+    public synchronized void resetOriginalDocument()
+    {
+        this.originalDocument = this;
+        this.sharedOriginalDocument = true;
+    }
+
+    /**
+     * Copy the original document of the passed document. The passed document itself is never shared as original
+     * document: it's usually the cached instance, which can be modified in place in ways not tracked by its dirty flags
+     * (for example by modifying its objects), and this would corrupt the original document of its clones.
+     */
+    private void copyOriginalDocument(XWikiDocument document)
+    {
+        setOriginalDocument(document.getOriginalDocument());
+    }
+
+    /**
+     * Copy the current state of this document as its original document if it's still its own original document. It
+     * must be called before any modification since the current state is not the original state anymore after that.
+     */
+    private synchronized void snapshotOriginalDocument()
+    {
+        if (this.sharedOriginalDocument) {
+            // Reset first so that the modifications possibly made while cloning don't try to copy the document again
+            this.sharedOriginalDocument = false;
+
+            this.originalDocument = cloneInternal(getDocumentReference(), true, false, false);
+        }
     }
 
     /**
@@ -1075,12 +1129,12 @@ public XWikiDocument getParentDoc()
     public void setParentReference(EntityReference parentReference)
     {
         if (!Objects.equals(getRelativeParentReference(), parentReference)) {
+            setMetaDataDirty(true);
+
             this.parentReference = intern(parentReference);
 
             // Clean the absolute parent reference cache to rebuild it next time getParentReference is called.
             this.parentReferenceCache = null;
-
-            setMetaDataDirty(true);
         }
     }
 
@@ -1117,12 +1171,15 @@ public void setContent(String content)
 
         boolean notEqual = !content.equals(this.content);
 
+        if (notEqual) {
+            setContentDirty(true);
+        }
+
         this.content = content;
 
         if (notEqual) {
             // invalidate parsed xdom
             this.xdomCache = null;
-            setContentDirty(true);
             setWikiNode(null);
         }
     }
@@ -1618,10 +1675,10 @@ public void setDocumentReference(DocumentReference reference)
 
     private void setDocumentReferenceInternal(DocumentReference reference)
     {
-        this.documentReference = intern(reference);
-
         setMetaDataDirty(true);
 
+        this.documentReference = intern(reference);
+
         // Clean various caches
 
         this.keyCache = null;
@@ -1766,9 +1823,9 @@ public String getFormat()
     public void setFormat(String format)
     {
         if (!format.equals(this.format)) {
-            this.format = format;
-
             setMetaDataDirty(true);
+
+            this.format = format;
         }
     }
 
@@ -2041,11 +2098,12 @@ public void setMeta(String meta)
 
     public void appendMeta(String meta)
     {
+        setMetaDataDirty(true);
+
         StringBuilder buf = new StringBuilder(this.meta);
         buf.append(meta);
         buf.append("\n");
         this.meta = buf.toString();
-        setMetaDataDirty(true);
     }
 
     public boolean isContentDirty()
@@ -2085,6 +2143,10 @@ public static Version getNextVersion(Version version, boolean minorEdit)
 
     public void setContentDirty(boolean contentDirty)
     {
+        if (contentDirty) {
+            snapshotOriginalDocument();
+        }
+
         this.isContentDirty = contentDirty;
     }
 
@@ -2095,6 +2157,10 @@ public boolean isMetaDataDirty()
 
     public void setMetaDataDirty(boolean metaDataDirty)
     {
+        if (metaDataDirty) {
+            snapshotOriginalDocument();
+        }
+
         this.isMetaDataDirty = metaDataDirty;
     }
 
@@ -2499,6 +2565,9 @@ public Map<DocumentReference, List<BaseObject>> getXObjects()
      */
     public void setXObjects(Map<DocumentReference, List<BaseObject>> objects)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         if (objects == null) {
             // Make sure we don`t set a null objects map since we assume everywhere that it is not null when using it.
             objects = new HashMap<>();
@@ -2579,6 +2648,9 @@ public List<BaseClass> getXClasses(XWikiContext context)
      */
     public int createXObject(EntityReference classReference, XWikiContext context) throws XWikiException
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         DocumentReference absoluteClassReference = resolveClassReference(classReference);
         BaseObject object = BaseClass.newCustomClassInstance(absoluteClassReference, context);
         object.setOwnerDocument(this);
@@ -2681,6 +2753,9 @@ public Vector<BaseObject> getObjects(String className)
      */
     public void setXObjects(DocumentReference classReference, List<BaseObject> objects)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         // Remove existing objects
         List<BaseObject> existingbjects = this.xObjects.get(classReference);
         if (existingbjects != null) {
@@ -2991,6 +3066,9 @@ public void addObject(String className, BaseObject object)
     @Deprecated
     public void setXObject(DocumentReference classReference, int nb, BaseObject object)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         if (object != null) {
             object.setOwnerDocument(this);
             object.setNumber(nb);
@@ -3019,6 +3097,9 @@ public void setXObject(DocumentReference classReference, int nb, BaseObject obje
      */
     public void setXObject(int nb, BaseObject object)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         object.setOwnerDocument(this);
         object.setNumber(nb);
 
@@ -3061,6 +3142,9 @@ public void setNew(boolean aNew)
      */
     public void mergeXClass(XWikiDocument templatedoc)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         BaseClass bclass = getXClass();
         BaseClass tbclass = templatedoc.getXClass();
         if (tbclass != null) {
@@ -3194,8 +3278,8 @@ public String getTemplate()
     public void setTemplateDocumentReference(DocumentReference templateDocumentReference)
     {
         if (!Objects.equals(getTemplateDocumentReference(), templateDocumentReference)) {
-            this.templateDocumentReference = templateDocumentReference;
             setMetaDataDirty(true);
+            this.templateDocumentReference = templateDocumentReference;
         }
     }
 
@@ -3801,6 +3885,9 @@ public void readDocMetaFromForm(EditForm eform, XWikiContext context) throws XWi
      */
     public void setTags(String tagsStr, XWikiContext context) throws XWikiException
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         BaseClass tagsClass = context.getWiki().getTagClass(context);
 
         StaticListClass tagProp = (StaticListClass) tagsClass.getField(XWikiConstant.TAG_CLASS_PROP_TAGS);
@@ -4130,7 +4217,7 @@ public void clone(XWikiDocument document)
 
         this.elements = document.elements;
 
-        this.originalDocument = document.originalDocument;
+        copyOriginalDocument(document);
     }
 
     @Override
@@ -4160,6 +4247,12 @@ private void cloneDocumentArchive(XWikiDocument originalDocument) throws XWikiEx
     private XWikiDocument cloneInternal(DocumentReference newDocumentReference,
         boolean keepsIdentity,
         boolean cloneArchive)
+    {
+        return cloneInternal(newDocumentReference, keepsIdentity, cloneArchive, true);
+    }
+
+    private XWikiDocument cloneInternal(DocumentReference newDocumentReference, boolean keepsIdentity,
+        boolean cloneArchive, boolean copyOriginalDocument)
     {
         XWikiDocument doc = null;
 
@@ -4221,7 +4314,9 @@ private XWikiDocument cloneInternal(DocumentReference newDocumentReference,
 
             doc.elements = this.elements;
 
-            doc.originalDocument = this.originalDocument;
+            if (copyOriginalDocument) {
+                doc.copyOriginalDocument(this);
+            }
         } catch (Exception e) {
             // This should not happen
             LOGGER.error("Exception while cloning document", e);
@@ -4267,6 +4362,9 @@ public void copyAttachments(XWikiDocument sourceDocument)
      */
     private void copyAttachments(XWikiDocument sourceDocument, boolean overwrite)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         if (overwrite) {
             // Note: when clearing the attachment list, we automatically mark the document's metadata as dirty.
             getAttachmentList().clear();
@@ -5066,6 +5164,9 @@ public XWikiAttachment removeAttachment(XWikiAttachment attachment)
      */
     public XWikiAttachment removeAttachment(XWikiAttachment attachmentToRemove, boolean toRecycleBin)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         if (this.attachmentList.remove(attachmentToRemove)) {
             this.attachmentsToRemove.add(new XWikiAttachmentToRemove(attachmentToRemove, toRecycleBin));
             setMetaDataDirty(true);
@@ -5264,7 +5365,7 @@ private Set<EntityReference> getUniqueLinkedEntityReferences(XWikiContext contex
                 references = new LinkedHashSet<>();
 
                 // Document content
-                XDOM dom = getXDOM();
+                XDOM dom = getReadOnlyXDOM();
                 getUniqueLinkedEntityReferences(dom, entityType, references);
 
                 // XObjects
@@ -5511,6 +5612,9 @@ public List<String> getChildren(int nb, int start, XWikiContext context) throws
      */
     public void renameProperties(DocumentReference classReference, Map<String, String> fieldsToRename)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         List<BaseObject> objects = this.xObjects.get(classReference);
         if (objects == null) {
             return;
@@ -5556,9 +5660,9 @@ public void renameProperties(String className, Map<String, String> fieldsToRenam
      */
     public void addXObjectToRemove(BaseObject object)
     {
+        setMetaDataDirty(true);
         getXObjectsToRemove().add(object);
         object.setOwnerDocument(null);
-        setMetaDataDirty(true);
     }
 
     /**
@@ -5617,8 +5721,8 @@ public ArrayList<BaseObject> getObjectsToRemove()
      */
     public void setXObjectsToRemove(List<BaseObject> objectsToRemove)
     {
-        this.xObjectsToRemove = objectsToRemove;
         setMetaDataDirty(true);
+        this.xObjectsToRemove = objectsToRemove;
     }
 
     public List<String> getIncludedPages(XWikiContext context)
@@ -5639,7 +5743,7 @@ private List<String> getIncludedPagesInternal(XWikiContext context)
             return getIncludedPagesForXWiki10Syntax(getContent(), context);
         } else {
             // Find all include macros listed on the page
-            XDOM dom = getXDOM();
+            XDOM dom = getReadOnlyXDOM();
 
             List<String> result = new ArrayList<String>();
             List<MacroBlock> macroBlocks =
@@ -6215,10 +6319,10 @@ public Locale getLocale()
      */
     public void setLocale(Locale locale)
     {
-        this.locale = locale;
-
         setMetaDataDirty(true);
 
+        this.locale = locale;
+
         // Clean various caches
 
         this.keyCache = null;
@@ -6254,9 +6358,9 @@ public Locale getDefaultLocale()
 
     public void setDefaultLocale(Locale defaultLocale)
     {
-        this.defaultLocale = defaultLocale;
-
         setMetaDataDirty(true);
+
+        this.defaultLocale = defaultLocale;
     }
 
     public int getTranslation()
@@ -7077,7 +7181,7 @@ private String getDefaultEditModeInternal(XWikiContext context) throws XWikiExce
             // Find all include macros and extract the document names
             // TODO: Is there a good way not to hardcode the macro name? The macro itself shouldn't know
             // its own name since it's a deployment time concern.
-            for (Block macroBlock : getXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
+            for (Block macroBlock : getReadOnlyXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
                 // Find the document reference to include by checking the macro's "reference" parameter.
                 // For backward-compatibility we also check for a "document" parameter since this is the parameter name
                 // that was used prior to XWiki 3.4M1 when the "reference" one was introduced and thus when the
@@ -7173,9 +7277,9 @@ public String getDefaultTemplate()
 
     public void setDefaultTemplate(String defaultTemplate)
     {
-        this.defaultTemplate = defaultTemplate;
-
         setMetaDataDirty(true);
+
+        this.defaultTemplate = defaultTemplate;
     }
 
     public Vector<BaseObject> getComments()
@@ -8181,15 +8285,15 @@ public String getCustomClass()
 
     public void setCustomClass(String customClass)
     {
-        this.customClass = customClass;
         setMetaDataDirty(true);
+        this.customClass = customClass;
     }
 
     public void setValidationScript(String validationScript)
     {
-        this.validationScript = validationScript;
-
         setMetaDataDirty(true);
+
+        this.validationScript = validationScript;
     }
 
     public String getValidationScript()
@@ -8536,16 +8640,40 @@ public void convertSyntax(Syntax targetSyntax, XWikiContext context) throws XWik
     @Override
     public XDOM getXDOM()
     {
-        if (this.xdomCache == null) {
+        return getXDOM(true);
+    }
+
+    /**
+     * NOTE: This method caches the XDOM and returns the cached instance, which is shared with all the other callers. It
+     * must not be modified in any way (including by moving some of its blocks to another parent), use
+     * {@link #getXDOM()} to get a copy which can be transformed.
+     *
+     * @return the XDOM corresponding to the document's string content
+     * @since 12.7RC1
+     */
+    @Override
+    @Unstable
+    public XDOM getReadOnlyXDOM()
+    {
+        return getXDOM(false);
+    }
+
+    private XDOM getXDOM(boolean copy)
+    {
+        XDOM xdom = this.xdomCache;
+
+        if (xdom == null) {
             try {
-                this.xdomCache = parseContent(getContent());
+                xdom = parseContent(getContent());
             } catch (XWikiException e) {
                 ErrorBlockGenerator errorBlockGenerator = Utils.getComponent(ErrorBlockGenerator.class);
                 return new XDOM(errorBlockGenerator.generateErrorBlocks("Failed to render content", e, false));
             }
+
+            this.xdomCache = xdom;
         }
 
-        return this.xdomCache.clone();
+        return copy ? xdom.clone() : xdom;
     }
 
     /**
@@ -8781,6 +8909,9 @@ public EntityReference getRelativeParentReference()
 
     private BaseObject prepareXObject(EntityReference classReference)
     {
+        // The document is about to be modified
+        snapshotOriginalDocument();
+
         DocumentReference absoluteClassReference = resolveClassReference(classReference);
         BaseObject bobject = getXObject(absoluteClassReference);
         if (bobject == null) {
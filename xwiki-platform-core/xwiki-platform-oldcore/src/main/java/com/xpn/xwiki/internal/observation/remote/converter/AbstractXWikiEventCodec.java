@@ -0,0 +1,233 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.observation.remote.converter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.xwiki.observation.event.CancelableEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.FilterableEvent;
+import org.xwiki.observation.event.filter.AlwaysMatchingEventFilter;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.FixedNameEventFilter;
+import org.xwiki.observation.remote.converter.RemoteEventDataCodec;
+
+/**
+ * Provide some tools to encode the remote events produced by {@link AbstractXWikiEventConverter} implementations.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+public abstract class AbstractXWikiEventCodec implements RemoteEventDataCodec
+{
+    /**
+     * @return the supported event types, the index of the type in the list is written in the encoded event so only
+     *         add new types at the end
+     */
+    protected abstract List<Class<? extends Event>> getEventTypes();
+
+    /**
+     * @param eventType the type of the event to create
+     * @param filter the filter of the event to create
+     * @return the new event
+     */
+    protected abstract Event createEvent(Class<? extends Event> eventType, EventFilter filter);
+
+    /**
+     * @param event the remote event type
+     * @return true if the event can be encoded with {@link #writeEvent(Serializable, DataOutput)}
+     */
+    protected boolean canEncodeEvent(Serializable event)
+    {
+        if (event == null || !getEventTypes().contains(event.getClass())) {
+            return false;
+        }
+
+        if (event instanceof CancelableEvent && ((CancelableEvent) event).isCanceled()) {
+            return false;
+        }
+
+        if (!(event instanceof FilterableEvent)) {
+            return false;
+        }
+
+        EventFilter filter = ((FilterableEvent) event).getEventFilter();
+
+        // Only the filters which can be rebuilt from their name are supported
+        return filter != null && (filter.getClass() == FixedNameEventFilter.class
+            || filter.getClass() == AlwaysMatchingEventFilter.class);
+    }
+
+    /**
+     * @param event the remote event type
+     * @param output the output where to write the event
+     * @throws IOException when failing to write the event
+     */
+    protected void writeEvent(Serializable event, DataOutput output) throws IOException
+    {
+        output.writeByte(getEventTypes().indexOf(event.getClass()));
+
+        EventFilter filter = ((FilterableEvent) event).getEventFilter();
+        writeString(filter instanceof FixedNameEventFilter ? filter.getFilter() : null, output);
+    }
+
+    /**
+     * @param input the input from which to read the event
+     * @return the remote event type
+     * @throws IOException when failing to read the event
+     */
+    protected Serializable readEvent(DataInput input) throws IOException
+    {
+        int index = input.readByte();
+        List<Class<? extends Event>> eventTypes = getEventTypes();
+        if (index < 0 || index >= eventTypes.size()) {
+            throw new IOException(String.format("Unknown event type [%s]", index));
+        }
+
+        String name = readString(input);
+        EventFilter filter = name != null ? new FixedNameEventFilter(name) : new AlwaysMatchingEventFilter();
+
+        return (Serializable) createEvent(eventTypes.get(index), filter);
+    }
+
+    /**
+     * @param data the data produced by {@link AbstractXWikiEventConverter#serializeXWikiContext}
+     * @return true if the data can be encoded with {@link #writeContext(Serializable, DataOutput)}
+     */
+    protected boolean canEncodeContext(Serializable data)
+    {
+        return isStringMap(data, AbstractXWikiEventConverter.CONTEXT_WIKI, AbstractXWikiEventConverter.CONTEXT_USER);
+    }
+
+    /**
+     * @param data the data produced by {@link AbstractXWikiEventConverter#serializeXWikiContext}
+     * @param output the output where to write the context
+     * @throws IOException when failing to write the context
+     */
+    protected void writeContext(Serializable data, DataOutput output) throws IOException
+    {
+        Map<?, ?> map = (Map<?, ?>) data;
+
+        writeString((String) map.get(AbstractXWikiEventConverter.CONTEXT_WIKI), output);
+        writeString((String) map.get(AbstractXWikiEventConverter.CONTEXT_USER), output);
+    }
+
+    /**
+     * @param input the input from which to read the context
+     * @return the data expected by {@link AbstractXWikiEventConverter#unserializeXWikiContext}
+     * @throws IOException when failing to read the context
+     */
+    protected Serializable readContext(DataInput input) throws IOException
+    {
+        HashMap<String, Serializable> map = new HashMap<>();
+
+        map.put(AbstractXWikiEventConverter.CONTEXT_WIKI, readString(input));
+        map.put(AbstractXWikiEventConverter.CONTEXT_USER, readString(input));
+
+        return map;
+    }
+
+    /**
+     * @param value the value to check
+     * @param keys the allowed keys
+     * @return true if the value is a {@link Map} containing only the passed keys associated to {@link String} or
+     *         {@code null} values
+     */
+    protected boolean isStringMap(Serializable value, String... keys)
+    {
+        if (!(value instanceof Map)) {
+            return false;
+        }
+
+        List<String> allowedKeys = Arrays.asList(keys);
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!allowedKeys.contains(entry.getKey())
+                || (entry.getValue() != null && !(entry.getValue() instanceof String))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param value the string to write, can be {@code null}
+     * @param output the output where to write the string
+     * @throws IOException when failing to write the string
+     */
+    protected void writeString(String value, DataOutput output) throws IOException
+    {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * @param input the input from which to read the string
+     * @return the string, can be {@code null}
+     * @throws IOException when failing to read the string
+     */
+    protected String readString(DataInput input) throws IOException
+    {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * @param values the strings to write
+     * @param output the output where to write the strings
+     * @throws IOException when failing to write the strings
+     */
+    protected void writeStrings(Collection<String> values, DataOutput output) throws IOException
+    {
+        output.writeInt(values.size());
+        for (String value : values) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * @param input the input from which to read the strings
+     * @param converter called with each string
+     * @param <T> the type of the converted strings
+     * @return the converted strings
+     * @throws IOException when failing to read the strings
+     */
+    protected <T> List<T> readStrings(DataInput input, Function<String, T> converter) throws IOException
+    {
+        int size = input.readInt();
+        List<T> values = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(converter.apply(input.readUTF()));
+        }
+
+        return values;
+    }
+}
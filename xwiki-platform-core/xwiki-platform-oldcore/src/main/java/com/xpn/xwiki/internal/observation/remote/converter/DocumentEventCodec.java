@@ -0,0 +1,163 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.observation.remote.converter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.localization.LocaleUtils;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Encode the remote events produced by {@link DocumentEventConverter} without Java serialization.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component
+@Singleton
+@Named("document")
+public class DocumentEventCodec extends AbstractXWikiEventCodec
+{
+    private static final List<Class<? extends Event>> EVENTS =
+        Arrays.asList(DocumentDeletedEvent.class, DocumentCreatedEvent.class, DocumentUpdatedEvent.class);
+
+    private static final String[] DOCUMENT_STRINGS = {AbstractXWikiEventConverter.DOC_VERSION,
+        AbstractXWikiEventConverter.DOC_LANGUAGE, AbstractXWikiEventConverter.ORIGDOC_VERSION,
+        AbstractXWikiEventConverter.ORIGDOC_LANGUAGE};
+
+    @Override
+    protected List<Class<? extends Event>> getEventTypes()
+    {
+        return EVENTS;
+    }
+
+    @Override
+    protected Event createEvent(Class<? extends Event> eventType, EventFilter filter)
+    {
+        if (eventType == DocumentDeletedEvent.class) {
+            return new DocumentDeletedEvent(filter);
+        } else if (eventType == DocumentCreatedEvent.class) {
+            return new DocumentCreatedEvent(filter);
+        } else {
+            return new DocumentUpdatedEvent(filter);
+        }
+    }
+
+    @Override
+    public boolean canEncode(RemoteEventData remoteEvent)
+    {
+        return canEncodeEvent(remoteEvent.getEvent()) && canEncodeDocument(remoteEvent.getSource())
+            && canEncodeContext(remoteEvent.getData());
+    }
+
+    private boolean canEncodeDocument(Serializable source)
+    {
+        if (!(source instanceof Map)) {
+            return false;
+        }
+
+        Map<?, ?> map = new HashMap<>((Map<?, ?>) source);
+        Object reference = map.remove(AbstractXWikiEventConverter.DOC_NAME);
+
+        // Only the exact DocumentReference class can be rebuilt from its parts
+        if (reference == null || reference.getClass() != DocumentReference.class) {
+            return false;
+        }
+
+        Locale locale = ((DocumentReference) reference).getLocale();
+        if (locale != null && !locale.equals(LocaleUtils.toLocale(locale.toString(), null))) {
+            return false;
+        }
+
+        return isStringMap((Serializable) map, DOCUMENT_STRINGS);
+    }
+
+    @Override
+    public void encode(RemoteEventData remoteEvent, DataOutput output) throws IOException
+    {
+        writeEvent(remoteEvent.getEvent(), output);
+
+        Map<?, ?> source = (Map<?, ?>) remoteEvent.getSource();
+        writeDocumentReference((DocumentReference) source.get(AbstractXWikiEventConverter.DOC_NAME), output);
+        for (String key : DOCUMENT_STRINGS) {
+            writeString((String) source.get(key), output);
+        }
+
+        writeContext(remoteEvent.getData(), output);
+    }
+
+    @Override
+    public RemoteEventData decode(DataInput input) throws IOException
+    {
+        Serializable event = readEvent(input);
+
+        HashMap<String, Serializable> source = new HashMap<>();
+        source.put(AbstractXWikiEventConverter.DOC_NAME, readDocumentReference(input));
+        for (String key : DOCUMENT_STRINGS) {
+            String value = readString(input);
+            if (value != null) {
+                source.put(key, value);
+            }
+        }
+
+        return new RemoteEventData(event, source, readContext(input));
+    }
+
+    private void writeDocumentReference(DocumentReference reference, DataOutput output) throws IOException
+    {
+        output.writeUTF(reference.getWikiReference().getName());
+        writeStrings(reference.getSpaceReferences().stream().map(EntityReference::getName)
+            .collect(Collectors.toList()), output);
+        output.writeUTF(reference.getName());
+
+        Locale locale = reference.getLocale();
+        writeString(locale != null ? locale.toString() : null, output);
+    }
+
+    private DocumentReference readDocumentReference(DataInput input) throws IOException
+    {
+        String wiki = input.readUTF();
+        List<String> spaces = readStrings(input, space -> space);
+        String name = input.readUTF();
+        String locale = readString(input);
+
+        return new DocumentReference(wiki, spaces, name, locale != null ? LocaleUtils.toLocale(locale) : null);
+    }
+}
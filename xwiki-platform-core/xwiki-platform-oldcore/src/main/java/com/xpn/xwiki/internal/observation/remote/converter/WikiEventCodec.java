@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.observation.remote.converter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Encode the remote events produced by {@link WikiEventConverter} without Java serialization.
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component
+@Singleton
+@Named("wiki")
+public class WikiEventCodec extends AbstractXWikiEventCodec
+{
+    private static final List<Class<? extends Event>> EVENTS =
+        Arrays.asList(WikiDeletedEvent.class, WikiCreatedEvent.class);
+
+    @Override
+    protected List<Class<? extends Event>> getEventTypes()
+    {
+        return EVENTS;
+    }
+
+    @Override
+    protected Event createEvent(Class<? extends Event> eventType, EventFilter filter)
+    {
+        if (eventType == WikiDeletedEvent.class) {
+            return new WikiDeletedEvent(filter);
+        } else {
+            return new WikiCreatedEvent(filter);
+        }
+    }
+
+    @Override
+    public boolean canEncode(RemoteEventData remoteEvent)
+    {
+        Serializable source = remoteEvent.getSource();
+
+        return canEncodeEvent(remoteEvent.getEvent()) && (source == null || source instanceof String)
+            && canEncodeContext(remoteEvent.getData());
+    }
+
+    @Override
+    public void encode(RemoteEventData remoteEvent, DataOutput output) throws IOException
+    {
+        writeEvent(remoteEvent.getEvent(), output);
+        writeString((String) remoteEvent.getSource(), output);
+        writeContext(remoteEvent.getData(), output);
+    }
+
+    @Override
+    public RemoteEventData decode(DataInput input) throws IOException
+    {
+        Serializable event = readEvent(input);
+        String source = readString(input);
+
+        return new RemoteEventData(event, source, readContext(input));
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+
+/**
+ * Keep track of the estimated size of the documents stored in a document cache and remove the least recently used
+ * documents from it when the total goes beyond a configured maximum.
+ * <p>
+ * The cache entry listener methods only select the documents to remove: the actual removal from the cache is done by
+ * {@link #evict()}, which should be called outside of the cache events (typically right after putting a document in
+ * the cache).
+ *
+ * @version $Id$
+ * @since 12.7RC1
+ */
+public class DocumentCacheWeightEvictor implements CacheEntryListener<XWikiDocument>
+{
+    private static final long DOCUMENT_WEIGHT = 2048;
+
+    private static final long OBJECT_WEIGHT = 256;
+
+    private static final long PROPERTY_WEIGHT = 128;
+
+    private static final long ATTACHMENT_WEIGHT = 1024;
+
+    private static final class WeightedEntry
+    {
+        private final XWikiDocument document;
+
+        private final long weight;
+
+        WeightedEntry(XWikiDocument document, long weight)
+        {
+            this.document = document;
+            this.weight = weight;
+        }
+    }
+
+    private final Cache<XWikiDocument> cache;
+
+    private final long maxWeight;
+
+    /**
+     * The entries ordered from the least recently used to the most recently used one.
+     */
+    private final Map<String, WeightedEntry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    private final Queue<String> keysToEvict = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param cache the cache to watch
+     * @param maxWeight the maximum total estimated size of the documents stored in the cache
+     */
+    public DocumentCacheWeightEvictor(Cache<XWikiDocument> cache, long maxWeight)
+    {
+        this.cache = cache;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param document the document
+     * @return the estimated memory size of the document (in bytes)
+     */
+    public static long weigh(XWikiDocument document)
+    {
+        long weight = DOCUMENT_WEIGHT;
+
+        weight += weigh(document.getContent());
+        weight += weigh(document.getXClassXML());
+        weight += weigh(document.getTitle());
+
+        for (List<BaseObject> objects : document.getXObjects().values()) {
+            for (BaseObject object : objects) {
+                if (object != null) {
+                    weight += OBJECT_WEIGHT;
+
+                    for (Object field : object.getFieldList()) {
+                        weight += PROPERTY_WEIGHT;
+
+                        if (field instanceof BaseProperty) {
+                            weight += weighValue(((BaseProperty<?>) field).getValue());
+                        }
+                    }
+                }
+            }
+        }
+
+        for (XWikiAttachment attachment : document.getAttachmentList()) {
+            weight += ATTACHMENT_WEIGHT + weigh(attachment.getFilename());
+        }
+
+        return weight;
+    }
+
+    private static long weigh(String value)
+    {
+        // Assume the worst case of two bytes per character
+        return value != null ? value.length() * 2L : 0;
+    }
+
+    private static long weighValue(Object value)
+    {
+        long weight;
+        if (value instanceof String) {
+            weight = weigh((String) value);
+        } else if (value instanceof Collection) {
+            weight = 0;
+            for (Object element : (Collection<?>) value) {
+                weight += PROPERTY_WEIGHT + weighValue(element);
+            }
+        } else {
+            weight = 0;
+        }
+
+        return weight;
+    }
+
+    /**
+     * Indicate that an entry of the cache was accessed.
+     *
+     * @param key the key of the entry
+     */
+    public void touch(String key)
+    {
+        synchronized (this.entries) {
+            // Move the entry at the end of the access order
+            this.entries.get(key);
+        }
+    }
+
+    /**
+     * Remove from the cache the documents selected to go below the maximum total size.
+     */
+    public void evict()
+    {
+        for (String key = this.keysToEvict.poll(); key != null; key = this.keysToEvict.poll()) {
+            boolean evict;
+            synchronized (this.entries) {
+                // Make sure to not remove a document which was put again in the cache in the meantime
+                evict = !this.entries.containsKey(key);
+            }
+
+            if (evict) {
+                this.cache.remove(key);
+
+                this.evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * @return the current estimated size of the documents stored in the cache
+     */
+    public long getTotalWeight()
+    {
+        return this.totalWeight.get();
+    }
+
+    /**
+     * @return the number of documents which have been removed from the cache because the maximum total size was
+     *         reached
+     */
+    public long getEvictionCount()
+    {
+        return this.evictionCount.sum();
+    }
+
+    @Override
+    public void cacheEntryAdded(CacheEntryEvent<XWikiDocument> event)
+    {
+        put(event.getEntry());
+    }
+
+    @Override
+    public void cacheEntryModified(CacheEntryEvent<XWikiDocument> event)
+    {
+        put(event.getEntry());
+    }
+
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<XWikiDocument> event)
+    {
+        CacheEntry<XWikiDocument> cacheEntry = event.getEntry();
+
+        synchronized (this.entries) {
+            WeightedEntry entry = this.entries.get(cacheEntry.getKey());
+
+            // Make sure to not forget a more recent document
+            if (entry != null && (cacheEntry.getValue() == null || entry.document == cacheEntry.getValue())) {
+                this.entries.remove(cacheEntry.getKey());
+                this.totalWeight.addAndGet(-entry.weight);
+            }
+        }
+    }
+
+    private void put(CacheEntry<XWikiDocument> cacheEntry)
+    {
+        XWikiDocument document = cacheEntry.getValue();
+
+        if (document != null) {
+            WeightedEntry entry = new WeightedEntry(document, weigh(document));
+
+            synchronized (this.entries) {
+                WeightedEntry previousEntry = this.entries.remove(cacheEntry.getKey());
+                if (previousEntry != null) {
+                    this.totalWeight.addAndGet(-previousEntry.weight);
+                }
+
+                if (entry.weight > this.maxWeight) {
+                    // Don't flush the whole cache for a single document
+                    this.keysToEvict.add(cacheEntry.getKey());
+                } else {
+                    this.entries.put(cacheEntry.getKey(), entry);
+                    this.totalWeight.addAndGet(entry.weight);
+
+                    selectEntriesToEvict();
+                }
+            }
+        }
+    }
+
+    private void selectEntriesToEvict()
+    {
+        // Remove the least recently used entries first
+        Iterator<Map.Entry<String, WeightedEntry>> iterator = this.entries.entrySet().iterator();
+        while (this.totalWeight.get() > this.maxWeight && iterator.hasNext()) {
+            Map.Entry<String, WeightedEntry> mapEntry = iterator.next();
+
+            iterator.remove();
+            this.totalWeight.addAndGet(-mapEntry.getValue().weight);
+
+            this.keysToEvict.add(mapEntry.getKey());
+        }
+    }
+}
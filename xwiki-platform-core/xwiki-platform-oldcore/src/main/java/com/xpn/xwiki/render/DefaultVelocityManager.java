@@ -19,8 +19,11 @@
  */
 package com.xpn.xwiki.render;
 
+import java.io.IOException;
+import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,6 +37,7 @@
 import javax.script.ScriptContext;
 
 import org.apache.commons.io.output.NullWriter;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.velocity.VelocityContext;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -78,6 +82,8 @@ public class DefaultVelocityManager implements VelocityManager, Initializable
 {
     private static final String VELOCITYENGINE_CACHEKEY_NAME = "velocity.engine.key";
 
+    private static final int BUFFER_SIZE = 1024;
+
     private static final List<Event> EVENTS =
         Arrays.<Event>asList(new TemplateUpdatedEvent(), new TemplateDeletedEvent());
 
@@ -309,10 +315,54 @@ public VelocityEngine getVelocityEngine() throws XWikiVelocityException
     @Override
     public boolean evaluate(Writer out, String templateName, Reader source) throws XWikiVelocityException
     {
+        Reader velocitySource;
+        try {
+            velocitySource = copyIfNoVelocity(out, source);
+        } catch (IOException e) {
+            throw new XWikiVelocityException(
+                String.format("Failed to copy the content of template [%s]", templateName), e);
+        }
+
+        if (velocitySource == null) {
+            return true;
+        }
+
         // Get up to date Velocity context
         VelocityContext velocityContext = getVelocityContext();
 
         // Execute Velocity context
-        return getVelocityEngine().evaluate(velocityContext, out, templateName, source);
+        return getVelocityEngine().evaluate(velocityContext, out, templateName, velocitySource);
+    }
+
+    /**
+     * Velocity output is the input itself when there is no reference nor directive in it so there is no need to pay
+     * for parsing it (which is the most expensive part of the evaluation). Only the content located before the first
+     * possible reference or directive is kept in memory.
+     * 
+     * @param out the writer where to copy the content if it does not need to be parsed
+     * @param source the content to evaluate
+     * @return {@code null} if the content was copied as is, the content to parse otherwise
+     */
+    private Reader copyIfNoVelocity(Writer out, Reader source) throws IOException
+    {
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        for (int count = source.read(buffer); count != -1; count = source.read(buffer)) {
+            content.append(buffer, 0, count);
+
+            if (StringUtils.containsAny(CharBuffer.wrap(buffer, 0, count), '$', '#')) {
+                // Put back what was already read in front of the rest of the content
+                char[] readContent = new char[content.length()];
+                content.getChars(0, readContent.length, readContent, 0);
+                PushbackReader reader = new PushbackReader(source, readContent.length);
+                reader.unread(readContent);
+
+                return reader;
+            }
+        }
+
+        out.append(content);
+
+        return null;
     }
 }
@@ -20,11 +20,23 @@
 package com.xpn.xwiki.store;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
@@ -57,7 +69,9 @@
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
 import com.xpn.xwiki.internal.store.AbstractXWikiStore;
+import com.xpn.xwiki.internal.store.DocumentCacheWeightEvictor;
 import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
 import com.xpn.xwiki.web.Utils;
 
 /**
@@ -75,6 +89,11 @@ public class XWikiCacheStore extends AbstractXWikiStore
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(XWikiCacheStore.class);
 
+    /**
+     * The maximum number of documents waiting to be reloaded after a remote modification.
+     */
+    private static final int PREFETCH_QUEUE_SIZE = 1000;
+
     /**
      * Used to know if a received event is a local or remote one.
      */
@@ -109,6 +128,28 @@ public class XWikiCacheStore extends AbstractXWikiStore
      */
     private Cache<Integer> limitSizePropertyCache;
 
+    /**
+     * The documents currently being loaded from the underlying store, indexed by cache key.
+     */
+    private final Map<String, CompletableFuture<XWikiDocument>> currentLoads = new ConcurrentHashMap<>();
+
+    /**
+     * Indicate if the current thread is currently loading a document from the underlying store.
+     */
+    private final ThreadLocal<Boolean> loadingThread = new ThreadLocal<>();
+
+    private final LongAdder coalescedLoadCount = new LongAdder();
+
+    /**
+     * Remove documents from the cache based on their estimated size, if enabled.
+     */
+    private DocumentCacheWeightEvictor weightEvictor;
+
+    /**
+     * Reload in the background the cached documents modified by another cluster member, if enabled.
+     */
+    private ThreadPoolExecutor prefetchExecutor;
+
     /**
      * Default constructor generally used by the Component Manager.
      */
@@ -172,6 +213,20 @@ private void initCache() throws CacheException
         this.cache =
             this.cacheManager.createNewCache(new LRUCacheConfiguration("xwiki.store.pagecache", pageCacheCapacity));
 
+        long pageCacheMaxWeight = this.configuration.getProperty("xwiki.store.cache.maxweight", 0L);
+        if (pageCacheMaxWeight > 0) {
+            this.weightEvictor = new DocumentCacheWeightEvictor(this.cache, pageCacheMaxWeight);
+            this.cache.addCacheEntryListener(this.weightEvictor);
+        }
+
+        if ("1".equals(this.configuration.getProperty("xwiki.store.cache.remoteprefetch", "0"))) {
+            this.prefetchExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+                new BasicThreadFactory.Builder().namingPattern("XWiki document cache prefetch").daemon(true).build(),
+                new ThreadPoolExecutor.DiscardPolicy());
+            this.prefetchExecutor.allowCoreThreadTimeOut(true);
+        }
+
         int pageExistCacheCapacity = this.configuration.getProperty("xwiki.store.cache.pageexistcapacity", 10000);
         this.pageExistCache = this.cacheManager
             .createNewCache(new LRUCacheConfiguration("xwiki.store.pageexistcache", pageExistCacheCapacity));
@@ -229,8 +284,7 @@ public void renameXWikiDoc(XWikiDocument doc, DocumentReference newReference, XW
         } finally {
             // Flushing the cache for old document
             String key = getKey(doc, context);
-            getCache().remove(key);
-            getPageExistCache().remove(key);
+            invalidate(key);
 
             WikiReference originalWikiReference = doc.getDocumentReference().getWikiReference();
             // Flushing the cache for new document
@@ -239,8 +293,7 @@ public void renameXWikiDoc(XWikiDocument doc, DocumentReference newReference, XW
             }
             XWikiDocument newDoc = new XWikiDocument(newReference);
             key = getKey(newDoc, context);
-            getCache().remove(key);
-            getPageExistCache().remove(key);
+            invalidate(key);
             context.setWikiReference(originalWikiReference);
 
             // Restore the previous XWikiContext
@@ -261,8 +314,7 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
         } finally {
             // Flushing the cache
             String key = getKey(doc, context);
-            getCache().remove(key);
-            getPageExistCache().remove(key);
+            invalidate(key);
 
             /*
              * We do not want to save the document in the cache at this time. If we did, this would introduce the
@@ -274,9 +326,20 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
         }
     }
 
+    private void invalidate(String key)
+    {
+        // Make sure a document load started before the modification is not shared with the next loads
+        this.currentLoads.remove(key);
+
+        getCache().remove(key);
+        getPageExistCache().remove(key);
+    }
+
     @Override
     public void flushCache()
     {
+        this.currentLoads.clear();
+
         getCache().removeAll();
         getPageExistCache().removeAll();
         getLimitSizePropertyCache().removeAll();
@@ -294,16 +357,85 @@ public void onEvent(Event event, Object source, Object data)
 
                 String key = doc.getKey();
 
+                XWikiDocument cachedDocument = getCache() != null ? getCache().get(key) : null;
+
+                // Keep the cached document if this member already loaded the version produced by the remote
+                // modification (or a more recent one)
+                if (cachedDocument != null && !(event instanceof DocumentDeletedEvent)
+                    && isUpToDate(cachedDocument, doc)) {
+                    LOGGER.debug("Cache: keep doc {} already up to date with remote version {}", key,
+                        doc.getVersion());
+
+                    return;
+                }
+
+                this.currentLoads.remove(key);
+
                 if (getCache() != null) {
                     getCache().remove(key);
                 }
                 if (getPageExistCache() != null) {
                     getPageExistCache().remove(key);
                 }
+
+                // Reload the documents which were in the cache before the first reader asks for them
+                if (cachedDocument != null && event instanceof DocumentUpdatedEvent) {
+                    prefetch(doc.getDocumentReference(), doc.getLocale());
+                }
             }
         }
     }
 
+    /**
+     * The version and the date of a document are used as a stamp of the modification which produced it: the version
+     * only increase for a given document and the date distinguish a document deleted and created again. A modification
+     * which did not produce a new version cannot be distinguished from the previous one so it's never considered up to
+     * date.
+     */
+    private boolean isUpToDate(XWikiDocument cachedDocument, XWikiDocument remoteDocument)
+    {
+        if (remoteDocument.isNew()) {
+            return false;
+        }
+
+        XWikiDocument remoteOriginalDocument = remoteDocument.getOriginalDocument();
+        if (remoteOriginalDocument != null && !remoteOriginalDocument.isNew()
+            && remoteOriginalDocument.getRCSVersion().compareTo(remoteDocument.getRCSVersion()) == 0) {
+            return false;
+        }
+
+        Date cachedDate = cachedDocument.getDate();
+        Date remoteDate = remoteDocument.getDate();
+
+        return cachedDate != null && remoteDate != null && !cachedDate.before(remoteDate)
+            && cachedDocument.getRCSVersion().compareTo(remoteDocument.getRCSVersion()) >= 0;
+    }
+
+    private void prefetch(DocumentReference documentReference, Locale locale)
+    {
+        if (this.prefetchExecutor != null) {
+            this.prefetchExecutor.execute(new AbstractXWikiRunnable()
+            {
+                @Override
+                protected void runInternal()
+                {
+                    XWikiContext xcontext = Utils.getContext();
+
+                    if (xcontext != null) {
+                        xcontext.setWikiReference(documentReference.getWikiReference());
+
+                        try {
+                            loadXWikiDoc(new XWikiDocument(documentReference, locale), xcontext);
+                        } catch (Exception e) {
+                            LOGGER.warn("Failed to reload document [{}] in the cache: {}", documentReference,
+                                ExceptionUtils.getRootCauseMessage(e));
+                        }
+                    }
+                }
+            });
+        }
+    }
+
     /**
      * @deprecated since 4.0M1, use {@link com.xpn.xwiki.doc.XWikiDocument#getKey()}
      */
@@ -374,6 +506,10 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
             if (cachedoc != null) {
                 cachedoc.setFromCache(true);
 
+                if (this.weightEvictor != null) {
+                    this.weightEvictor.touch(key);
+                }
+
                 LOGGER.debug("Cache: got doc {} from cache", key);
             } else {
                 Boolean result = getPageExistCache().get(key);
@@ -381,30 +517,9 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                 if (result == Boolean.FALSE) {
                     LOGGER.debug("Cache: The document {} does not exist, return an empty one", key);
 
-                    cachedoc = doc;
-                    cachedoc.setNew(true);
-
-                    // Make sure to always return a document with an original version, even for one that does not exist.
-                    // Allow writing more generic code.
-                    cachedoc
-                        .setOriginalDocument(new XWikiDocument(cachedoc.getDocumentReference(), cachedoc.getLocale()));
+                    cachedoc = setNew(doc);
                 } else {
-                    LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
-
-                    cachedoc = this.store.loadXWikiDoc(doc, context);
-
-                    LOGGER.debug("Cache: Got doc {} from storage", key);
-
-                    if (cachedoc.isNew()) {
-                        getPageExistCache().set(key, Boolean.FALSE);
-                    } else {
-                        getCache().set(key, cachedoc);
-
-                        // Also update exist cache
-                        getPageExistCache().set(key, Boolean.TRUE);
-                    }
-
-                    LOGGER.debug("Cache: put doc {} in cache", key);
+                    cachedoc = loadXWikiDocFromStore(key, doc, context);
                 }
             }
 
@@ -417,6 +532,133 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
         }
     }
 
+    private XWikiDocument setNew(XWikiDocument doc)
+    {
+        doc.setNew(true);
+
+        // Make sure to always return a document with an original version, even for one that does not exist.
+        // Allow writing more generic code.
+        doc.setOriginalDocument(new XWikiDocument(doc.getDocumentReference(), doc.getLocale()));
+
+        return doc;
+    }
+
+    /**
+     * Make sure only one thread at a time loads a given document from the underlying store, the other threads asking
+     * for the same document waiting for the result instead of loading it again.
+     */
+    private XWikiDocument loadXWikiDocFromStore(String key, XWikiDocument doc, XWikiContext context)
+        throws XWikiException
+    {
+        // A thread which is already loading a document (e.g. loading the class of an object) does not wait for
+        // another thread to avoid any risk of deadlock
+        if (this.loadingThread.get() == Boolean.TRUE) {
+            return loadXWikiDocFromStoreInternal(key, doc, context);
+        }
+
+        CompletableFuture<XWikiDocument> future = new CompletableFuture<>();
+        CompletableFuture<XWikiDocument> currentLoad = this.currentLoads.putIfAbsent(key, future);
+
+        if (currentLoad == null) {
+            this.loadingThread.set(Boolean.TRUE);
+            try {
+                XWikiDocument loadedDocument = loadXWikiDocFromStoreInternal(key, doc, context);
+
+                future.complete(loadedDocument);
+
+                return loadedDocument;
+            } catch (Throwable e) {
+                // Make sure the threads waiting for this load are always released, whatever happened
+                future.completeExceptionally(e);
+
+                throw e;
+            } finally {
+                this.loadingThread.remove();
+                this.currentLoads.remove(key, future);
+            }
+        }
+
+        LOGGER.debug("Cache: Waiting for doc {} to be loaded by another thread", key);
+
+        this.coalescedLoadCount.increment();
+
+        XWikiDocument loadedDocument;
+        try {
+            loadedDocument = waitForLoad(currentLoad);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE, XWikiException.ERROR_XWIKI_STORE_MISC,
+                "Interrupted while waiting for document [" + key + "] to be loaded", e);
+        } catch (ExecutionException e) {
+            LOGGER.debug("Cache: Failed to get doc {} loaded by another thread, loading it again", key, e);
+
+            return loadXWikiDocFromStoreInternal(key, doc, context);
+        }
+
+        if (loadedDocument.isNew()) {
+            // The document is not shared (it's not cached) so we need to use our own
+            return setNew(doc);
+        }
+
+        loadedDocument.setFromCache(true);
+
+        return loadedDocument;
+    }
+
+    /**
+     * Package protected for tests.
+     *
+     * @param currentLoad the load started by another thread
+     * @return the document loaded by the other thread
+     * @throws InterruptedException when interrupted while waiting
+     * @throws ExecutionException when the other thread failed to load the document
+     */
+    XWikiDocument waitForLoad(CompletableFuture<XWikiDocument> currentLoad)
+        throws InterruptedException, ExecutionException
+    {
+        return currentLoad.get();
+    }
+
+    private XWikiDocument loadXWikiDocFromStoreInternal(String key, XWikiDocument doc, XWikiContext context)
+        throws XWikiException
+    {
+        LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
+
+        XWikiDocument cachedoc = this.store.loadXWikiDoc(doc, context);
+
+        LOGGER.debug("Cache: Got doc {} from storage", key);
+
+        if (cachedoc.isNew()) {
+            getPageExistCache().set(key, Boolean.FALSE);
+        } else {
+            getCache().set(key, cachedoc);
+
+            // Also update exist cache
+            getPageExistCache().set(key, Boolean.TRUE);
+
+            if (this.weightEvictor != null) {
+                // Make room for the new document, outside of the cache events
+                this.weightEvictor.evict();
+            }
+        }
+
+        LOGGER.debug("Cache: put doc {} in cache", key);
+
+        return cachedoc;
+    }
+
+    /**
+     * @return the number of document loads which waited for the same document to be loaded by another thread instead
+     *         of loading it from the underlying store
+     * @since 12.7RC1
+     */
+    @Unstable
+    public long getCoalescedLoadCount()
+    {
+        return this.coalescedLoadCount.sum();
+    }
+
     @Override
     public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws XWikiException
     {
@@ -429,8 +671,7 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws
 
             this.store.deleteXWikiDoc(doc, context);
 
-            getCache().remove(key);
-            getPageExistCache().remove(key);
+            invalidate(key);
             getPageExistCache().set(key, Boolean.FALSE);
         } finally {
             restoreExecutionXContext();
@@ -783,6 +1024,27 @@ public void setPageExistCache(Cache<Boolean> pageExistCache)
         this.pageExistCache = pageExistCache;
     }
 
+    /**
+     * @return the current estimated size (in bytes) of the documents stored in the document cache, or -1 if the
+     *         document cache is not limited by size
+     * @since 12.7RC1
+     */
+    @Unstable
+    public long getCacheWeight()
+    {
+        return this.weightEvictor != null ? this.weightEvictor.getTotalWeight() : -1;
+    }
+
+    /**
+     * @return the number of documents removed from the document cache because its maximum size was reached
+     * @since 12.7RC1
+     */
+    @Unstable
+    public long getCacheWeightEvictionCount()
+    {
+        return this.weightEvictor != null ? this.weightEvictor.getEvictionCount() : 0;
+    }
+
     /**
      * @return the cache that handle the limit size properties.
      * @since 11.4RC1
@@ -45,6 +45,7 @@
 import javax.persistence.criteria.CriteriaUpdate;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.FlushMode;
@@ -66,10 +67,8 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
-import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
-import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.WikiReference;
@@ -96,6 +95,7 @@
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
 import com.xpn.xwiki.objects.BaseStringProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.ListProperty;
 import com.xpn.xwiki.objects.PropertyInterface;
@@ -117,6 +117,12 @@
 @Singleton
 public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWikiStoreInterface, Initializable
 {
+    /**
+     * The maximum number of values to pass to a "in" clause (some databases, like Oracle, don't support more than
+     * 1000).
+     */
+    private static final int MAX_IN_PARAMETERS = 1000;
+
     @Inject
     private Logger logger;
 
@@ -1006,16 +1012,8 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                         BaseObject.class);
                     query.setParameter("name", doc.getFullName());
 
-                    Iterator<BaseObject> it = query.list().iterator();
-
-                    EntityReference localGroupEntityReference = new EntityReference("XWikiGroups", EntityType.DOCUMENT,
-                        new EntityReference("XWiki", EntityType.SPACE));
-                    DocumentReference groupsDocumentReference = new DocumentReference(context.getWikiId(),
-                        localGroupEntityReference.getParent().getName(), localGroupEntityReference.getName());
-
-                    boolean hasGroups = false;
-                    while (it.hasNext()) {
-                        BaseObject object = it.next();
+                    List<BaseObject> objects = new ArrayList<>();
+                    for (BaseObject object : query.list()) {
                         DocumentReference classReference = object.getXClassReference();
 
                         if (classReference == null) {
@@ -1043,47 +1041,24 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                             object = newobject;
                         }
 
-                        if (classReference.equals(groupsDocumentReference)) {
-                            // Groups objects are handled differently.
-                            hasGroups = true;
-                        } else {
-                            loadXWikiCollectionInternal(object, doc, context, false, true);
-                        }
-                        doc.setXObject(object.getNumber(), object);
+                        objects.add(object);
                     }
 
-                    // AFAICT this was added as an emergency patch because loading of objects has proven
-                    // too slow and the objects which cause the most overhead are the XWikiGroups objects
-                    // as each group object (each group member) would otherwise cost 2 database queries.
-                    // This will do every group member in a single query.
-                    if (hasGroups) {
-                        Query<Object[]> query2 = session.createQuery(
-                            "select bobject.number, prop.value from StringProperty as prop,"
-                                + "BaseObject as bobject where bobject.name = :name and bobject.className='XWiki.XWikiGroups' "
-                                + "and bobject.id=prop.id.id and prop.id.name='member' order by bobject.number",
-                            Object[].class);
-                        query2.setParameter("name", doc.getFullName());
-
-                        Iterator<Object[]> it2 = query2.list().iterator();
-                        while (it2.hasNext()) {
-                            Object[] result = it2.next();
-                            Integer number = (Integer) result[0];
-                            String member = (String) result[1];
-                            BaseObject obj = BaseClass.newCustomClassInstance(groupsDocumentReference, true, context);
-                            obj.setDocumentReference(doc.getDocumentReference());
-                            obj.setXClassReference(localGroupEntityReference);
-                            obj.setNumber(number.intValue());
-                            obj.setStringValue("member", member);
-                            doc.setXObject(obj.getNumber(), obj);
-                        }
+                    // Load the properties of all the objects at once instead of doing several database queries for
+                    // each object (this used to be done only for XWikiGroups objects as a special case).
+                    loadXWikiCollections(objects, doc, context);
+
+                    for (BaseObject object : objects) {
+                        doc.setXObject(object.getNumber(), object);
                     }
                 }
 
                 doc.setContentDirty(false);
                 doc.setMetaDataDirty(false);
 
-                // We need to ensure that the loaded document becomes the original document
-                doc.setOriginalDocument(doc.clone());
+                // We need to ensure that the loaded document becomes the original document (the actual copy is only
+                // created when needed)
+                doc.resetOriginalDocument();
 
                 if (bTransaction) {
                     endTransaction(context, false);
@@ -1440,37 +1415,9 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
 
             // If the class reference is null in the loaded object then skip loading properties
             if (classReference != null) {
+                BaseClass bclass = getXClass(object, doc, context);
 
-                BaseClass bclass = null;
-                if (!classReference.equals(object.getDocumentReference())) {
-                    // Let's check if the class has a custom mapping
-                    bclass = object.getXClass(context);
-                } else {
-                    // We need to get it from the document otherwise
-                    // we will go in an endless loop
-                    if (doc != null) {
-                        bclass = doc.getXClass();
-                    }
-                }
-
-                List<String> handledProps = new ArrayList<>();
-                try {
-                    if ((bclass != null) && (bclass.hasCustomMapping()) && context.getWiki().hasCustomMappings()) {
-                        String className = this.localEntityReferenceSerializer.serialize(bclass.getDocumentReference());
-                        @SuppressWarnings("unchecked")
-                        Map<String, ?> map = (Map<String, ?>) session.load(className, object.getId());
-                        // Let's make sure to look for null fields in the dynamic mapping
-                        bclass.fromValueMap(map, object);
-                        for (String prop : bclass.getCustomMappingPropertyList(context)) {
-                            if (map.get(prop) != null) {
-                                handledProps.add(prop);
-                            }
-                        }
-                    }
-                } catch (HibernateException e) {
-                    this.logger.error("Failed loading custom mapping for doc [{}], class [{}], nb [{}]",
-                        object.getDocumentReference(), object.getXClassReference(), object.getNumber(), e);
-                }
+                List<String> handledProps = loadXWikiCustomMapping(object, bclass, session, context);
 
                 // Load strings, integers, dates all at once
 
@@ -1486,55 +1433,8 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
                         continue;
                     }
                     String classType = (String) result[1];
-                    BaseProperty property = null;
-
-                    try {
-                        property = (BaseProperty) Class.forName(classType).newInstance();
-                        property.setObject(object);
-                        property.setName(name);
-                        loadXWikiProperty(property, context, false);
-                    } catch (Exception e) {
-                        // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
-                        try {
-                            if (property instanceof StringProperty) {
-                                LargeStringProperty property2 = new LargeStringProperty();
-                                property2.setObject(object);
-                                property2.setName(name);
-                                loadXWikiProperty(property2, context, false);
-                                property.setValue(property2.getValue());
-
-                                if (bclass != null) {
-                                    if (bclass.get(name) instanceof TextAreaClass) {
-                                        property = property2;
-                                    }
-                                }
-
-                            } else if (property instanceof LargeStringProperty) {
-                                StringProperty property2 = new StringProperty();
-                                property2.setObject(object);
-                                property2.setName(name);
-                                loadXWikiProperty(property2, context, false);
-                                property.setValue(property2.getValue());
-
-                                if (bclass != null) {
-                                    if (bclass.get(name) instanceof StringClass) {
-                                        property = property2;
-                                    }
-                                }
-                            } else {
-                                throw e;
-                            }
-                        } catch (Throwable e2) {
-                            Object[] args =
-                                { object.getName(), object.getClass(), Integer.valueOf(object.getNumber() + ""), name };
-                            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
-                                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
-                                "Exception while loading object '{0}' of class '{1}', number '{2}' and property '{3}'",
-                                e, args);
-                        }
-                    }
 
-                    object.addField(name, property);
+                    object.addField(name, loadXWikiProperty(object, bclass, name, classType, context));
                 }
             }
 
@@ -1560,6 +1460,227 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
 
     }
 
+    /**
+     * Load the properties of all the passed objects using a fixed number of queries: one query to list the properties
+     * of all the objects and then one query per property type (i.e. per property table), instead of one query per
+     * object and one query per property.
+     *
+     * @param objects the objects to load, already loaded from the objects table
+     * @param doc the document containing the objects
+     * @param context the XWiki context
+     * @throws XWikiException when failing to load the properties
+     */
+    private void loadXWikiCollections(List<BaseObject> objects, XWikiDocument doc, XWikiContext context)
+        throws XWikiException
+    {
+        Session session = getSession(context);
+
+        Map<Long, BaseObject> objectsById = new HashMap<>();
+        Map<Long, BaseClass> classesById = new HashMap<>();
+        Map<Long, List<String>> handledPropsById = new HashMap<>();
+        for (BaseObject object : objects) {
+            // If the class reference is null in the loaded object then skip loading properties
+            if (object.getXClassReference() != null) {
+                BaseClass bclass = getXClass(object, doc, context);
+
+                objectsById.put(object.getId(), object);
+                classesById.put(object.getId(), bclass);
+                handledPropsById.put(object.getId(), loadXWikiCustomMapping(object, bclass, session, context));
+            }
+        }
+
+        if (objectsById.isEmpty()) {
+            return;
+        }
+
+        List<List<Long>> idChunks = ListUtils.partition(new ArrayList<>(objectsById.keySet()), MAX_IN_PARAMETERS);
+
+        // Find the name and type of all the properties of all the objects
+        List<Object[]> propertyDescriptors = new ArrayList<>();
+        Map<String, Set<Long>> idsByClassType = new HashMap<>();
+        for (List<Long> ids : idChunks) {
+            Query<Object[]> query = session.createQuery(
+                "select prop.id.id, prop.name, prop.classType from BaseProperty as prop where prop.id.id in (:ids)",
+                Object[].class);
+            query.setParameterList("ids", ids);
+            for (Object[] result : query.list()) {
+                Long id = (Long) result[0];
+                String name = (String) result[1];
+                String classType = (String) result[2];
+
+                if (!handledPropsById.get(id).contains(name)) {
+                    propertyDescriptors.add(result);
+                    idsByClassType.computeIfAbsent(classType, k -> new HashSet<>()).add(id);
+                }
+            }
+        }
+
+        // Load the properties, one property table at a time
+        Map<Long, Map<String, BaseProperty>> propertiesById = new HashMap<>();
+        for (Map.Entry<String, Set<Long>> entry : idsByClassType.entrySet()) {
+            loadXWikiProperties(entry.getKey(), entry.getValue(), propertiesById, doc, session);
+        }
+
+        for (Object[] propertyDescriptor : propertyDescriptors) {
+            Long id = (Long) propertyDescriptor[0];
+            String name = (String) propertyDescriptor[1];
+            String classType = (String) propertyDescriptor[2];
+
+            BaseObject object = objectsById.get(id);
+
+            BaseProperty property = propertiesById.getOrDefault(id, Collections.emptyMap()).get(name);
+            if (property != null) {
+                property.setObject(object);
+                initializeLoadedProperty(property);
+            } else {
+                // Fallback on the one by one loading which knows how to deal with inconsistent data
+                property = loadXWikiProperty(object, classesById.get(id), name, classType, context);
+            }
+
+            object.addField(name, property);
+        }
+    }
+
+    /**
+     * Load all the properties of the passed type belonging to the passed objects.
+     * <p>
+     * Package protected for tests.
+     *
+     * @param classType the type of the properties to load
+     * @param ids the identifiers of the objects holding the properties
+     * @param propertiesById the loaded properties, indexed by object identifier and property name
+     * @param doc the document holding the objects
+     * @param session the Hibernate session
+     * @throws XWikiException when failing to load the properties (the current transaction cannot be trusted anymore
+     *             so there is no point in trying to load them one by one)
+     */
+    void loadXWikiProperties(String classType, Collection<Long> ids,
+        Map<Long, Map<String, BaseProperty>> propertiesById, XWikiDocument doc, Session session) throws XWikiException
+    {
+        StringBuilder statement = new StringBuilder("select prop from ");
+        statement.append(classType);
+        statement.append(" as prop ");
+        if (DBStringListProperty.class.getName().equals(classType)) {
+            // Avoid one query per property to load the list items
+            statement.append("left join fetch prop.list ");
+        }
+        // Some types are sharing the same table
+        statement.append("where prop.id.id in (:ids) and prop.classType = :classType");
+
+        try {
+            for (List<Long> chunk : ListUtils.partition(new ArrayList<>(ids), MAX_IN_PARAMETERS)) {
+                Query<BaseProperty> query = session.createQuery(statement.toString(), BaseProperty.class);
+                query.setParameterList("ids", chunk);
+                query.setParameter("classType", classType);
+                for (BaseProperty property : query.list()) {
+                    propertiesById.computeIfAbsent(property.getId(), k -> new HashMap<>())
+                        .put(property.getName(), property);
+                }
+            }
+        } catch (HibernateException | IllegalArgumentException e) {
+            Object[] args = { classType, doc.getDocumentReference() };
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
+                "Exception while loading the properties of type [{0}] of the objects of document [{1}]", e, args);
+        }
+    }
+
+    private BaseClass getXClass(BaseCollection object, XWikiDocument doc, XWikiContext context) throws XWikiException
+    {
+        BaseClass bclass = null;
+        if (!object.getXClassReference().equals(object.getDocumentReference())) {
+            // Let's check if the class has a custom mapping
+            bclass = object.getXClass(context);
+        } else {
+            // We need to get it from the document otherwise
+            // we will go in an endless loop
+            if (doc != null) {
+                bclass = doc.getXClass();
+            }
+        }
+
+        return bclass;
+    }
+
+    private List<String> loadXWikiCustomMapping(BaseCollection object, BaseClass bclass, Session session,
+        XWikiContext context)
+    {
+        List<String> handledProps = new ArrayList<>();
+        try {
+            if ((bclass != null) && (bclass.hasCustomMapping()) && context.getWiki().hasCustomMappings()) {
+                String className = this.localEntityReferenceSerializer.serialize(bclass.getDocumentReference());
+                @SuppressWarnings("unchecked")
+                Map<String, ?> map = (Map<String, ?>) session.load(className, object.getId());
+                // Let's make sure to look for null fields in the dynamic mapping
+                bclass.fromValueMap(map, object);
+                for (String prop : bclass.getCustomMappingPropertyList(context)) {
+                    if (map.get(prop) != null) {
+                        handledProps.add(prop);
+                    }
+                }
+            }
+        } catch (HibernateException e) {
+            this.logger.error("Failed loading custom mapping for doc [{}], class [{}], nb [{}]",
+                object.getDocumentReference(), object.getXClassReference(), object.getNumber(), e);
+        }
+
+        return handledProps;
+    }
+
+    private BaseProperty loadXWikiProperty(BaseCollection object, BaseClass bclass, String name, String classType,
+        XWikiContext context) throws XWikiException
+    {
+        BaseProperty property = null;
+
+        try {
+            property = (BaseProperty) Class.forName(classType).newInstance();
+            property.setObject(object);
+            property.setName(name);
+            loadXWikiProperty(property, context, false);
+        } catch (Exception e) {
+            // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
+            try {
+                if (property instanceof StringProperty) {
+                    LargeStringProperty property2 = new LargeStringProperty();
+                    property2.setObject(object);
+                    property2.setName(name);
+                    loadXWikiProperty(property2, context, false);
+                    property.setValue(property2.getValue());
+
+                    if (bclass != null) {
+                        if (bclass.get(name) instanceof TextAreaClass) {
+                            property = property2;
+                        }
+                    }
+
+                } else if (property instanceof LargeStringProperty) {
+                    StringProperty property2 = new StringProperty();
+                    property2.setObject(object);
+                    property2.setName(name);
+                    loadXWikiProperty(property2, context, false);
+                    property.setValue(property2.getValue());
+
+                    if (bclass != null) {
+                        if (bclass.get(name) instanceof StringClass) {
+                            property = property2;
+                        }
+                    }
+                } else {
+                    throw e;
+                }
+            } catch (Throwable e2) {
+                Object[] args =
+                    { object.getName(), object.getClass(), Integer.valueOf(object.getNumber() + ""), name };
+                throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                    XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
+                    "Exception while loading object '{0}' of class '{1}', number '{2}' and property '{3}'", e,
+                    args);
+            }
+        }
+
+        return property;
+    }
+
     /**
      * @deprecated This is internal to XWikiHibernateStore and may be removed in the future.
      */
@@ -1660,26 +1781,15 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
 
             try {
                 session.load(property, (Serializable) property);
-                // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all, it is
-                // safe to assume that a retrieved NULL value should actually be an empty string.
-                if (property instanceof BaseStringProperty) {
-                    BaseStringProperty stringProperty = (BaseStringProperty) property;
-                    if (stringProperty.getValue() == null) {
-                        stringProperty.setValue("");
-                    }
-                }
-                ((BaseProperty) property).setValueDirty(false);
+                initializeLoadedProperty((BaseProperty) property);
             } catch (ObjectNotFoundException e) {
                 // Let's accept that there is no data in property tables but log it
                 this.logger.error("No data for property [{}] of object id [{}]", property.getName(), property.getId());
-            }
 
-            // TODO: understand why collections are lazy loaded
-            // Let's force reading lists if there is a list
-            // This seems to be an issue since Hibernate 3.0
-            // Without this test ViewEditTest.testUpdateAdvanceObjectProp fails
-            if (property instanceof ListProperty) {
-                ((ListProperty) property).getList();
+                // Force reading lists (see #initializeLoadedProperty)
+                if (property instanceof ListProperty) {
+                    ((ListProperty) property).getList();
+                }
             }
 
             if (bTransaction) {
@@ -1702,6 +1812,27 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
         }
     }
 
+    private void initializeLoadedProperty(BaseProperty property)
+    {
+        // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all, it is
+        // safe to assume that a retrieved NULL value should actually be an empty string.
+        if (property instanceof BaseStringProperty) {
+            BaseStringProperty stringProperty = (BaseStringProperty) property;
+            if (stringProperty.getValue() == null) {
+                stringProperty.setValue("");
+            }
+        }
+        property.setValueDirty(false);
+
+        // TODO: understand why collections are lazy loaded
+        // Let's force reading lists if there is a list
+        // This seems to be an issue since Hibernate 3.0
+        // Without this test ViewEditTest.testUpdateAdvanceObjectProp fails
+        if (property instanceof ListProperty) {
+            ((ListProperty) property).getList();
+        }
+    }
+
     private void saveXWikiPropertyInternal(final PropertyInterface property, final XWikiContext context,
         final boolean runInOwnTransaction) throws XWikiException
     {
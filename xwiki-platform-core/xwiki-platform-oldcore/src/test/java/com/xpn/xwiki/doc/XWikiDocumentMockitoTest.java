@@ -36,6 +36,7 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.suigeneris.jrcs.rcs.Version;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -60,6 +61,7 @@
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.TextAreaClass;
 import com.xpn.xwiki.objects.meta.MetaClass;
+import com.xpn.xwiki.store.XWikiStoreInterface;
 import com.xpn.xwiki.test.MockitoOldcoreRule;
 import com.xpn.xwiki.test.component.XWikiDocumentFilterUtilsComponentList;
 import com.xpn.xwiki.test.reference.ReferenceComponentList;
@@ -79,6 +81,7 @@
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -1580,4 +1583,99 @@ public void modifyAttachmentName()
         assertNull(this.document.getAttachment("attachment"));
         assertSame(attachment, this.document.getAttachment("attachment2"));
     }
+
+    @Test
+    public void resetOriginalDocument()
+    {
+        XWikiDocument loadedDocument = new XWikiDocument(DOCUMENT_REFERENCE);
+        loadedDocument.setContent("content");
+        loadedDocument.setContentDirty(false);
+        loadedDocument.setMetaDataDirty(false);
+
+        loadedDocument.resetOriginalDocument();
+
+        // The copy is created when the document is cloned, and shared by all the clones
+        XWikiDocument clonedDocument = loadedDocument.clone();
+        XWikiDocument originalDocument = clonedDocument.getOriginalDocument();
+        assertNotSame(loadedDocument, originalDocument);
+        assertEquals("content", originalDocument.getContent());
+        assertSame(originalDocument, loadedDocument.getOriginalDocument());
+        assertSame(originalDocument, loadedDocument.clone().getOriginalDocument());
+
+        clonedDocument.setContent("modified content");
+        assertSame(originalDocument, clonedDocument.getOriginalDocument());
+        assertEquals("content", clonedDocument.getOriginalDocument().getContent());
+    }
+
+    @Test
+    public void resetOriginalDocumentWhenObjectsAreModifiedInPlace()
+    {
+        XWikiDocument loadedDocument = new XWikiDocument(DOCUMENT_REFERENCE);
+        BaseObject object = new BaseObject();
+        object.setXClassReference(CLASS_REFERENCE);
+        object.setStringValue("string", "value");
+        loadedDocument.addXObject(object);
+        loadedDocument.setContentDirty(false);
+        loadedDocument.setMetaDataDirty(false);
+
+        loadedDocument.resetOriginalDocument();
+
+        XWikiDocument clonedDocument = loadedDocument.clone();
+
+        // The cached instance is modified in place, without its dirty flags telling it
+        object.setStringValue("string", "modified value");
+        loadedDocument.setMetaDataDirty(false);
+
+        // Neither the original document of the previous clones nor the one of the next clones are affected
+        assertEquals("value",
+            clonedDocument.getOriginalDocument().getXObject(CLASS_REFERENCE).getStringValue("string"));
+        assertEquals("value",
+            loadedDocument.clone().getOriginalDocument().getXObject(CLASS_REFERENCE).getStringValue("string"));
+    }
+
+    @Test
+    public void getOriginalDocumentWhenSharedDocumentIsModified()
+    {
+        XWikiDocument loadedDocument = new XWikiDocument(DOCUMENT_REFERENCE);
+        loadedDocument.setContent("content");
+        loadedDocument.setRCSVersion(new Version("2.1"));
+        loadedDocument.setContentDirty(false);
+        loadedDocument.setMetaDataDirty(false);
+        XWikiStoreInterface store = mock(XWikiStoreInterface.class);
+        loadedDocument.setStore(store);
+
+        loadedDocument.resetOriginalDocument();
+
+        // The document is modified in place
+        loadedDocument.setContent("modified content");
+        loadedDocument.setParentReference(new EntityReference("Parent", EntityType.DOCUMENT));
+        loadedDocument.setRCSVersion(new Version("3.1"));
+
+        // The original document was copied before the first modification
+        XWikiDocument originalDocument = loadedDocument.getOriginalDocument();
+        assertNotSame(loadedDocument, originalDocument);
+        assertEquals("content", originalDocument.getContent());
+        assertNull(originalDocument.getRelativeParentReference());
+        assertEquals("2.1", originalDocument.getVersion());
+        assertSame(originalDocument, loadedDocument.clone().getOriginalDocument());
+
+        verifyZeroInteractions(store);
+    }
+
+    @Test
+    public void getOriginalDocumentWhenSharedDocumentObjectsAreModified()
+    {
+        XWikiDocument loadedDocument = new XWikiDocument(DOCUMENT_REFERENCE);
+        loadedDocument.setContentDirty(false);
+        loadedDocument.setMetaDataDirty(false);
+
+        loadedDocument.resetOriginalDocument();
+
+        BaseObject object = new BaseObject();
+        object.setXClassReference(CLASS_REFERENCE);
+        loadedDocument.setXObject(0, object);
+
+        assertNull(loadedDocument.getOriginalDocument().getXObject(CLASS_REFERENCE));
+        assertSame(object, loadedDocument.getXObject(CLASS_REFERENCE));
+    }
 }
@@ -20,6 +20,7 @@
 package com.xpn.xwiki.doc;
 
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -38,6 +39,7 @@
 import org.mockito.stubbing.Answer;
 import org.xwiki.context.Execution;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.configuration.ExtendedRenderingConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.test.annotation.AllComponents;
@@ -66,6 +68,7 @@
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -746,4 +749,58 @@ public void getIntValue()
         assertEquals(0, this.document.getIntValue(new DocumentReference("foo", "bar", "bla"), "foo"));
         assertEquals(99, this.document.getIntValue(new DocumentReference("foo", "bar", "bla"), "foo", 99));
     }
+
+    @Test
+    public void getReadOnlyXDOM()
+    {
+        this.document.setSyntax(Syntax.XWIKI_2_1);
+        this.document.setContent("[[TargetPage]]");
+
+        XDOM xdom = this.document.getReadOnlyXDOM();
+
+        assertSame(xdom, this.document.getReadOnlyXDOM());
+        assertNotSame(xdom, this.document.getXDOM());
+        assertEquals(xdom.getChildren().size(), this.document.getXDOM().getChildren().size());
+
+        this.document.setContent("[[OtherPage]]");
+
+        assertNotSame(xdom, this.document.getReadOnlyXDOM());
+    }
+
+    @Test
+    public void getReadOnlyXDOMAllocations()
+    {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        // Build a big page full of links
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 300000; ++i) {
+            content.append("Paragraph ").append(i).append(" with a [[link>>Space.Page").append(i).append("]]\n\n");
+        }
+        this.document.setSyntax(Syntax.XWIKI_2_1);
+        this.document.setContent(content.toString());
+        // Parse the content
+        this.document.getReadOnlyXDOM();
+
+        long threadId = Thread.currentThread().getId();
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10; ++i) {
+            this.document.getXDOM();
+        }
+        long cloneAllocations = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10; ++i) {
+            this.document.getReadOnlyXDOM();
+        }
+        long readOnlyAllocations = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(readOnlyAllocations * 100 < cloneAllocations, String
+            .format("Read only access allocated [%s] bytes while clones allocated [%s] bytes", readOnlyAllocations,
+                cloneAllocations));
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.observation.remote.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiCreatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.event.FilterableEvent;
+import org.xwiki.observation.event.filter.RegexEventFilter;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.converter.RemoteEventDataCodec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link DocumentEventCodec} and {@link WikiEventCodec}.
+ *
+ * @version $Id$
+ */
+class DocumentEventCodecTest
+{
+    private static final DocumentReference DOCUMENT =
+        new DocumentReference("wiki", Arrays.asList("space1", "space2"), "page", Locale.FRENCH);
+
+    private final DocumentEventCodec documentCodec = new DocumentEventCodec();
+
+    private final WikiEventCodec wikiCodec = new WikiEventCodec();
+
+    private HashMap<String, Serializable> context()
+    {
+        HashMap<String, Serializable> context = new HashMap<>();
+        context.put(AbstractXWikiEventConverter.CONTEXT_WIKI, "wiki");
+        context.put(AbstractXWikiEventConverter.CONTEXT_USER, "XWiki.user");
+
+        return context;
+    }
+
+    private HashMap<String, Serializable> document()
+    {
+        HashMap<String, Serializable> document = new HashMap<>();
+        document.put(AbstractXWikiEventConverter.DOC_NAME, DOCUMENT);
+        document.put(AbstractXWikiEventConverter.DOC_VERSION, "2.1");
+        document.put(AbstractXWikiEventConverter.DOC_LANGUAGE, "fr");
+        document.put(AbstractXWikiEventConverter.ORIGDOC_VERSION, "1.1");
+
+        return document;
+    }
+
+    private RemoteEventData roundTrip(RemoteEventDataCodec codec, RemoteEventData remoteEvent) throws Exception
+    {
+        assertTrue(codec.canEncode(remoteEvent));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.encode(remoteEvent, new DataOutputStream(bytes));
+
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    void documentEvent() throws Exception
+    {
+        DocumentUpdatedEvent event = new DocumentUpdatedEvent(DOCUMENT);
+
+        RemoteEventData result = roundTrip(this.documentCodec, new RemoteEventData(event, document(), context()));
+
+        assertSame(DocumentUpdatedEvent.class, result.getEvent().getClass());
+        assertEquals(event.getEventFilter().getFilter(),
+            ((FilterableEvent) result.getEvent()).getEventFilter().getFilter());
+        assertEquals(document(), result.getSource());
+        assertEquals(DOCUMENT.getLocale(),
+            ((DocumentReference) ((Map<?, ?>) result.getSource()).get(AbstractXWikiEventConverter.DOC_NAME))
+                .getLocale());
+        assertEquals(context(), result.getData());
+    }
+
+    @Test
+    void documentEventMatchingAllDocuments() throws Exception
+    {
+        HashMap<String, Serializable> context = context();
+        context.put(AbstractXWikiEventConverter.CONTEXT_USER, null);
+
+        RemoteEventData result =
+            roundTrip(this.documentCodec, new RemoteEventData(new DocumentCreatedEvent(), document(), context));
+
+        assertSame(DocumentCreatedEvent.class, result.getEvent().getClass());
+        assertTrue(((FilterableEvent) result.getEvent()).getEventFilter().matches(new DocumentCreatedEvent(DOCUMENT)
+            .getEventFilter()));
+        assertEquals(context, result.getData());
+    }
+
+    @Test
+    void canEncodeDocumentEvent()
+    {
+        DocumentDeletedEvent canceledEvent = new DocumentDeletedEvent(DOCUMENT);
+        canceledEvent.cancel();
+        assertFalse(this.documentCodec.canEncode(new RemoteEventData(canceledEvent, document(), context())));
+
+        assertFalse(this.documentCodec.canEncode(
+            new RemoteEventData(new DocumentDeletedEvent(new RegexEventFilter(".*")), document(), context())));
+
+        HashMap<String, Serializable> document = document();
+        document.put("other", "value");
+        assertFalse(
+            this.documentCodec.canEncode(new RemoteEventData(new DocumentDeletedEvent(), document, context())));
+
+        assertFalse(this.documentCodec.canEncode(new RemoteEventData(new WikiCreatedEvent(), "wiki", context())));
+    }
+
+    @Test
+    void wikiEvent() throws Exception
+    {
+        RemoteEventData result =
+            roundTrip(this.wikiCodec, new RemoteEventData(new WikiCreatedEvent("wiki"), "wiki", context()));
+
+        assertSame(WikiCreatedEvent.class, result.getEvent().getClass());
+        assertEquals("wiki", ((WikiCreatedEvent) result.getEvent()).getWikiId());
+        assertEquals("wiki", result.getSource());
+        assertEquals(context(), result.getData());
+
+        result = roundTrip(this.wikiCodec, new RemoteEventData(new WikiCreatedEvent("wiki"), null, context()));
+
+        assertNull(result.getSource());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DocumentCacheWeightEvictor}.
+ * 
+ * @version $Id$
+ */
+@OldcoreTest
+public class DocumentCacheWeightEvictorTest
+{
+    @InjectMockitoOldcore
+    private MockitoOldcore oldcore;
+
+    private Cache<XWikiDocument> cache;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        this.cache = mock(Cache.class);
+    }
+
+    private XWikiDocument document(String name, int contentLength)
+    {
+        XWikiDocument document = new XWikiDocument(new DocumentReference("wiki", "space", name));
+        document.setContent(StringUtils.repeat('a', contentLength));
+
+        return document;
+    }
+
+    private CacheEntryEvent<XWikiDocument> event(String key, XWikiDocument document)
+    {
+        CacheEntry<XWikiDocument> entry = mock(CacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(document);
+
+        CacheEntryEvent<XWikiDocument> event = mock(CacheEntryEvent.class);
+        when(event.getEntry()).thenReturn(entry);
+
+        return event;
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed()
+    {
+        XWikiDocument document1 = document("page1", 1000);
+        XWikiDocument document2 = document("page2", 1000);
+        XWikiDocument document3 = document("page3", 1000);
+
+        long weight = DocumentCacheWeightEvictor.weigh(document1);
+
+        DocumentCacheWeightEvictor evictor = new DocumentCacheWeightEvictor(this.cache, weight * 2);
+
+        evictor.cacheEntryAdded(event("page1", document1));
+        evictor.cacheEntryAdded(event("page2", document2));
+
+        assertEquals(weight * 2, evictor.getTotalWeight());
+
+        evictor.touch("page1");
+
+        evictor.cacheEntryAdded(event("page3", document3));
+
+        // The cache is not modified from its own events
+        verifyNoInteractions(this.cache);
+        assertEquals(weight * 2, evictor.getTotalWeight());
+
+        evictor.evict();
+
+        verify(this.cache).remove("page2");
+        verify(this.cache, never()).remove("page1");
+        assertEquals(weight * 2, evictor.getTotalWeight());
+        assertEquals(1, evictor.getEvictionCount());
+
+        evictor.cacheEntryRemoved(event("page1", document1));
+
+        assertEquals(weight, evictor.getTotalWeight());
+    }
+
+    @Test
+    public void documentTooBig()
+    {
+        XWikiDocument document = document("page", 1000);
+
+        DocumentCacheWeightEvictor evictor = new DocumentCacheWeightEvictor(this.cache, 10);
+
+        evictor.cacheEntryAdded(event("page", document));
+        evictor.evict();
+
+        verify(this.cache).remove("page");
+        assertEquals(0, evictor.getTotalWeight());
+        assertEquals(1, evictor.getEvictionCount());
+    }
+
+    @Test
+    public void evictDocumentPutAgain()
+    {
+        XWikiDocument document1 = document("page1", 1000);
+        XWikiDocument document2 = document("page2", 1000);
+
+        long weight = DocumentCacheWeightEvictor.weigh(document1);
+
+        DocumentCacheWeightEvictor evictor = new DocumentCacheWeightEvictor(this.cache, weight);
+
+        evictor.cacheEntryAdded(event("page1", document1));
+        evictor.cacheEntryAdded(event("page2", document2));
+        // page1 is put again in the cache before the eviction is executed
+        evictor.cacheEntryAdded(event("page1", document1));
+
+        evictor.evict();
+
+        verify(this.cache).remove("page2");
+        verify(this.cache, never()).remove("page1");
+        assertEquals(weight, evictor.getTotalWeight());
+        assertEquals(1, evictor.getEvictionCount());
+    }
+}
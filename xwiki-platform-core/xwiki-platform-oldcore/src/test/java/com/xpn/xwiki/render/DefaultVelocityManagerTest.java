@@ -19,6 +19,10 @@
  */
 package com.xpn.xwiki.render;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.commons.lang3.StringUtils;
 import org.apache.velocity.VelocityContext;
 import org.junit.Before;
 import org.junit.Rule;
@@ -30,6 +34,7 @@
 import org.xwiki.script.internal.DefaultScriptContextManager;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.velocity.VelocityFactory;
 import org.xwiki.velocity.VelocityManager;
 import org.xwiki.velocity.internal.DefaultVelocityConfiguration;
 import org.xwiki.velocity.internal.VelocityExecutionContextInitializer;
@@ -38,10 +43,13 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.test.MockitoOldcoreRule;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 /**
  * Validate {@link DefaultVelocityManager}.
@@ -108,4 +116,31 @@ public void getVelocityContext() throws ComponentLookupException
         assertNotNull(context.get("sdoc"));
         assertNotSame(sdoc, context.get("sdoc"));
     }
+
+    @Test
+    public void evaluateWithoutVelocitySyntax() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+
+        assertTrue(this.mocker.getComponentUnderTest().evaluate(writer, "namespace",
+            new StringReader("{{html}}<p>no reference nor directive</p>{{/html}}")));
+
+        assertEquals("{{html}}<p>no reference nor directive</p>{{/html}}", writer.toString());
+
+        // The content is not parsed so there is no need for any engine
+        verifyNoInteractions(this.mocker.<VelocityFactory>getInstance(VelocityFactory.class));
+    }
+
+    @Test
+    public void evaluateLongContentWithoutVelocitySyntax() throws Exception
+    {
+        String content = StringUtils.repeat("<p>no reference nor directive</p>", 1000);
+        StringWriter writer = new StringWriter();
+
+        assertTrue(this.mocker.getComponentUnderTest().evaluate(writer, "namespace", new StringReader(content)));
+
+        assertEquals(content, writer.toString());
+
+        verifyNoInteractions(this.mocker.<VelocityFactory>getInstance(VelocityFactory.class));
+    }
 }
@@ -19,8 +19,19 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.model.internal.reference.UidStringEntityReferenceSerializer;
@@ -39,11 +50,14 @@
 import static com.xpn.xwiki.test.mockito.OldcoreMatchers.isCacheConfiguration;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -143,4 +157,178 @@ public void saveXWikiDocumentFailing() throws XWikiException
         verify(this.cache).remove("4:wiki5:space4:page0:");
         verify(this.existCache).remove("4:wiki5:space4:page0:");
     }
+
+    @Test
+    public void loadXWikiDocConcurrently() throws Exception
+    {
+        // Set current wiki
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+
+        XWikiStoreInterface mockStore = mock(XWikiStoreInterface.class);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        when(mockStore.loadXWikiDoc(any(), any())).then(invocation -> {
+            loadStarted.countDown();
+            loadReleased.await();
+
+            XWikiDocument document = invocation.getArgument(0);
+            document.setNew(false);
+
+            return document;
+        });
+
+        CountDownLatch waitStarted = new CountDownLatch(1);
+        XWikiCacheStore store = new XWikiCacheStore(mockStore, this.oldcore.getXWikiContext())
+        {
+            @Override
+            XWikiDocument waitForLoad(CompletableFuture<XWikiDocument> currentLoad)
+                throws InterruptedException, ExecutionException
+            {
+                waitStarted.countDown();
+
+                return super.waitForLoad(currentLoad);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<XWikiDocument> firstLoad = executor
+                .submit(() -> store.loadXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext()));
+            loadStarted.await();
+            Future<XWikiDocument> secondLoad = executor
+                .submit(() -> store.loadXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext()));
+
+            // Wait for the second load to wait for the first one
+            waitStarted.await();
+            loadReleased.countDown();
+
+            assertSame(firstLoad.get(), secondLoad.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(mockStore).loadXWikiDoc(any(), any());
+        assertEquals(1, store.getCoalescedLoadCount());
+    }
+
+    private XWikiDocument remoteDocument(DocumentReference reference, String version, String originalVersion,
+        Date date)
+    {
+        XWikiDocument document = new XWikiDocument(reference);
+        document.setNew(false);
+        document.setVersion(version);
+        document.setDate(date);
+
+        XWikiDocument originalDocument = new XWikiDocument(reference);
+        if (originalVersion != null) {
+            originalDocument.setNew(false);
+            originalDocument.setVersion(originalVersion);
+        }
+        document.setOriginalDocument(originalDocument);
+
+        return document;
+    }
+
+    @Test
+    public void onRemoteEvent() throws Exception
+    {
+        RemoteObservationManagerContext remoteContext =
+            this.oldcore.getMocker().getInstance(RemoteObservationManagerContext.class);
+        when(remoteContext.isRemoteState()).thenReturn(true);
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+        Date date = new Date();
+
+        XWikiDocument cachedDocument = remoteDocument(reference, "2.1", "1.1", date);
+        String key = cachedDocument.getKey();
+        when(this.cache.get(key)).thenReturn(cachedDocument);
+
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext());
+
+        // The cached document is already the one produced by the remote modification
+        store.onEvent(new DocumentUpdatedEvent(), remoteDocument(reference, "2.1", "1.1", date), null);
+        // The cached document is more recent than the one produced by the remote modification
+        store.onEvent(new DocumentUpdatedEvent(), remoteDocument(reference, "1.1", null, new Date(0)), null);
+
+        verify(this.cache, never()).remove(key);
+        verify(this.existCache, never()).remove(key);
+
+        // The remote modification did not produce a new version
+        store.onEvent(new DocumentUpdatedEvent(), remoteDocument(reference, "2.1", "2.1", date), null);
+
+        verify(this.cache).remove(key);
+        verify(this.existCache).remove(key);
+
+        // The remote modification is more recent than the cached document
+        store.onEvent(new DocumentUpdatedEvent(), remoteDocument(reference, "3.1", "2.1", new Date()), null);
+
+        verify(this.cache, times(2)).remove(key);
+
+        // The document was deleted
+        store.onEvent(new DocumentDeletedEvent(), remoteDocument(reference, "2.1", "1.1", date), null);
+
+        verify(this.cache, times(3)).remove(key);
+    }
+
+    @Test
+    public void loadXWikiDocConcurrentlyWhenLoadFails() throws Exception
+    {
+        // Set current wiki
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+
+        XWikiStoreInterface mockStore = mock(XWikiStoreInterface.class);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        when(mockStore.loadXWikiDoc(any(), any())).then(invocation -> {
+            loadStarted.countDown();
+            loadReleased.await();
+
+            // Not an Exception, the waiting threads should still be released
+            throw new LinkageError("error");
+        }).then(invocation -> {
+            XWikiDocument document = invocation.getArgument(0);
+            document.setNew(false);
+
+            return document;
+        });
+
+        CountDownLatch waitStarted = new CountDownLatch(1);
+        XWikiCacheStore store = new XWikiCacheStore(mockStore, this.oldcore.getXWikiContext())
+        {
+            @Override
+            XWikiDocument waitForLoad(CompletableFuture<XWikiDocument> currentLoad)
+                throws InterruptedException, ExecutionException
+            {
+                waitStarted.countDown();
+
+                return super.waitForLoad(currentLoad);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<XWikiDocument> firstLoad = executor
+                .submit(() -> store.loadXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext()));
+            loadStarted.await();
+            Future<XWikiDocument> secondLoad = executor
+                .submit(() -> store.loadXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext()));
+
+            waitStarted.await();
+            loadReleased.countDown();
+
+            ExecutionException exception = assertThrows(ExecutionException.class, firstLoad::get);
+            assertTrue(exception.getCause() instanceof LinkageError);
+
+            // The waiting thread loads the document itself
+            assertEquals(reference, secondLoad.get(10, TimeUnit.SECONDS).getDocumentReference());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(mockStore, times(2)).loadXWikiDoc(any(), any());
+    }
 }
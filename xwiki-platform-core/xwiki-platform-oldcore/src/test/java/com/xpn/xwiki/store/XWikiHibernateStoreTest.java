@@ -22,13 +22,17 @@
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.inject.Named;
 import javax.inject.Provider;
 
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -59,6 +63,7 @@
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.store.hibernate.HibernateStore;
 import com.xpn.xwiki.objects.BaseObject;
@@ -67,6 +72,8 @@
 import com.xpn.xwiki.objects.StringProperty;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -74,6 +81,7 @@
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -451,4 +459,67 @@ void loadBacklinksFromSubwiki() throws Exception
         verify(this.hibernateStore).beginTransaction();
         verify(this.hibernateStore).endTransaction(false);
     }
+
+    @Test
+    void loadXWikiPropertiesInChunks() throws Exception
+    {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 1500; id++) {
+            ids.add(id);
+        }
+
+        StringProperty property = new StringProperty();
+        property.setId(42);
+        property.setName("prop");
+
+        Query<BaseProperty> query = mock(Query.class);
+        when(this.session.createQuery(anyString(), same(BaseProperty.class))).thenReturn(query);
+        when(query.list()).thenReturn(Collections.singletonList(property), Collections.emptyList());
+
+        Map<Long, Map<String, BaseProperty>> propertiesById = new HashMap<>();
+        this.store.loadXWikiProperties(StringProperty.class.getName(), ids, propertiesById, mock(XWikiDocument.class),
+            this.session);
+
+        // Some databases don't support more than 1000 values in a "in" clause
+        verify(query, times(2)).setParameterList(eq("ids"), any(Collection.class));
+        assertSame(property, propertiesById.get(42L).get("prop"));
+    }
+
+    @Test
+    void loadXWikiPropertiesWhenQueryFails()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+        when(document.getDocumentReference()).thenReturn(documentReference);
+
+        Query<BaseProperty> query = mock(Query.class);
+        when(this.session.createQuery(anyString(), same(BaseProperty.class))).thenReturn(query);
+        HibernateException cause = new HibernateException("error");
+        when(query.list()).thenThrow(cause);
+
+        XWikiException exception = assertThrows(XWikiException.class,
+            () -> this.store.loadXWikiProperties(StringProperty.class.getName(), Arrays.asList(1L, 2L),
+                new HashMap<>(), document, this.session));
+
+        assertSame(cause, exception.getCause());
+        assertTrue(exception.getMessage().contains(StringProperty.class.getName()));
+        assertTrue(exception.getMessage().contains(documentReference.toString()));
+        // Don't try to load anything else in a failed transaction
+        verify(this.session).createQuery(anyString(), same(BaseProperty.class));
+    }
+
+    @Test
+    void loadXWikiPropertiesWithUnknownType()
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        IllegalArgumentException cause = new IllegalArgumentException("unknown entity");
+        when(this.session.createQuery(anyString(), same(BaseProperty.class))).thenThrow(cause);
+
+        XWikiException exception = assertThrows(XWikiException.class,
+            () -> this.store.loadXWikiProperties("UnknownProperty", Arrays.asList(1L), new HashMap<>(), document,
+                this.session));
+
+        assertSame(cause, exception.getCause());
+        assertTrue(exception.getMessage().contains("UnknownProperty"));
+    }
 }
@@ -19,13 +19,22 @@
  */
 package org.xwiki.search.solr.internal;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Deque;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -61,7 +70,9 @@
  * <p>
  * This implementation does not directly process the given leaf-references, but adds them to a processing queue, in the
  * order they were received. The {@link Runnable} part of this implementation is the one that sequentially reads and
- * processes the queue.
+ * processes the queue. The metadata of the entities to index can be extracted by several threads in parallel (see
+ * {@link SolrConfiguration#getIndexerThreads()}) but the operations are always sent to the Solr server and committed
+ * by the index thread, in the order they were queued.
  * 
  * @version $Id$
  * @since 5.1M2
@@ -75,68 +86,31 @@
 public class DefaultSolrIndexer implements SolrIndexer, Initializable, Disposable, Runnable
 {
     /**
-     * Index queue entry.
+     * Index queue entry taken from the queue and waiting to be sent to the Solr server.
      * 
      * @version $Id$
      */
-    private static class IndexQueueEntry
+    private static class ExtractedEntry
     {
         /**
-         * The reference of the entity to index.
-         */
-        public EntityReference reference;
-
-        /**
-         * The query used to filter entries to delete.
+         * The index queue entry.
          */
-        public String deleteQuery;
-
-        /**
-         * The indexing operation to perform.
-         */
-        public IndexOperation operation;
+        public IndexQueueEntry entry;
 
         /**
-         * @param indexReference the reference of the entity to index.
-         * @param operation the indexing operation to perform.
+         * The document being extracted in the background or {@code null} if the document should be extracted by the
+         * index thread.
          */
-        public IndexQueueEntry(EntityReference indexReference, IndexOperation operation)
-        {
-            this.reference = indexReference;
-            this.operation = operation;
-        }
+        public Future<LengthSolrInputDocument> document;
 
         /**
-         * @param deleteQuery the query used to filter entries to delete.
-         * @param operation the indexing operation to perform.
+         * @param entry the index queue entry
+         * @param document the document being extracted in the background
          */
-        public IndexQueueEntry(String deleteQuery, IndexOperation operation)
-        {
-            this.deleteQuery = deleteQuery;
-            this.operation = operation;
-        }
-
-        @Override
-        public String toString()
+        public ExtractedEntry(IndexQueueEntry entry, Future<LengthSolrInputDocument> document)
         {
-            String str;
-
-            switch (operation) {
-                case INDEX:
-                    str = "INDEX " + this.reference;
-                    break;
-                case DELETE:
-                    str = "DELETE " + this.deleteQuery;
-                    break;
-                case STOP:
-                    str = "STOP";
-                    break;
-                default:
-                    str = "";
-                    break;
-            }
-
-            return str;
+            this.entry = entry;
+            this.document = document;
         }
     }
 
@@ -162,16 +136,31 @@ public String toString()
          */
         public IndexOperation operation;
 
+        /**
+         * The sequence number of the operation in the journal, 0 if it's not journaled yet.
+         */
+        public long journalSequence;
+
+        /**
+         * The number of rollbacks which happened before the operation was queued.
+         */
+        public int journalGeneration;
+
         /**
          * @param reference the reference of the entity to index.
          * @param recurse also apply operation to reference children.
          * @param operation the indexing operation to perform.
+         * @param journalSequence the sequence number of the operation in the journal
+         * @param journalGeneration the number of rollbacks which happened before the operation was queued
          */
-        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation)
+        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation,
+            long journalSequence, int journalGeneration)
         {
             this.reference = reference;
             this.recurse = recurse;
             this.operation = operation;
+            this.journalSequence = journalSequence;
+            this.journalGeneration = journalGeneration;
         }
     }
 
@@ -203,6 +192,22 @@ public void runInternal()
                     break;
                 }
 
+                if (queueEntry == RESOLVE_QUEUE_ENTRY_REQUEUE) {
+                    requeue();
+
+                    continue;
+                }
+
+                // The journal is written by this thread so that the threads adding operations never wait for the disk
+                if (queueEntry.journalSequence == 0) {
+                    queueEntry.journalSequence =
+                        journal.append(queueEntry.reference, queueEntry.recurse, queueEntry.operation);
+                    queueEntry.journalGeneration = resolveGeneration;
+                }
+                if (resolveQueue.isEmpty()) {
+                    journal.flush();
+                }
+
                 try {
                     if (queueEntry.operation == IndexOperation.INDEX) {
                         Iterable<EntityReference> references;
@@ -227,6 +232,15 @@ public void runInternal()
                     logger.warn("Failed to apply operation [{}] on root reference [{}]", queueEntry.operation,
                         queueEntry.reference, e);
                 }
+
+                // Acknowledge the journaled operation once the index thread processed all the entries queued for it
+                try {
+                    indexQueue.put(new IndexQueueEntry(queueEntry.journalSequence, queueEntry.journalGeneration));
+                } catch (InterruptedException e) {
+                    logger.warn("The SOLR resolve thread has been interrupted", e);
+
+                    Thread.currentThread().interrupt();
+                }
             }
 
             logger.debug("Stop SOLR resolver thread");
@@ -237,7 +251,13 @@ public void runInternal()
      * Stop resolver thread.
      */
     private static final ResolveQueueEntry RESOLVE_QUEUE_ENTRY_STOP =
-        new ResolveQueueEntry(null, false, IndexOperation.STOP);
+        new ResolveQueueEntry(null, false, IndexOperation.STOP, 0, 0);
+
+    /**
+     * Ask the resolver thread to queue again the journaled operations which were not acknowledged.
+     */
+    private static final ResolveQueueEntry RESOLVE_QUEUE_ENTRY_REQUEUE =
+        new ResolveQueueEntry(null, false, IndexOperation.STOP, 0, 0);
 
     /**
      * Stop indexer thread.
@@ -284,15 +304,18 @@ public void runInternal()
     @Inject
     private JobExecutor jobs;
 
+    @Inject
+    private SolrIndexerJournal journal;
+
     /**
      * The queue of index operation to perform.
      */
-    private BlockingQueue<IndexQueueEntry> indexQueue;
+    private IndexQueue indexQueue;
 
     /**
      * The queue of resolve references and add them to the index queue.
      */
-    private BlockingQueue<ResolveQueueEntry> resolveQueue;
+    private BlockingDeque<ResolveQueueEntry> resolveQueue;
 
     /**
      * Thread in which the indexUpdater will be executed.
@@ -304,6 +327,17 @@ public void runInternal()
      */
     private Thread resolveThread;
 
+    /**
+     * The threads used to extract the metadata of the entities to index, {@code null} when the metadata is extracted by
+     * the index thread.
+     */
+    private ExecutorService extractionExecutor;
+
+    /**
+     * The maximum number of entries taken from the index queue and not yet sent to the Solr server.
+     */
+    private int maxExtractedEntries;
+
     /**
      * Indicate of the component has been disposed.
      */
@@ -314,12 +348,57 @@ public void runInternal()
      */
     private volatile int batchSize;
 
+    /**
+     * The number of entries taken from the index queue and not yet sent to the Solr server.
+     */
+    private volatile int extractedSize;
+
+    /**
+     * The sequence number of the last journaled operation processed by the index thread and not yet acknowledged.
+     */
+    private long journalSequence;
+
+    /**
+     * The number of rollbacks which happened since the start. The acknowledgments of the operations queued before the
+     * last rollback are ignored since these operations have been queued again.
+     */
+    private volatile int journalGeneration;
+
+    /**
+     * The number of rollbacks taken into account by the resolve thread, only accessed by this thread.
+     */
+    private int resolveGeneration;
+
     @Override
     public void initialize() throws InitializationException
     {
         // Initialize the queues before starting the threads.
-        this.resolveQueue = new LinkedBlockingQueue<>();
-        this.indexQueue = new LinkedBlockingQueue<>(this.configuration.getIndexerQueueCapacity());
+        this.resolveQueue = new LinkedBlockingDeque<>();
+        this.indexQueue = new IndexQueue(this.configuration.getIndexerQueueCapacity());
+
+        // Queue again the operations which were not committed to the Solr server before the last stop
+        List<SolrIndexerJournal.PendingOperation> pendingOperations = this.journal.takePendingOperations();
+        if (!pendingOperations.isEmpty()) {
+            this.logger.info("Queuing [{}] Solr indexing operations which were not committed before the last stop",
+                pendingOperations.size());
+
+            for (SolrIndexerJournal.PendingOperation operation : pendingOperations) {
+                this.resolveQueue.add(new ResolveQueueEntry(operation.getReference(), operation.isRecurse(),
+                    operation.getOperation(), operation.getSequence(), 0));
+            }
+        }
+
+        // Initialize the metadata extraction threads
+        int threads = this.configuration.getIndexerThreads();
+        if (threads > 1) {
+            BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                .namingPattern("XWiki Solr extraction thread %d").daemon(true).priority(Thread.NORM_PRIORITY - 1)
+                .build();
+            this.extractionExecutor = Executors.newFixedThreadPool(threads, factory);
+            // Make sure the extraction threads always have something to work on while the index thread is waiting for
+            // the oldest extraction to finish
+            this.maxExtractedEntries = threads * 2;
+        }
 
         // Launch the resolve thread
         this.resolveThread = new Thread(new Resolver());
@@ -342,17 +421,21 @@ public void dispose() throws ComponentLifecycleException
         // Mark the component as disposed
         this.disposed = true;
 
-        // Stop the resolve thread. Clear the queue and send the stop signal without blocking. We know that the resolve
-        // queue will remain empty after the clear call because we set the disposed flag above.
-        this.resolveQueue.clear();
-        this.resolveQueue.offer(RESOLVE_QUEUE_ENTRY_STOP);
-
-        // Stop the index thread. Clear the queue and send the stop signal without blocking. There should be enough
-        // space in the index queue before the special stop entry is added as long the the index queue capacity is
-        // greater than 1. In the worse case, the clear call will unblock the resolve thread (which was waiting because
-        // the index queue was full) and just one entry will be added to the queue before the special stop entry.
-        this.indexQueue.clear();
-        this.indexQueue.offer(INDEX_QUEUE_ENTRY_STOP);
+        // Synchronize with the rollbacks, which clear the index queue
+        synchronized (this.resolveQueue) {
+            // Stop the resolve thread. Clear the queue and send the stop signal without blocking. We know that the
+            // resolve queue will remain empty after the clear call because we set the disposed flag above.
+            this.resolveQueue.clear();
+            this.resolveQueue.offer(RESOLVE_QUEUE_ENTRY_STOP);
+
+            // Stop the index thread. Clear the queue and send the stop signal without blocking. There should be enough
+            // space in the index queue before the special stop entry is added as long the the index queue capacity is
+            // greater than 1. In the worse case, the clear call will unblock the resolve thread (which was waiting
+            // because the index queue was full) and just one entry will be added to the queue before the special stop
+            // entry.
+            this.indexQueue.clear();
+            this.indexQueue.offer(INDEX_QUEUE_ENTRY_STOP);
+        }
     }
 
     @Override
@@ -378,6 +461,10 @@ public void run()
             }
         }
 
+        if (this.extractionExecutor != null) {
+            this.extractionExecutor.shutdownNow();
+        }
+
         this.logger.debug("Stop SOLR indexer thread");
     }
 
@@ -392,56 +479,140 @@ private boolean processBatch(IndexQueueEntry queueEntry)
     {
         int length = 0;
 
+        // The entries taken from the queue and not yet sent to the Solr server, in the order they were queued
+        Deque<ExtractedEntry> extractedEntries = new ArrayDeque<>();
+
         for (IndexQueueEntry batchEntry = queueEntry; batchEntry != null; batchEntry = this.indexQueue.poll()) {
             if (batchEntry == INDEX_QUEUE_ENTRY_STOP) {
                 // Discard the current batch and stop the indexing thread.
+                for (ExtractedEntry extractedEntry : extractedEntries) {
+                    if (extractedEntry.document != null) {
+                        extractedEntry.document.cancel(false);
+                    }
+                }
+                this.extractedSize = 0;
+
                 return false;
             }
 
-            IndexOperation operation = batchEntry.operation;
+            extractedEntries.add(extract(batchEntry));
+            this.extractedSize = extractedEntries.size();
 
-            // For the current contiguous operations queue, group the changes
-            try {
-                this.ecim.initialize(new ExecutionContext());
-
-                if (IndexOperation.INDEX.equals(operation)) {
-                    LengthSolrInputDocument solrDocument = getSolrDocument(batchEntry.reference);
-                    if (solrDocument != null) {
-                        solrInstance.add(solrDocument);
-                        length += solrDocument.getLength();
-                        ++this.batchSize;
-                    }
-                } else if (IndexOperation.DELETE.equals(operation)) {
-                    if (batchEntry.reference == null) {
-                        solrInstance.deleteByQuery(batchEntry.deleteQuery);
-                    } else {
-                        solrInstance.delete(this.solrRefereceResolver.getId(batchEntry.reference));
-                    }
-
-                    ++this.batchSize;
-                }
-            } catch (Throwable e) {
-                this.logger.error("Failed to process entry [{}]", batchEntry, e);
-            } finally {
-                this.execution.removeContext();
+            // Send the oldest entries to Solr when enough extractions are running
+            while (extractedEntries.size() > this.maxExtractedEntries) {
+                length = processEntry(extractedEntries.poll(), length);
+                this.extractedSize = extractedEntries.size();
             }
+        }
 
-            // Commit the index changes so that they become available to queries. This is a costly operation and that is
-            // the reason why we perform it at the end of the batch.
-            if (shouldCommit(length, this.batchSize)) {
-                commit();
-                length = 0;
-            }
+        // Send what's left
+        while (!extractedEntries.isEmpty()) {
+            length = processEntry(extractedEntries.poll(), length);
+            this.extractedSize = extractedEntries.size();
         }
 
         // Commit what's left
         if (this.batchSize > 0) {
             commit();
+        } else {
+            acknowledge();
         }
 
         return true;
     }
 
+    /**
+     * Start extracting the metadata of the passed entry in the background, if enabled.
+     * 
+     * @param queueEntry the entry taken from the index queue
+     * @return the entry to send to the Solr server
+     */
+    private ExtractedEntry extract(IndexQueueEntry queueEntry)
+    {
+        Future<LengthSolrInputDocument> document = null;
+
+        if (this.extractionExecutor != null && IndexOperation.INDEX.equals(queueEntry.operation)) {
+            document = this.extractionExecutor.submit(() -> {
+                try {
+                    this.ecim.initialize(new ExecutionContext());
+
+                    return getSolrDocument(queueEntry.reference);
+                } finally {
+                    this.execution.removeContext();
+                }
+            });
+        }
+
+        return new ExtractedEntry(queueEntry, document);
+    }
+
+    /**
+     * Send the passed entry to the Solr server and commit if needed.
+     * 
+     * @param extractedEntry the entry to send
+     * @param length the length of the current batch
+     * @return the new length of the current batch
+     */
+    private int processEntry(ExtractedEntry extractedEntry, int length)
+    {
+        int newLength = length;
+
+        IndexQueueEntry batchEntry = extractedEntry.entry;
+        IndexOperation operation = batchEntry.operation;
+
+        if (IndexOperation.ACKNOWLEDGE.equals(operation)) {
+            // Wait for the previous operations to be committed before acknowledging them (unless they were queued
+            // again after a rollback)
+            if (batchEntry.journalGeneration == this.journalGeneration) {
+                this.journalSequence = batchEntry.journalSequence;
+            }
+
+            return length;
+        }
+
+        // For the current contiguous operations queue, group the changes
+        try {
+            this.ecim.initialize(new ExecutionContext());
+
+            if (IndexOperation.INDEX.equals(operation)) {
+                LengthSolrInputDocument solrDocument = extractedEntry.document != null
+                    ? extractedEntry.document.get() : getSolrDocument(batchEntry.reference);
+                if (solrDocument != null) {
+                    solrInstance.add(solrDocument);
+                    newLength += solrDocument.getLength();
+                    ++this.batchSize;
+                }
+            } else if (IndexOperation.DELETE.equals(operation)) {
+                if (batchEntry.reference == null) {
+                    solrInstance.deleteByQuery(batchEntry.deleteQuery);
+                } else {
+                    solrInstance.delete(this.solrRefereceResolver.getId(batchEntry.reference));
+                }
+
+                ++this.batchSize;
+            }
+        } catch (ExecutionException e) {
+            this.logger.error("Failed to process entry [{}]", batchEntry, e.getCause());
+        } catch (InterruptedException e) {
+            this.logger.warn("The SOLR index thread has been interrupted while processing entry [{}]", batchEntry);
+
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            this.logger.error("Failed to process entry [{}]", batchEntry, e);
+        } finally {
+            this.execution.removeContext();
+        }
+
+        // Commit the index changes so that they become available to queries. This is a costly operation and that is
+        // the reason why we perform it at the end of the batch.
+        if (shouldCommit(newLength, this.batchSize)) {
+            commit();
+            newLength = 0;
+        }
+
+        return newLength;
+    }
+
     /**
      * Commit.
      */
@@ -449,6 +620,8 @@ private void commit()
     {
         try {
             solrInstance.commit();
+
+            acknowledge();
         } catch (Exception e) {
             this.logger.error("Failed to commit index changes to the Solr server. Rolling back.", e);
 
@@ -458,11 +631,82 @@ private void commit()
                 // Just log the failure.
                 this.logger.error("Failed to rollback index changes.", ex);
             }
+
+            rollback();
         }
 
         this.batchSize = 0;
     }
 
+    /**
+     * Forget the operations which have just been rolled back and ask the resolve thread to queue them again.
+     */
+    private void rollback()
+    {
+        // The rolled back operations must not be acknowledged by the next commit
+        this.journalSequence = 0;
+
+        synchronized (this.resolveQueue) {
+            // Keep the queues (and so the stop signal) as they are when the journal is not available or the component
+            // has been disposed (the operations will be queued again at next start)
+            if (!this.disposed && this.journal.isAvailable()) {
+                // The operations still waiting in the index queue are queued again by the resolve thread
+                this.indexQueue.clear();
+
+                // Ignore the acknowledgments of the operations queued until the resolve thread queues them again
+                ++this.journalGeneration;
+
+                this.resolveQueue.addFirst(RESOLVE_QUEUE_ENTRY_REQUEUE);
+            }
+        }
+    }
+
+    /**
+     * Queue again the journaled operations which were not acknowledged, since some of them have been rolled back.
+     * Called by the resolve thread, which is the one writing the journal.
+     */
+    private void requeue()
+    {
+        int generation = this.journalGeneration;
+
+        // Several rollbacks might have happened before the resolve thread handles the first one
+        if (generation == this.resolveGeneration || this.disposed) {
+            return;
+        }
+
+        List<SolrIndexerJournal.PendingOperation> operations = this.journal.getUnacknowledgedOperations();
+
+        this.resolveGeneration = generation;
+
+        // Keep the queue as it is when the journal is not available
+        if (operations != null) {
+            // The journaled operations waiting to be resolved are part of the operations to queue again, the ones
+            // which are not journaled yet are more recent and stay after them
+            this.resolveQueue.removeIf(entry -> entry.journalSequence > 0);
+
+            for (ListIterator<SolrIndexerJournal.PendingOperation> it = operations.listIterator(operations.size());
+                it.hasPrevious();) {
+                SolrIndexerJournal.PendingOperation operation = it.previous();
+                this.resolveQueue.addFirst(new ResolveQueueEntry(operation.getReference(), operation.isRecurse(),
+                    operation.getOperation(), operation.getSequence(), generation));
+            }
+
+            this.logger.warn("Queued again the [{}] Solr indexing operations which were not committed",
+                operations.size());
+        }
+    }
+
+    /**
+     * Acknowledge the journaled operations which have been processed.
+     */
+    private void acknowledge()
+    {
+        if (this.journalSequence > 0) {
+            this.journal.acknowledge(this.journalSequence);
+            this.journalSequence = 0;
+        }
+    }
+
     /**
      * Check various constraints to know if the batch should be committed.
      * 
@@ -540,9 +784,10 @@ public void delete(EntityReference reference, boolean recurse)
     private void addToQueue(EntityReference reference, boolean recurse, IndexOperation operation)
     {
         if (!this.disposed) {
-            // Don't block because the capacity of the resolver queue is not limited.
+            // Don't block because the capacity of the resolver queue is not limited. The operation is journaled by
+            // the resolve thread.
             try {
-                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation));
+                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation, 0, 0));
             } catch (InterruptedException e) {
                 this.logger.error("Failed to add reference [{}] to Solr indexing queue", reference, e);
             }
@@ -552,7 +797,13 @@ private void addToQueue(EntityReference reference, boolean recurse, IndexOperati
     @Override
     public int getQueueSize()
     {
-        return this.indexQueue.size() + this.resolveQueue.size() + this.batchSize;
+        return this.indexQueue.size() + this.resolveQueue.size() + this.extractedSize + this.batchSize;
+    }
+
+    @Override
+    public long getCollapsedCount()
+    {
+        return this.indexQueue.getCollapsedCount();
     }
 
     @Override
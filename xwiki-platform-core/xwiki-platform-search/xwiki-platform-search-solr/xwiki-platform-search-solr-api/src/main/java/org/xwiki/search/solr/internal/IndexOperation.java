@@ -42,5 +42,12 @@
     /**
      * Stop indexing thread.
      */
-    STOP
+    STOP,
+
+    /**
+     * Acknowledge the journaled operations once the previous operations are committed.
+     * 
+     * @since 12.7RC1
+     */
+    ACKNOWLEDGE
 }
@@ -0,0 +1,247 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Bounded queue of index operations which merges the operations on an entity which already has a pending operation.
+ * The last operation wins (so a delete supersedes an index) and the merged operation keeps the position of the
+ * pending one. Operations are never merged across a delete query since it may affect any entity.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+class IndexQueue
+{
+    /**
+     * The pending entries, in the order they will be processed.
+     */
+    private final Deque<IndexQueueEntry> entries = new ArrayDeque<>();
+
+    /**
+     * The pending entries in which new operations can be merged, indexed by entity reference.
+     */
+    private final Map<EntityReference, IndexQueueEntry> entriesByReference = new HashMap<>();
+
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = this.lock.newCondition();
+
+    private final Condition notFull = this.lock.newCondition();
+
+    /**
+     * The number of operations merged in a pending entry.
+     */
+    private volatile long collapsedCount;
+
+    /**
+     * @param capacity the maximum number of pending entries
+     */
+    IndexQueue(int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add the entry to the queue, waiting for space to become available if needed.
+     * 
+     * @param entry the entry to add
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(IndexQueueEntry entry) throws InterruptedException
+    {
+        this.lock.lockInterruptibly();
+        try {
+            // Try to merge again after waiting since the queue might contain a matching entry by then
+            while (!collapse(entry)) {
+                if (this.entries.size() < this.capacity) {
+                    enqueue(entry);
+                    break;
+                }
+
+                this.notFull.await();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Add the entry to the queue if it's possible to do so without waiting.
+     * 
+     * @param entry the entry to add
+     * @return {@code true} if the entry was added, {@code false} otherwise
+     */
+    public boolean offer(IndexQueueEntry entry)
+    {
+        this.lock.lock();
+        try {
+            if (collapse(entry)) {
+                return true;
+            }
+
+            if (this.entries.size() < this.capacity) {
+                enqueue(entry);
+
+                return true;
+            }
+
+            return false;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the oldest entry, waiting for one to become available if needed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public IndexQueueEntry take() throws InterruptedException
+    {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.entries.isEmpty()) {
+                this.notEmpty.await();
+            }
+
+            return dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the oldest entry, {@code null} if the queue is empty
+     */
+    public IndexQueueEntry poll()
+    {
+        this.lock.lock();
+        try {
+            return this.entries.isEmpty() ? null : dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear()
+    {
+        this.lock.lock();
+        try {
+            this.entries.clear();
+            this.entriesByReference.clear();
+
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of pending entries
+     */
+    public int size()
+    {
+        this.lock.lock();
+        try {
+            return this.entries.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of operations merged in a pending entry
+     */
+    public long getCollapsedCount()
+    {
+        return this.collapsedCount;
+    }
+
+    private boolean collapse(IndexQueueEntry entry)
+    {
+        if (entry.operation == IndexOperation.ACKNOWLEDGE) {
+            // Only the last of several contiguous acknowledgments matters
+            IndexQueueEntry lastEntry = this.entries.peekLast();
+            if (lastEntry != null && lastEntry.operation == IndexOperation.ACKNOWLEDGE) {
+                lastEntry.journalSequence = entry.journalSequence;
+                lastEntry.journalGeneration = entry.journalGeneration;
+
+                return true;
+            }
+
+            return false;
+        }
+
+        if (entry.reference == null) {
+            if (entry.operation == IndexOperation.DELETE) {
+                // A delete query may target any pending entity: the following operations should not be merged with
+                // the ones before it
+                this.entriesByReference.clear();
+            }
+
+            return false;
+        }
+
+        IndexQueueEntry pendingEntry = this.entriesByReference.get(entry.reference);
+        if (pendingEntry != null) {
+            pendingEntry.operation = entry.operation;
+            ++this.collapsedCount;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void enqueue(IndexQueueEntry entry)
+    {
+        this.entries.add(entry);
+        if (entry.reference != null) {
+            this.entriesByReference.put(entry.reference, entry);
+        }
+
+        this.notEmpty.signal();
+    }
+
+    private IndexQueueEntry dequeue()
+    {
+        IndexQueueEntry entry = this.entries.poll();
+        if (entry.reference != null) {
+            this.entriesByReference.remove(entry.reference, entry);
+        }
+
+        this.notFull.signal();
+
+        return entry;
+    }
+}
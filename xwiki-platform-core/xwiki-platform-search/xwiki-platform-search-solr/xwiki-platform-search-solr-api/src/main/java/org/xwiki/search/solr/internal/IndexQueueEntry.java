@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Index queue entry.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+class IndexQueueEntry
+{
+    /**
+     * The reference of the entity to index.
+     */
+    public EntityReference reference;
+
+    /**
+     * The query used to filter entries to delete.
+     */
+    public String deleteQuery;
+
+    /**
+     * The indexing operation to perform.
+     */
+    public IndexOperation operation;
+
+    /**
+     * The sequence number of the last journaled operation to acknowledge.
+     */
+    public long journalSequence;
+
+    /**
+     * The number of rollbacks which happened before the operations to acknowledge were queued.
+     */
+    public int journalGeneration;
+
+    /**
+     * @param indexReference the reference of the entity to index.
+     * @param operation the indexing operation to perform.
+     */
+    public IndexQueueEntry(EntityReference indexReference, IndexOperation operation)
+    {
+        this.reference = indexReference;
+        this.operation = operation;
+    }
+
+    /**
+     * @param journalSequence the sequence number of the last journaled operation to acknowledge
+     * @param journalGeneration the number of rollbacks which happened before the operations to acknowledge were queued
+     */
+    public IndexQueueEntry(long journalSequence, int journalGeneration)
+    {
+        this.journalSequence = journalSequence;
+        this.journalGeneration = journalGeneration;
+        this.operation = IndexOperation.ACKNOWLEDGE;
+    }
+
+    /**
+     * @param deleteQuery the query used to filter entries to delete.
+     * @param operation the indexing operation to perform.
+     */
+    public IndexQueueEntry(String deleteQuery, IndexOperation operation)
+    {
+        this.deleteQuery = deleteQuery;
+        this.operation = operation;
+    }
+
+    @Override
+    public String toString()
+    {
+        String str;
+
+        switch (operation) {
+            case INDEX:
+                str = "INDEX " + this.reference;
+                break;
+            case DELETE:
+                str = "DELETE " + this.deleteQuery;
+                break;
+            case STOP:
+                str = "STOP";
+                break;
+            case ACKNOWLEDGE:
+                str = "ACKNOWLEDGE " + this.journalSequence;
+                break;
+            default:
+                str = "";
+                break;
+        }
+
+        return str;
+    }
+}
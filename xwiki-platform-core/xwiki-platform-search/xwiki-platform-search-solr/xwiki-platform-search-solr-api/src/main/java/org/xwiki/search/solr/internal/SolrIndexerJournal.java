@@ -0,0 +1,561 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.lang3.LocaleUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Append-only journal of the operations added to the Solr indexer queue, used to not lose the operations which were
+ * not yet committed to the Solr server when XWiki is stopped or crashes.
+ * <p>
+ * Each operation is written on its own line with an increasing sequence number. Once the operations are committed to
+ * the Solr server the indexer acknowledges the sequence number of the last one, which marks all the operations with a
+ * lower or equal sequence number as done. On startup the operations which were not acknowledged are queued again.
+ * <p>
+ * Operations are appended by the indexer resolve thread, which calls {@link #flush()} once it has no more operations
+ * waiting. When the journal gets big it's rewritten with only the operations which were not acknowledged yet: the new
+ * file is written without holding the journal lock, so that appending operations is never blocked by it, and then
+ * completed with what was appended in the meantime and swapped in.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = SolrIndexerJournal.class)
+@Singleton
+public class SolrIndexerJournal implements Initializable, Disposable
+{
+    /**
+     * An operation which was not acknowledged before the last stop.
+     * 
+     * @version $Id$
+     */
+    public static class PendingOperation
+    {
+        private final long sequence;
+
+        private final EntityReference reference;
+
+        private final boolean recurse;
+
+        private final IndexOperation operation;
+
+        /**
+         * @param sequence the sequence number of the operation in the journal
+         * @param reference the reference of the entity
+         * @param recurse also apply operation to reference children
+         * @param operation the indexing operation
+         */
+        public PendingOperation(long sequence, EntityReference reference, boolean recurse, IndexOperation operation)
+        {
+            this.sequence = sequence;
+            this.reference = reference;
+            this.recurse = recurse;
+            this.operation = operation;
+        }
+
+        /**
+         * @return the sequence number of the operation in the journal
+         */
+        public long getSequence()
+        {
+            return this.sequence;
+        }
+
+        /**
+         * @return the reference of the entity
+         */
+        public EntityReference getReference()
+        {
+            return this.reference;
+        }
+
+        /**
+         * @return true if the operation should also be applied to reference children
+         */
+        public boolean isRecurse()
+        {
+            return this.recurse;
+        }
+
+        /**
+         * @return the indexing operation
+         */
+        public IndexOperation getOperation()
+        {
+            return this.operation;
+        }
+    }
+
+    /**
+     * The location of the journal, relative to the permanent directory.
+     */
+    public static final String JOURNAL_PATH = "store/solr-indexer/journal.log";
+
+    private static final String ACKNOWLEDGE = "ACK";
+
+    private static final String SEPARATOR = "\t";
+
+    private static final String NONE = "-";
+
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+
+    /**
+     * The minimum size of the journal above which it's rewritten with only the operations not yet acknowledged.
+     */
+    private static final long COMPACT_SIZE = 1024L * 1024L;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private EntityReferenceResolver<String> resolver;
+
+    @Inject
+    private Logger logger;
+
+    private File file;
+
+    /**
+     * The journal writer, {@code null} if the journal could not be opened.
+     */
+    private Writer writer;
+
+    private List<PendingOperation> pendingOperations;
+
+    /**
+     * The sequence number of the last journaled operation.
+     */
+    private long sequence;
+
+    /**
+     * The sequence number of the last acknowledged operation.
+     */
+    private long acknowledged;
+
+    /**
+     * The size of the journal right after it was last rewritten.
+     */
+    private long compactedLength;
+
+    /**
+     * Indicate if the journal is being rewritten.
+     */
+    private boolean compacting;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.file = new File(this.environment.getPermanentDirectory(), JOURNAL_PATH);
+        this.sequence = 0;
+        this.acknowledged = 0;
+
+        // Renumber the operations which were not done
+        List<PendingOperation> operations = read();
+        this.pendingOperations = new ArrayList<>(operations.size());
+        for (PendingOperation operation : operations) {
+            this.pendingOperations.add(new PendingOperation(++this.sequence, operation.getReference(),
+                operation.isRecurse(), operation.getOperation()));
+        }
+
+        try {
+            this.file.getParentFile().mkdirs();
+
+            // Rewrite the journal with only the pending operations before appending new ones
+            rewrite(this.pendingOperations);
+        } catch (IOException e) {
+            this.logger.error("Failed to open the Solr indexer journal [{}]. Indexing operations won't be journaled.",
+                this.file, e);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() throws ComponentLifecycleException
+    {
+        if (this.writer != null) {
+            try {
+                this.writer.close();
+            } catch (IOException e) {
+                this.logger.warn("Failed to close the Solr indexer journal [{}]", this.file, e);
+            }
+
+            this.writer = null;
+        }
+    }
+
+    /**
+     * @return the operations which were not acknowledged before the last stop, in the order they were journaled; each
+     *         call after the first one returns an empty list
+     */
+    public synchronized List<PendingOperation> takePendingOperations()
+    {
+        List<PendingOperation> operations = this.pendingOperations;
+
+        this.pendingOperations = Collections.emptyList();
+
+        return operations;
+    }
+
+    /**
+     * @return true if the operations are journaled, false if the journal could not be opened
+     */
+    public synchronized boolean isAvailable()
+    {
+        return this.writer != null;
+    }
+
+    /**
+     * @return the operations which were journaled and not yet acknowledged, in the order they were journaled and with
+     *         their current sequence number, or {@code null} if the journal is not available
+     */
+    public synchronized List<PendingOperation> getUnacknowledgedOperations()
+    {
+        if (this.writer == null) {
+            return null;
+        }
+
+        // Make sure all the appended operations are read
+        flush();
+
+        List<PendingOperation> operations = new ArrayList<>();
+        for (PendingOperation operation : read()) {
+            if (operation.getSequence() > this.acknowledged) {
+                operations.add(operation);
+            }
+        }
+
+        return operations;
+    }
+
+    /**
+     * Journal a new operation. The operation is only guaranteed to be written on disk after the next call to
+     * {@link #flush()}.
+     * 
+     * @param reference the reference of the entity
+     * @param recurse also apply operation to reference children
+     * @param operation the indexing operation
+     * @return the sequence number of the operation
+     */
+    public synchronized long append(EntityReference reference, boolean recurse, IndexOperation operation)
+    {
+        ++this.sequence;
+
+        if (this.writer != null) {
+            try {
+                writeOperation(this.writer, this.sequence, reference, recurse, operation);
+            } catch (IOException e) {
+                this.logger.error("Failed to write operation [{}] on [{}] in the Solr indexer journal [{}]", operation,
+                    reference, this.file, e);
+            }
+        }
+
+        return this.sequence;
+    }
+
+    /**
+     * Write on disk the operations appended to the journal.
+     */
+    public synchronized void flush()
+    {
+        if (this.writer != null) {
+            try {
+                this.writer.flush();
+            } catch (IOException e) {
+                this.logger.error("Failed to flush the Solr indexer journal [{}]", this.file, e);
+            }
+        }
+    }
+
+    /**
+     * Mark the operation with the passed sequence number and all the operations before it as done.
+     * 
+     * @param operationSequence the sequence number of the last operation committed to the Solr server
+     */
+    public void acknowledge(long operationSequence)
+    {
+        long compactedPart;
+
+        synchronized (this) {
+            if (operationSequence <= this.acknowledged) {
+                return;
+            }
+
+            this.acknowledged = operationSequence;
+
+            if (this.writer == null) {
+                return;
+            }
+
+            try {
+                this.writer.write(ACKNOWLEDGE + SEPARATOR + operationSequence);
+                this.writer.write('\n');
+                this.writer.flush();
+            } catch (IOException e) {
+                this.logger.error("Failed to acknowledge operation [{}] in the Solr indexer journal [{}]",
+                    operationSequence, this.file, e);
+            }
+
+            // Under continuous indexing there is always some operation not yet acknowledged: drop the done ones once
+            // the journal is big enough (and twice as big as the operations which were left last time, to not rewrite
+            // it on each acknowledgment when many operations are pending)
+            compactedPart = this.file.length();
+            if (this.compacting || compactedPart <= Math.max(COMPACT_SIZE, this.compactedLength * 2)) {
+                return;
+            }
+
+            this.compacting = true;
+        }
+
+        try {
+            compact(compactedPart);
+        } finally {
+            synchronized (this) {
+                this.compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the operations which were not acknowledged.
+     * 
+     * @param compactedPart the length of the beginning of the journal to compact, the rest being copied as is
+     */
+    private void compact(long compactedPart)
+    {
+        File newFile = new File(this.file.getPath() + ".tmp");
+
+        // Write the operations which are not done without holding the lock
+        try {
+            write(newFile, read(compactedPart));
+        } catch (IOException e) {
+            this.logger.error("Failed to compact the Solr indexer journal [{}]", this.file, e);
+
+            newFile.delete();
+
+            return;
+        }
+
+        // Add what was appended in the meantime and swap the journals
+        synchronized (this) {
+            if (this.writer == null) {
+                // Disposed in the meantime
+                newFile.delete();
+
+                return;
+            }
+
+            try {
+                this.writer.flush();
+
+                try (InputStream input = new FileInputStream(this.file);
+                    OutputStream output = new FileOutputStream(newFile, true)) {
+                    IOUtils.skipFully(input, compactedPart);
+                    IOUtils.copy(input, output);
+                }
+
+                this.writer.close();
+                this.writer = null;
+
+                Files.move(newFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                this.logger.error("Failed to compact the Solr indexer journal [{}]", this.file, e);
+
+                newFile.delete();
+            }
+
+            try {
+                if (this.writer == null) {
+                    this.writer = createWriter(this.file, true);
+                }
+                this.compactedLength = this.file.length();
+            } catch (IOException e) {
+                this.logger.error("Failed to open the Solr indexer journal [{}]. Indexing operations won't be"
+                    + " journaled anymore.", this.file, e);
+            }
+        }
+    }
+
+    /**
+     * Replace the journal with the passed operations (keeping their sequence number) and open it for appending.
+     */
+    private void rewrite(List<PendingOperation> operations) throws IOException
+    {
+        File newFile = new File(this.file.getPath() + ".tmp");
+        write(newFile, operations);
+        Files.move(newFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+
+        this.writer = createWriter(this.file, true);
+        this.compactedLength = this.file.length();
+    }
+
+    private void write(File journalFile, List<PendingOperation> operations) throws IOException
+    {
+        try (Writer newWriter = createWriter(journalFile, false)) {
+            for (PendingOperation operation : operations) {
+                writeOperation(newWriter, operation.getSequence(), operation.getReference(), operation.isRecurse(),
+                    operation.getOperation());
+            }
+        }
+    }
+
+    private Writer createWriter(File journalFile, boolean append) throws IOException
+    {
+        return new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(journalFile, append), StandardCharsets.UTF_8));
+    }
+
+    private void writeOperation(Writer journalWriter, long operationSequence, EntityReference reference,
+        boolean recurse, IndexOperation operation) throws IOException
+    {
+        String type = NONE;
+        String locale = NONE;
+        String serializedReference = NONE;
+        if (reference != null) {
+            type = reference.getType().name();
+            if (reference instanceof DocumentReference && ((DocumentReference) reference).getLocale() != null) {
+                locale = ((DocumentReference) reference).getLocale().toString();
+            }
+            serializedReference = URLEncoder.encode(this.serializer.serialize(reference), ENCODING);
+        }
+
+        journalWriter.write(StringUtils.joinWith(SEPARATOR, operationSequence, operation, recurse, type, locale,
+            serializedReference));
+        journalWriter.write('\n');
+    }
+
+    /**
+     * @return the operations of the journal which are not acknowledged in it, with their sequence number
+     */
+    private List<PendingOperation> read()
+    {
+        return read(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param length the length of the beginning of the journal to read
+     * @return the operations of the beginning of the journal which are not acknowledged in it, with their sequence
+     *         number
+     */
+    private List<PendingOperation> read(long length)
+    {
+        List<PendingOperation> operations = new ArrayList<>();
+
+        if (this.file.exists()) {
+            long lastAcknowledged = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new BoundedInputStream(new FileInputStream(this.file), length), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String[] elements = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+                    try {
+                        if (elements.length == 2 && elements[0].equals(ACKNOWLEDGE)) {
+                            lastAcknowledged = Math.max(lastAcknowledged, Long.parseLong(elements[1]));
+                        } else {
+                            operations.add(parseOperation(elements));
+                        }
+                    } catch (Exception e) {
+                        // Most probably the last line, which was not fully written
+                        this.logger.warn("Skipping invalid line [{}] in the Solr indexer journal [{}]", line,
+                            this.file, e);
+                    }
+                }
+            } catch (IOException e) {
+                this.logger.error("Failed to read the Solr indexer journal [{}]", this.file, e);
+            }
+
+            // Remove the operations which were done
+            List<PendingOperation> pending = new ArrayList<>(operations.size());
+            for (PendingOperation operation : operations) {
+                if (operation.getSequence() > lastAcknowledged) {
+                    pending.add(operation);
+                }
+            }
+
+            return pending;
+        }
+
+        return operations;
+    }
+
+    private PendingOperation parseOperation(String[] elements) throws IOException
+    {
+        if (elements.length != 6) {
+            throw new IOException("Unexpected number of elements");
+        }
+
+        long operationSequence = Long.parseLong(elements[0]);
+        IndexOperation operation = IndexOperation.valueOf(elements[1]);
+        boolean recurse = Boolean.parseBoolean(elements[2]);
+
+        EntityReference reference = null;
+        if (!elements[3].equals(NONE)) {
+            EntityType type = EntityType.valueOf(elements[3]);
+            reference = this.resolver.resolve(URLDecoder.decode(elements[5], ENCODING), type);
+            if (type == EntityType.DOCUMENT) {
+                Locale locale = elements[4].equals(NONE) ? null : LocaleUtils.toLocale(elements[4]);
+                reference = new DocumentReference(reference, locale);
+            }
+        }
+
+        return new PendingOperation(operationSequence, reference, recurse, operation);
+    }
+}
@@ -98,6 +98,12 @@
      */
     int getIndexerQueueCapacity();
 
+    /**
+     * @return the number of threads used to extract the metadata of the entities to index
+     * @since 12.7RC1
+     */
+    int getIndexerThreads();
+
     /**
      * @return true if a full synchronization job between the database and SOLR index should be run when XWiki starts
      * @since 6.1M2
@@ -121,4 +127,11 @@
      * @since 12.5RC1
      */
     SynchronizeAtStartupMode synchronizeAtStartupMode();
+
+    /**
+     * @return the number of documents to read at once from the database when synchronizing the database and the Solr
+     *         index
+     * @since 12.7RC1
+     */
+    int getSynchronizationBatchSize();
 }
@@ -60,6 +60,13 @@
      */
     int getQueueSize();
 
+    /**
+     * @return the number of operations which were merged with an operation on the same entity already waiting in the
+     *         index/delete queue
+     * @since 12.7RC1
+     */
+    long getCollapsedCount();
+
     /**
      * Start an indexing with specific criteria.
      * 
@@ -22,9 +22,11 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -47,6 +49,7 @@
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryFilter;
 import org.xwiki.query.QueryManager;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 import org.xwiki.wiki.manager.WikiManagerException;
 
@@ -61,6 +64,19 @@
 @Named("database")
 public class DatabaseDocumentIterator extends AbstractDocumentIterator<String>
 {
+    // This iterator must have the same order as the SolrDocumentIterator, otherwise the synchronization fails.
+    private static final String SELECT = "select doc.space, doc.name, doc.language, doc.version from XWikiDocument doc";
+
+    private static final String ORDER_BY = " order by doc.space, doc.name, doc.language";
+
+    private static final String LAST_SPACE = "lastSpace";
+
+    private static final String LAST_NAME = "lastName";
+
+    private static final String DOCUMENT_SPACE = "documentSpace";
+
+    private static final String DOCUMENT_NAME = "documentName";
+
     /**
      * The current index in the list of {@link #results}.
      */
@@ -88,9 +104,22 @@ public class DatabaseDocumentIterator extends AbstractDocumentIterator<String>
     private String wiki;
 
     /**
-     * The offset in the current wiki.
+     * The space of the last document fetched from the current wiki, {@code null} if no document was fetched yet.
      */
-    private int offset;
+    private String lastSpace;
+
+    /**
+     * The name of the last document fetched from the current wiki.
+     */
+    private String lastName;
+
+    /**
+     * The maximum number of documents to fetch at once.
+     */
+    private int batchSize;
+
+    @Inject
+    private SolrConfiguration configuration;
 
     /**
      * Used to query the underlying storage.
@@ -111,6 +140,16 @@ public class DatabaseDocumentIterator extends AbstractDocumentIterator<String>
      */
     private Query query;
 
+    /**
+     * The query used to fetch the documents located after the last fetched document.
+     */
+    private Query nextQuery;
+
+    /**
+     * The query used to fetch all the translations of a document.
+     */
+    private Query documentQuery;
+
     /**
      * The query used to count the documents from the database.
      */
@@ -182,7 +221,8 @@ private List<Object[]> getResults()
                     break;
                 }
                 wiki = getNextWiki();
-                offset = 0;
+                lastSpace = null;
+                lastName = null;
             }
             index = 0;
         }
@@ -195,16 +235,81 @@ private List<Object[]> getResults()
     private void fetchNextResults()
     {
         try {
-            // We use basic pagination (absolute offset) because we don't expect the database to change too much while
-            // the synchronization takes place. Also, the database is used as the reference store, meaning that we
-            // update the Solr index to match the database, not the other way around.
-            results = getQuery().setWiki(wiki).setOffset(offset).execute();
-            offset += LIMIT;
+            // We use keyset pagination (starting after the last fetched document) instead of an absolute offset
+            // because the cost of an offset grows with its value, which makes iterating over big wikis quadratic.
+            List<Object[]> page;
+            if (lastSpace == null) {
+                page = getQuery().setWiki(wiki).execute();
+            } else {
+                Query query = getNextQuery().setWiki(wiki);
+                query.bindValue(LAST_SPACE, lastSpace);
+                query.bindValue(LAST_NAME, lastName);
+                page = query.execute();
+            }
+
+            if (page.size() >= batchSize) {
+                page = completeLastDocument(page);
+            }
+
+            if (!page.isEmpty()) {
+                Object[] lastResult = page.get(page.size() - 1);
+                lastSpace = (String) lastResult[0];
+                lastName = (String) lastResult[1];
+            }
+
+            results = page;
         } catch (QueryException e) {
             throw new IllegalStateException("Failed to query the database.", e);
         }
     }
 
+    /**
+     * The last document of a full page might have translations which didn't fit in the page. Since the next page
+     * starts after the last document we make sure the page contains all its translations.
+     * <p>
+     * The document names are compared by the database, according to its collation, which can be case insensitive (it's
+     * the default on MySQL): {@code Page} and {@code page} are then the same document for the queries. So the rows of
+     * the last document are not identified with {@link String#equals(Object)} but as the ones returned by the query
+     * fetching all its translations. Since the page is sorted by the database, these rows are the last ones of the
+     * page.
+     * 
+     * @param page a full page of results
+     * @return the page of results including all the translations of the last document
+     * @throws QueryException if querying the translations of the last document fails
+     */
+    private List<Object[]> completeLastDocument(List<Object[]> page) throws QueryException
+    {
+        Object[] lastResult = page.get(page.size() - 1);
+
+        Query query = getDocumentQuery().setWiki(wiki);
+        query.bindValue(DOCUMENT_SPACE, lastResult[0]);
+        query.bindValue(DOCUMENT_NAME, lastResult[1]);
+        List<Object[]> documentResults = query.execute();
+
+        Set<List<Object>> documentKeys = new HashSet<>(documentResults.size());
+        for (Object[] result : documentResults) {
+            documentKeys.add(getKey(result));
+        }
+
+        // Remove the rows of the last document from the end of the page
+        int end = page.size();
+        while (end > 0 && documentKeys.contains(getKey(page.get(end - 1)))) {
+            --end;
+        }
+
+        List<Object[]> completePage = new ArrayList<>(end + documentResults.size());
+        completePage.addAll(page.subList(0, end));
+        completePage.addAll(documentResults);
+
+        return completePage;
+    }
+
+    private List<Object> getKey(Object[] result)
+    {
+        // The space, name and locale identify a row
+        return Arrays.asList(result[0], result[1], result[2]);
+    }
+
     /**
      * @return the query used to fetch the documents from the database
      * @throws QueryException if creating the query fails
@@ -212,9 +317,7 @@ private void fetchNextResults()
     private Query getQuery() throws QueryException
     {
         if (query == null) {
-            // This iterator must have the same order as the SolrDocumentIterator, otherwise the synchronization fails.
-            String select = "select doc.space, doc.name, doc.language, doc.version from XWikiDocument doc";
-            String orderBy = " order by doc.space, doc.name, doc.language";
+            batchSize = Math.max(1, configuration.getSynchronizationBatchSize());
 
             EntityReference spaceReference = null;
             EntityReference documentReference = null;
@@ -231,7 +334,13 @@ private Query getQuery() throws QueryException
                 }
             }
 
-            query = queryManager.createQuery(select + whereClause + orderBy, Query.HQL).setLimit(LIMIT);
+            String nextWhereClause = (whereClause.isEmpty() ? " where " : whereClause + " and ")
+                + "(doc.space > :lastSpace or (doc.space = :lastSpace and doc.name > :lastName))";
+
+            query = queryManager.createQuery(SELECT + whereClause + ORDER_BY, Query.HQL).setLimit(batchSize);
+            nextQuery = queryManager.createQuery(SELECT + nextWhereClause + ORDER_BY, Query.HQL).setLimit(batchSize);
+            documentQuery = queryManager.createQuery(
+                SELECT + " where doc.space = :documentSpace and doc.name = :documentName" + ORDER_BY, Query.HQL);
             countQuery = queryManager.createQuery(whereClause, Query.HQL).addFilter(countFilter);
 
             if (spaceReference != null) {
@@ -242,12 +351,35 @@ private Query getQuery() throws QueryException
             }
 
             for (Map.Entry<String, Object> parameter : query.getNamedParameters().entrySet()) {
+                nextQuery.bindValue(parameter.getKey(), parameter.getValue());
                 countQuery.bindValue(parameter.getKey(), parameter.getValue());
             }
         }
         return query;
     }
 
+    /**
+     * @return the query used to fetch the documents located after the last fetched document
+     * @throws QueryException if creating the query fails
+     */
+    private Query getNextQuery() throws QueryException
+    {
+        getQuery();
+
+        return nextQuery;
+    }
+
+    /**
+     * @return the query used to fetch all the translations of a document
+     * @throws QueryException if creating the query fails
+     */
+    private Query getDocumentQuery() throws QueryException
+    {
+        getQuery();
+
+        return documentQuery;
+    }
+
     /**
      * @return the next wiki, in alphabetical order
      */
@@ -42,6 +42,7 @@
 import org.xwiki.security.authorization.AccessDeniedException;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
+import org.xwiki.stability.Unstable;
 
 import com.xpn.xwiki.XWikiContext;
 
@@ -191,6 +192,17 @@ public int getQueueSize()
         return this.solrIndexer.getQueueSize();
     }
 
+    /**
+     * @return the number of index/delete operations which were merged with an operation on the same entity already
+     *         waiting in the queue
+     * @since 12.7RC1
+     */
+    @Unstable
+    public long getCollapsedCount()
+    {
+        return this.solrIndexer.getCollapsedCount();
+    }
+
     /**
      * Extract a {@link DocumentReference} from the given {@link SolrDocument} (e.g. search result).
      * 
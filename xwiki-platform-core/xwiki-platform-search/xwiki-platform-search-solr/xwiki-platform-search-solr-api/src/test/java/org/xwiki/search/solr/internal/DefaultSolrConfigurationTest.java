@@ -85,6 +85,24 @@ public void getIndexerQueueCapacity()
 
     }
 
+    @Test
+    public void getSynchronizationBatchSize()
+    {
+        when(this.source.getProperty(DefaultSolrConfiguration.SOLR_SYNCHRONIZE_BATCH_SIZE,
+            DefaultSolrConfiguration.SOLR_SYNCHRONIZE_BATCH_SIZE_DEFAULT)).thenReturn(42);
+
+        assertEquals(42, this.configuration.getSynchronizationBatchSize());
+    }
+
+    @Test
+    public void getIndexerThreads()
+    {
+        when(this.source.getProperty(DefaultSolrConfiguration.SOLR_INDEXER_THREADS_PROPERTY,
+            DefaultSolrConfiguration.SOLR_INDEXER_THREADS_DEFAULT)).thenReturn(4);
+
+        assertEquals(4, this.configuration.getIndexerThreads());
+    }
+
     @Test
     public void synchronizeAtStartup()
     {
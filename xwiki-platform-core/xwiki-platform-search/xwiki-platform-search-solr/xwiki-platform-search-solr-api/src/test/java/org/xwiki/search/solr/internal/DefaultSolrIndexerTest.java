@@ -0,0 +1,232 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.InOrder;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.search.solr.internal.api.SolrIndexerException;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
+import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
+import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import com.xpn.xwiki.web.Utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DefaultSolrIndexer}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList(DefaultSolrIndexer.class)
+public class DefaultSolrIndexerTest
+{
+    private static final DocumentReference DOCUMENT_A = new DocumentReference("wiki", "Space", "A");
+
+    private static final DocumentReference DOCUMENT_B = new DocumentReference("wiki", "Space", "B");
+
+    private static final DocumentReference DOCUMENT_X = new DocumentReference("wiki", "Space", "X");
+
+    private static final DocumentReference DOCUMENT_Y = new DocumentReference("wiki", "Space", "Y");
+
+    @MockComponent
+    private SolrConfiguration configuration;
+
+    @MockComponent
+    private SolrInstance solrInstance;
+
+    @MockComponent
+    private SolrReferenceResolver solrReferenceResolver;
+
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private ExecutionContextManager ecim;
+
+    @MockComponent
+    private JobExecutor jobs;
+
+    @MockComponent
+    private SolrIndexerJournal journal;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @RegisterExtension
+    LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    private SolrMetadataExtractor extractor;
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        // Used by the resolve thread to initialize its execution context
+        Utils.setComponentManager(this.componentManager);
+
+        when(this.configuration.getIndexerQueueCapacity()).thenReturn(100);
+        when(this.configuration.getIndexerBatchSize()).thenReturn(100);
+        when(this.configuration.getIndexerBatchMaxLengh()).thenReturn(10000);
+
+        this.extractor = this.componentManager.registerMockComponent(SolrMetadataExtractor.class, "document");
+    }
+
+    @Test
+    public void extractInParallel() throws Exception
+    {
+        when(this.configuration.getIndexerThreads()).thenReturn(4);
+
+        // Hold the index thread until all the operations are queued so that they are extracted at the same time
+        CountDownLatch allQueued = new CountDownLatch(1);
+        when(this.solrReferenceResolver.getId(DOCUMENT_X)).then(invocation -> {
+            allQueued.await();
+
+            return "X";
+        });
+        when(this.solrReferenceResolver.getQuery(DOCUMENT_A)).thenReturn("A query");
+        when(this.solrReferenceResolver.getQuery(DOCUMENT_Y)).then(invocation -> {
+            allQueued.countDown();
+
+            return "Y query";
+        });
+
+        // The first extraction of A gives the second one a chance to finish first
+        LengthSolrInputDocument documentA1 = new LengthSolrInputDocument();
+        LengthSolrInputDocument documentA2 = new LengthSolrInputDocument();
+        CountDownLatch secondExtraction = new CountDownLatch(1);
+        AtomicInteger extractionsA = new AtomicInteger();
+        when(this.extractor.getSolrDocument(DOCUMENT_A)).then(invocation -> {
+            if (extractionsA.incrementAndGet() == 1) {
+                secondExtraction.await(10, TimeUnit.SECONDS);
+
+                return documentA1;
+            }
+
+            secondExtraction.countDown();
+
+            return documentA2;
+        });
+        when(this.extractor.getSolrDocument(DOCUMENT_B)).thenThrow(new SolrIndexerException("error"));
+
+        CountDownLatch done = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            done.countDown();
+
+            return null;
+        }).when(this.solrInstance).deleteByQuery("Y query");
+
+        SolrIndexer indexer = this.componentManager.getInstance(SolrIndexer.class);
+
+        indexer.delete(DOCUMENT_X, false);
+        indexer.index(DOCUMENT_A, false);
+        indexer.index(DOCUMENT_B, false);
+        indexer.delete(DOCUMENT_A, true);
+        indexer.index(DOCUMENT_A, false);
+        indexer.delete(DOCUMENT_Y, true);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // The operations are sent in the order they were queued, whatever the order of the extractions
+        InOrder inOrder = inOrder(this.solrInstance);
+        inOrder.verify(this.solrInstance).delete("X");
+        inOrder.verify(this.solrInstance).add(same(documentA1));
+        inOrder.verify(this.solrInstance).deleteByQuery("A query");
+        inOrder.verify(this.solrInstance).add(same(documentA2));
+        inOrder.verify(this.solrInstance).deleteByQuery("Y query");
+
+        // The failed extraction does not prevent the next operations from being sent
+        verify(this.solrInstance, times(2)).add(any(LengthSolrInputDocument.class));
+        assertEquals(1, this.logCapture.size());
+        assertTrue(this.logCapture.getMessage(0).startsWith("Failed to process entry [INDEX "));
+    }
+
+    @Test
+    public void queueAgainRolledBackOperations() throws Exception
+    {
+        when(this.solrReferenceResolver.getId(DOCUMENT_X)).thenReturn("X");
+        when(this.journal.isAvailable()).thenReturn(true);
+        when(this.journal.append(DOCUMENT_X, false, IndexOperation.DELETE)).thenReturn(1L);
+        when(this.journal.getUnacknowledgedOperations()).thenReturn(
+            Arrays.asList(new SolrIndexerJournal.PendingOperation(1, DOCUMENT_X, false, IndexOperation.DELETE)));
+        doThrow(new SolrServerException("error")).doNothing().when(this.solrInstance).commit();
+
+        CountDownLatch acknowledged = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            acknowledged.countDown();
+
+            return null;
+        }).when(this.journal).acknowledge(1);
+
+        SolrIndexer indexer = this.componentManager.getInstance(SolrIndexer.class);
+
+        indexer.delete(DOCUMENT_X, false);
+
+        assertTrue(acknowledged.await(10, TimeUnit.SECONDS));
+
+        // The operation is only acknowledged once it has been sent again and successfully committed
+        InOrder inOrder = inOrder(this.solrInstance, this.journal);
+        inOrder.verify(this.solrInstance).delete("X");
+        inOrder.verify(this.solrInstance).commit();
+        inOrder.verify(this.solrInstance).rollback();
+        inOrder.verify(this.solrInstance).delete("X");
+        inOrder.verify(this.solrInstance).commit();
+        inOrder.verify(this.journal).acknowledge(1);
+        verify(this.journal).acknowledge(anyLong());
+
+        assertEquals(2, this.logCapture.size());
+        assertEquals("Failed to commit index changes to the Solr server. Rolling back.",
+            this.logCapture.getMessage(0));
+        assertEquals("Queued again the [1] Solr indexing operations which were not committed",
+            this.logCapture.getMessage(1));
+    }
+}
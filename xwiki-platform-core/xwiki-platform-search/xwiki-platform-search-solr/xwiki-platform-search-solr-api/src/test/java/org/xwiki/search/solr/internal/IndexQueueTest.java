@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link IndexQueue}.
+ * 
+ * @version $Id$
+ */
+public class IndexQueueTest
+{
+    private static final DocumentReference DOCUMENT = new DocumentReference("wiki", "Space", "Page");
+
+    private static final DocumentReference OTHER_DOCUMENT = new DocumentReference("wiki", "Space", "Other");
+
+    private final IndexQueue queue = new IndexQueue(10);
+
+    @Test
+    public void deleteAfterIndex() throws Exception
+    {
+        IndexQueueEntry indexEntry = new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX);
+        this.queue.put(indexEntry);
+        this.queue.put(new IndexQueueEntry(OTHER_DOCUMENT, IndexOperation.INDEX));
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.DELETE));
+
+        assertEquals(2, this.queue.size());
+        assertEquals(1, this.queue.getCollapsedCount());
+
+        // The delete supersedes the index and keeps its position
+        IndexQueueEntry entry = this.queue.take();
+        assertSame(indexEntry, entry);
+        assertEquals(IndexOperation.DELETE, entry.operation);
+        assertEquals(OTHER_DOCUMENT, this.queue.take().reference);
+        assertNull(this.queue.poll());
+    }
+
+    @Test
+    public void reindex() throws Exception
+    {
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX));
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.DELETE));
+        assertTrue(this.queue.offer(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX)));
+
+        assertEquals(1, this.queue.size());
+        assertEquals(2, this.queue.getCollapsedCount());
+        assertEquals(IndexOperation.INDEX, this.queue.take().operation);
+
+        // An entity which is not pending anymore gets a new entry
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX));
+
+        assertEquals(1, this.queue.size());
+        assertEquals(2, this.queue.getCollapsedCount());
+    }
+
+    @Test
+    public void differentLocale() throws Exception
+    {
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX));
+        this.queue.put(new IndexQueueEntry(new DocumentReference(DOCUMENT, Locale.FRENCH), IndexOperation.DELETE));
+        this.queue.put(new IndexQueueEntry(new DocumentReference(DOCUMENT, Locale.ROOT), IndexOperation.DELETE));
+
+        // Each translation is a different entity in the index
+        assertEquals(3, this.queue.size());
+        assertEquals(0, this.queue.getCollapsedCount());
+        assertEquals(IndexOperation.INDEX, this.queue.take().operation);
+        assertEquals(Locale.FRENCH, ((DocumentReference) this.queue.take().reference).getLocale());
+        assertEquals(Locale.ROOT, ((DocumentReference) this.queue.take().reference).getLocale());
+    }
+
+    @Test
+    public void deleteQuery() throws Exception
+    {
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX));
+        this.queue.put(new IndexQueueEntry("query", IndexOperation.DELETE));
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX));
+
+        // The operations are not merged across a delete query
+        assertEquals(3, this.queue.size());
+        assertEquals(0, this.queue.getCollapsedCount());
+    }
+
+    @Test
+    public void acknowledge() throws Exception
+    {
+        this.queue.put(new IndexQueueEntry(1, 0));
+        this.queue.put(new IndexQueueEntry(2, 0));
+        this.queue.put(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX));
+        this.queue.put(new IndexQueueEntry(3, 0));
+
+        // Only the last of contiguous acknowledgments is kept
+        assertEquals(3, this.queue.size());
+        assertEquals(2, this.queue.take().journalSequence);
+        assertEquals(DOCUMENT, this.queue.take().reference);
+        assertEquals(3, this.queue.take().journalSequence);
+    }
+
+    @Test
+    public void offerWhenFull() throws Exception
+    {
+        IndexQueue smallQueue = new IndexQueue(1);
+
+        assertTrue(smallQueue.offer(new IndexQueueEntry(DOCUMENT, IndexOperation.INDEX)));
+        assertFalse(smallQueue.offer(new IndexQueueEntry(OTHER_DOCUMENT, IndexOperation.INDEX)));
+        // Merging does not need any space
+        assertTrue(smallQueue.offer(new IndexQueueEntry(DOCUMENT, IndexOperation.DELETE)));
+        assertEquals(1, smallQueue.size());
+    }
+}
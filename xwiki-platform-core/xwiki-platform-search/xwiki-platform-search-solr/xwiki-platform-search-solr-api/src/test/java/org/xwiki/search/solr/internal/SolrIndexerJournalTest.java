@@ -0,0 +1,228 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.XWikiTempDir;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link SolrIndexerJournal}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList(SolrIndexerJournal.class)
+public class SolrIndexerJournalTest
+{
+    private static final DocumentReference DOCUMENT = new DocumentReference("wiki", "Space", "Page");
+
+    private static final WikiReference WIKI = new WikiReference("wiki 2");
+
+    @XWikiTempDir
+    private File permanentDirectory;
+
+    @MockComponent
+    private Environment environment;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> serializer;
+
+    @MockComponent
+    private EntityReferenceResolver<String> resolver;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    private SolrIndexerJournal journal;
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        when(this.environment.getPermanentDirectory()).thenReturn(this.permanentDirectory);
+
+        when(this.serializer.serialize(any(EntityReference.class))).thenReturn("wiki:Space.Page");
+        when(this.serializer.serialize(WIKI)).thenReturn("wiki 2");
+        when(this.resolver.resolve("wiki:Space.Page", EntityType.DOCUMENT)).thenReturn(DOCUMENT);
+        when(this.resolver.resolve("wiki 2", EntityType.WIKI)).thenReturn(WIKI);
+
+        this.journal = this.componentManager.getInstance(SolrIndexerJournal.class);
+    }
+
+    private void restart() throws Exception
+    {
+        this.journal.dispose();
+        this.journal.initialize();
+    }
+
+    @Test
+    public void replayNotAcknowledgedOperations() throws Exception
+    {
+        assertTrue(this.journal.takePendingOperations().isEmpty());
+
+        assertEquals(1, this.journal.append(DOCUMENT, false, IndexOperation.INDEX));
+        assertEquals(2, this.journal.append(WIKI, true, IndexOperation.DELETE));
+        this.journal.acknowledge(2);
+        assertEquals(3, this.journal.append(new DocumentReference(DOCUMENT, Locale.FRENCH), false,
+            IndexOperation.DELETE));
+        assertEquals(4, this.journal.append(null, true, IndexOperation.INDEX));
+        assertEquals(5, this.journal.append(WIKI, true, IndexOperation.INDEX));
+        this.journal.acknowledge(3);
+
+        restart();
+
+        List<SolrIndexerJournal.PendingOperation> operations = this.journal.takePendingOperations();
+        assertEquals(2, operations.size());
+        assertEquals(1, operations.get(0).getSequence());
+        assertNull(operations.get(0).getReference());
+        assertTrue(operations.get(0).isRecurse());
+        assertEquals(IndexOperation.INDEX, operations.get(0).getOperation());
+        assertEquals(2, operations.get(1).getSequence());
+        assertEquals(WIKI, operations.get(1).getReference());
+        assertTrue(operations.get(1).isRecurse());
+        assertEquals(IndexOperation.INDEX, operations.get(1).getOperation());
+        assertTrue(this.journal.takePendingOperations().isEmpty());
+
+        // The pending operations are still journaled until they are acknowledged
+        assertEquals(3, this.journal.append(DOCUMENT, false, IndexOperation.INDEX));
+
+        restart();
+
+        operations = this.journal.takePendingOperations();
+        assertEquals(3, operations.size());
+        assertEquals(DOCUMENT, operations.get(2).getReference());
+        assertFalse(operations.get(2).isRecurse());
+
+        this.journal.acknowledge(3);
+
+        restart();
+
+        assertTrue(this.journal.takePendingOperations().isEmpty());
+    }
+
+    @Test
+    public void replayDocumentLocale() throws Exception
+    {
+        this.journal.append(new DocumentReference(DOCUMENT, Locale.FRENCH), false, IndexOperation.INDEX);
+        this.journal.append(new DocumentReference(DOCUMENT, Locale.ROOT), false, IndexOperation.INDEX);
+        this.journal.append(DOCUMENT, false, IndexOperation.INDEX);
+
+        restart();
+
+        List<SolrIndexerJournal.PendingOperation> operations = this.journal.takePendingOperations();
+        assertEquals(3, operations.size());
+        assertEquals(Locale.FRENCH, ((DocumentReference) operations.get(0).getReference()).getLocale());
+        assertEquals(Locale.ROOT, ((DocumentReference) operations.get(1).getReference()).getLocale());
+        assertNull(((DocumentReference) operations.get(2).getReference()).getLocale());
+    }
+
+    @Test
+    public void getUnacknowledgedOperations() throws Exception
+    {
+        this.journal.append(DOCUMENT, false, IndexOperation.INDEX);
+        this.journal.append(WIKI, true, IndexOperation.DELETE);
+        this.journal.append(DOCUMENT, false, IndexOperation.DELETE);
+        this.journal.acknowledge(1);
+
+        List<SolrIndexerJournal.PendingOperation> operations = this.journal.getUnacknowledgedOperations();
+        assertEquals(2, operations.size());
+        assertEquals(2, operations.get(0).getSequence());
+        assertEquals(WIKI, operations.get(0).getReference());
+        assertEquals(IndexOperation.DELETE, operations.get(0).getOperation());
+        assertEquals(3, operations.get(1).getSequence());
+        assertEquals(DOCUMENT, operations.get(1).getReference());
+
+        // Nothing is removed from the journal
+        assertEquals(2, this.journal.getUnacknowledgedOperations().size());
+    }
+
+    @Test
+    public void flush() throws Exception
+    {
+        File file = new File(this.permanentDirectory, SolrIndexerJournal.JOURNAL_PATH);
+
+        this.journal.append(DOCUMENT, false, IndexOperation.INDEX);
+        this.journal.append(WIKI, true, IndexOperation.DELETE);
+
+        // The operations are buffered until flushed
+        assertEquals(0, file.length());
+
+        this.journal.flush();
+
+        long length = file.length();
+        assertTrue(length > 0);
+
+        // The acknowledgments are written right away
+        this.journal.acknowledge(1);
+
+        assertTrue(file.length() > length);
+    }
+
+    @Test
+    public void compactUnderContinuousIndexing() throws Exception
+    {
+        File file = new File(this.permanentDirectory, SolrIndexerJournal.JOURNAL_PATH);
+
+        // There is always an operation not yet acknowledged
+        long maxLength = 0;
+        for (long sequence = 1; sequence <= 50000; ++sequence) {
+            assertEquals(sequence, this.journal.append(DOCUMENT, false, IndexOperation.INDEX));
+            this.journal.acknowledge(sequence - 1);
+            maxLength = Math.max(maxLength, file.length());
+        }
+
+        // The journal does not grow without limit
+        assertTrue(maxLength < 2 * 1024 * 1024, "The journal is too big: " + maxLength);
+
+        // The operation not yet acknowledged is kept
+        List<SolrIndexerJournal.PendingOperation> operations = this.journal.getUnacknowledgedOperations();
+        assertEquals(1, operations.size());
+        assertEquals(50000, operations.get(0).getSequence());
+
+        restart();
+
+        operations = this.journal.takePendingOperations();
+        assertEquals(1, operations.size());
+        assertEquals(DOCUMENT, operations.get(0).getReference());
+    }
+}
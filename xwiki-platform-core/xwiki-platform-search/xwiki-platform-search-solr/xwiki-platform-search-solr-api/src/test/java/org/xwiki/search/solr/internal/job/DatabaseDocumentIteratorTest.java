@@ -38,10 +38,13 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryFilter;
 import org.xwiki.query.QueryManager;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -49,10 +52,12 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -65,6 +70,16 @@
 @ComponentTest
 public class DatabaseDocumentIteratorTest
 {
+    private static final String SELECT =
+        "select doc.space, doc.name, doc.language, doc.version from XWikiDocument doc";
+
+    private static final String ORDER_BY = " order by doc.space, doc.name, doc.language";
+
+    private static final String[] LOCALES = { "de", "en", "fr" };
+
+    private static final String KEYSET_CONDITION =
+        "(doc.space > :lastSpace or (doc.space = :lastSpace and doc.name > :lastName))";
+
     @MockComponent
     private WikiDescriptorManager wikiDescriptorManager;
 
@@ -83,6 +98,9 @@
     @Named("count")
     private QueryFilter countQueryFilter;
 
+    @MockComponent
+    private SolrConfiguration configuration;
+
     @InjectMockComponents
     private DatabaseDocumentIterator databaseIterator;
 
@@ -91,6 +109,18 @@ public void configure() throws Exception
     {
         // We explicitly leave the list of wikis unsorted.
         when(this.wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("chess", "tennis"));
+
+        when(this.configuration.getSynchronizationBatchSize()).thenReturn(100);
+    }
+
+    private Query mockNextQuery(String whereClause, Query result) throws Exception
+    {
+        Query nextQuery = mock(Query.class);
+        when(nextQuery.setLimit(anyInt())).thenReturn(nextQuery);
+        when(nextQuery.setWiki(anyString())).thenReturn(result);
+        when(this.queryManager.createQuery(SELECT + whereClause + ORDER_BY, Query.HQL)).thenReturn(nextQuery);
+
+        return nextQuery;
     }
 
     @Test
@@ -108,9 +138,9 @@ public void iterateAllWikis() throws Exception
         Query emptyQuery = mock(Query.class);
         when(emptyQuery.execute()).thenReturn(Collections.emptyList());
 
+        mockNextQuery(" where " + KEYSET_CONDITION, emptyQuery);
+
         Query chessQuery = mock(Query.class);
-        when(chessQuery.setOffset(0)).thenReturn(chessQuery);
-        when(chessQuery.setOffset(100)).thenReturn(emptyQuery);
         when(chessQuery.execute()).thenReturn(Arrays.<Object>asList(new Object[] { "Blog.Code", "WebHome", "", "3.2" },
             new Object[] { "Main", "Welcome", "en", "1.1" }, new Object[] { "XWiki.Syntax", "Links", "fr", "2.5" }));
 
@@ -122,8 +152,6 @@ public void iterateAllWikis() throws Exception
             createDocumentReference("chess", Arrays.asList("XWiki", "Syntax"), "Links", Locale.FRENCH);
 
         Query tennisQuery = mock(Query.class);
-        when(tennisQuery.setOffset(0)).thenReturn(tennisQuery);
-        when(tennisQuery.setOffset(100)).thenReturn(emptyQuery);
         when(tennisQuery.execute()).thenReturn(Arrays.<Object>asList(new Object[] { "Main", "Welcome", "en", "2.1" },
             new Object[] { "XWiki.Syntax", "Links", "fr", "1.3" }));
 
@@ -149,9 +177,7 @@ public void iterateAllWikis() throws Exception
         when(countQuery.setWiki("chess")).thenReturn(chessCountQuery);
         when(countQuery.setWiki("tennis")).thenReturn(tennisCountQuery);
 
-        when(
-            this.queryManager.createQuery("select doc.space, doc.name, doc.language, doc.version from XWikiDocument doc"
-                + " order by doc.space, doc.name, doc.language", Query.HQL)).thenReturn(query);
+        when(this.queryManager.createQuery(SELECT + ORDER_BY, Query.HQL)).thenReturn(query);
         when(this.queryManager.createQuery("", Query.HQL)).thenReturn(countQuery);
 
         DocumentIterator<String> iterator = this.databaseIterator;
@@ -184,8 +210,6 @@ public void iterateOneWiki() throws Exception
         Query query = mock(Query.class);
         when(query.setLimit(anyInt())).thenReturn(query);
         when(query.setWiki(rootReference.getWikiReference().getName())).thenReturn(query);
-        when(query.setOffset(0)).thenReturn(query);
-        when(query.setOffset(100)).thenReturn(emptyQuery);
         when(query.execute()).thenReturn(Collections.<Object>singletonList(new Object[] { "A.B", "C", "de", "3.1" }));
 
         Map<String, Object> namedParameters = new HashMap<String, Object>();
@@ -197,9 +221,8 @@ public void iterateOneWiki() throws Exception
         when(countQuery.addFilter(this.countQueryFilter)).thenReturn(countQuery);
 
         String whereClause = " where doc.space = :space and doc.name = :name";
-        when(
-            this.queryManager.createQuery("select doc.space, doc.name, doc.language, doc.version from XWikiDocument doc"
-                + whereClause + " order by doc.space, doc.name, doc.language", Query.HQL)).thenReturn(query);
+        when(this.queryManager.createQuery(SELECT + whereClause + ORDER_BY, Query.HQL)).thenReturn(query);
+        Query nextQuery = mockNextQuery(whereClause + " and " + KEYSET_CONDITION, emptyQuery);
         when(this.queryManager.createQuery(whereClause, Query.HQL)).thenReturn(countQuery);
 
         DocumentIterator<String> iterator = this.databaseIterator;
@@ -221,6 +244,191 @@ public void iterateOneWiki() throws Exception
 
         verify(countQuery).bindValue("space", "A.B");
         verify(countQuery).bindValue("name", "C");
+
+        verify(nextQuery).bindValue("space", "A.B");
+        verify(nextQuery).bindValue("name", "C");
+        verify(emptyQuery).bindValue("lastSpace", "A.B");
+        verify(emptyQuery).bindValue("lastName", "C");
+    }
+
+    /**
+     * Iterate a big synthetic wiki to validate that each document is fetched exactly once, with a number of queries
+     * proportional to the number of documents, whatever the position of the page.
+     */
+    @Test
+    public void iterateBigWikiWithKeysetPagination() throws Exception
+    {
+        when(this.configuration.getSynchronizationBatchSize()).thenReturn(50);
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("big"));
+
+        // Each document has a default translation and some have several other translations, which regularly end up
+        // split between two pages
+        List<Object[]> database = new ArrayList<>();
+        for (int spaceIndex = 0; spaceIndex < 100; spaceIndex++) {
+            String space = String.format("Space%03d", spaceIndex);
+            when(this.explicitEntityReferenceResolver.resolve(space, EntityType.SPACE, new WikiReference("big")))
+                .thenReturn(new SpaceReference("big", space));
+            for (int pageIndex = 0; pageIndex < 100; pageIndex++) {
+                String name = String.format("Page%03d", pageIndex);
+                database.add(new Object[] { space, name, "", "1.1" });
+                for (int localeIndex = 0; localeIndex < pageIndex % 4; localeIndex++) {
+                    database.add(new Object[] { space, name, LOCALES[localeIndex], "1.1" });
+                }
+            }
+        }
+
+        Query query = mock(Query.class);
+        when(query.setLimit(50)).thenReturn(query);
+        when(query.setWiki("big")).thenReturn(query);
+        when(query.getNamedParameters()).thenReturn(Collections.<String, Object>emptyMap());
+        when(query.execute()).thenReturn(new ArrayList<Object>(database.subList(0, 50)));
+        when(this.queryManager.createQuery(SELECT + ORDER_BY, Query.HQL)).thenReturn(query);
+
+        Map<String, Object> nextParameters = new HashMap<>();
+        Query nextQuery = mock(Query.class);
+        when(nextQuery.setLimit(50)).thenReturn(nextQuery);
+        when(nextQuery.setWiki("big")).thenReturn(nextQuery);
+        when(nextQuery.bindValue(anyString(), any())).then(invocation -> {
+            nextParameters.put(invocation.getArgument(0), invocation.getArgument(1));
+            return nextQuery;
+        });
+        when(nextQuery.execute()).then(invocation -> {
+            List<Object[]> page = new ArrayList<>();
+            for (Object[] row : database) {
+                int spaceComparison = ((String) row[0]).compareTo((String) nextParameters.get("lastSpace"));
+                int nameComparison = ((String) row[1]).compareTo((String) nextParameters.get("lastName"));
+                if (spaceComparison > 0 || (spaceComparison == 0 && nameComparison > 0)) {
+                    page.add(row);
+                    if (page.size() == 50) {
+                        break;
+                    }
+                }
+            }
+            return page;
+        });
+        when(this.queryManager.createQuery(SELECT + " where " + KEYSET_CONDITION + ORDER_BY, Query.HQL))
+            .thenReturn(nextQuery);
+
+        Map<String, Object> documentParameters = new HashMap<>();
+        Query documentQuery = mock(Query.class);
+        when(documentQuery.setWiki("big")).thenReturn(documentQuery);
+        when(documentQuery.bindValue(anyString(), any())).then(invocation -> {
+            documentParameters.put(invocation.getArgument(0), invocation.getArgument(1));
+            return documentQuery;
+        });
+        when(documentQuery.execute()).then(invocation -> {
+            List<Object[]> translations = new ArrayList<>();
+            for (Object[] row : database) {
+                if (row[0].equals(documentParameters.get("documentSpace"))
+                    && row[1].equals(documentParameters.get("documentName"))) {
+                    translations.add(row);
+                }
+            }
+            return translations;
+        });
+        when(this.queryManager.createQuery(
+            SELECT + " where doc.space = :documentSpace and doc.name = :documentName" + ORDER_BY, Query.HQL))
+                .thenReturn(documentQuery);
+
+        List<Pair<DocumentReference, String>> actualResults = new ArrayList<>();
+        while (this.databaseIterator.hasNext()) {
+            actualResults.add(this.databaseIterator.next());
+        }
+
+        assertEquals(database.size(), actualResults.size());
+        for (int i = 0; i < database.size(); i++) {
+            Object[] row = database.get(i);
+            DocumentReference documentReference = actualResults.get(i).getLeft();
+            assertEquals(row[0], documentReference.getLastSpaceReference().getName());
+            assertEquals(row[1], documentReference.getName());
+            assertEquals(row[2], documentReference.getLocale() != null ? documentReference.getLocale().toString() : "");
+        }
+
+        // At most one query per page (plus one to know there is nothing left), whatever the size of the wiki
+        verify(nextQuery, atMost((database.size() + 49) / 50)).execute();
+    }
+
+    /**
+     * With a case insensitive collation (the default on MySQL) the database compares {@code Page} and {@code page} as
+     * the same name: make sure they are neither duplicated nor skipped when they end a page.
+     */
+    @Test
+    public void iterateWithCaseInsensitiveCollation() throws Exception
+    {
+        when(this.configuration.getSynchronizationBatchSize()).thenReturn(3);
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("ci"));
+        when(this.explicitEntityReferenceResolver.resolve("Main", EntityType.SPACE, new WikiReference("ci")))
+            .thenReturn(new SpaceReference("ci", "Main"));
+
+        // Sorted as a case insensitive database would
+        List<Object[]> database = Arrays.asList(new Object[] { "Main", "A", "", "1.1" },
+            new Object[] { "Main", "page", "", "1.1" }, new Object[] { "Main", "Page", "fr", "1.1" },
+            new Object[] { "Main", "Z", "", "1.1" });
+
+        Query query = mock(Query.class);
+        when(query.setLimit(3)).thenReturn(query);
+        when(query.setWiki("ci")).thenReturn(query);
+        when(query.getNamedParameters()).thenReturn(Collections.<String, Object>emptyMap());
+        when(query.execute()).thenReturn(new ArrayList<Object>(database.subList(0, 3)));
+        when(this.queryManager.createQuery(SELECT + ORDER_BY, Query.HQL)).thenReturn(query);
+
+        Map<String, Object> nextParameters = new HashMap<>();
+        Query nextQuery = mock(Query.class);
+        when(nextQuery.setLimit(3)).thenReturn(nextQuery);
+        when(nextQuery.setWiki("ci")).thenReturn(nextQuery);
+        when(nextQuery.bindValue(anyString(), any())).then(invocation -> {
+            nextParameters.put(invocation.getArgument(0), invocation.getArgument(1));
+            return nextQuery;
+        });
+        when(nextQuery.execute()).then(invocation -> {
+            List<Object[]> page = new ArrayList<>();
+            for (Object[] row : database) {
+                int spaceComparison =
+                    String.CASE_INSENSITIVE_ORDER.compare((String) row[0], (String) nextParameters.get("lastSpace"));
+                int nameComparison =
+                    String.CASE_INSENSITIVE_ORDER.compare((String) row[1], (String) nextParameters.get("lastName"));
+                if (spaceComparison > 0 || (spaceComparison == 0 && nameComparison > 0)) {
+                    page.add(row);
+                }
+            }
+            return page;
+        });
+        when(this.queryManager.createQuery(SELECT + " where " + KEYSET_CONDITION + ORDER_BY, Query.HQL))
+            .thenReturn(nextQuery);
+
+        Map<String, Object> documentParameters = new HashMap<>();
+        Query documentQuery = mock(Query.class);
+        when(documentQuery.setWiki("ci")).thenReturn(documentQuery);
+        when(documentQuery.bindValue(anyString(), any())).then(invocation -> {
+            documentParameters.put(invocation.getArgument(0), invocation.getArgument(1));
+            return documentQuery;
+        });
+        when(documentQuery.execute()).then(invocation -> {
+            List<Object[]> translations = new ArrayList<>();
+            for (Object[] row : database) {
+                if (((String) row[0]).equalsIgnoreCase((String) documentParameters.get("documentSpace"))
+                    && ((String) row[1]).equalsIgnoreCase((String) documentParameters.get("documentName"))) {
+                    translations.add(row);
+                }
+            }
+            return translations;
+        });
+        when(this.queryManager.createQuery(
+            SELECT + " where doc.space = :documentSpace and doc.name = :documentName" + ORDER_BY, Query.HQL))
+                .thenReturn(documentQuery);
+
+        List<Pair<DocumentReference, String>> actualResults = new ArrayList<>();
+        while (this.databaseIterator.hasNext()) {
+            actualResults.add(this.databaseIterator.next());
+        }
+
+        List<DocumentReference> expectedReferences =
+            Arrays.asList(new DocumentReference("ci", "Main", "A"), new DocumentReference("ci", "Main", "page"),
+                new DocumentReference("ci", "Main", "Page", Locale.FRENCH), new DocumentReference("ci", "Main", "Z"));
+        assertEquals(expectedReferences.size(), actualResults.size());
+        for (int i = 0; i < expectedReferences.size(); i++) {
+            assertEquals(expectedReferences.get(i), actualResults.get(i).getLeft());
+        }
     }
 
     private DocumentReference createDocumentReference(String wiki, List<String> spaces, String name, Locale locale)
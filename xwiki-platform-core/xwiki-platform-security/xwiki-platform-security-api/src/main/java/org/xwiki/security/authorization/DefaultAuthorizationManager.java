@@ -19,9 +19,14 @@
  */
 package org.xwiki.security.authorization;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -118,13 +123,56 @@ public boolean hasAccess(Right right, DocumentReference userReference, EntityRef
         try {
             return hasSecurityAccess(right, userReference, entityReference, false);
         } catch (Exception e) {
-            this.logger.error(String.format("Failed to load rights for user [%s] on [%s].",
-                (userReference == null) ? AuthorizationException.NULL_USER : userReference,
-                (entityReference == null) ? AuthorizationException.NULL_ENTITY : entityReference), e);
+            logLoadError(userReference, entityReference, e);
             return false;
         }
     }
 
+    @Override
+    public <E extends EntityReference> List<E> filterAccessible(Right right, DocumentReference userReference,
+        Collection<E> entityReferences)
+    {
+        if (isSuperAdmin(userReference)) {
+            return new ArrayList<>(entityReferences);
+        }
+
+        if (right == null || right == Right.ILLEGAL || (!right.isReadOnly() && xwikiBridge.isWikiReadOnly())
+            || (userReference == null && xwikiBridge.needsAuthentication(right))) {
+            return Collections.emptyList();
+        }
+
+        UserSecurityReference user = securityReferenceFactory.newUserReference(userReference);
+
+        // The access resolved for the entities of the hierarchy, shared between the passed entities (siblings
+        // generally end up with the access of the same parent)
+        Map<SecurityReference, SecurityAccess> resolvedAccesses = new HashMap<>();
+
+        List<E> accessibleReferences = new ArrayList<>(entityReferences.size());
+        for (E entityReference : entityReferences) {
+            try {
+                SecurityAccess securityAccess =
+                    getAccess(user, securityReferenceFactory.newEntityReference(entityReference), resolvedAccesses);
+
+                RuleState access = securityAccess.get(right);
+                logAccess(access, userReference, entityReference, right, "bulk access inquiry", true);
+                if (access == RuleState.ALLOW) {
+                    accessibleReferences.add(entityReference);
+                }
+            } catch (Exception e) {
+                logLoadError(userReference, entityReference, e);
+            }
+        }
+
+        return accessibleReferences;
+    }
+
+    private void logLoadError(DocumentReference userReference, EntityReference entityReference, Exception e)
+    {
+        this.logger.error(String.format("Failed to load rights for user [%s] on [%s].",
+            (userReference == null) ? AuthorizationException.NULL_USER : userReference,
+            (entityReference == null) ? AuthorizationException.NULL_ENTITY : entityReference), e);
+    }
+
     /**
      * Verifies if the user identified by {@code userReference} has the access identified by {@code right} on the
      * entity identified by {@code entityReference}. Note that some rights may be checked higher in hierarchy of the
@@ -221,7 +269,36 @@ public Right register(RightDescription rightDescription, Set<Right> impliedByRig
     private SecurityAccess getAccess(UserSecurityReference user, SecurityReference entity)
         throws AuthorizationException
     {
+        return getAccess(user, entity, null);
+    }
+
+    /**
+     * Obtain the access for the user on the given entity and load it into the cache if unavailable.
+     *
+     * @param user The user identity.
+     * @param entity The entity.  May be of type DOCUMENT, WIKI, or SPACE.
+     * @param resolvedAccesses the access already resolved for entities without any rule between them and the
+     *            entity holding the rules, updated with the resolved access, null if not needed
+     * @return the cached access entry.
+     * @exception org.xwiki.security.authorization.AuthorizationException if an error occurs
+     */
+    private SecurityAccess getAccess(UserSecurityReference user, SecurityReference entity,
+        Map<SecurityReference, SecurityAccess> resolvedAccesses) throws AuthorizationException
+    {
+        // The entities without any rule between the requested entity and the entity providing the access
+        List<SecurityReference> emptyReferences = new ArrayList<>();
+
         for (SecurityReference ref = entity; ref != null; ref = ref.getParentSecurityReference()) {
+            if (resolvedAccesses != null) {
+                SecurityAccess access = resolvedAccesses.get(ref);
+                if (access != null) {
+                    logger.debug("0. Reused resolved entry for user {} on {}: [{}]", user, entity, access);
+
+                    return resolve(access, emptyReferences, resolvedAccesses);
+                }
+            }
+            emptyReferences.add(ref);
+
             if (Right.getEnabledRights(ref.getSecurityType()).isEmpty()) {
                 // Skip search on entity types that will obviously have empty/useless list of rules.
                 continue;
@@ -241,13 +318,13 @@ private SecurityAccess getAccess(UserSecurityReference user, SecurityReference e
 
                     logger.debug("2. Loaded a new entry for user {} on {} into cache: [{}]", user, entity, access);
 
-                    return access;
+                    return resolve(access, emptyReferences, resolvedAccesses);
                 } else {
                     SecurityAccess access = accessEntry.getAccess();
 
                     logger.debug("3. Got entry for user {} on {} from cache: [{}]", user, entity, access);
 
-                    return access;
+                    return resolve(access, emptyReferences, resolvedAccesses);
                 }
             } 
         }
@@ -256,6 +333,18 @@ private SecurityAccess getAccess(UserSecurityReference user, SecurityReference e
 
         logger.debug("4. Loaded a new default entry for user {} on {} into cache: [{}]", user, entity, access);
 
+        return resolve(access, emptyReferences, resolvedAccesses);
+    }
+
+    private SecurityAccess resolve(SecurityAccess access, List<SecurityReference> references,
+        Map<SecurityReference, SecurityAccess> resolvedAccesses)
+    {
+        if (resolvedAccesses != null) {
+            for (SecurityReference reference : references) {
+                resolvedAccesses.put(reference, access);
+            }
+        }
+
         return access;
     }
 
@@ -27,6 +27,7 @@
 import java.util.HashSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.inject.Inject;
@@ -74,14 +75,11 @@ public class DefaultSecurityCache implements SecurityCache, Initializable
     @Inject
     private Logger logger;
 
-    /** Fair read-write lock used for fair scheduling of cache access. */
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
-
-    /** Fair read lock. */
-    private final Lock readLock = readWriteLock.readLock();
-
-    /** Fair write lock. */
-    private final Lock writeLock = readWriteLock.writeLock();
+    /**
+     * Lock used to serialize the modifications of the cache (insertions and removals, which can cascade to the
+     * children of the entries). Reading the cache does not require any lock.
+     */
+    private final Lock writeLock = new ReentrantLock();
 
     private final ReadWriteLock invalidationReadWriteLock = new ReentrantReadWriteLock(true);
 
@@ -136,12 +134,13 @@ private class SecurityCacheEntry implements DisposableCacheValue
         /**
          * The cached security entry.
          */
-        private SecurityEntry entry;
+        private volatile SecurityEntry entry;
 
         /**
-         * Parents of this cached entry.
+         * Parents of this cached entry. The collection is never modified once published so that it can be safely
+         * explored without lock.
          */
-        private Collection<SecurityCacheEntry> parents;
+        private volatile Collection<SecurityCacheEntry> parents;
 
         /**
          * Children of this cached entry.
@@ -151,7 +150,7 @@ private class SecurityCacheEntry implements DisposableCacheValue
         /**
          * True if this entry has been removed.
          */
-        private boolean disposed;
+        private volatile boolean disposed;
 
         /**
          * Create a new cache entry for a security rule, linking it to its parent.
@@ -282,7 +281,7 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
             this.entry = entry;
             int parentSize = groups.size() + ((parentReference == null) ? 0 : 1);
             if (parentSize > 0) {
-                this.parents = new ArrayList<>(parentSize);
+                Collection<SecurityCacheEntry> newParents = new ArrayList<>(parentSize);
                 if (parentReference != null) {
                     SecurityCacheEntry parent = DefaultSecurityCache.this.getEntry(parentReference);
                     if (parent == null) {
@@ -291,10 +290,11 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
                                 + " is no longer available in the cache.",
                             parentReference, entry, groups));
                     }
-                    this.parents.add(parent);
+                    newParents.add(parent);
                     parent.addChild(this);
                 }
-                addParentGroups(groups, parentReference);
+                addParentGroups(newParents, groups, parentReference);
+                this.parents = newParents;
                 logNewEntry();
             } else {
                 this.parents = null;
@@ -305,11 +305,13 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
         /**
          * Add provided groups as parent of this entry, excluding the main parent reference.
          *
+         * @param newParents the parents being built for this entry.
          * @param groups the list of groups to add.
          * @param parentReference the main parent reference to exclude.
          * @throws ParentEntryEvictedException if the parents required are no more available in the cache.
          */
-        private void addParentGroups(Collection<GroupSecurityReference> groups, SecurityReference parentReference)
+        private void addParentGroups(Collection<SecurityCacheEntry> newParents,
+            Collection<GroupSecurityReference> groups, SecurityReference parentReference)
             throws ParentEntryEvictedException
         {
             for (GroupSecurityReference group : groups) {
@@ -323,7 +325,7 @@ private void addParentGroups(Collection<GroupSecurityReference> groups, Security
                     throw new ParentEntryEvictedException(String
                         .format("The parent with reference [%s] is no longer available in the cache", parentReference));
                 }
-                this.parents.add(parent);
+                newParents.add(parent);
                 parent.addChild(this);
             }
         }
@@ -341,15 +343,18 @@ boolean updateParentGroups(Collection<GroupSecurityReference> groups) throws Par
             }
 
             if (groups != null && !groups.isEmpty()) {
+                // Build the new parents before publishing them since they can be explored without lock
+                Collection<SecurityCacheEntry> newParents;
                 if (this.parents == null) {
-                    this.parents = new ArrayList<>(groups.size());
-                    addParentGroups(groups, null);
+                    newParents = new ArrayList<>(groups.size());
+                    addParentGroups(newParents, groups, null);
                 } else {
                     SecurityCacheEntry parent = this.parents.iterator().next();
-                    this.parents = new ArrayList<>(groups.size() + 1);
-                    this.parents.add(parent);
-                    addParentGroups(groups, parent.entry.getReference());
+                    newParents = new ArrayList<>(groups.size() + 1);
+                    newParents.add(parent);
+                    addParentGroups(newParents, groups, parent.entry.getReference());
                 }
+                this.parents = newParents;
             }
 
             return true;
@@ -568,12 +573,8 @@ private String getEntryKey(SecurityAccessEntry entry)
      */
     private SecurityCacheEntry getEntry(SecurityReference reference)
     {
-        readLock.lock();
-        try {
-            return cache.get(getEntryKey(reference));
-        } finally {
-            readLock.unlock();
-        }
+        // The cache is thread safe and the entries are safely published
+        return cache.get(getEntryKey(reference));
     }
 
     /**
@@ -584,12 +585,8 @@ private SecurityCacheEntry getEntry(SecurityReference reference)
      */
     private SecurityCacheEntry getEntry(UserSecurityReference userReference, SecurityReference reference)
     {
-        readLock.lock();
-        try {
-            return cache.get(getEntryKey(userReference, reference));
-        } finally {
-            readLock.unlock();
-        }
+        // The cache is thread safe and the entries are safely published
+        return cache.get(getEntryKey(userReference, reference));
     }
 
     /**
@@ -600,12 +597,8 @@ private SecurityCacheEntry getEntry(UserSecurityReference userReference, Securit
      */
     private SecurityCacheEntry getShadowEntry(SecurityReference userReference, SecurityReference wiki)
     {
-        readLock.lock();
-        try {
-            return cache.get(getShadowEntryKey(userReference, wiki));
-        } finally {
-            readLock.unlock();
-        }
+        // The cache is thread safe and the entries are safely published
+        return cache.get(getShadowEntryKey(userReference, wiki));
     }
 
     /**
@@ -908,7 +901,7 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
         SecurityCacheEntry userEntry = (entityWiki != null) ? getShadowEntry(user, entityWiki) : getEntry(user);
 
         // If the user is not in the cache, or if it is, but not as a user, but as a regular document
-        if (userEntry == null || !userEntry.isUser()) {
+        if (userEntry == null || !userEntry.isUser() || userEntry.disposed) {
             // In that case, the ancestors are not fully loaded
             return null;
         }
@@ -920,7 +913,9 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
         // Special case if the user is a shadow.
         if (entityWiki != null) {
             // We start with the parents of the original entry, and the parent of this shadow (excluding the original)
-            addParentsWhenEntryIsShadow(userEntry, user, groups, entriesToExplore);
+            if (!addParentsWhenEntryIsShadow(userEntry, user, groups, entriesToExplore)) {
+                return null;
+            }
         } else {
             // We start with the current user
             entriesToExplore.add(userEntry);
@@ -931,15 +926,19 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
             SecurityCacheEntry entry = entriesToExplore.pop();
 
             // We add the parents of the current entry
-            addParentsToTheListOfEntriesToExplore(entry.parents, groups, entriesToExplore);
+            if (!addParentsToTheListOfEntriesToExplore(entry, entry.parents, groups, entriesToExplore)) {
+                return null;
+            }
 
             // If the entry has a shadow (in the concerned subwiki), we also add the parents of the shadow
             if (entityWiki != null) {
                 GroupSecurityReference entryRef = (GroupSecurityReference) entry.getEntry().getReference();
                 if (entryRef.isGlobal()) {
                     SecurityCacheEntry shadow = getShadowEntry(entryRef, entityWiki);
-                    if (shadow != null) {
-                        addParentsToTheListOfEntriesToExplore(shadow.parents, groups, entriesToExplore, entry);
+                    if (shadow != null
+                        && !addParentsToTheListOfEntriesToExplore(shadow, shadow.parents, groups, entriesToExplore,
+                            entry)) {
+                        return null;
                     }
                 }
             }
@@ -948,47 +947,68 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
         return groups;
     }
 
-    private void addParentsWhenEntryIsShadow(SecurityCacheEntry shadow, UserSecurityReference user,
+    private boolean addParentsWhenEntryIsShadow(SecurityCacheEntry shadow, UserSecurityReference user,
         Collection<GroupSecurityReference> groups, Deque<SecurityCacheEntry> entriesToExplore)
     {
         SecurityCacheEntry originalEntry = getEntry(user);
 
+        // The cache is read without lock, so the original entry might have been evicted after the shadow was found
+        if (originalEntry == null) {
+            return false;
+        }
+
         // We add the parents of the original (but not the original, otherwise we could have the same group twice)
-        addParentsToTheListOfEntriesToExplore(originalEntry.parents, groups, entriesToExplore);
         // And we add the parent groups of the shadow
-        addParentsToTheListOfEntriesToExplore(shadow.parents, groups, entriesToExplore, originalEntry);
+        return addParentsToTheListOfEntriesToExplore(originalEntry, originalEntry.parents, groups, entriesToExplore)
+            && addParentsToTheListOfEntriesToExplore(shadow, shadow.parents, groups, entriesToExplore,
+                originalEntry);
     }
 
     /**
      * Add the parents of an entry to the list of entries to explore.
      *
+     * @param entry the entry owning the parents
      * @param parents the parents of the entry
      * @param groups the collection where we store the found groups
      * @param entriesToExplore the collection holding the entries we still have to explore
+     * @return false if the entry or one of its parents has been disposed (the groups cannot be trusted anymore)
      */
-    private void addParentsToTheListOfEntriesToExplore(Collection<SecurityCacheEntry> parents,
-        Collection<GroupSecurityReference> groups, Deque<SecurityCacheEntry> entriesToExplore)
+    private boolean addParentsToTheListOfEntriesToExplore(SecurityCacheEntry entry,
+        Collection<SecurityCacheEntry> parents, Collection<GroupSecurityReference> groups,
+        Deque<SecurityCacheEntry> entriesToExplore)
     {
-        addParentsToTheListOfEntriesToExplore(parents, groups, entriesToExplore, null);
+        return addParentsToTheListOfEntriesToExplore(entry, parents, groups, entriesToExplore, null);
     }
 
     /**
      * Add the parents of an entry to the list of entries to explore.
      *
+     * @param entry the entry owning the parents
      * @param parents the parents of the entry
      * @param groups the collection where we store the found groups
      * @param entriesToExplore the collection holding the entries we still have to explore
      * @param originalEntry the original entry of the current entry (if the current entry is a shadow), null otherwise
+     * @return false if the entry or one of its parents has been disposed (the groups cannot be trusted anymore)
      */
-    private void addParentsToTheListOfEntriesToExplore(Collection<SecurityCacheEntry> parents,
-        Collection<GroupSecurityReference> groups, Deque<SecurityCacheEntry> entriesToExplore,
-        SecurityCacheEntry originalEntry)
+    private boolean addParentsToTheListOfEntriesToExplore(SecurityCacheEntry entry,
+        Collection<SecurityCacheEntry> parents, Collection<GroupSecurityReference> groups,
+        Deque<SecurityCacheEntry> entriesToExplore, SecurityCacheEntry originalEntry)
     {
+        // The cache is read without lock, an entry disposed during the exploration might be missing some of its
+        // parents, so the caller should consider the groups as not fully loaded
+        if (entry.disposed) {
+            return false;
+        }
+
         if (parents == null) {
-            return;
+            return true;
         }
 
         for (SecurityCacheEntry parent : parents) {
+            if (parent.disposed) {
+                return false;
+            }
+
             // skip this parent if the entry is a shadow and the parent is the original entry
             // (ie: don't explore the original entry)
             if (originalEntry != null && parent == originalEntry) {
@@ -1001,6 +1021,8 @@ private void addParentsToTheListOfEntriesToExplore(Collection<SecurityCacheEntry
                 entriesToExplore.add(parent);
             }
         }
+
+        return true;
     }
 
     @Override
@@ -21,8 +21,10 @@
 package org.xwiki.security.authorization;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -447,6 +449,33 @@ public void testInheritancePolicyForFullFarmAccess() throws Exception
         assertAccess(ALL_RIGHTS, getXUser("userA"), getDoc("docAllowA", "any space", "wikiDenyA"));
     }
 
+    @Test
+    public void testFilterAccessible() throws Exception
+    {
+        initialiseWikiMock("inheritancePolicyForGlobalFullWikiAccess");
+
+        List<EntityReference> entities = Arrays.asList(getXDoc("any document", "any space"),
+            getXDoc("any document", "spaceAllowA"), getXDoc("docDenyA", "spaceAllowA"),
+            getXDoc("docAllowA", "any space"), getDoc("any document", "any space", "wikiNoRules"),
+            getDoc("any document", "spaceAllowA", "wikiNoRules"), getDoc("docAllowA", "any space", "wikiNoRules"),
+            getDoc("any document", "any space", "wikiAllowA"), getDoc("any document", "spaceDenyA", "wikiAllowA"),
+            getXDoc("other document", "spaceAllowA"), getDoc("other document", "any space", "wikiAllowA"));
+
+        for (DocumentReference user : Arrays.asList(getXUser("userA"), null, SUPERADMIN)) {
+            for (Right right : values()) {
+                List<EntityReference> expected = new ArrayList<>();
+                for (EntityReference entity : entities) {
+                    if (authorizationManager.hasAccess(right, user, entity)) {
+                        expected.add(entity);
+                    }
+                }
+
+                Assert.assertEquals(String.format("Unexpected entities for right [%s] and user [%s]", right,
+                    getUserReadableName(user)), expected, authorizationManager.filterAccessible(right, user, entities));
+            }
+        }
+    }
+
     @Test
     public void testInheritancePolicyForGlobalFullWikiAccess() throws Exception
     {
@@ -23,9 +23,17 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -59,10 +67,14 @@
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import static org.hamcrest.CoreMatchers.anyOf;
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -236,7 +248,8 @@ private String AddUserEntry(SecurityShadowEntry user)
     private Map<String, SecurityEntry> InsertUsersWithouShadow()
         throws ConflictingInsertionException, ParentEntryEvictedException
     {
-        Map<String, SecurityEntry> entries = new HashMap<String, SecurityEntry>();
+        // Keep the insertion order so that the entries can be inserted again in the same order
+        Map<String, SecurityEntry> entries = new LinkedHashMap<String, SecurityEntry>();
 
         // Add wikis
         for (SecurityReference ref : wikiRefs) {
@@ -862,4 +875,97 @@ public boolean keepAccess(SecurityAccessEntry entry)
             }
         });
     }
+
+    @Test
+    public void testGetGroupsForWhenOriginalUserIsEvictedDuringTheRead() throws Exception
+    {
+        Map<String, SecurityEntry> entries = InsertUsers();
+
+        assertThat(securityCache.getGroupsFor(bothGroupXUserRef, wikiRef), notNullValue());
+
+        String shadowKey = null;
+        for (Map.Entry<String, SecurityEntry> entry : entries.entrySet()) {
+            if (entry.getValue() instanceof SecurityShadowEntry
+                && entry.getValue().getReference() == bothGroupXUserRef
+                && ((SecurityShadowEntry) entry.getValue()).getWikiReference() == wikiRef) {
+                shadowKey = entry.getKey();
+            }
+        }
+
+        // Evict the global user (and so its shadow) right after its shadow has been read
+        String evictedShadowKey = shadowKey;
+        AtomicBoolean evicted = new AtomicBoolean();
+        cache.setGetListener(key -> {
+            if (key.equals(evictedShadowKey) && evicted.compareAndSet(false, true)) {
+                securityCache.remove(bothGroupXUserRef);
+            }
+        });
+
+        // The groups are not fully loaded anymore
+        assertThat(securityCache.getGroupsFor(bothGroupXUserRef, wikiRef), nullValue());
+        assertTrue(evicted.get());
+    }
+
+    @Test
+    public void testGetGroupsForWhileEvictingGroups() throws Exception
+    {
+        Map<String, SecurityEntry> entries = InsertUsers();
+
+        Collection<GroupSecurityReference> expectedGlobalGroups = securityCache.getGroupsFor(bothGroupXUserRef, null);
+        Collection<GroupSecurityReference> expectedLocalGroups =
+            securityCache.getGroupsFor(bothGroupXUserRef, wikiRef);
+        assertThat(expectedGlobalGroups.size(), is(2));
+        assertThat(expectedLocalGroups.size(), is(4));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (SecurityReference wiki : Arrays.asList(null, wikiRef)) {
+                Set<GroupSecurityReference> expected =
+                    new HashSet<>(wiki == null ? expectedGlobalGroups : expectedLocalGroups);
+                readers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        Collection<GroupSecurityReference> groups =
+                            securityCache.getGroupsFor(bothGroupXUserRef, wiki);
+                        // Either not fully loaded or complete, never partial
+                        assertThat(groups == null ? null : new HashSet<GroupSecurityReference>(groups),
+                            anyOf(equalTo(expected), nullValue()));
+                    }
+                    return null;
+                }));
+            }
+
+            Future<?> writer = executor.submit(() -> {
+                try {
+                    for (int i = 0; i < 500; ++i) {
+                        // Evict a global group, and all the users and groups depending on it, and load them back
+                        securityCache.remove(i % 2 == 0 ? xgroupRef : anotherXGroupRef);
+                        for (SecurityEntry entry : entries.values()) {
+                            if (entry instanceof SecurityShadowEntry) {
+                                AddUserEntry((SecurityShadowEntry) entry);
+                            } else {
+                                AddRuleEntry((SecurityRuleEntry) entry);
+                            }
+                        }
+                    }
+                } finally {
+                    running.set(false);
+                }
+                return null;
+            });
+
+            writer.get(1, TimeUnit.MINUTES);
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        // Everything has been loaded back
+        assertThat(new HashSet<>(securityCache.getGroupsFor(bothGroupXUserRef, wikiRef)),
+            equalTo(new HashSet<>(expectedLocalGroups)));
+    }
 }
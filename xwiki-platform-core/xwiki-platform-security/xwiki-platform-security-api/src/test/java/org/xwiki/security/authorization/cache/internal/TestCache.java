@@ -20,8 +20,9 @@
 
 package org.xwiki.security.authorization.cache.internal;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheEntry;
@@ -43,9 +44,10 @@
  */
 public class TestCache<T> implements Cache<T>
 {
-    private Map<String, T> cache = new HashMap<String, T>();
+    private Map<String, T> cache = new ConcurrentHashMap<String, T>();
     private CacheEntryListener<T> listener;
-    private String lastInsertedKey;
+    private volatile String lastInsertedKey;
+    private Consumer<String> getListener;
 
     class TestCacheEntry implements CacheEntry<T>
     {
@@ -117,7 +119,11 @@ public void set(String key, T value)
     @Override
     public T get(String key)
     {
-        return cache.get(key);
+        T value = cache.get(key);
+        if (getListener != null) {
+            getListener.accept(key);
+        }
+        return value;
     }
 
     @Override
@@ -170,4 +176,13 @@ public String getLastInsertedKey()
     {
         return lastInsertedKey;
     }
+
+    /**
+     * @param getListener called with the key of each entry read from the cache, after the value has been read, to
+     *            simulate modifications happening concurrently with the reads
+     */
+    public void setGetListener(Consumer<String> getListener)
+    {
+        this.getListener = getListener;
+    }
 }
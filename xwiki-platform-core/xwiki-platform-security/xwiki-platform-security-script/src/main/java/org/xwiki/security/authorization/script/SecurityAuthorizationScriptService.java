@@ -19,6 +19,9 @@
  */
 package org.xwiki.security.authorization.script;
 
+import java.util.Collection;
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -32,6 +35,7 @@
 import org.xwiki.security.authorization.ContextualAuthorizationManager;
 import org.xwiki.security.authorization.Right;
 import org.xwiki.security.script.SecurityScriptService;
+import org.xwiki.stability.Unstable;
 
 /**
  * Security Authorization Script Service.
@@ -145,4 +149,23 @@ public boolean hasAccess(Right right, DocumentReference userReference, EntityRef
     {
         return authorizationManager.hasAccess(right, userReference, entityReference);
     }
+
+    /**
+     * Filter the passed entities to keep only the ones on which the user identified by {@code userReference} has the
+     * access identified by {@code right}. Much faster than calling {@link #hasAccess(Right, DocumentReference,
+     * EntityReference)} for each entity when filtering big lists of entities (search results, etc.).
+     * This function should be used for interface matters, use {@link #checkAccess} at security checkpoints.
+     *
+     * @param right the right to check
+     * @param userReference the user to check the right for
+     * @param entityReferences the entities on which to check the right
+     * @return the entities on which the user has the specified right, in the same order as the passed entities
+     * @since 12.7RC1
+     */
+    @Unstable
+    public List<EntityReference> filterAccessible(Right right, DocumentReference userReference,
+        Collection<EntityReference> entityReferences)
+    {
+        return authorizationManager.filterAccessible(right, userReference, entityReferences);
+    }
 }
@@ -21,10 +21,14 @@
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.xwiki.skinx.internal.SxContentCache;
+import org.xwiki.skinx.internal.SxContentCache.SxContent;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -58,14 +62,19 @@ public abstract class AbstractSxAction extends XWikiAction
     /** What http header parameter is used to specify when the cache should expire. */
     private static final String CACHE_EXPIRES_HEADER = "Expires";
 
-    /** The response will be sent to the browser as a byte array in this character set. */
-    private static final String RESPONSE_CHARACTER_SET = "UTF-8";
+    /** What http header parameter is used by the browser to list the content encodings it supports. */
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+    /** The gzip content encoding. */
+    private static final String GZIP_ENCODING = "gzip";
 
     /** If the user passes this parameter in the URL, we will look for the script in the jar files. */
     private static final String JAR_RESOURCE_REQUEST_PARAMETER = "resource";
 
     private DebugConfiguration debugConfiguration;
 
+    private SxContentCache contentCache;
+
     /** @return the logging object of the concrete subclass. */
     protected abstract Logger getLogger();
 
@@ -83,7 +92,9 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
     {
         XWikiResponse response = context.getResponse();
 
-        String extensionContent = sxSource.getContent();
+        // The minified and encoded versions of the content are cached since the same content is requested again
+        // and again by the pages using it
+        SxContent content = getContent(sxSource, sxType);
 
         response.setContentType(sxType.getContentType());
 
@@ -106,19 +117,66 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
             response.setHeader(CACHE_CONTROL_HEADER, "no-cache, no-store, must-revalidate");
         }
 
-        if (getDebugConfiguration().isMinify()) {
-            extensionContent = sxType.getCompressor().compress(extensionContent);
-        }
-
         try {
-            response.setContentLength(extensionContent.getBytes(RESPONSE_CHARACTER_SET).length);
-            response.getOutputStream().write(extensionContent.getBytes(RESPONSE_CHARACTER_SET));
+            response.setHeader("Vary", ACCEPT_ENCODING_HEADER);
+            if (acceptsGzip(context.getRequest().getHeader(ACCEPT_ENCODING_HEADER))) {
+                response.setHeader("Content-Encoding", GZIP_ENCODING);
+                if (content.isCached()) {
+                    writeContent(content.getGzipBytes(), response);
+                } else {
+                    // The compressed content of a large extension is not kept so there is no point in buffering it
+                    try (GZIPOutputStream stream = new GZIPOutputStream(response.getOutputStream())) {
+                        stream.write(content.getBytes());
+                    }
+                }
+            } else {
+                writeContent(content.getBytes(), response);
+            }
         } catch (IOException ex) {
             getLogger().warn("Failed to send SX content: [{}]", ex.getMessage());
         }
 
     }
 
+    private SxContent getContent(SxSource sxSource, Extension sxType)
+    {
+        boolean minify = getDebugConfiguration().isMinify();
+
+        // Extensions which are not parsed don't need to be rendered again as long as they are not modified
+        String contentKey =
+            sxSource instanceof SxDocumentSource ? ((SxDocumentSource) sxSource).getContentKey() : null;
+        if (contentKey != null) {
+            return getContentCache().getContent(contentKey, sxSource::getContent, sxType, minify);
+        }
+
+        return getContentCache().getContent(sxSource.getContent(), sxType, minify);
+    }
+
+    private void writeContent(byte[] responseContent, XWikiResponse response) throws IOException
+    {
+        response.setContentLength(responseContent.length);
+        response.getOutputStream().write(responseContent);
+    }
+
+    /**
+     * @param acceptEncoding the value of the {@code Accept-Encoding} request header, or {@code null} if missing
+     * @return true if the response can be compressed with gzip
+     */
+    static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding != null) {
+            for (String coding : StringUtils.split(acceptEncoding, ',')) {
+                String[] parameters = StringUtils.split(coding, ';');
+                if (parameters.length > 0 && GZIP_ENCODING.equalsIgnoreCase(parameters[0].trim())) {
+                    // "gzip;q=0" explicitly refuses gzip
+                    return parameters.length == 1 || !parameters[1].trim().matches("q=0(\\.0*)?");
+                }
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public String render(XWikiContext context) throws XWikiException
     {
@@ -152,6 +210,19 @@ protected DebugConfiguration getDebugConfiguration()
         return this.debugConfiguration;
     }
 
+    /**
+     * @return the cache of the minified and encoded skin extension contents
+     * @since 12.7RC1
+     */
+    protected SxContentCache getContentCache()
+    {
+        if (this.contentCache == null) {
+            this.contentCache = Utils.getComponent(SxContentCache.class);
+        }
+
+        return this.contentCache;
+    }
+
     /**
      * Get the type of extension, depends on the type of action.
      *
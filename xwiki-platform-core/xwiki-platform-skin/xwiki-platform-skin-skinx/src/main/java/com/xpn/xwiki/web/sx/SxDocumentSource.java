@@ -64,6 +64,12 @@ public class SxDocumentSource implements SxSource
     /** The name of the property in the script extension object which contains the name of the object. */
     private static final String NAME_PROPERTY_NAME = "name";
 
+    /** The content type of the extensions compiled with LESS. */
+    private static final String LESS_CONTENT_TYPE = "LESS";
+
+    /** The separator between the elements of the content key. */
+    private static final char KEY_SEPARATOR = '/';
+
     /** Logging helper. */
     private static final Logger LOGGER = LoggerFactory.getLogger(SxDocumentSource.class);
 
@@ -129,7 +135,7 @@ public String getContent()
                 }
                 String sxContent = sxObj.getLargeStringValue(CONTENT_PROPERTY_NAME);
                 int parse = sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME);
-                if ("LESS".equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME))) {
+                if (LESS_CONTENT_TYPE.equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME))) {
                     LESSCompiler lessCompiler = Utils.getComponent(LESSCompiler.class);
                     LESSResourceReferenceFactory lessResourceReferenceFactory =
                         Utils.getComponent(LESSResourceReferenceFactory.class);
@@ -167,6 +173,30 @@ public String getContent()
         return resultBuilder.toString();
     }
 
+    /**
+     * The content of the extensions which are neither parsed with Velocity nor compiled with LESS only depends on the
+     * version of the document, so it does not need to be rendered again as long as the document is not modified.
+     * 
+     * @return a key identifying the content of the extensions of the document, or {@code null} if at least one of
+     *         them needs to be rendered for each request
+     * @since 12.7RC1
+     */
+    public String getContentKey()
+    {
+        List<BaseObject> objects = this.document.getObjects(this.extension.getClassName());
+        if (objects != null) {
+            for (BaseObject sxObj : objects) {
+                if (sxObj != null && (sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME) == 1
+                    || LESS_CONTENT_TYPE.equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME)))) {
+                    return null;
+                }
+            }
+        }
+
+        return this.document.getDocumentReferenceWithLocale().toString() + KEY_SEPARATOR + this.document.getVersion()
+            + KEY_SEPARATOR + this.context.getLocale() + KEY_SEPARATOR + this.context.getWiki().getSkin(this.context);
+    }
+
     @Override
     public long getLastModifiedDate()
     {
@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+import com.xpn.xwiki.web.sx.Extension;
+
+/**
+ * Keep the bytes sent for a skin extension content once compressed, so that the same content is not minified and
+ * encoded again for each request.
+ * <p>
+ * The entries are indexed either by a key provided by the caller, which must change whenever the content changes (for
+ * example the version of a document holding extensions which are not parsed), or by a SHA-256 hash of the rendered
+ * content. In both cases they never need to be invalidated: a modified extension (or one which renders differently for
+ * the current request) simply produces another entry. When indexed by hash the content still has to be rendered for
+ * each request, only its minification and encoding are saved.
+ * <p>
+ * Only contents smaller than {@value #MAX_CACHED_SIZE} bytes are kept and the gzip variant is only produced when first
+ * requested, so that the memory used by the cache stays bounded.
+ * 
+ * @version $Id$
+ * @since 12.7RC1
+ */
+@Component(roles = SxContentCache.class)
+@Singleton
+public class SxContentCache implements Initializable, Disposable
+{
+    /**
+     * The maximum size, in bytes, of a (minified) content to keep in the cache.
+     */
+    public static final int MAX_CACHED_SIZE = 100 * 1024;
+
+    /**
+     * The bytes to send for a skin extension content.
+     * 
+     * @version $Id$
+     */
+    public static final class SxContent
+    {
+        private final byte[] bytes;
+
+        private final boolean cached;
+
+        private volatile byte[] gzipBytes;
+
+        SxContent(byte[] bytes, boolean cached)
+        {
+            this.bytes = bytes;
+            this.cached = cached;
+        }
+
+        /**
+         * @return true if the content is kept in the cache, false if it's too large and was produced for this request
+         *         only (in which case there is no point in keeping its gzip variant in memory)
+         */
+        public boolean isCached()
+        {
+            return this.cached;
+        }
+
+        /**
+         * @return the UTF-8 encoded content
+         */
+        public byte[] getBytes()
+        {
+            return this.bytes;
+        }
+
+        /**
+         * @return the UTF-8 encoded content compressed with gzip
+         * @throws IOException when failing to compress the content
+         */
+        public byte[] getGzipBytes() throws IOException
+        {
+            // Two concurrent requests might compress the same content but it's harmless
+            if (this.gzipBytes == null) {
+                ByteArrayOutputStream gzipStream = new ByteArrayOutputStream(this.bytes.length / 4);
+                try (GZIPOutputStream stream = new GZIPOutputStream(gzipStream)) {
+                    stream.write(this.bytes);
+                }
+
+                this.gzipBytes = gzipStream.toByteArray();
+            }
+
+            return this.gzipBytes;
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 200;
+
+    private static final String HASH_KEY_PREFIX = "hash:";
+
+    private static final String SOURCE_KEY_PREFIX = "source:";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<SxContent> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfig = new LRUCacheConfiguration("skinx.content", DEFAULT_CAPACITY);
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfig);
+        } catch (Exception e) {
+            throw new InitializationException("Failed to create the skin extension content cache", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param content the rendered content of the skin extension
+     * @param extension the type of skin extension
+     * @param minify true if the content should be minified
+     * @return the bytes to send for the passed content
+     */
+    public SxContent getContent(String content, Extension extension, boolean minify)
+    {
+        return getCachedContent(HASH_KEY_PREFIX + DigestUtils.sha256Hex(content), () -> content, extension, minify);
+    }
+
+    /**
+     * @param sourceKey the key of the skin extension content, which must change whenever the content changes
+     * @param contentSupplier render the content of the skin extension, only called when it's not already cached
+     * @param extension the type of skin extension
+     * @param minify true if the content should be minified
+     * @return the bytes to send for the content identified by the passed key
+     */
+    public SxContent getContent(String sourceKey, Supplier<String> contentSupplier, Extension extension,
+        boolean minify)
+    {
+        return getCachedContent(SOURCE_KEY_PREFIX + sourceKey, contentSupplier, extension, minify);
+    }
+
+    private SxContent getCachedContent(String contentKey, Supplier<String> contentSupplier, Extension extension,
+        boolean minify)
+    {
+        String key = extension.getClass().getName() + '/' + minify + '/' + contentKey;
+
+        SxContent sxContent = this.cache.get(key);
+
+        if (sxContent == null) {
+            String content = contentSupplier.get();
+            String finalContent = minify ? extension.getCompressor().compress(content) : content;
+
+            byte[] bytes = finalContent.getBytes(StandardCharsets.UTF_8);
+            boolean cacheable = bytes.length <= MAX_CACHED_SIZE;
+            sxContent = new SxContent(bytes, cacheable);
+
+            if (cacheable) {
+                this.cache.set(key, sxContent);
+            }
+        }
+
+        return sxContent;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.web.sx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.skinx.internal.SxContentCache;
+import org.xwiki.skinx.internal.SxContentCache.SxContent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.internal.debug.DebugConfiguration;
+import com.xpn.xwiki.web.XWikiRequest;
+import com.xpn.xwiki.web.XWikiResponse;
+import com.xpn.xwiki.web.sx.SxSource.CachePolicy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link AbstractSxAction}.
+ * 
+ * @version $Id$
+ */
+public class AbstractSxActionTest
+{
+    private static final String CONTENT = "var a = 1;";
+
+    private Cache<SxContent> cache;
+
+    private SxContentCache contentCache;
+
+    private DebugConfiguration debugConfiguration;
+
+    private AbstractSxAction action;
+
+    private XWikiContext context;
+
+    private XWikiRequest request;
+
+    private XWikiResponse response;
+
+    private ServletOutputStream outputStream;
+
+    private SxSource source;
+
+    private Extension extension;
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        this.contentCache = new SxContentCache();
+        this.cache = mock(Cache.class);
+        ReflectionUtils.setFieldValue(this.contentCache, "cache", this.cache);
+
+        this.debugConfiguration = mock(DebugConfiguration.class);
+
+        this.action = new AbstractSxAction()
+        {
+            @Override
+            protected Logger getLogger()
+            {
+                return mock(Logger.class);
+            }
+
+            @Override
+            public Extension getExtensionType()
+            {
+                return extension;
+            }
+
+            @Override
+            protected DebugConfiguration getDebugConfiguration()
+            {
+                return debugConfiguration;
+            }
+
+            @Override
+            protected SxContentCache getContentCache()
+            {
+                return contentCache;
+            }
+        };
+
+        this.request = mock(XWikiRequest.class);
+        this.response = mock(XWikiResponse.class);
+        this.outputStream = mock(ServletOutputStream.class);
+        when(this.response.getOutputStream()).thenReturn(this.outputStream);
+
+        this.context = mock(XWikiContext.class);
+        when(this.context.getRequest()).thenReturn(this.request);
+        when(this.context.getResponse()).thenReturn(this.response);
+
+        this.source = mock(SxSource.class);
+        when(this.source.getContent()).thenReturn(CONTENT);
+        when(this.source.getCachePolicy()).thenReturn(CachePolicy.DEFAULT);
+
+        this.extension = mock(Extension.class);
+        when(this.extension.getContentType()).thenReturn("text/javascript; charset=UTF-8");
+    }
+
+    @Test
+    public void acceptsGzip()
+    {
+        assertFalse(AbstractSxAction.acceptsGzip(null));
+        assertFalse(AbstractSxAction.acceptsGzip(""));
+        assertFalse(AbstractSxAction.acceptsGzip("identity"));
+        assertFalse(AbstractSxAction.acceptsGzip("deflate, br"));
+        assertFalse(AbstractSxAction.acceptsGzip("gzip;q=0"));
+        assertFalse(AbstractSxAction.acceptsGzip("deflate, gzip; q=0.000"));
+
+        assertTrue(AbstractSxAction.acceptsGzip("gzip"));
+        assertTrue(AbstractSxAction.acceptsGzip("GZIP"));
+        assertTrue(AbstractSxAction.acceptsGzip("gzip, deflate, br"));
+        assertTrue(AbstractSxAction.acceptsGzip("deflate, gzip;q=0.5"));
+        assertTrue(AbstractSxAction.acceptsGzip("gzip;q=1.0, identity; q=0.5"));
+    }
+
+    @Test
+    public void renderExtensionWithGzip() throws Exception
+    {
+        when(this.request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        this.action.renderExtension(this.source, this.extension, this.context);
+
+        SxContent content = this.contentCache.getContent(CONTENT, this.extension, false);
+        verify(this.response).setHeader("Vary", "Accept-Encoding");
+        verify(this.response).setHeader("Content-Encoding", "gzip");
+        verify(this.response).setContentLength(content.getGzipBytes().length);
+        verify(this.outputStream).write(content.getGzipBytes());
+    }
+
+    @Test
+    public void renderLargeExtensionWithGzip() throws Exception
+    {
+        String largeContent = StringUtils.repeat('a', SxContentCache.MAX_CACHED_SIZE + 1);
+        when(this.source.getContent()).thenReturn(largeContent);
+        when(this.request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        when(this.response.getOutputStream()).thenReturn(new ServletOutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                output.write(b);
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener)
+            {
+            }
+        });
+
+        this.action.renderExtension(this.source, this.extension, this.context);
+
+        // The compressed content is streamed so its length is not known in advance
+        verify(this.response).setHeader("Content-Encoding", "gzip");
+        verify(this.response, never()).setContentLength(anyInt());
+        try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(largeContent, IOUtils.toString(stream, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void renderNotParsedDocumentExtension() throws Exception
+    {
+        SxDocumentSource documentSource = mock(SxDocumentSource.class);
+        when(documentSource.getContentKey()).thenReturn("wiki:Space.Page/1.1/en/flamingo");
+        when(documentSource.getContent()).thenReturn(CONTENT);
+        when(documentSource.getCachePolicy()).thenReturn(CachePolicy.DEFAULT);
+        SxContent content = this.contentCache.getContent(CONTENT, this.extension, false);
+        when(this.cache.get(anyString())).thenReturn(content);
+
+        this.action.renderExtension(documentSource, this.extension, this.context);
+
+        // The extension is not rendered when its content is cached
+        verify(documentSource, never()).getContent();
+        verify(this.outputStream).write(content.getBytes());
+    }
+
+    @Test
+    public void renderExtensionWithoutGzip() throws Exception
+    {
+        this.action.renderExtension(this.source, this.extension, this.context);
+
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        verify(this.response).setHeader("Vary", "Accept-Encoding");
+        verify(this.response, never()).setHeader("Content-Encoding", anyString());
+        verify(this.response).setContentLength(bytes.length);
+        verify(this.outputStream).write(bytes);
+    }
+
+    @Test
+    public void renderExtensionWhenGzipIsRefused() throws Exception
+    {
+        when(this.request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, deflate");
+
+        this.action.renderExtension(this.source, this.extension, this.context);
+
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        verify(this.response).setHeader("Vary", "Accept-Encoding");
+        verify(this.response, never()).setHeader("Content-Encoding", anyString());
+        verify(this.outputStream).write(bytes);
+    }
+}
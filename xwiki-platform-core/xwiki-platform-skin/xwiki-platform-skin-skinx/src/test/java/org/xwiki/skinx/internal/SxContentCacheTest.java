@@ -0,0 +1,190 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.skinx.internal.SxContentCache.SxContent;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import com.xpn.xwiki.web.sx.Extension;
+import com.xpn.xwiki.web.sx.SxCompressor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link SxContentCache}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+public class SxContentCacheTest
+{
+    private static final String CONTENT = "var a = 1;";
+
+    private static final String MINIFIED_CONTENT = "var a=1;";
+
+    @InjectMockComponents
+    private SxContentCache contentCache;
+
+    private Cache<SxContent> cache;
+
+    private Map<String, SxContent> cacheEntries = new HashMap<>();
+
+    private Extension extension;
+
+    private SxCompressor compressor;
+
+    @BeforeComponent
+    public void beforeComponent(MockitoComponentManager componentManager) throws Exception
+    {
+        this.cache = mock(Cache.class);
+        when(this.cache.get(anyString())).then(invocation -> this.cacheEntries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> this.cacheEntries.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(this.cache).set(anyString(), any());
+
+        CacheManager cacheManager = componentManager.registerMockComponent(CacheManager.class);
+        when(cacheManager.<SxContent>createNewCache(any())).thenReturn(this.cache);
+    }
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        this.compressor = mock(SxCompressor.class);
+        when(this.compressor.compress(CONTENT)).thenReturn(MINIFIED_CONTENT);
+
+        this.extension = mock(Extension.class);
+        when(this.extension.getCompressor()).thenReturn(this.compressor);
+    }
+
+    private String gunzip(byte[] bytes) throws Exception
+    {
+        try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void getContent() throws Exception
+    {
+        SxContent content = this.contentCache.getContent(CONTENT, this.extension, false);
+
+        assertArrayEquals(CONTENT.getBytes(StandardCharsets.UTF_8), content.getBytes());
+        assertEquals(CONTENT, gunzip(content.getGzipBytes()));
+        verify(this.compressor, never()).compress(any());
+
+        // The same content is served from the cache, including its gzip variant
+        SxContent cachedContent = this.contentCache.getContent(CONTENT, this.extension, false);
+        assertSame(content, cachedContent);
+        assertSame(content.getGzipBytes(), cachedContent.getGzipBytes());
+        assertTrue(content.isCached());
+    }
+
+    @Test
+    public void getContentByKey() throws Exception
+    {
+        Supplier<String> contentSupplier = mock(Supplier.class);
+        when(contentSupplier.get()).thenReturn(CONTENT);
+
+        SxContent content = this.contentCache.getContent("key", contentSupplier, this.extension, true);
+
+        assertArrayEquals(MINIFIED_CONTENT.getBytes(StandardCharsets.UTF_8), content.getBytes());
+
+        // The content is not rendered again as long as the key is the same
+        assertSame(content, this.contentCache.getContent("key", contentSupplier, this.extension, true));
+        verify(contentSupplier, times(1)).get();
+        verify(this.compressor, times(1)).compress(CONTENT);
+
+        // Keys and hashes are distinct
+        assertNotSame(content, this.contentCache.getContent(CONTENT, this.extension, true));
+
+        this.contentCache.getContent("otherKey", contentSupplier, this.extension, true);
+        verify(contentSupplier, times(2)).get();
+    }
+
+    @Test
+    public void getMinifiedContent() throws Exception
+    {
+        SxContent content = this.contentCache.getContent(CONTENT, this.extension, true);
+
+        assertArrayEquals(MINIFIED_CONTENT.getBytes(StandardCharsets.UTF_8), content.getBytes());
+        assertEquals(MINIFIED_CONTENT, gunzip(content.getGzipBytes()));
+
+        assertSame(content, this.contentCache.getContent(CONTENT, this.extension, true));
+        verify(this.compressor, times(1)).compress(CONTENT);
+
+        // The non minified content is cached separately
+        SxContent notMinifiedContent = this.contentCache.getContent(CONTENT, this.extension, false);
+        assertNotSame(content, notMinifiedContent);
+        assertArrayEquals(CONTENT.getBytes(StandardCharsets.UTF_8), notMinifiedContent.getBytes());
+    }
+
+    @Test
+    public void getModifiedContent() throws Exception
+    {
+        SxContent content = this.contentCache.getContent(CONTENT, this.extension, false);
+        SxContent modifiedContent = this.contentCache.getContent("var b = 2;", this.extension, false);
+
+        assertNotSame(content, modifiedContent);
+        assertArrayEquals("var b = 2;".getBytes(StandardCharsets.UTF_8), modifiedContent.getBytes());
+        assertEquals(2, this.cacheEntries.size());
+    }
+
+    @Test
+    public void getContentTooLargeToBeCached() throws Exception
+    {
+        String largeContent = StringUtils.repeat('a', SxContentCache.MAX_CACHED_SIZE + 1);
+
+        SxContent content = this.contentCache.getContent(largeContent, this.extension, false);
+
+        assertEquals(SxContentCache.MAX_CACHED_SIZE + 1, content.getBytes().length);
+        assertEquals(largeContent, gunzip(content.getGzipBytes()));
+        assertFalse(content.isCached());
+        assertNotSame(content, this.contentCache.getContent(largeContent, this.extension, false));
+        verify(this.cache, never()).set(anyString(), any());
+    }
+}
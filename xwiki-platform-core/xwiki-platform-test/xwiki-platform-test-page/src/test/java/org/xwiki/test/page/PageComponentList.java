@@ -33,6 +33,7 @@
 import org.xwiki.display.internal.DocumentContentAsyncExecutor;
 import org.xwiki.display.internal.DocumentContentAsyncRenderer;
 import org.xwiki.display.internal.DocumentContentDisplayer;
+import org.xwiki.display.internal.DocumentTitleCache;
 import org.xwiki.display.internal.DocumentTitleDisplayer;
 import org.xwiki.localization.internal.DefaultContextualLocalizationManager;
 import org.xwiki.localization.internal.DefaultLocalizationManager;
@@ -158,6 +159,7 @@
     ConfiguredDocumentDisplayer.class,
     DefaultDisplayConfiguration.class,
     DefaultDocumentDisplayer.class,
+    DocumentTitleCache.class,
     DocumentTitleDisplayer.class,
     DocumentContentDisplayer.class,
     DefaultBlockAsyncRendererExecutor.class,